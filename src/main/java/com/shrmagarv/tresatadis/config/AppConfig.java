@@ -1,5 +1,6 @@
 package com.shrmagarv.tresatadis.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,6 +9,8 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.concurrent.Executor;
 
 /**
@@ -41,4 +44,31 @@ public class AppConfig {
                 .setReadTimeout(java.time.Duration.ofSeconds(30))
                 .build();
     }
+    
+    /**
+     * Configure the shared HTTP/2 client for API sources
+     * The JDK client pools and keeps connections alive; its pool is tuned through system properties
+     * that must be in place before the first client is built
+     */
+    @Bean
+    public HttpClient httpClient(
+            @Value("${app.api.http.connect-timeout-ms:10000}") long connectTimeoutMs,
+            @Value("${app.api.http.keep-alive-seconds:300}") long keepAliveSeconds,
+            @Value("${app.api.http.connection-pool-size:0}") int connectionPoolSize) {
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(keepAliveSeconds));
+        setPropertyIfAbsent("jdk.httpclient.keepalive.timeout.h2", String.valueOf(keepAliveSeconds));
+        setPropertyIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(connectionPoolSize));
+        
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+    
+    private static void setPropertyIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package com.shrmagarv.tresatadis.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration for the Kafka listener containers
+ */
+@Configuration
+@Slf4j
+public class KafkaConfig {
+    
+    /**
+     * Container factory for batch listeners
+     * Each poll is delivered as one list and offsets are committed after the listener returns
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory,
+            @Value("${app.kafka.listener.max-poll-records:500}") int maxPollRecords) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        factory.getContainerProperties().setKafkaConsumerProperties(overrides);
+        return factory;
+    }
+    
+    /**
+     * Resolves listener concurrency from the partition count of a topic
+     * Used from @KafkaListener concurrency expressions so each partition gets its own consumer thread
+     */
+    @Bean
+    public PartitionConcurrency kafkaPartitionConcurrency(
+            KafkaAdmin kafkaAdmin,
+            @Value("${app.kafka.listener.concurrency:0}") int fixedConcurrency,
+            @Value("${app.kafka.listener.max-concurrency:16}") int maxConcurrency,
+            @Value("${app.kafka.listener.default-concurrency:1}") int defaultConcurrency) {
+        return new PartitionConcurrency(kafkaAdmin, fixedConcurrency, maxConcurrency, defaultConcurrency);
+    }
+    
+    /**
+     * Looks up topic partition counts with a short timeout so startup does not stall when Kafka is unavailable
+     */
+    @Slf4j
+    public static class PartitionConcurrency {
+        
+        private static final long LOOKUP_TIMEOUT_MS = 5000;
+        
+        private final KafkaAdmin kafkaAdmin;
+        private final int fixedConcurrency;
+        private final int maxConcurrency;
+        private final int defaultConcurrency;
+        
+        public PartitionConcurrency(KafkaAdmin kafkaAdmin, int fixedConcurrency, int maxConcurrency, int defaultConcurrency) {
+            this.kafkaAdmin = kafkaAdmin;
+            this.fixedConcurrency = fixedConcurrency;
+            this.maxConcurrency = maxConcurrency;
+            this.defaultConcurrency = defaultConcurrency;
+        }
+        
+        /**
+         * Get the listener concurrency for a topic
+         * @param topic The topic name
+         * @return The configured concurrency, else the partition count capped at the maximum
+         */
+        public String forTopic(String topic) {
+            if (fixedConcurrency > 0) {
+                return String.valueOf(fixedConcurrency);
+            }
+            
+            Map<String, Object> config = new HashMap<>(kafkaAdmin.getConfigurationProperties());
+            config.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) LOOKUP_TIMEOUT_MS);
+            config.put(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, (int) LOOKUP_TIMEOUT_MS);
+            try (AdminClient admin = AdminClient.create(config)) {
+                TopicDescription description = admin.describeTopics(List.of(topic))
+                        .allTopicNames()
+                        .get(LOOKUP_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                        .get(topic);
+                int concurrency = Math.max(1, Math.min(maxConcurrency, description.partitions().size()));
+                log.info("Using {} listener threads for topic {} ({} partitions)",
+                        concurrency, topic, description.partitions().size());
+                return String.valueOf(concurrency);
+            } catch (Exception e) {
+                log.warn("Could not read partition count for topic {}, using concurrency {}", topic, defaultConcurrency);
+                return String.valueOf(defaultConcurrency);
+            }
+        }
+    }
+}
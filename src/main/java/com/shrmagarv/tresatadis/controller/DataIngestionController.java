@@ -3,6 +3,7 @@ package com.shrmagarv.tresatadis.controller;
 import com.shrmagarv.tresatadis.dto.JobCreationRequest;
 import com.shrmagarv.tresatadis.dto.JobResponse;
 import com.shrmagarv.tresatadis.mapper.JobMapper;
+import com.shrmagarv.tresatadis.model.ColumnStatistics;
 import com.shrmagarv.tresatadis.model.DataStatistics;
 import com.shrmagarv.tresatadis.model.Job;
 import com.shrmagarv.tresatadis.model.JobLog;
@@ -112,6 +113,18 @@ public class DataIngestionController {
         return ResponseEntity.ok(jobMapper.toJobResponse(job));
     }
     
+    /**
+     * Stop a running streaming or tail job
+     * @param id The job ID to stop
+     * @return The job being stopped
+     */
+    @PostMapping("/jobs/{id}/stop")
+    public ResponseEntity<JobResponse> stopJob(@PathVariable Long id) {
+        log.info("Stopping job with ID: {}", id);
+        Job job = ingestionService.stopJob(id);
+        return ResponseEntity.ok(jobMapper.toJobResponse(job));
+    }
+    
     /**
      * Get logs for a job
      * @param id The job ID
@@ -135,4 +148,16 @@ public class DataIngestionController {
         List<DataStatistics> statistics = ingestionService.getJobStatistics(id);
         return ResponseEntity.ok(statistics);
     }
+    
+    /**
+     * Get column profiles for a job
+     * @param id The job ID
+     * @return List of column statistics
+     */
+    @GetMapping("/jobs/{id}/column-statistics")
+    public ResponseEntity<List<ColumnStatistics>> getJobColumnStatistics(@PathVariable Long id) {
+        log.info("Fetching column statistics for job with ID: {}", id);
+        List<ColumnStatistics> statistics = ingestionService.getJobColumnStatistics(id);
+        return ResponseEntity.ok(statistics);
+    }
 }
@@ -25,5 +25,9 @@ public class JobCreationRequest {
     private String destinationType; // LOCAL_STORAGE, CLOUD_STORAGE, DATABASE
     private String destinationLocation; // Path, connection details
     
+    private String executionMode; // BATCH (default), STREAMING, TAIL
+    
+    private Boolean profilingEnabled; // Column profiling of batch loads (default: false)
+    
     private Integer maxRetries;
 }
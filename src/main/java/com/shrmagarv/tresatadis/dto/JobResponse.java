@@ -27,6 +27,9 @@ public class JobResponse {
     private String destinationType;
     private String destinationLocation;
     
+    private String executionMode;
+    private Boolean profilingEnabled;
+    
     private JobStatus status;
     
     private LocalDateTime createdAt;
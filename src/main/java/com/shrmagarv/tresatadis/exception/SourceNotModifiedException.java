@@ -0,0 +1,12 @@
+package com.shrmagarv.tresatadis.exception;
+
+/**
+ * Thrown by a source connector when the upstream reports that the data has not changed
+ * since the previous run and the job should be skipped
+ */
+public class SourceNotModifiedException extends RuntimeException {
+    
+    public SourceNotModifiedException(String message) {
+        super(message);
+    }
+}
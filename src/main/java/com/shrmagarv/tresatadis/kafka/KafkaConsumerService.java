@@ -2,98 +2,234 @@ package com.shrmagarv.tresatadis.kafka;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.shrmagarv.tresatadis.dto.JobCreationRequest;
 import com.shrmagarv.tresatadis.model.Job;
 import com.shrmagarv.tresatadis.service.DataIngestionService;
+import com.shrmagarv.tresatadis.service.streaming.MicroBatchPipeline;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.concurrent.CompletableFuture;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Service for handling Kafka messages
- * Listens for job creation requests and data records
+ * Listens for job creation requests and data records.
+ * Both listeners receive a whole poll at a time so jobs are inserted in bulk and
+ * data records are written as one batch per destination; offsets are committed
+ * by the container only after the listener returns.
  */
 @Service
 @Slf4j
 public class KafkaConsumerService {
     
+    public static final String JOB_LISTENER_ID = "jobRequestListener";
+    public static final String DATA_LISTENER_ID = "dataRecordListener";
+    
     @Autowired
     private DataIngestionService ingestionService;
     
+    @Autowired
+    private MicroBatchPipeline pipeline;
+    
+    @Autowired
+    private KafkaListenerMetrics listenerMetrics;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
     /**
      * Listen for job creation requests
-     * @param message The Kafka message
+     * Malformed requests are logged and skipped; the valid ones are saved in a single transaction
+     * @param records The records from one poll
+     * @param consumer The consumer that polled the records
      */
-    @KafkaListener(topics = "${app.kafka.topics.jobs:ingestion-jobs}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeJobRequests(String message) {
-        try {
-            log.info("Received job request from Kafka");
-            JobCreationRequest request = objectMapper.readValue(message, JobCreationRequest.class);
-            // Create job
-            Job job = Job.builder()
-                    .name(request.getName())
-                    .sourceType(request.getSourceType())
-                    .sourceFormat(request.getSourceFormat())
-                    .sourceLocation(request.getSourceLocation())
-                    .transformationType(request.getTransformationType())
-                    .transformationConfig(request.getTransformationConfig())
-                    .destinationType(request.getDestinationType())
-                    .destinationLocation(request.getDestinationLocation())
-                    .build();
-            ingestionService.createJob(job);
-            log.info("Job created successfully: {}", job.getName());
-            
-        } catch (IOException e) {
-            log.error("Error processing job request from Kafka", e);
+    @KafkaListener(id = JOB_LISTENER_ID,
+            topics = "${app.kafka.topics.jobs:ingestion-jobs}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchListenerContainerFactory",
+            concurrency = "#{@kafkaPartitionConcurrency.forTopic('${app.kafka.topics.jobs:ingestion-jobs}')}")
+    public void consumeJobRequests(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer) {
+        Timer.Sample sample = listenerMetrics.startBatch();
+        log.info("Received {} job requests from Kafka", records.size());
+        
+        List<Job> jobs = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            if (record.value() == null) {
+                log.warn("Skipping job request without a value (partition {}, offset {})",
+                        record.partition(), record.offset());
+                continue;
+            }
+            try {
+                JobCreationRequest request = objectMapper.readValue(record.value(), JobCreationRequest.class);
+                // Create job
+                jobs.add(Job.builder()
+                        .name(request.getName())
+                        .sourceType(request.getSourceType())
+                        .sourceFormat(request.getSourceFormat())
+                        .sourceLocation(request.getSourceLocation())
+                        .transformationType(request.getTransformationType())
+                        .transformationConfig(request.getTransformationConfig())
+                        .destinationType(request.getDestinationType())
+                        .destinationLocation(request.getDestinationLocation())
+                        .executionMode(request.getExecutionMode())
+                        .build());
+            } catch (IOException e) {
+                log.error("Error processing job request from Kafka (partition {}, offset {})",
+                        record.partition(), record.offset(), e);
+            }
         }
+        
+        ingestionService.createJobs(jobs);
+        log.info("Created {} jobs from Kafka", jobs.size());
+        listenerMetrics.recordBatch(JOB_LISTENER_ID, sample, records, consumer);
     }
     
     /**
      * Listen for real-time data records
-     * @param message The Kafka message
+     * Records are grouped by their metadata and each group is transformed and stored as one batch.
+     * A failure propagates to the container so the poll is redelivered rather than committed.
+     * Groups are stored synchronously, so nothing queues behind this listener; the container is paused
+     * by PipelineBackpressureMonitor while streaming writers or the heap are over their watermarks.
+     * @param records The records from one poll
+     * @param consumer The consumer that polled the records
+     * @throws Exception If a batch cannot be stored
      */
-    @KafkaListener(topics = "${app.kafka.topics.data:ingestion-data}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeData(String message) {
-        try {
-            JsonNode dataNode = objectMapper.readTree(message);
-            
-            // Extract metadata from the message
-            if (dataNode.has("metadata")) {
-                JsonNode metadata = dataNode.get("metadata");
-                
-                // Create a job request from the metadata
-                JobCreationRequest request = JobCreationRequest.builder()
-                        .name("Kafka-" + System.currentTimeMillis())
-                        .sourceType("KAFKA")
-                        .sourceFormat(metadata.has("format") ? metadata.get("format").asText() : "JSON")
-                        .sourceLocation("KAFKA")
-                        .transformationType(metadata.has("transformationType") ? 
-                                metadata.get("transformationType").asText() : null)
-                        .transformationConfig(metadata.has("transformationConfig") ? 
-                                metadata.get("transformationConfig").toString() : null)
-                        .destinationType(metadata.has("destinationType") ? 
-                                metadata.get("destinationType").asText() : "DATABASE")
-                        .destinationLocation(metadata.has("destinationLocation") ? 
-                                metadata.get("destinationLocation").asText() : null)
-                        .build();
+    @KafkaListener(id = DATA_LISTENER_ID,
+            topics = "${app.kafka.topics.data:ingestion-data}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchListenerContainerFactory",
+            concurrency = "#{@kafkaPartitionConcurrency.forTopic('${app.kafka.topics.data:ingestion-data}')}")
+    public void consumeData(List<ConsumerRecord<String, String>> records, Consumer<?, ?> consumer) throws Exception {
+        Timer.Sample sample = listenerMetrics.startBatch();
+        
+        Map<String, DataGroup> groups = new LinkedHashMap<>();
+        for (ConsumerRecord<String, String> record : records) {
+            if (record.value() == null) {
+                log.warn("Skipping data message without a value (partition {}, offset {})",
+                        record.partition(), record.offset());
+                continue;
+            }
+            try {
+                JsonNode dataNode = objectMapper.readTree(record.value());
                 
-                // Process the data
-                // In a real implementation, you would store the data and then process it using the ingestion service
-                log.info("Received real-time data from Kafka: {}", 
-                        dataNode.has("data") ? dataNode.get("data").toString() : "No data");
-            } else {
-                log.warn("Received data message without metadata");
+                // Extract metadata from the message
+                if (dataNode.has("metadata")) {
+                    JsonNode metadata = dataNode.get("metadata");
+                    String part = record.partition() + "-" + record.offset();
+                    groups.computeIfAbsent(metadata.toString(), key -> new DataGroup(toRequest(metadata), part))
+                            .add(dataNode.get("data"));
+                } else {
+                    log.warn("Received data message without metadata");
+                }
+            } catch (IOException e) {
+                log.error("Error processing data from Kafka (partition {}, offset {})",
+                        record.partition(), record.offset(), e);
+            }
+        }
+        
+        for (DataGroup group : groups.values()) {
+            JobCreationRequest request = group.request;
+            String result = pipeline.process(group.toResource(), request.getSourceFormat(),
+                    request.getTransformationType(), request.getTransformationConfig(),
+                    request.getDestinationType(), request.getDestinationLocation(), group.part);
+            log.info("Stored {} real-time records from Kafka: {}", group.recordCount, result);
+        }
+        listenerMetrics.recordBatch(DATA_LISTENER_ID, sample, records, consumer);
+    }
+    
+    private JobCreationRequest toRequest(JsonNode metadata) {
+        // Create a job request from the metadata
+        return JobCreationRequest.builder()
+                .name("Kafka-" + System.currentTimeMillis())
+                .sourceType("KAFKA")
+                .sourceFormat(metadata.has("format") ? metadata.get("format").asText() : "JSON")
+                .sourceLocation("KAFKA")
+                .transformationType(metadata.has("transformationType") ? 
+                        metadata.get("transformationType").asText() : null)
+                .transformationConfig(metadata.has("transformationConfig") ? 
+                        metadata.get("transformationConfig").toString() : null)
+                .destinationType(metadata.has("destinationType") ? 
+                        metadata.get("destinationType").asText() : "DATABASE")
+                .destinationLocation(metadata.has("destinationLocation") ? 
+                        metadata.get("destinationLocation").asText() : null)
+                .build();
+    }
+    
+    /**
+     * Data records that share the same metadata
+     * JSON payloads are collected into one array; CSV payloads are concatenated under the first header
+     */
+    private class DataGroup {
+        
+        private final JobCreationRequest request;
+        private final String part;
+        private final boolean csv;
+        private final ArrayNode jsonRecords = objectMapper.createArrayNode();
+        private final StringBuilder csvRecords = new StringBuilder();
+        private String csvHeader;
+        private int recordCount;
+        
+        /**
+         * @param request The request built from the shared metadata
+         * @param part Partition and offset of the group's first record, naming its part of the destination
+         */
+        DataGroup(JobCreationRequest request, String part) {
+            this.request = request;
+            this.part = part;
+            this.csv = "CSV".equalsIgnoreCase(request.getSourceFormat());
+        }
+        
+        void add(JsonNode data) {
+            if (data == null || data.isNull()) {
+                return;
             }
             
-        } catch (IOException e) {
-            log.error("Error processing data from Kafka", e);
+            if (csv) {
+                addCsv(data.asText());
+            } else if (data.isArray()) {
+                jsonRecords.addAll((ArrayNode) data);
+                recordCount += data.size();
+            } else {
+                jsonRecords.add(data);
+                recordCount++;
+            }
+        }
+        
+        private void addCsv(String text) {
+            String[] lines = text.split("\r?\n");
+            int start = 0;
+            if (csvHeader == null) {
+                csvHeader = lines[0];
+                csvRecords.append(csvHeader).append('\n');
+                start = 1;
+            } else if (lines[0].equals(csvHeader)) {
+                start = 1;
+            }
+            for (int i = start; i < lines.length; i++) {
+                if (!lines[i].isEmpty()) {
+                    csvRecords.append(lines[i]).append('\n');
+                    recordCount++;
+                }
+            }
+        }
+        
+        ByteArrayResource toResource() throws IOException {
+            byte[] bytes = csv
+                    ? csvRecords.toString().getBytes(StandardCharsets.UTF_8)
+                    : objectMapper.writeValueAsBytes(jsonRecords);
+            return new ByteArrayResource(bytes);
         }
     }
 }
@@ -0,0 +1,79 @@
+package com.shrmagarv.tresatadis.kafka;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for the batch Kafka listeners: batch size, batch processing time and consumer lag per partition
+ */
+@Component
+public class KafkaListenerMetrics {
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private final Map<TopicPartition, AtomicLong> lagByPartition = new ConcurrentHashMap<>();
+    
+    /**
+     * Start timing a batch
+     * @return The timer sample
+     */
+    public Timer.Sample startBatch() {
+        return Timer.start(meterRegistry);
+    }
+    
+    /**
+     * Record a processed batch
+     * @param listener The listener name
+     * @param sample The sample from startBatch
+     * @param records The records in the batch
+     * @param consumer The consumer that polled the batch, used to read the current lag
+     */
+    public void recordBatch(String listener, Timer.Sample sample, List<? extends ConsumerRecord<?, ?>> records,
+                            Consumer<?, ?> consumer) {
+        sample.stop(Timer.builder("ingestion.kafka.batch.processing")
+                .tag("listener", listener)
+                .register(meterRegistry));
+        DistributionSummary.builder("ingestion.kafka.batch.size")
+                .tag("listener", listener)
+                .register(meterRegistry)
+                .record(records.size());
+        
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (ConsumerRecord<?, ?> record : records) {
+            partitions.add(new TopicPartition(record.topic(), record.partition()));
+        }
+        for (TopicPartition partition : partitions) {
+            OptionalLong lag = consumer.currentLag(partition);
+            if (lag.isPresent()) {
+                lagGauge(partition).set(lag.getAsLong());
+            }
+        }
+    }
+    
+    private AtomicLong lagGauge(TopicPartition partition) {
+        return lagByPartition.computeIfAbsent(partition, key -> {
+            AtomicLong lag = new AtomicLong();
+            Gauge.builder("ingestion.kafka.consumer.lag", lag, AtomicLong::get)
+                    .tag("topic", key.topic())
+                    .tag("partition", String.valueOf(key.partition()))
+                    .register(meterRegistry);
+            return lag;
+        });
+    }
+}
@@ -29,6 +29,8 @@ public class JobMapper {
                 .transformationType(job.getTransformationType())
                 .destinationType(job.getDestinationType())
                 .destinationLocation(job.getDestinationLocation())
+                .executionMode(job.getExecutionMode())
+                .profilingEnabled(job.getProfilingEnabled())
                 .status(job.getStatus())
                 .createdAt(job.getCreatedAt())
                 .updatedAt(job.getUpdatedAt())
@@ -64,6 +66,8 @@ public class JobMapper {
                 .transformationConfig(request.getTransformationConfig())
                 .destinationType(request.getDestinationType())
                 .destinationLocation(request.getDestinationLocation())
+                .executionMode(request.getExecutionMode())
+                .profilingEnabled(request.getProfilingEnabled())
                 .maxRetries(request.getMaxRetries())
                 .build();
     }
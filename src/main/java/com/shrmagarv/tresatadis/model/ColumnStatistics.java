@@ -0,0 +1,55 @@
+package com.shrmagarv.tresatadis.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Profile of one column of the data loaded by a job run
+ * Min and max are numeric when every value of the column is a number, otherwise they are the
+ * lexicographic text bounds. Mean and the percentiles cover the numeric values only; the distinct
+ * count is a HyperLogLog estimate and the percentiles are KLL estimates.
+ */
+@Entity
+@Table(name = "column_statistics")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnStatistics {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne
+    @JoinColumn(name = "job_id")
+    private Job job;
+    
+    private Long dataStatisticsId; // The DataStatistics row of the same run
+    
+    private String columnName;
+    private String valueType; // NUMBER, TEXT, MIXED, EMPTY
+    private Long recordCount;
+    private Long nullCount;
+    private Long numericCount;
+    private String minValue;
+    private String maxValue;
+    private Double mean;
+    private Long approxDistinct;
+    private Double p25;
+    private Double p50;
+    private Double p75;
+    private Double p90;
+    private Double p99;
+    private LocalDateTime timestamp;
+    
+    @PrePersist
+    protected void onCreate() {
+        if (timestamp == null) {
+            timestamp = LocalDateTime.now();
+        }
+    }
+}
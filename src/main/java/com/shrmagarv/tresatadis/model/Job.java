@@ -15,8 +15,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Job {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ingestion_jobs_id_seq")
+    @SequenceGenerator(name = "ingestion_jobs_id_seq", sequenceName = "ingestion_jobs_id_seq", allocationSize = 50)
+    private Long id; // Allocated in blocks of 50 (V8) so job inserts can be batched
     
     private String name;
     private String sourceType; // FILE, API, DATABASE
@@ -29,6 +30,10 @@ public class Job {
     private String destinationType; // LOCAL_STORAGE, CLOUD_STORAGE, DATABASE
     private String destinationLocation; // Path, connection details
     
+    private String executionMode; // BATCH, STREAMING, TAIL
+    
+    private Boolean profilingEnabled; // Profile the columns of batch loads into column_statistics
+    
     @Enumerated(EnumType.STRING)
     private JobStatus status;
     
@@ -52,6 +57,12 @@ public class Job {
         if (maxRetries == null) {
             maxRetries = 3;
         }
+        if (executionMode == null) {
+            executionMode = "BATCH";
+        }
+        if (profilingEnabled == null) {
+            profilingEnabled = false;
+        }
     }
     
     @PreUpdate
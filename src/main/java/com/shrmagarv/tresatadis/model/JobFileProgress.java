@@ -0,0 +1,45 @@
+package com.shrmagarv.tresatadis.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of ingesting one file of a multi-file FILE job
+ * A file is skipped on retry while it is COMPLETED and its size and modification time are unchanged.
+ * TAIL jobs keep one TAILING row per file with the byte offset ingested so far.
+ */
+@Entity
+@Table(name = "job_file_progress")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobFileProgress {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne
+    @JoinColumn(name = "job_id")
+    private Job job;
+    
+    private String filePath;
+    private Long fileSize;
+    private Long lastModified;
+    private String status; // COMPLETED, FAILED, TAILING
+    private Long recordsProcessed;
+    private String errorMessage;
+    private Long byteOffset;
+    private String fileKey;
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
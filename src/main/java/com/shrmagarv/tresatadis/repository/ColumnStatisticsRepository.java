@@ -0,0 +1,12 @@
+package com.shrmagarv.tresatadis.repository;
+
+import com.shrmagarv.tresatadis.model.ColumnStatistics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ColumnStatisticsRepository extends JpaRepository<ColumnStatistics, Long> {
+    List<ColumnStatistics> findByJobId(Long jobId);
+}
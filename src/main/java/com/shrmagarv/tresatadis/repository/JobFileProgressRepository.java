@@ -0,0 +1,12 @@
+package com.shrmagarv.tresatadis.repository;
+
+import com.shrmagarv.tresatadis.model.JobFileProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface JobFileProgressRepository extends JpaRepository<JobFileProgress, Long> {
+    List<JobFileProgress> findByJobId(Long jobId);
+}
@@ -1,16 +1,29 @@
 package com.shrmagarv.tresatadis.service;
 
+import com.shrmagarv.tresatadis.exception.SourceNotModifiedException;
+import com.shrmagarv.tresatadis.model.ColumnStatistics;
 import com.shrmagarv.tresatadis.model.DataStatistics;
 import com.shrmagarv.tresatadis.model.Job;
 import com.shrmagarv.tresatadis.model.JobLog;
 import com.shrmagarv.tresatadis.model.JobStatus;
+import com.shrmagarv.tresatadis.repository.ColumnStatisticsRepository;
 import com.shrmagarv.tresatadis.repository.DataStatisticsRepository;
 import com.shrmagarv.tresatadis.repository.JobLogRepository;
 import com.shrmagarv.tresatadis.repository.JobRepository;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
+import com.shrmagarv.tresatadis.service.profile.ProfilingService;
+import com.shrmagarv.tresatadis.service.profile.ProfilingTap;
 import com.shrmagarv.tresatadis.service.source.DataSourceConnector;
 import com.shrmagarv.tresatadis.service.source.DataSourceConnectorFactory;
+import com.shrmagarv.tresatadis.service.source.QueryPushdownPlanner;
+import com.shrmagarv.tresatadis.service.source.file.FileTailIngestionService;
+import com.shrmagarv.tresatadis.service.source.file.MultiFileIngestionService;
+import com.shrmagarv.tresatadis.service.source.impl.DatabaseDataSourceConnector;
+import com.shrmagarv.tresatadis.service.source.impl.FileDataSourceConnector;
 import com.shrmagarv.tresatadis.service.storage.DataStorage;
 import com.shrmagarv.tresatadis.service.storage.DataStorageFactory;
+import com.shrmagarv.tresatadis.service.streaming.KafkaStreamingIngestionService;
+import com.shrmagarv.tresatadis.service.streaming.MicroBatchPipeline;
 import com.shrmagarv.tresatadis.service.transform.DataTransformer;
 import com.shrmagarv.tresatadis.service.transform.DataTransformerFactory;
 import lombok.extern.slf4j.Slf4j;
@@ -43,15 +56,33 @@ public class DataIngestionService {
     @Autowired
     private DataStatisticsRepository dataStatisticsRepository;
     
+    @Autowired
+    private ColumnStatisticsRepository columnStatisticsRepository;
+    
     @Autowired
     private DataSourceConnectorFactory sourceConnectorFactory;
     
     @Autowired
     private DataTransformerFactory transformerFactory;
     
+    @Autowired
+    private QueryPushdownPlanner pushdownPlanner;
+    
     @Autowired
     private DataStorageFactory storageFactory;
     
+    @Autowired
+    private KafkaStreamingIngestionService streamingService;
+    
+    @Autowired
+    private MultiFileIngestionService multiFileIngestionService;
+    
+    @Autowired
+    private FileTailIngestionService fileTailService;
+    
+    @Autowired
+    private ProfilingService profilingService;
+    
     /**
      * Create a new ingestion job
      * @param job The job details
@@ -59,6 +90,38 @@ public class DataIngestionService {
      */
     @Transactional
     public Job createJob(Job job) {
+        applyDefaults(job);
+        
+        log.info("Creating new ingestion job: {}", job.getName());
+        return jobRepository.save(job);
+    }
+    
+    /**
+     * Create several ingestion jobs in one transaction
+     * Used by the Kafka batch listener; job ids are allocated in blocks and the inserts are sent as
+     * JDBC batches (hibernate.jdbc.batch_size), so a poll of job requests costs a few round trips
+     * @param jobs The job details
+     * @return The created jobs
+     */
+    @Transactional
+    public List<Job> createJobs(List<Job> jobs) {
+        if (jobs.isEmpty()) {
+            return jobs;
+        }
+        jobs.forEach(this::applyDefaults);
+        
+        log.info("Creating {} ingestion jobs", jobs.size());
+        return jobRepository.saveAll(jobs);
+    }
+    
+    private void applyDefaults(Job job) {
+        // Streaming and tail jobs store micro-batches outside processJob, where nothing profiles them
+        if (Boolean.TRUE.equals(job.getProfilingEnabled()) && ("STREAMING".equalsIgnoreCase(job.getExecutionMode())
+                || "TAIL".equalsIgnoreCase(job.getExecutionMode()))) {
+            throw new IllegalArgumentException("Column profiling is only supported for batch jobs, not "
+                    + job.getExecutionMode().toUpperCase() + " jobs");
+        }
+        
         // Set default values if not provided
         if (job.getStatus() == null) {
             job.setStatus(JobStatus.CREATED);
@@ -74,9 +137,6 @@ public class DataIngestionService {
         if (job.getMaxRetries() == null) {
             job.setMaxRetries(3);
         }
-        
-        log.info("Creating new ingestion job: {}", job.getName());
-        return jobRepository.save(job);
     }
     
     /**
@@ -178,45 +238,98 @@ public class DataIngestionService {
         
         logJobEvent(job, "INFO", "Started processing job", null);
         
+        if ("STREAMING".equalsIgnoreCase(job.getExecutionMode())) {
+            // Streaming jobs keep running in the background until stopped
+            logJobEvent(job, "INFO", "Starting streaming consumer for source: " + job.getSourceLocation(), null);
+            streamingService.start(job);
+            return job;
+        }
+        
+        if ("TAIL".equalsIgnoreCase(job.getExecutionMode())) {
+            // Tail jobs follow their files in the background until stopped
+            logJobEvent(job, "INFO", "Tailing files at: " + job.getSourceLocation(), null);
+            fileTailService.start(job);
+            return job;
+        }
+        
         long startTime = System.currentTimeMillis();
         long bytesProcessed = 0;
-        int recordsProcessed = 0;
-        int recordsFailed = 0;
+        long recordsProcessed = 0;
+        long recordsFailed = 0;
+        List<ColumnStatistics> columnStatistics = List.of();
         
         try {
             // 1. Extract data from source
             logJobEvent(job, "INFO", "Extracting data from source: " + job.getSourceType(), null);
             DataSourceConnector connector = sourceConnectorFactory.getConnector(job.getSourceType());
-            Resource data = connector.extractData(job.getSourceLocation(), job.getSourceFormat());
+            if (connector instanceof FileDataSourceConnector fileConnector && fileConnector.isMultiFile(job.getSourceLocation())) {
+                // Directory and glob sources are ingested file by file with per-file progress
+                if (Boolean.TRUE.equals(job.getProfilingEnabled())) {
+                    logJobEvent(job, "WARN", "Column profiling is not supported for multi-file sources", null);
+                }
+                MultiFileIngestionService.Result multiFileResult = multiFileIngestionService.ingest(job,
+                        fileConnector.resolveFiles(job.getSourceLocation(), job.getSourceFormat()));
+                bytesProcessed = multiFileResult.getBytesProcessed();
+                recordsProcessed = multiFileResult.getRecordsProcessed();
+                
+                job.setStatus(JobStatus.COMPLETED);
+                job.setCompletedAt(LocalDateTime.now());
+                job.setUpdatedAt(LocalDateTime.now());
+                jobRepository.save(job);
+                
+                logJobEvent(job, "INFO", "Job completed successfully: " + multiFileResult, null);
+                return job;
+            }
             
+            Resource data;
+            try {
+                data = extractData(job, connector);
+            } catch (SourceNotModifiedException e) {
+                // Nothing changed upstream since the last run, so there is nothing to ingest
+                job.setStatus(JobStatus.COMPLETED);
+                job.setCompletedAt(LocalDateTime.now());
+                job.setUpdatedAt(LocalDateTime.now());
+                jobRepository.save(job);
+                
+                logJobEvent(job, "INFO", "Skipping job: " + e.getMessage(), null);
+                return job;
+            }
+            
+            Resource extracted = data;
             bytesProcessed = data.contentLength();
             
             // 2. Transform data if needed
+            String dataFormat = job.getSourceFormat();
             if (job.getTransformationType() != null && !job.getTransformationType().isEmpty()) {
                 logJobEvent(job, "INFO", "Transforming data with: " + job.getTransformationType(), null);
                 DataTransformer transformer = transformerFactory.getTransformer(job.getTransformationType());
+                dataFormat = transformer.getOutputFormat(job.getSourceFormat(), job.getTransformationConfig());
                 data = transformer.transform(data, job.getSourceFormat(), job.getTransformationConfig());
             }
             
             // 3. Store data
             logJobEvent(job, "INFO", "Storing data to: " + job.getDestinationType(), null);
             DataStorage storage = storageFactory.getStorage(job.getDestinationType());
-            String result = storage.storeData(data, job.getSourceFormat(), job.getDestinationLocation());
-            
-            // Parse records count from result if available
-            if (result.toLowerCase().contains("inserted")) {
-                try {
-                    String[] parts = result.split(" ");
-                    for (int i = 0; i < parts.length; i++) {
-                        if (parts[i].equalsIgnoreCase("inserted") && i + 1 < parts.length) {
-                            recordsProcessed = Integer.parseInt(parts[i + 1]);
-                            break;
-                        }
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignore parsing error
+            // Columns are profiled from the bytes the store reads, so the data is read once
+            ProfilingTap profile = Boolean.TRUE.equals(job.getProfilingEnabled())
+                    ? profilingService.tap(data, dataFormat)
+                    : null;
+            String result;
+            try {
+                result = storage.storeData(profile != null ? profile.resource() : data, dataFormat, job.getDestinationLocation());
+            } finally {
+                if (profile != null) {
+                    columnStatistics = profile.finish();
+                }
+                // A large transform output may have been spilled to a temporary file
+                if (data != extracted) {
+                    TempFileResource.release(data);
                 }
             }
+            connector.commit(extracted);
+            
+            // Parse records count from result if available
+            recordsProcessed = MicroBatchPipeline.recordCount(result);
             
             // 4. Mark job as complete
             job.setStatus(JobStatus.COMPLETED);
@@ -234,14 +347,28 @@ public class DataIngestionService {
             long processingTime = System.currentTimeMillis() - startTime;
             DataStatistics statistics = DataStatistics.builder()
                     .job(job)
-                    .recordsProcessed((long) recordsProcessed)
-                    .recordsFailed((long) recordsFailed)
+                    .recordsProcessed(recordsProcessed)
+                    .recordsFailed(recordsFailed)
                     .bytesProcessed(bytesProcessed)
                     .processingTimeMs(processingTime)
                     .timestamp(LocalDateTime.now())
                     .build();
             
-            dataStatisticsRepository.save(statistics);
+            DataStatistics savedStatistics = dataStatisticsRepository.save(statistics);
+            
+            if (!columnStatistics.isEmpty() && job.getStatus() == JobStatus.COMPLETED) {
+                for (ColumnStatistics column : columnStatistics) {
+                    column.setJob(job);
+                    column.setDataStatisticsId(savedStatistics != null ? savedStatistics.getId() : null);
+                }
+                try {
+                    columnStatisticsRepository.saveAll(columnStatistics);
+                    logJobEvent(job, "INFO", "Profiled " + columnStatistics.size() + " columns", null);
+                } catch (Exception e) {
+                    // The data is stored already, so a profile that cannot be saved does not fail the job
+                    log.warn("Failed to save column statistics of job {}: {}", job.getId(), e.getMessage());
+                }
+            }
             
             logJobEvent(job, "INFO", String.format("Job statistics: Records processed=%d, Records failed=%d, Bytes processed=%d, Processing time=%d ms", 
                     recordsProcessed, recordsFailed, bytesProcessed, processingTime), null);
@@ -250,6 +377,43 @@ public class DataIngestionService {
         return job;
     }
     
+    /**
+     * Extract a job's data, pushing its projection and filter into database source queries
+     * If the rewritten query fails, the user query is run as written.
+     */
+    private Resource extractData(Job job, DataSourceConnector connector) throws Exception {
+        if (connector instanceof DatabaseDataSourceConnector databaseConnector) {
+            QueryPushdownPlanner.Plan plan = pushdownPlanner.plan(databaseConnector, job.getSourceLocation(),
+                    job.getSourceFormat(), job.getTransformationType(), job.getTransformationConfig());
+            if (plan != null) {
+                try {
+                    Resource data = databaseConnector.extractData(plan.getSql(), plan.getParameters(), job.getSourceFormat());
+                    logJobEvent(job, "INFO", "Pushed transformation into source query: " + plan, null);
+                    return data;
+                } catch (Exception e) {
+                    log.warn("Rewritten source query failed for job {}, running it as written: {}", job.getId(), e.getMessage());
+                    logJobEvent(job, "WARN", "Rewritten source query failed, running it as written: " + e.getMessage(), null);
+                }
+            }
+        }
+        return connector.extractData(job.getSourceLocation(), job.getSourceFormat());
+    }
+    
+    /**
+     * Stop a running streaming or tail job
+     * @param jobId The ID of the job to stop
+     * @return The job
+     */
+    public Job stopJob(Long jobId) {
+        Job job = findJobById(jobId);
+        if (!streamingService.stop(jobId) && !fileTailService.stop(jobId)) {
+            throw new IllegalArgumentException("Job is not a running streaming or tail job: " + jobId);
+        }
+        
+        log.info("Stopping {} job: {} (ID: {})", job.getExecutionMode(), job.getName(), job.getId());
+        return job;
+    }
+    
     /**
      * Handle an error during job processing
      * @param job The job that had an error
@@ -356,4 +520,15 @@ public class DataIngestionService {
         findJobById(jobId);
         return dataStatisticsRepository.findByJobId(jobId);
     }
+    
+    /**
+     * Get column profiles for a job
+     * @param jobId The job ID
+     * @return List of column statistics
+     */
+    public List<ColumnStatistics> getJobColumnStatistics(Long jobId) {
+        // Verify job exists
+        findJobById(jobId);
+        return columnStatisticsRepository.findByJobId(jobId);
+    }
 }
@@ -0,0 +1,95 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Configuration of a CONVERT transformation
+ * Example: {"targetFormat": "CSV", "recordPath": "/orders/order", "columns": ["id", "customer.name"],
+ * "flatten": {"separator": ".", "arrays": "INDEX", "maxDepth": 8}}
+ */
+@Data
+public class ConversionConfig {
+    
+    /**
+     * Formats records can be read from and written to
+     */
+    public static final Set<String> FORMATS = Set.of("CSV", "JSON", "NDJSON", "XML");
+    
+    private String targetFormat;
+    
+    /**
+     * XML sources: element path of the records (default: the children of the document element)
+     */
+    private String recordPath;
+    
+    /**
+     * CSV targets: the output columns (default: the flattened fields of the first record)
+     */
+    private List<String> columns;
+    
+    /**
+     * Whether nested records are flattened; always true for CSV targets
+     */
+    private boolean flatten;
+    
+    private String separator = ".";
+    private Flattener.ArrayMode arrays = Flattener.ArrayMode.INDEX;
+    private String joinSeparator = "|";
+    private int maxDepth = 16;
+    
+    /**
+     * XML targets: names of the document and record elements
+     */
+    private String rootElement = "records";
+    private String recordElement = "record";
+    
+    /**
+     * Parse a CONVERT transformation config
+     * @param config The config
+     * @return The conversion settings
+     */
+    public static ConversionConfig parse(JsonNode config) {
+        ConversionConfig conversion = new ConversionConfig();
+        String target = config.path("targetFormat").asText("").toUpperCase();
+        if (!FORMATS.contains(target)) {
+            throw new IllegalArgumentException("CONVERT requires targetFormat, one of " + FORMATS + ", got: " + target);
+        }
+        conversion.setTargetFormat(target);
+        
+        if (config.hasNonNull("recordPath")) {
+            conversion.setRecordPath(config.get("recordPath").asText());
+        }
+        if (config.has("columns")) {
+            List<String> columns = new ArrayList<>();
+            config.get("columns").forEach(column -> columns.add(column.asText()));
+            conversion.setColumns(columns);
+        }
+        
+        // "flatten" is either a flag or an object of flattening options
+        JsonNode flatten = config.path("flatten");
+        conversion.setFlatten("CSV".equals(target) || flatten.isObject() || flatten.asBoolean(false));
+        if (flatten.isObject()) {
+            conversion.setSeparator(flatten.path("separator").asText(conversion.getSeparator()));
+            conversion.setArrays(Flattener.ArrayMode.valueOf(
+                    flatten.path("arrays").asText(conversion.getArrays().name()).toUpperCase()));
+            conversion.setJoinSeparator(flatten.path("joinSeparator").asText(conversion.getJoinSeparator()));
+            conversion.setMaxDepth(flatten.path("maxDepth").asInt(conversion.getMaxDepth()));
+        }
+        
+        conversion.setRootElement(config.path("rootElement").asText(conversion.getRootElement()));
+        conversion.setRecordElement(config.path("recordElement").asText(conversion.getRecordElement()));
+        return conversion;
+    }
+    
+    /**
+     * @return The flattener for these settings, or null if records keep their structure
+     */
+    public Flattener flattener() {
+        return flatten ? new Flattener(separator, arrays, joinSeparator, maxDepth) : null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shrmagarv.tresatadis.service.csv.CsvReader;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads CSV rows as objects keyed by the header, with text values
+ */
+class CsvRecordReader implements RecordReader {
+    
+    private final CsvReader reader;
+    private final ObjectMapper objectMapper;
+    private final List<String> headers;
+    
+    CsvRecordReader(Resource data, ObjectMapper objectMapper) throws IOException {
+        this.reader = CsvReader.open(data);
+        this.objectMapper = objectMapper;
+        this.headers = reader.readRecord();
+    }
+    
+    @Override
+    public JsonNode next() throws IOException {
+        if (headers == null || !reader.next()) {
+            return null;
+        }
+        ObjectNode record = objectMapper.createObjectNode();
+        int count = Math.min(headers.size(), reader.getFieldCount());
+        for (int i = 0; i < count; i++) {
+            record.put(headers.get(i), reader.getString(i));
+        }
+        return record;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
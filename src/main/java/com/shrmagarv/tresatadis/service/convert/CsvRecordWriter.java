@@ -0,0 +1,87 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shrmagarv.tresatadis.service.csv.CsvWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes flattened records as CSV
+ * The header is the configured columns, or else the fields of the first record; later fields that are
+ * not in the header are dropped (and reported once), and missing fields are written empty.
+ */
+@Slf4j
+class CsvRecordWriter implements RecordWriter {
+    
+    private final Writer writer;
+    private final Flattener flattener;
+    private List<String> columns;
+    private long records;
+    private long recordsWithExtraFields;
+    
+    CsvRecordWriter(OutputStream out, List<String> columns, Flattener flattener) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.columns = columns;
+        this.flattener = flattener;
+    }
+    
+    @Override
+    public void write(JsonNode record) throws IOException {
+        Map<String, JsonNode> fields = flattener.flatten(record);
+        if (records++ == 0) {
+            if (columns == null) {
+                columns = new ArrayList<>(fields.keySet());
+            }
+            writeLine(columns);
+        }
+        
+        int used = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            JsonNode value = fields.get(columns.get(i));
+            if (value != null) {
+                used++;
+                if (!value.isNull()) {
+                    writer.write(CsvWriter.escape(value.asText()));
+                }
+            }
+        }
+        writer.write('\n');
+        
+        if (used < fields.size() && recordsWithExtraFields++ == 0) {
+            log.warn("Record {} has fields that are not in the CSV header {}; they are dropped", records, columns);
+        }
+    }
+    
+    private void writeLine(List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(CsvWriter.escape(values.get(i)));
+        }
+        writer.write('\n');
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (records == 0 && columns != null) {
+            writeLine(columns);
+        }
+        if (recordsWithExtraFields > 0) {
+            log.warn("{} of {} records had fields outside the CSV header", recordsWithExtraFields, records);
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,104 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Flattens a nested record into one level of fields named by path, e.g. {"a": {"b": 1}} becomes {"a.b": 1}
+ * Leaf values keep their JSON type; subtrees deeper than maxDepth are kept as JSON text.
+ */
+public class Flattener {
+    
+    /**
+     * How arrays are flattened
+     */
+    public enum ArrayMode {
+        /** One field per element, named by index: tags.0, tags.1 */
+        INDEX,
+        /** Scalar elements joined into one text field; arrays of objects are kept as JSON text */
+        JOIN,
+        /** The whole array as JSON text */
+        JSON
+    }
+    
+    private final String separator;
+    private final ArrayMode arrays;
+    private final String joinSeparator;
+    private final int maxDepth;
+    
+    public Flattener(String separator, ArrayMode arrays, String joinSeparator, int maxDepth) {
+        this.separator = separator;
+        this.arrays = arrays;
+        this.joinSeparator = joinSeparator;
+        this.maxDepth = maxDepth;
+    }
+    
+    /**
+     * Flatten a record
+     * @param record The record
+     * @return Field paths to leaf values, in document order
+     */
+    public Map<String, JsonNode> flatten(JsonNode record) {
+        Map<String, JsonNode> fields = new LinkedHashMap<>();
+        flatten(null, record, 0, fields);
+        return fields;
+    }
+    
+    private void flatten(String path, JsonNode node, int depth, Map<String, JsonNode> fields) {
+        if (node.isObject()) {
+            if (path != null && (depth >= maxDepth || node.isEmpty())) {
+                fields.put(path, node.isEmpty() ? NullNode.getInstance() : TextNode.valueOf(node.toString()));
+                return;
+            }
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                flatten(child(path, field.getKey()), field.getValue(), depth + 1, fields);
+            }
+        } else if (node.isArray() && path != null) {
+            flattenArray(path, node, depth, fields);
+        } else if (path != null) {
+            fields.put(path, node);
+        } else {
+            // A record that is not an object becomes a single field
+            fields.put("value", node);
+        }
+    }
+    
+    private void flattenArray(String path, JsonNode array, int depth, Map<String, JsonNode> fields) {
+        switch (arrays) {
+            case INDEX -> {
+                if (depth >= maxDepth) {
+                    fields.put(path, TextNode.valueOf(array.toString()));
+                    return;
+                }
+                for (int i = 0; i < array.size(); i++) {
+                    flatten(child(path, String.valueOf(i)), array.get(i), depth + 1, fields);
+                }
+            }
+            case JOIN -> {
+                StringBuilder joined = new StringBuilder();
+                for (JsonNode element : array) {
+                    if (element.isContainerNode()) {
+                        fields.put(path, TextNode.valueOf(array.toString()));
+                        return;
+                    }
+                    if (!joined.isEmpty()) {
+                        joined.append(joinSeparator);
+                    }
+                    joined.append(element.asText());
+                }
+                fields.put(path, TextNode.valueOf(joined.toString()));
+            }
+            case JSON -> fields.put(path, TextNode.valueOf(array.toString()));
+        }
+    }
+    
+    private String child(String path, String name) {
+        return path == null ? name : path + separator + name;
+    }
+}
@@ -0,0 +1,55 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Writes records as a JSON array, or as NDJSON with one record per line
+ */
+class JsonRecordWriter implements RecordWriter {
+    
+    private final JsonGenerator generator;
+    private final boolean ndjson;
+    private final Flattener flattener;
+    
+    /**
+     * @param flattener Flattens each record first, or null to keep the structure
+     */
+    JsonRecordWriter(OutputStream out, boolean ndjson, Flattener flattener, ObjectMapper objectMapper) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(out);
+        this.generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        this.ndjson = ndjson;
+        this.flattener = flattener;
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+    }
+    
+    @Override
+    public void write(JsonNode record) throws IOException {
+        if (flattener == null) {
+            generator.writeTree(record);
+            return;
+        }
+        generator.writeStartObject();
+        for (Map.Entry<String, JsonNode> field : flattener.flatten(record).entrySet()) {
+            generator.writeFieldName(field.getKey());
+            generator.writeTree(field.getValue());
+        }
+        generator.writeEndObject();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+}
@@ -0,0 +1,30 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.json.JsonRecordReader;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+
+/**
+ * Reads the elements of a JSON array, or NDJSON values, one tree at a time
+ */
+class JsonTreeRecordReader implements RecordReader {
+    
+    private final JsonRecordReader reader;
+    
+    JsonTreeRecordReader(Resource data, ObjectMapper objectMapper) throws IOException {
+        this.reader = JsonRecordReader.open(objectMapper, data);
+    }
+    
+    @Override
+    public JsonNode next() throws IOException {
+        return reader.next() ? reader.getParser().readValueAsTree() : null;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
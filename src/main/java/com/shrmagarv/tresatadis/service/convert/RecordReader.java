@@ -0,0 +1,39 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of an input one at a time as JSON trees
+ */
+public interface RecordReader extends Closeable {
+    
+    /**
+     * Read the next record
+     * @return The record, or null at the end of the input
+     * @throws IOException If reading fails
+     */
+    JsonNode next() throws IOException;
+    
+    /**
+     * Open a reader for a format
+     * @param format CSV, JSON, NDJSON or XML
+     * @param data The input
+     * @param config The conversion settings
+     * @param objectMapper Mapper used to build records
+     * @return The reader
+     * @throws IOException If the input cannot be opened
+     */
+    static RecordReader open(String format, Resource data, ConversionConfig config, ObjectMapper objectMapper) throws IOException {
+        return switch (format.toUpperCase()) {
+            case "CSV" -> new CsvRecordReader(data, objectMapper);
+            case "JSON", "NDJSON" -> new JsonTreeRecordReader(data, objectMapper);
+            case "XML" -> new XmlRecordReader(data, config.getRecordPath(), objectMapper);
+            default -> throw new IllegalArgumentException("Cannot convert from format: " + format);
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes records one at a time in a target format
+ */
+public interface RecordWriter extends Closeable {
+    
+    /**
+     * Write a record
+     * @param record The record
+     * @throws IOException If writing fails
+     */
+    void write(JsonNode record) throws IOException;
+    
+    /**
+     * Open a writer for the target format of a conversion
+     * @param config The conversion settings
+     * @param out The output, closed with the writer
+     * @param objectMapper Mapper used for JSON output
+     * @return The writer
+     * @throws IOException If the output cannot be started
+     */
+    static RecordWriter open(ConversionConfig config, OutputStream out, ObjectMapper objectMapper) throws IOException {
+        Flattener flattener = config.flattener();
+        return switch (config.getTargetFormat()) {
+            case "CSV" -> new CsvRecordWriter(out, config.getColumns(), flattener);
+            case "JSON" -> new JsonRecordWriter(out, false, flattener, objectMapper);
+            case "NDJSON" -> new JsonRecordWriter(out, true, flattener, objectMapper);
+            case "XML" -> new XmlRecordWriter(out, config.getRootElement(), config.getRecordElement(), flattener);
+            default -> throw new IllegalArgumentException("Cannot convert to format: " + config.getTargetFormat());
+        };
+    }
+}
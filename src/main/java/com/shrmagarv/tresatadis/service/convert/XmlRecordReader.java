@@ -0,0 +1,148 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.shrmagarv.tresatadis.service.xml.XmlElementPath;
+import com.shrmagarv.tresatadis.service.xml.XmlFactories;
+import org.springframework.core.io.Resource;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the record elements of an XML document with StAX, converting one element at a time to a tree
+ * Attributes and child elements become fields, repeated children become arrays, and text next to
+ * attributes or children is kept under "#text"; an element with only text becomes a text value.
+ */
+class XmlRecordReader implements RecordReader {
+    
+    static final String TEXT_FIELD = "#text";
+    
+    private final InputStream input;
+    private final XMLStreamReader reader;
+    private final XmlElementPath recordPath;
+    private final ObjectMapper objectMapper;
+    private final List<String> openElements = new ArrayList<>();
+    
+    /**
+     * @param recordPath Element path of the records, or null for the children of the document element
+     */
+    XmlRecordReader(Resource data, String recordPath, ObjectMapper objectMapper) throws IOException {
+        if (recordPath != null) {
+            this.recordPath = XmlElementPath.compile(recordPath);
+            if (this.recordPath == null) {
+                throw new IllegalArgumentException("recordPath must be an element path such as /orders/order or //order: " + recordPath);
+            }
+        } else {
+            this.recordPath = null;
+        }
+        this.objectMapper = objectMapper;
+        this.input = data.getInputStream();
+        try {
+            this.reader = XmlFactories.inputFactory().createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            input.close();
+            throw new IOException("Cannot read XML: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public JsonNode next() throws IOException {
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = XmlElementPath.qualifiedName(reader.getName());
+                    openElements.add(name);
+                    if (isRecord()) {
+                        JsonNode value = readElement();
+                        openElements.remove(openElements.size() - 1);
+                        if (value.isObject()) {
+                            return value;
+                        }
+                        ObjectNode record = objectMapper.createObjectNode();
+                        record.set(name, value);
+                        return record;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    openElements.remove(openElements.size() - 1);
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid XML: " + e.getMessage(), e);
+        }
+    }
+    
+    private boolean isRecord() {
+        return recordPath != null ? recordPath.matches(openElements) : openElements.size() == 2;
+    }
+    
+    /**
+     * Convert the element whose start was just read, consuming it up to its end
+     */
+    private JsonNode readElement() throws XMLStreamException {
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            node.put(XmlElementPath.qualifiedName(reader.getAttributeName(i)), reader.getAttributeValue(i));
+        }
+        
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    String name = XmlElementPath.qualifiedName(reader.getName());
+                    addField(node, name, readElement());
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE,
+                     XMLStreamConstants.ENTITY_REFERENCE -> text.append(reader.getText());
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (node.isEmpty()) {
+                        return TextNode.valueOf(text.toString());
+                    }
+                    if (!text.toString().isBlank()) {
+                        node.put(TEXT_FIELD, text.toString().trim());
+                    }
+                    return node;
+                }
+                default -> {
+                    // Comments and processing instructions are dropped
+                }
+            }
+        }
+    }
+    
+    private void addField(ObjectNode node, String name, JsonNode value) {
+        JsonNode existing = node.get(name);
+        if (existing == null) {
+            node.set(name, value);
+        } else if (existing.isArray()) {
+            ((ArrayNode) existing).add(value);
+        } else {
+            ArrayNode array = node.arrayNode();
+            array.add(existing);
+            array.add(value);
+            node.set(name, array);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // The input is closed below either way
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.shrmagarv.tresatadis.service.convert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shrmagarv.tresatadis.service.xml.XmlFactories;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes records as elements of an XML document
+ * Fields become child elements (arrays repeat the element, "#text" becomes the element text) and
+ * field names that are not valid XML names have the offending characters replaced by '_'.
+ */
+class XmlRecordWriter implements RecordWriter {
+    
+    private final OutputStream out;
+    private final XMLStreamWriter writer;
+    private final String recordElement;
+    private final Flattener flattener;
+    
+    /**
+     * @param flattener Flattens each record first, or null to keep the structure
+     */
+    XmlRecordWriter(OutputStream out, String rootElement, String recordElement, Flattener flattener) throws IOException {
+        this.out = out;
+        this.recordElement = elementName(recordElement);
+        this.flattener = flattener;
+        try {
+            this.writer = XmlFactories.outputFactory().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement(elementName(rootElement));
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot write XML: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public void write(JsonNode record) throws IOException {
+        try {
+            writer.writeStartElement(recordElement);
+            if (flattener != null) {
+                for (Map.Entry<String, JsonNode> field : flattener.flatten(record).entrySet()) {
+                    writeField(field.getKey(), field.getValue());
+                }
+            } else {
+                writeContent(record);
+            }
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot write XML: " + e.getMessage(), e);
+        }
+    }
+    
+    private void writeField(String name, JsonNode value) throws XMLStreamException {
+        if (XmlRecordReader.TEXT_FIELD.equals(name)) {
+            writer.writeCharacters(value.asText());
+        } else if (value.isArray()) {
+            for (JsonNode element : value) {
+                writeField(name, element);
+            }
+        } else {
+            writer.writeStartElement(elementName(name));
+            writeContent(value);
+            writer.writeEndElement();
+        }
+    }
+    
+    private void writeContent(JsonNode value) throws XMLStreamException {
+        if (value.isObject()) {
+            for (Iterator<Map.Entry<String, JsonNode>> it = value.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                writeField(field.getKey(), field.getValue());
+            }
+        } else if (value.isArray()) {
+            for (JsonNode element : value) {
+                writeField("item", element);
+            }
+        } else if (!value.isNull()) {
+            writer.writeCharacters(value.asText());
+        }
+    }
+    
+    /**
+     * Make a field name usable as an XML element name
+     */
+    static String elementName(String name) {
+        if (name.isEmpty()) {
+            return "_";
+        }
+        StringBuilder result = new StringBuilder(name.length() + 1);
+        if (!Character.isLetter(name.charAt(0)) && name.charAt(0) != '_') {
+            result.append('_');
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            result.append(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' ? c : '_');
+        }
+        return result.toString();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot write XML: " + e.getMessage(), e);
+        } finally {
+            out.close();
+        }
+    }
+}
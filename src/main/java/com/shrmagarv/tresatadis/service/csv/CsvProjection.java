@@ -0,0 +1,203 @@
+package com.shrmagarv.tresatadis.service.csv;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shrmagarv.tresatadis.service.transform.expr.Values;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Column projection compiled from a CSV transformation config
+ * The config (fieldMappings of target to source name, and fieldsToRemove) is resolved once. Binding it
+ * to a header row gives a Plan that maps each output position to a source column index, so rows
+ * are copied field by field without building maps or looking names up per cell. Derived columns
+ * (computed per row by the caller) can be added to a plan with withDerived.
+ */
+public class CsvProjection {
+    
+    private final Map<String, String> renames;
+    private final Set<String> removed;
+    
+    private CsvProjection(Map<String, String> renames, Set<String> removed) {
+        this.renames = renames;
+        this.removed = removed;
+    }
+    
+    /**
+     * Compile a transformation config
+     * @param config The parsed config
+     * @return The projection
+     */
+    public static CsvProjection compile(JsonNode config) {
+        Map<String, String> renames = new HashMap<>();
+        JsonNode mappings = config.path("fieldMappings");
+        for (Iterator<String> it = mappings.fieldNames(); it.hasNext(); ) {
+            String targetField = it.next();
+            renames.put(mappings.get(targetField).asText(), targetField);
+        }
+        
+        Set<String> removed = new HashSet<>();
+        for (JsonNode field : config.path("fieldsToRemove")) {
+            removed.add(field.asText());
+        }
+        return new CsvProjection(renames, removed);
+    }
+    
+    /**
+     * Resolve the projection against the header of an input
+     * A renamed field is kept under its new name even if it is also listed for removal
+     * @param headers The input column names
+     * @return The plan
+     */
+    public Plan bind(List<String> headers) {
+        List<String> outputHeaders = new ArrayList<>(headers.size());
+        int[] sourceIndexes = new int[headers.size()];
+        int count = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            String header = headers.get(i);
+            String renamed = renames.get(header);
+            if (renamed != null) {
+                outputHeaders.add(renamed);
+            } else if (!removed.contains(header)) {
+                outputHeaders.add(header);
+            } else {
+                continue;
+            }
+            sourceIndexes[count++] = i;
+        }
+        return new Plan(outputHeaders, Arrays.copyOf(sourceIndexes, count));
+    }
+    
+    /**
+     * A projection bound to one header row
+     */
+    public static class Plan {
+        
+        private final List<String> outputHeaders;
+        private final int[] sourceIndexes;
+        
+        private Plan(List<String> outputHeaders, int[] sourceIndexes) {
+            this.outputHeaders = outputHeaders;
+            this.sourceIndexes = sourceIndexes;
+        }
+        
+        public List<String> getOutputHeaders() {
+            return outputHeaders;
+        }
+        
+        /**
+         * @return The source column index for each output position; derived column k is -(k + 1)
+         */
+        public int[] getSourceIndexes() {
+            return sourceIndexes;
+        }
+        
+        /**
+         * Add derived columns to the plan
+         * A derived column replaces an output column of the same name in place, otherwise it is appended
+         * @param derivedNames The derived column names
+         * @return The extended plan
+         */
+        public Plan withDerived(List<String> derivedNames) {
+            List<String> headers = new ArrayList<>(outputHeaders);
+            int[] indexes = Arrays.copyOf(sourceIndexes, sourceIndexes.length + derivedNames.size());
+            int count = sourceIndexes.length;
+            for (int k = 0; k < derivedNames.size(); k++) {
+                int position = headers.indexOf(derivedNames.get(k));
+                if (position < 0) {
+                    headers.add(derivedNames.get(k));
+                    position = count++;
+                }
+                indexes[position] = -(k + 1);
+            }
+            return new Plan(headers, Arrays.copyOf(indexes, count));
+        }
+        
+        /**
+         * Write the output header line
+         * @param out The output
+         * @throws IOException If writing fails
+         */
+        public void writeHeader(OutputStream out) throws IOException {
+            for (int i = 0; i < outputHeaders.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(CsvWriter.escape(outputHeaders.get(i)).getBytes(StandardCharsets.UTF_8));
+            }
+            out.write('\n');
+        }
+        
+        /**
+         * Write the reader's current record projected to the output columns
+         * Columns missing from a short record are written empty
+         * @param reader The reader, positioned on a record
+         * @param out The output
+         * @throws IOException If writing fails
+         */
+        public void writeRow(CsvReader reader, OutputStream out) throws IOException {
+            writeRow(reader, null, out);
+        }
+        
+        /**
+         * Write the reader's current record with derived column values
+         * @param reader The reader, positioned on a record
+         * @param derivedValues Values of the derived columns (null values are written empty)
+         * @param out The output
+         * @throws IOException If writing fails
+         */
+        public void writeRow(CsvReader reader, Object[] derivedValues, OutputStream out) throws IOException {
+            int fieldCount = reader.getFieldCount();
+            for (int i = 0; i < sourceIndexes.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                int source = sourceIndexes[i];
+                if (source < 0) {
+                    Object value = derivedValues != null ? derivedValues[-source - 1] : null;
+                    if (value != null) {
+                        out.write(CsvWriter.escape(Values.toText(value)).getBytes(StandardCharsets.UTF_8));
+                    }
+                } else if (source < fieldCount) {
+                    CsvWriter.writeField(reader.getField(source), reader.isEscaped(source), out);
+                }
+            }
+            out.write('\n');
+        }
+        
+        /**
+         * Write a decoded record with derived column values
+         * Gives the same output as writing the record straight from the reader
+         * @param fields The decoded fields of the record
+         * @param derivedValues Values of the derived columns (null values are written empty)
+         * @param out The output
+         * @throws IOException If writing fails
+         */
+        public void writeRow(String[] fields, Object[] derivedValues, OutputStream out) throws IOException {
+            for (int i = 0; i < sourceIndexes.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                int source = sourceIndexes[i];
+                if (source < 0) {
+                    Object value = derivedValues != null ? derivedValues[-source - 1] : null;
+                    if (value != null) {
+                        out.write(CsvWriter.escape(Values.toText(value)).getBytes(StandardCharsets.UTF_8));
+                    }
+                } else if (source < fields.length) {
+                    out.write(CsvWriter.escape(fields[source]).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.write('\n');
+        }
+    }
+}
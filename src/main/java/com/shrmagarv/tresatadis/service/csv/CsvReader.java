@@ -0,0 +1,281 @@
+package com.shrmagarv.tresatadis.service.csv;
+
+import com.shrmagarv.tresatadis.service.io.ByteSlice;
+import com.shrmagarv.tresatadis.service.io.ByteWindow;
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RFC 4180 CSV reader working directly on bytes
+ * Records are parsed in place in a ByteWindow: quoted fields may contain delimiters, newlines and
+ * doubled ("") quotes, and CRLF or LF line endings are accepted. Delimiters are located eight bytes
+ * at a time (SWAR) and fields are exposed as offsets into the window, so a record costs no allocation;
+ * a field only becomes a String when getString is called. Blank lines are skipped.
+ */
+public class CsvReader implements Closeable {
+    
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final byte QUOTE = '"';
+    private static final byte NEWLINE = '\n';
+    private static final long QUOTE_PATTERN = ONES * QUOTE;
+    private static final long NEWLINE_PATTERN = ONES * NEWLINE;
+    
+    private static final int INCOMPLETE = -1;
+    private static final int END_OF_INPUT = -2;
+    
+    private final ByteWindow window;
+    private final byte delimiter;
+    private final long delimiterPattern;
+    private final ByteSlice slice = new ByteSlice();
+    private int position;
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private long recordNumber;
+    
+    /**
+     * @param window The input
+     */
+    public CsvReader(ByteWindow window) {
+        this(window, (byte) ',');
+    }
+    
+    /**
+     * @param window The input
+     * @param delimiter The field delimiter
+     */
+    public CsvReader(ByteWindow window, byte delimiter) {
+        this.window = window;
+        this.delimiter = delimiter;
+        this.delimiterPattern = ONES * (delimiter & 0xff);
+    }
+    
+    /**
+     * Open a resource for CSV reading, memory-mapping it if it is a local file
+     * @param resource The resource
+     * @return The reader
+     * @throws IOException If the resource cannot be opened
+     */
+    public static CsvReader open(Resource resource) throws IOException {
+        return new CsvReader(ByteWindow.open(resource));
+    }
+    
+    /**
+     * Advance to the next record
+     * @return False at the end of the input
+     * @throws IOException If reading fails
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            int next = parseRecord(position);
+            if (next == END_OF_INPUT) {
+                fieldCount = 0;
+                return false;
+            }
+            if (next == INCOMPLETE) {
+                // The record runs past the window: keep it and load more input behind it
+                window.slide(position);
+                position = 0;
+                continue;
+            }
+            position = next;
+            if (fieldCount == 1 && ends[0] == starts[0]) {
+                continue;
+            }
+            recordNumber++;
+            return true;
+        }
+    }
+    
+    /**
+     * Read the next record as Strings, typically the header
+     * @return The fields, or null at the end of the input
+     * @throws IOException If reading fails
+     */
+    public List<String> readRecord() throws IOException {
+        if (!next()) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            fields.add(getString(i));
+        }
+        return fields;
+    }
+    
+    public int getFieldCount() {
+        return fieldCount;
+    }
+    
+    /**
+     * @return The 1-based number of the current record (blank lines are not counted)
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+    
+    /**
+     * Get the raw bytes of a field, without surrounding quotes
+     * The slice is shared and only valid until the next call; doubled quotes are not collapsed (see isEscaped)
+     * @param index The field index
+     * @return The field bytes
+     */
+    public ByteSlice getField(int index) {
+        slice.set(window.buffer(), starts[index], ends[index] - starts[index]);
+        return slice;
+    }
+    
+    /**
+     * @param index The field index
+     * @return True if the field contains doubled quotes that getString collapses
+     */
+    public boolean isEscaped(int index) {
+        return escaped[index];
+    }
+    
+    /**
+     * @param index The field index
+     * @return The field length in bytes
+     */
+    public int getFieldLength(int index) {
+        return ends[index] - starts[index];
+    }
+    
+    /**
+     * Decode a field
+     * @param index The field index
+     * @return The field value
+     */
+    public String getString(int index) {
+        ByteSlice field = getField(index);
+        return escaped[index] ? field.decodeUnescaping(QUOTE, 0, field.length()) : field.decode(0, field.length());
+    }
+    
+    @Override
+    public void close() throws IOException {
+        window.close();
+    }
+    
+    /**
+     * Parse one record starting at an index of the window
+     * @return Index after the record, INCOMPLETE if the record is not entirely in the window, or END_OF_INPUT
+     */
+    private int parseRecord(int p) {
+        ByteBuffer buffer = window.buffer();
+        int limit = window.limit();
+        boolean last = window.isLast();
+        if (p >= limit) {
+            return last ? END_OF_INPUT : INCOMPLETE;
+        }
+        
+        fieldCount = 0;
+        while (true) {
+            if (p < limit && buffer.get(p) == QUOTE) {
+                int contentStart = p + 1;
+                int q = contentStart;
+                boolean doubled = false;
+                while (true) {
+                    q = indexOf(buffer, q, limit, QUOTE_PATTERN, QUOTE_PATTERN);
+                    if (q < 0) {
+                        if (!last) {
+                            return INCOMPLETE;
+                        }
+                        // Unterminated quote at the end of the input: take the rest as the field
+                        addField(contentStart, limit, doubled);
+                        return limit;
+                    }
+                    if (q + 1 >= limit && !last) {
+                        // Need the next byte to tell a closing quote from an escaped one
+                        return INCOMPLETE;
+                    }
+                    if (q + 1 < limit && buffer.get(q + 1) == QUOTE) {
+                        doubled = true;
+                        q += 2;
+                        continue;
+                    }
+                    break;
+                }
+                addField(contentStart, q, doubled);
+                
+                // Anything between the closing quote and the next delimiter is ignored
+                int d = indexOf(buffer, q + 1, limit, delimiterPattern, NEWLINE_PATTERN);
+                if (d < 0) {
+                    return last ? limit : INCOMPLETE;
+                }
+                if (buffer.get(d) == NEWLINE) {
+                    return d + 1;
+                }
+                p = d + 1;
+                continue;
+            }
+            
+            int d = indexOf(buffer, p, limit, delimiterPattern, NEWLINE_PATTERN);
+            if (d < 0) {
+                if (!last) {
+                    return INCOMPLETE;
+                }
+                addField(p, trimCarriageReturn(buffer, p, limit), false);
+                return limit;
+            }
+            if (buffer.get(d) == NEWLINE) {
+                addField(p, trimCarriageReturn(buffer, p, d), false);
+                return d + 1;
+            }
+            addField(p, d, false);
+            p = d + 1;
+        }
+    }
+    
+    private void addField(int start, int end, boolean doubled) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            escaped = Arrays.copyOf(escaped, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = doubled;
+        fieldCount++;
+    }
+    
+    private static int trimCarriageReturn(ByteBuffer buffer, int start, int end) {
+        return end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+    }
+    
+    /**
+     * Find the first byte matching either pattern, testing eight bytes per step
+     * For each word, zeroBytes(word ^ pattern) has the high bit set in every byte equal to the pattern byte
+     * (plus possibly bytes above the first match), so the lowest set bit locates the first match exactly.
+     */
+    static int indexOf(ByteBuffer buffer, int from, int limit, long pattern1, long pattern2) {
+        int i = from;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long word = buffer.getLong(i);
+            long matches = zeroBytes(word ^ pattern1) | zeroBytes(word ^ pattern2);
+            if (matches != 0) {
+                return i + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+        }
+        byte b1 = (byte) pattern1;
+        byte b2 = (byte) pattern2;
+        for (; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == b1 || b == b2) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private static long zeroBytes(long x) {
+        return (x - ONES) & ~x & HIGH_BITS;
+    }
+}
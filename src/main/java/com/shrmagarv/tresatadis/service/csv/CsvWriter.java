@@ -0,0 +1,82 @@
+package com.shrmagarv.tresatadis.service.csv;
+
+import com.shrmagarv.tresatadis.service.io.ByteSlice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * RFC 4180 field quoting for CSV output
+ */
+public final class CsvWriter {
+    
+    private CsvWriter() {
+    }
+    
+    /**
+     * Quote a field if it contains a delimiter, quote or line break, doubling any quotes
+     * @param value The field value
+     * @return The value as it should appear in a CSV line
+     */
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    
+    /**
+     * Write a field parsed by CsvReader without decoding it, quoting it if needed
+     * @param field The raw field bytes
+     * @param escaped Whether the bytes already contain doubled quotes (CsvReader.isEscaped)
+     * @param out The output
+     * @throws IOException If writing fails
+     */
+    public static void writeField(ByteSlice field, boolean escaped, OutputStream out) throws IOException {
+        if (escaped) {
+            // Doubled quotes are kept as they are, so the field only needs its surrounding quotes back
+            out.write('"');
+            field.writeTo(out);
+            out.write('"');
+            return;
+        }
+        
+        boolean needsQuotes = false;
+        boolean hasQuote = false;
+        for (int i = 0; i < field.length(); i++) {
+            byte b = field.byteAt(i);
+            if (b == '"') {
+                hasQuote = true;
+                needsQuotes = true;
+                break;
+            }
+            needsQuotes |= b == ',' || b == '\n' || b == '\r';
+        }
+        if (!needsQuotes) {
+            field.writeTo(out);
+            return;
+        }
+        
+        out.write('"');
+        if (hasQuote) {
+            for (int i = 0; i < field.length(); i++) {
+                byte b = field.byteAt(i);
+                out.write(b);
+                if (b == '"') {
+                    out.write('"');
+                }
+            }
+        } else {
+            field.writeTo(out);
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,169 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input stream fed by a producer running on its own thread
+ * Used to decompress on one core while the consumer parses on another. The producer writes into
+ * fixed-size chunks handed over through a bounded queue, so at most queueChunks * chunkSize bytes
+ * are buffered and a slow consumer throttles the producer.
+ */
+public class AsyncPipeInputStream extends InputStream {
+    
+    /**
+     * Writes the stream content
+     */
+    @FunctionalInterface
+    public interface Producer {
+        void produce(OutputStream out) throws IOException;
+    }
+    
+    private static final byte[] END = new byte[0];
+    
+    private final BlockingQueue<byte[]> queue;
+    private final Thread thread;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean finished;
+    
+    /**
+     * @param threadName Name of the producer thread
+     * @param chunkSize Size of each handed-over chunk
+     * @param queueChunks Number of chunks that may be buffered
+     * @param producer Writes the content
+     */
+    public AsyncPipeInputStream(String threadName, int chunkSize, int queueChunks, Producer producer) {
+        this.queue = new ArrayBlockingQueue<>(queueChunks);
+        this.thread = new Thread(() -> {
+            try (ChunkOutputStream out = new ChunkOutputStream(chunkSize)) {
+                producer.produce(out);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                offer(END);
+            }
+        }, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == current.length && !nextChunk()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        queue.clear();
+    }
+    
+    private boolean nextChunk() throws IOException {
+        if (finished) {
+            return false;
+        }
+        try {
+            current = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for data");
+        }
+        position = 0;
+        if (current == END) {
+            finished = true;
+            if (failure != null) {
+                throw failure instanceof IOException io ? io : new IOException(failure);
+            }
+            return false;
+        }
+        return true;
+    }
+    
+    private void offer(byte[] chunk) {
+        try {
+            while (!closed && !queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                // Wait for the consumer, giving up once it has closed the stream
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Collects producer output into chunks and queues each one when full
+     */
+    private class ChunkOutputStream extends OutputStream {
+        
+        private final int chunkSize;
+        private byte[] chunk;
+        private int count;
+        
+        ChunkOutputStream(int chunkSize) {
+            this.chunkSize = chunkSize;
+            this.chunk = new byte[chunkSize];
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            if (count == chunk.length) {
+                flushChunk();
+            }
+            chunk[count++] = (byte) b;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == chunk.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, chunk.length - count);
+                System.arraycopy(b, off, chunk, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (count > 0) {
+                flushChunk();
+            }
+        }
+        
+        private void flushChunk() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed by consumer");
+            }
+            offer(count == chunk.length ? chunk : Arrays.copyOf(chunk, count));
+            chunk = new byte[chunkSize];
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A view of a range of bytes in a buffer, such as one CSV field
+ * Parsers scan the bytes in place and only decode the fields they need. Pure ASCII ranges are
+ * turned into Strings with a plain byte copy (ISO-8859-1) instead of running the UTF-8 decoder.
+ * Slices are reused for the next field or record, so callers must not hold on to them.
+ */
+public class ByteSlice {
+    
+    private ByteBuffer buffer;
+    private int start;
+    private int length;
+    private byte[] scratch = new byte[256];
+    
+    /**
+     * Point the slice at a range of a buffer
+     * @param buffer The buffer
+     * @param start Start index in the buffer
+     * @param length Number of bytes
+     */
+    public void set(ByteBuffer buffer, int start, int length) {
+        this.buffer = buffer;
+        this.start = start;
+        this.length = length;
+    }
+    
+    public int length() {
+        return length;
+    }
+    
+    public boolean isEmpty() {
+        return length == 0;
+    }
+    
+    /**
+     * Get a byte of the slice
+     * @param index Index within the slice
+     * @return The byte
+     */
+    public byte byteAt(int index) {
+        return buffer.get(start + index);
+    }
+    
+    /**
+     * Decode a range of the slice
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     * @return The decoded text
+     */
+    public String decode(int from, int to) {
+        int count = to - from;
+        byte[] bytes = scratch(count);
+        buffer.get(start + from, bytes, 0, count);
+        return decode(bytes, count);
+    }
+    
+    /**
+     * Decode a range of the slice, collapsing each doubled escape byte into one (CSV "" becomes ")
+     * @param escape The escaped byte
+     * @param from Start index (inclusive)
+     * @param to End index (exclusive)
+     * @return The decoded text
+     */
+    public String decodeUnescaping(byte escape, int from, int to) {
+        byte[] bytes = scratch(to - from);
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(start + i);
+            bytes[count++] = b;
+            if (b == escape && i + 1 < to && buffer.get(start + i + 1) == escape) {
+                i++;
+            }
+        }
+        return decode(bytes, count);
+    }
+    
+    /**
+     * Copy the raw bytes of the slice to a stream without decoding them
+     * @param out The stream
+     * @throws IOException If writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] bytes = scratch(length);
+        buffer.get(start, bytes, 0, length);
+        out.write(bytes, 0, length);
+    }
+    
+    @Override
+    public String toString() {
+        return decode(0, length);
+    }
+    
+    private byte[] scratch(int size) {
+        if (scratch.length < size) {
+            scratch = new byte[Math.max(size, scratch.length * 2)];
+        }
+        return scratch;
+    }
+    
+    private static String decode(byte[] bytes, int count) {
+        for (int i = 0; i < count; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, 0, count, StandardCharsets.UTF_8);
+            }
+        }
+        // ASCII is a subset of ISO-8859-1, which the JDK copies straight into a compact String
+        return new String(bytes, 0, count, StandardCharsets.ISO_8859_1);
+    }
+}
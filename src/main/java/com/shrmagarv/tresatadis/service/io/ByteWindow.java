@@ -0,0 +1,55 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A sliding window over the bytes of an input
+ * Parsers scan buffer()[0, limit()) in place. When a record runs past the end of the window they call
+ * slide() with the index where the record starts; those bytes move to index 0 and more input follows them.
+ * The buffer is little-endian so parsers can read it a word at a time.
+ */
+public interface ByteWindow extends Closeable {
+    
+    /**
+     * @return The current window contents
+     */
+    ByteBuffer buffer();
+    
+    /**
+     * @return The number of valid bytes in the window
+     */
+    int limit();
+    
+    /**
+     * @return True if the window reaches the end of the input
+     */
+    boolean isLast();
+    
+    /**
+     * Drop the bytes before keepFrom and extend the window with more input
+     * The window grows when the retained bytes already fill it
+     * @param keepFrom Index of the first byte to keep; it becomes index 0
+     * @throws IOException If reading fails
+     */
+    void slide(int keepFrom) throws IOException;
+    
+    /**
+     * Open a resource as a byte window
+     * Local files are memory-mapped; anything else is read from its input stream. Temporary files are
+     * streamed too: they are deleted right after they are read, and a mapping that is only released
+     * on garbage collection keeps a file from being deleted on Windows.
+     * @param resource The resource to read
+     * @return The window
+     * @throws IOException If the resource cannot be opened
+     */
+    static ByteWindow open(Resource resource) throws IOException {
+        if (resource.isFile() && !(resource instanceof TempFileResource)) {
+            return new MappedByteWindow(resource.getFile().toPath());
+        }
+        return new StreamByteWindow(resource.getInputStream());
+    }
+}
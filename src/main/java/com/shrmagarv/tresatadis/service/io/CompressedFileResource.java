@@ -0,0 +1,215 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Resource over a gzip or zip file that decompresses while it is read
+ * Nothing is written to disk. Gzip files above the async threshold are inflated on a separate
+ * thread so decompression and parsing overlap. All zip entries with the job's format are read
+ * in name order as one input: CSV entries keep only the first header, and JSON entries are merged
+ * into a single array with a streaming parser.
+ */
+public class CompressedFileResource extends AbstractResource {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PIPE_CHUNK_SIZE = 256 * 1024;
+    private static final int PIPE_QUEUE_CHUNKS = 8;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    
+    private final Path path;
+    private final Compression compression;
+    private final String format;
+    private final long asyncThresholdBytes;
+    
+    /**
+     * @param path The compressed file
+     * @param compression The compression of the file
+     * @param format The format of the content (CSV, JSON or XML)
+     * @param asyncThresholdBytes Compressed size above which gzip is inflated on a separate thread
+     */
+    public CompressedFileResource(Path path, Compression compression, String format, long asyncThresholdBytes) {
+        this.path = path;
+        this.compression = compression;
+        this.format = format != null ? format.toUpperCase(Locale.ROOT) : null;
+        this.asyncThresholdBytes = asyncThresholdBytes;
+    }
+    
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (compression == Compression.GZIP) {
+            if (Files.size(path) < asyncThresholdBytes) {
+                return gunzip();
+            }
+            return new AsyncPipeInputStream("Gunzip-" + path.getFileName(), PIPE_CHUNK_SIZE, PIPE_QUEUE_CHUNKS, out -> {
+                try (InputStream in = gunzip()) {
+                    in.transferTo(out);
+                }
+            });
+        }
+        if (compression == Compression.ZIP) {
+            return openZip();
+        }
+        return Files.newInputStream(path);
+    }
+    
+    /**
+     * The compressed size, which is what the job actually reads from disk
+     */
+    @Override
+    public long contentLength() throws IOException {
+        return Files.size(path);
+    }
+    
+    @Override
+    public boolean exists() {
+        return Files.exists(path);
+    }
+    
+    @Override
+    public String getFilename() {
+        return path.getFileName().toString();
+    }
+    
+    @Override
+    public String getDescription() {
+        return compression + " file [" + path + "]";
+    }
+    
+    private InputStream gunzip() throws IOException {
+        return new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE);
+    }
+    
+    private InputStream openZip() throws IOException {
+        List<String> entryNames = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && matchesFormat(entry.getName())) {
+                    entryNames.add(entry.getName());
+                }
+            }
+        }
+        entryNames.sort(Comparator.naturalOrder());
+        
+        if (entryNames.isEmpty()) {
+            throw new IllegalArgumentException("No " + format + " entries found in archive: " + path);
+        }
+        if (entryNames.size() > 1 && "XML".equals(format)) {
+            throw new IllegalArgumentException("XML archives must contain a single entry: " + path);
+        }
+        
+        return new AsyncPipeInputStream("Unzip-" + path.getFileName(), PIPE_CHUNK_SIZE, PIPE_QUEUE_CHUNKS, out -> {
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                if (entryNames.size() == 1) {
+                    try (InputStream in = zip.getInputStream(zip.getEntry(entryNames.get(0)))) {
+                        in.transferTo(out);
+                    }
+                } else if ("JSON".equals(format)) {
+                    mergeJson(zip, entryNames, out);
+                } else {
+                    mergeCsv(zip, entryNames, out);
+                }
+            }
+        });
+    }
+    
+    private boolean matchesFormat(String entryName) {
+        if (format == null) {
+            return true;
+        }
+        int lastDot = entryName.lastIndexOf('.');
+        return lastDot >= 0 && entryName.substring(lastDot + 1).equalsIgnoreCase(format);
+    }
+    
+    /**
+     * Concatenate CSV entries, dropping the header line of every entry after the first
+     */
+    private void mergeCsv(ZipFile zip, List<String> entryNames, OutputStream out) throws IOException {
+        byte[] firstHeader = null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int lastByte = '\n';
+        for (String name : entryNames) {
+            try (InputStream in = new BufferedInputStream(zip.getInputStream(zip.getEntry(name)), BUFFER_SIZE)) {
+                byte[] header = readLine(in);
+                if (firstHeader == null) {
+                    firstHeader = header;
+                    out.write(header);
+                    lastByte = header.length > 0 ? header[header.length - 1] : lastByte;
+                } else if (!trimEol(firstHeader).equals(trimEol(header))) {
+                    throw new IllegalArgumentException("CSV header of " + name + " differs from the first entry in " + path);
+                }
+                
+                int read;
+                boolean entryStart = true;
+                while ((read = in.read(buffer)) > 0) {
+                    // Keep entries on separate lines when the previous one does not end with a newline
+                    if (entryStart && lastByte != '\n') {
+                        out.write('\n');
+                    }
+                    entryStart = false;
+                    out.write(buffer, 0, read);
+                    lastByte = buffer[read - 1];
+                }
+            }
+        }
+    }
+    
+    /**
+     * Merge JSON entries into one array; each entry may be an array of records or a single record
+     */
+    private void mergeJson(ZipFile zip, List<String> entryNames, OutputStream out) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartArray();
+            for (String name : entryNames) {
+                try (JsonParser parser = JSON_FACTORY.createParser(zip.getInputStream(zip.getEntry(name)))) {
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            generator.copyCurrentStructure(parser);
+                        }
+                    } else if (token != null) {
+                        generator.copyCurrentStructure(parser);
+                    }
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+    
+    private static byte[] readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            line.write(b);
+            if (b == '\n') {
+                break;
+            }
+        }
+        return line.toByteArray();
+    }
+    
+    private static String trimEol(byte[] line) {
+        return new String(line, StandardCharsets.UTF_8).stripTrailing();
+    }
+}
@@ -0,0 +1,79 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Compression formats recognised on source files
+ */
+public enum Compression {
+    NONE(""),
+    GZIP(".gz"),
+    ZIP(".zip");
+    
+    private final String extension;
+    
+    Compression(String extension) {
+        this.extension = extension;
+    }
+    
+    /**
+     * Detect the compression of a file from its extension, falling back to its magic bytes
+     * @param path The file
+     * @return The compression
+     * @throws IOException If the file cannot be read
+     */
+    public static Compression detect(Path path) throws IOException {
+        Compression byName = fromFileName(path.getFileName().toString());
+        if (byName != NONE) {
+            return byName;
+        }
+        
+        byte[] magic = new byte[4];
+        int read;
+        try (InputStream in = Files.newInputStream(path)) {
+            read = in.readNBytes(magic, 0, magic.length);
+        }
+        if (read >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return GZIP;
+        }
+        if (read >= 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return ZIP;
+        }
+        return NONE;
+    }
+    
+    /**
+     * Detect the compression of a file from its name only
+     * @param fileName The file name
+     * @return The compression, NONE if the extension is not a compression extension
+     */
+    public static Compression fromFileName(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".gz") || lower.endsWith(".gzip")) {
+            return GZIP;
+        }
+        if (lower.endsWith(".zip")) {
+            return ZIP;
+        }
+        return NONE;
+    }
+    
+    /**
+     * Remove the compression extension from a file name, e.g. data.csv.gz becomes data.csv
+     * @param fileName The file name
+     * @return The name of the uncompressed content
+     */
+    public static String stripExtension(String fileName) {
+        Compression compression = fromFileName(fileName);
+        if (compression == NONE) {
+            return fileName;
+        }
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        String suffix = lower.endsWith(".gzip") ? ".gzip" : compression.extension;
+        return fileName.substring(0, fileName.length() - suffix.length());
+    }
+}
@@ -0,0 +1,83 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte window over a memory-mapped file
+ * The file is mapped in chunks because a single mapping cannot exceed 2 GB. Sliding maps the next
+ * chunk from the retained offset, so nothing is copied and the page cache is read directly.
+ */
+public class MappedByteWindow implements ByteWindow {
+    
+    public static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+    
+    private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE - 8;
+    
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    
+    public MappedByteWindow(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+    
+    /**
+     * @param path The file to read
+     * @param windowSize Size of each mapping; the window grows if one record is larger
+     */
+    public MappedByteWindow(Path path, long windowSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = Math.max(8, Math.min(windowSize, MAX_WINDOW_SIZE));
+        map(0, this.windowSize);
+    }
+    
+    @Override
+    public ByteBuffer buffer() {
+        return window;
+    }
+    
+    @Override
+    public int limit() {
+        return window.limit();
+    }
+    
+    @Override
+    public boolean isLast() {
+        return windowStart + window.limit() >= fileSize;
+    }
+    
+    @Override
+    public void slide(int keepFrom) throws IOException {
+        if (isLast() && keepFrom == 0) {
+            return;
+        }
+        long retained = window.limit() - keepFrom;
+        long size = retained < windowSize ? windowSize : Math.min(MAX_WINDOW_SIZE, retained * 2);
+        if (size <= retained) {
+            throw new IOException("Record longer than " + MAX_WINDOW_SIZE + " bytes at offset " + (windowStart + keepFrom));
+        }
+        map(windowStart + keepFrom, size);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        // The mapping itself is released when the buffer is garbage collected
+        window = null;
+        channel.close();
+    }
+    
+    private void map(long start, long size) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, fileSize - start));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,110 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Output stream that buffers in memory and spills to a temporary file past a threshold
+ * Lets transformers stream outputs larger than the heap (or than the 2 GB byte[] limit)
+ * while small batches never touch the disk. Not thread-safe.
+ */
+public class SpillOutputStream extends OutputStream {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final int memoryThreshold;
+    private byte[] memory;
+    private int count;
+    private Path file;
+    private OutputStream fileOut;
+    private boolean closed;
+    
+    /**
+     * @param memoryThreshold Number of bytes kept in memory before spilling to disk
+     */
+    public SpillOutputStream(int memoryThreshold) {
+        this.memoryThreshold = memoryThreshold;
+        this.memory = new byte[Math.max(0, Math.min(256, memoryThreshold))];
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        if (fileOut == null && count < memory.length) {
+            memory[count++] = (byte) b;
+            return;
+        }
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+    
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (fileOut == null) {
+            if (count + length <= memoryThreshold) {
+                if (count + length > memory.length) {
+                    memory = Arrays.copyOf(memory, Math.min(memoryThreshold, Math.max(count + length, memory.length * 2)));
+                }
+                System.arraycopy(bytes, offset, memory, count, length);
+                count += length;
+                return;
+            }
+            spill();
+        }
+        fileOut.write(bytes, offset, length);
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        if (fileOut != null) {
+            fileOut.flush();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (fileOut != null) {
+                fileOut.close();
+            }
+        }
+    }
+    
+    /**
+     * @return True if the content went to a temporary file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+    
+    /**
+     * Close the stream and expose what was written
+     * A spilled result is a TempFileResource whose file is deleted when the resource is closed
+     * @return The written content
+     * @throws IOException If closing the file fails
+     */
+    public Resource toResource() throws IOException {
+        close();
+        if (file != null) {
+            return new TempFileResource(file);
+        }
+        return new ByteArrayResource(Arrays.copyOf(memory, count));
+    }
+    
+    private void spill() throws IOException {
+        file = Files.createTempFile("tresata-spill-", ".tmp");
+        fileOut = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        fileOut.write(memory, 0, count);
+        memory = null;
+        count = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Byte window over an input stream, for resources that are not local files
+ * Input is read into a reusable array that only grows when a single record does not fit
+ */
+public class StreamByteWindow implements ByteWindow {
+    
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    
+    private final InputStream input;
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private int limit;
+    private boolean eof;
+    
+    public StreamByteWindow(InputStream input) throws IOException {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * @param input The stream to read
+     * @param bufferSize Initial buffer size
+     */
+    public StreamByteWindow(InputStream input, int bufferSize) throws IOException {
+        this.input = input;
+        this.bytes = new byte[Math.max(8, bufferSize)];
+        this.buffer = wrap(bytes);
+        fill();
+    }
+    
+    @Override
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+    
+    @Override
+    public int limit() {
+        return limit;
+    }
+    
+    @Override
+    public boolean isLast() {
+        return eof;
+    }
+    
+    @Override
+    public void slide(int keepFrom) throws IOException {
+        if (eof && keepFrom == 0) {
+            return;
+        }
+        int retained = limit - keepFrom;
+        if (keepFrom == 0 && retained == bytes.length) {
+            byte[] larger = new byte[bytes.length * 2];
+            System.arraycopy(bytes, 0, larger, 0, retained);
+            bytes = larger;
+            buffer = wrap(bytes);
+        } else {
+            System.arraycopy(bytes, keepFrom, bytes, 0, retained);
+        }
+        limit = retained;
+        fill();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+    
+    private void fill() throws IOException {
+        while (limit < bytes.length) {
+            int read = input.read(bytes, limit, bytes.length - limit);
+            if (read < 0) {
+                eof = true;
+                break;
+            }
+            limit += read;
+        }
+        buffer.limit(limit);
+    }
+    
+    private static ByteBuffer wrap(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
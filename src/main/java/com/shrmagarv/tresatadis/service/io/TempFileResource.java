@@ -0,0 +1,40 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A file resource that owns its (temporary) file and deletes it when closed
+ */
+@Slf4j
+public class TempFileResource extends FileSystemResource implements Closeable {
+    
+    public TempFileResource(Path path) {
+        super(path);
+    }
+    
+    @Override
+    public void close() {
+        try {
+            Files.deleteIfExists(getFile().toPath());
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file {}: {}", getPath(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Release an intermediate resource if it owns a temporary file
+     * @param resource The resource, may be null
+     */
+    public static void release(Resource resource) {
+        if (resource instanceof TempFileResource tempFile) {
+            tempFile.close();
+        }
+    }
+}
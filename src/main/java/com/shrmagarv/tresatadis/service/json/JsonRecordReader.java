@@ -0,0 +1,84 @@
+package com.shrmagarv.tresatadis.service.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams the records of a JSON input one at a time
+ * Accepts a top-level array (each element is a record) or a sequence of root values such as
+ * newline-delimited JSON (each value is a record; a single object is a one-record sequence).
+ * Only the parser's current token is held, so memory does not grow with the input.
+ */
+public class JsonRecordReader implements Closeable {
+    
+    private final JsonParser parser;
+    private boolean started;
+    private boolean array;
+    private long recordCount;
+    
+    /**
+     * @param parser The parser, positioned before the first token
+     */
+    public JsonRecordReader(JsonParser parser) {
+        this.parser = parser;
+    }
+    
+    /**
+     * Open a resource for record streaming
+     * @param objectMapper The mapper, used as the parser's codec for reading records as trees
+     * @param resource The resource
+     * @return The reader
+     * @throws IOException If the resource cannot be opened
+     */
+    public static JsonRecordReader open(ObjectMapper objectMapper, Resource resource) throws IOException {
+        return new JsonRecordReader(objectMapper.getFactory().createParser(resource.getInputStream()));
+    }
+    
+    /**
+     * Advance to the next record
+     * The parser is left on the record's first token; the caller must consume the whole value
+     * (copyCurrentStructure, readValueAsTree or skipChildren) before calling next again
+     * @return False at the end of the input
+     * @throws IOException If the input is not valid JSON
+     */
+    public boolean next() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (!started) {
+            started = true;
+            if (token == JsonToken.START_ARRAY) {
+                array = true;
+                token = parser.nextToken();
+            }
+        }
+        if (token == null || (array && token == JsonToken.END_ARRAY)) {
+            return false;
+        }
+        recordCount++;
+        return true;
+    }
+    
+    /**
+     * @return True if the records are the elements of a top-level array (valid once next has been called)
+     */
+    public boolean isArray() {
+        return array;
+    }
+    
+    public long getRecordCount() {
+        return recordCount;
+    }
+    
+    public JsonParser getParser() {
+        return parser;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
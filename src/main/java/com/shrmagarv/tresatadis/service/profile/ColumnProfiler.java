@@ -0,0 +1,190 @@
+package com.shrmagarv.tresatadis.service.profile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shrmagarv.tresatadis.model.ColumnStatistics;
+import com.shrmagarv.tresatadis.service.sketch.Hashing;
+import com.shrmagarv.tresatadis.service.sketch.HyperLogLog;
+import com.shrmagarv.tresatadis.service.sketch.KllSketch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass profile of the top-level fields of a record stream
+ * Each column keeps counters, numeric and text bounds, a running sum, a HyperLogLog for the distinct
+ * count and a KLL sketch for quantiles, so memory per column is fixed however many records are seen.
+ * Null, missing and empty values count as nulls, as DatabaseStorage stores them. Column names and
+ * text bounds are cut to the lengths of their column_statistics columns.
+ */
+public class ColumnProfiler {
+    
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_TEXT_LENGTH = 1000;
+    
+    private final int maxColumns;
+    private final int hllPrecision;
+    private final int kllK;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private long records;
+    private long ignoredFields;
+    
+    /**
+     * @param maxColumns Columns beyond this many are not profiled
+     * @param hllPrecision HyperLogLog precision of the distinct counts
+     * @param kllK KLL accuracy parameter of the quantiles
+     */
+    public ColumnProfiler(int maxColumns, int hllPrecision, int kllK) {
+        this.maxColumns = maxColumns;
+        this.hllPrecision = hllPrecision;
+        this.kllK = kllK;
+    }
+    
+    /**
+     * Add a record; values that are not objects are ignored
+     * @param record The record
+     */
+    public void add(JsonNode record) {
+        if (!record.isObject()) {
+            return;
+        }
+        records++;
+        for (Iterator<Map.Entry<String, JsonNode>> fields = record.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            Column column = columns.get(field.getKey());
+            if (column == null) {
+                if (columns.size() >= maxColumns) {
+                    ignoredFields++;
+                    continue;
+                }
+                column = new Column(hllPrecision, kllK);
+                columns.put(field.getKey(), column);
+            }
+            column.add(field.getValue());
+        }
+    }
+    
+    public long getRecords() {
+        return records;
+    }
+    
+    /**
+     * @return Values skipped because their column was beyond the column limit
+     */
+    public long getIgnoredFields() {
+        return ignoredFields;
+    }
+    
+    /**
+     * @return One unsaved statistics row per column, in order of first appearance
+     */
+    public List<ColumnStatistics> results() {
+        List<ColumnStatistics> results = new ArrayList<>(columns.size());
+        for (Map.Entry<String, Column> entry : columns.entrySet()) {
+            results.add(entry.getValue().result(truncate(entry.getKey(), MAX_NAME_LENGTH), records));
+        }
+        return results;
+    }
+    
+    private static final class Column {
+        
+        private final HyperLogLog distinct;
+        private final KllSketch quantiles;
+        private long nonNull;
+        private long numeric;
+        private double sum;
+        private String minText;
+        private String maxText;
+        
+        private Column(int hllPrecision, int kllK) {
+            this.distinct = new HyperLogLog(hllPrecision);
+            this.quantiles = new KllSketch(kllK);
+        }
+        
+        private void add(JsonNode value) {
+            if (value == null || value.isNull() || value.isMissingNode() || (value.isTextual() && value.textValue().isEmpty())) {
+                return;
+            }
+            nonNull++;
+            String text = value.isValueNode() ? value.asText() : value.toString();
+            distinct.add(Hashing.hash(text));
+            // Only the stored prefix of a bound is kept, however long the value
+            if (minText == null || text.compareTo(minText) < 0) {
+                minText = truncate(text, MAX_TEXT_LENGTH);
+            }
+            if (maxText == null || text.compareTo(maxText) > 0) {
+                maxText = truncate(text, MAX_TEXT_LENGTH);
+            }
+            
+            double number = value.isNumber() ? value.doubleValue() : parseNumber(text);
+            if (Double.isFinite(number)) {
+                numeric++;
+                sum += number;
+                quantiles.add(number);
+            }
+        }
+        
+        private ColumnStatistics result(String name, long records) {
+            ColumnStatistics.ColumnStatisticsBuilder statistics = ColumnStatistics.builder()
+                    .columnName(name)
+                    .recordCount(records)
+                    .nullCount(records - nonNull)
+                    .numericCount(numeric)
+                    .approxDistinct(Math.min(nonNull, distinct.estimate()));
+            
+            if (nonNull == 0) {
+                return statistics.valueType("EMPTY").build();
+            }
+            if (numeric == nonNull) {
+                statistics.valueType("NUMBER")
+                        .minValue(formatNumber(quantiles.getMin()))
+                        .maxValue(formatNumber(quantiles.getMax()));
+            } else {
+                statistics.valueType(numeric == 0 ? "TEXT" : "MIXED")
+                        .minValue(minText)
+                        .maxValue(maxText);
+            }
+            if (numeric > 0) {
+                double[] percentiles = quantiles.quantiles(0.25, 0.5, 0.75, 0.9, 0.99);
+                statistics.mean(sum / numeric)
+                        .p25(percentiles[0])
+                        .p50(percentiles[1])
+                        .p75(percentiles[2])
+                        .p90(percentiles[3])
+                        .p99(percentiles[4]);
+            }
+            return statistics.build();
+        }
+    }
+    
+    /**
+     * @return The number, or NaN if the text is not a plain decimal number
+     */
+    private static double parseNumber(String text) {
+        if (text.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = text.charAt(0);
+        if (!(first >= '0' && first <= '9') && first != '-' && first != '+' && first != '.') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+    
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+    
+    private static String truncate(String text, int maxLength) {
+        return text.length() <= maxLength ? text : text.substring(0, maxLength);
+    }
+}
@@ -0,0 +1,72 @@
+package com.shrmagarv.tresatadis.service.profile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.model.ColumnStatistics;
+import com.shrmagarv.tresatadis.service.convert.ConversionConfig;
+import com.shrmagarv.tresatadis.service.convert.RecordReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Service for profiling the columns of ingested data
+ * A job's profile is computed from the bytes its store reads (see ProfilingTap), in one streaming
+ * pass on a thread of its own, so the stored data is read only once.
+ */
+@Service
+@Slf4j
+public class ProfilingService {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Value("${app.profiling.max-columns:512}")
+    private int maxColumns = 512;
+    
+    @Value("${app.profiling.hll-precision:12}")
+    private int hllPrecision = 12;
+    
+    @Value("${app.profiling.kll-k:200}")
+    private int kllK = 200;
+    
+    /**
+     * Profile data on the caller's thread
+     * @param data The data to profile
+     * @param format CSV, JSON, NDJSON or XML
+     * @return Unsaved statistics, one per column
+     * @throws IOException If reading the data fails
+     */
+    public List<ColumnStatistics> profile(Resource data, String format) throws IOException {
+        ColumnProfiler profiler = new ColumnProfiler(maxColumns, hllPrecision, kllK);
+        try (RecordReader reader = RecordReader.open(format, data, new ConversionConfig(), objectMapper)) {
+            JsonNode record;
+            while ((record = reader.next()) != null) {
+                profiler.add(record);
+            }
+        }
+        if (profiler.getIgnoredFields() > 0) {
+            log.warn("Profile limited to {} columns, {} values of further columns ignored",
+                    maxColumns, profiler.getIgnoredFields());
+        }
+        return profiler.results();
+    }
+    
+    /**
+     * Start profiling data as it is stored
+     * The store has to read tap.resource() instead of the data, then call tap.finish() for the profile
+     * @param data The data to profile
+     * @param format The data format
+     * @return The tap, or null if the format has no record reader
+     */
+    public ProfilingTap tap(Resource data, String format) {
+        if (data == null || format == null || !ConversionConfig.FORMATS.contains(format.toUpperCase())) {
+            log.debug("Skipping profile of {} data", format);
+            return null;
+        }
+        return new ProfilingTap(data, format, this);
+    }
+}
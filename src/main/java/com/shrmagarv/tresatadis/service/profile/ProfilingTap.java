@@ -0,0 +1,240 @@
+package com.shrmagarv.tresatadis.service.profile;
+
+import com.shrmagarv.tresatadis.model.ColumnStatistics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Column profile taken from the bytes a store reads, so the data is read only once
+ * The store reads through resource(); every chunk it reads is handed to a profiler thread through a
+ * bounded queue, so a profiler that falls behind throttles the store. A failed profile never fails the
+ * store: once the profiler stops reading, the store carries on alone. Only the first stream opened on
+ * the resource is profiled.
+ */
+@Slf4j
+public class ProfilingTap {
+    
+    private static final byte[] END = new byte[0];
+    private static final int QUEUE_CHUNKS = 64;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    
+    private final Resource data;
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+    private final CompletableFuture<List<ColumnStatistics>> profile = new CompletableFuture<>();
+    private final AtomicBoolean opened = new AtomicBoolean();
+    private final AtomicBoolean ended = new AtomicBoolean();
+    private volatile boolean stopped;
+    
+    ProfilingTap(Resource data, String format, ProfilingService profilingService) {
+        this.data = data;
+        Thread thread = new Thread(() -> {
+            try {
+                profile.complete(profilingService.profile(new InputStreamResource(new QueueInputStream()), format));
+            } catch (Throwable e) {
+                profile.completeExceptionally(e);
+            } finally {
+                // Release a store waiting on a full queue
+                stopped = true;
+                queue.clear();
+            }
+        }, "Profiler-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * @return The data to store in place of the original
+     */
+    public Resource resource() {
+        return new TapResource();
+    }
+    
+    /**
+     * Wait for the profile once the store is done
+     * A failed profile is logged and yields no statistics rather than failing the job
+     * @return The statistics, one per column, empty if the profile failed
+     */
+    public List<ColumnStatistics> finish() {
+        end();
+        try {
+            return profile.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.warn("Column profiling failed: {}", cause.getMessage());
+            return List.of();
+        }
+    }
+    
+    private void feed(byte[] chunk) {
+        try {
+            while (!stopped && !queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                // Wait for the profiler, giving up once it has stopped reading
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void end() {
+        if (ended.compareAndSet(false, true)) {
+            feed(END);
+        }
+    }
+    
+    /**
+     * The stored data; not a file, so readers stream it through the tap instead of mapping it
+     */
+    private class TapResource extends AbstractResource {
+        
+        @Override
+        public InputStream getInputStream() throws IOException {
+            InputStream in = data.getInputStream();
+            return opened.compareAndSet(false, true) ? new TapInputStream(in) : in;
+        }
+        
+        @Override
+        public boolean exists() {
+            return data.exists();
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return data.isOpen();
+        }
+        
+        @Override
+        public long contentLength() throws IOException {
+            return data.contentLength();
+        }
+        
+        @Override
+        public String getFilename() {
+            return data.getFilename();
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Profiled " + data.getDescription();
+        }
+    }
+    
+    /**
+     * Passes the store's reads through, copying each chunk to the profiler
+     */
+    private class TapInputStream extends FilterInputStream {
+        
+        TapInputStream(InputStream in) {
+            super(in);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = in.read(b, off, len);
+            if (count > 0) {
+                feed(Arrays.copyOfRange(b, off, off + count));
+            } else if (count < 0) {
+                end();
+            }
+            return count;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes still have to reach the profiler
+            byte[] buffer = new byte[(int) Math.min(8192, Math.max(n, 0))];
+            long skipped = 0;
+            while (skipped < n) {
+                int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (count < 0) {
+                    break;
+                }
+                skipped += count;
+            }
+            return skipped;
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                end();
+            }
+        }
+    }
+    
+    /**
+     * The profiler's side of the queue
+     */
+    private class QueueInputStream extends InputStream {
+        
+        private byte[] current = new byte[0];
+        private int position;
+        private boolean finished;
+        
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == current.length && !nextChunk()) {
+                return -1;
+            }
+            int count = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, count);
+            position += count;
+            return count;
+        }
+        
+        private boolean nextChunk() throws IOException {
+            if (finished) {
+                return false;
+            }
+            try {
+                current = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+            position = 0;
+            if (current == END) {
+                finished = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
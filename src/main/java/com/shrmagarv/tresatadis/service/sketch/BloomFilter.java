@@ -0,0 +1,148 @@
+package com.shrmagarv.tresatadis.service.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Bloom filter over 64-bit hashes
+ * Sized for an expected number of insertions and false-positive rate; the probe positions are derived
+ * from the two halves of one hash (Kirsch-Mitzenmacher double hashing), so callers hash each key once.
+ * A negative answer is certain, a positive one is only probable.
+ */
+public class BloomFilter {
+    
+    private static final int FORMAT_VERSION = 1;
+    
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private long insertions;
+    
+    private BloomFilter(long[] bits, int hashCount, long insertions) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length * Long.SIZE;
+        this.hashCount = hashCount;
+        this.insertions = insertions;
+    }
+    
+    /**
+     * Create a filter
+     * @param expectedInsertions Number of keys the filter is sized for
+     * @param falsePositiveRate Target false-positive rate at that size, e.g. 0.001
+     * @return The empty filter
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        long n = Math.max(1, expectedInsertions);
+        long m = Math.max(Long.SIZE, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        long words = (m + Long.SIZE - 1) / Long.SIZE;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bloom filter too large for " + expectedInsertions + " keys");
+        }
+        return new BloomFilter(new long[(int) words], k, 0);
+    }
+    
+    /**
+     * Add a key by its hash
+     * @param hash A well-mixed 64-bit hash (see Hashing)
+     * @return True if any bit changed, i.e. the key was certainly not present before
+     */
+    public boolean put(long hash) {
+        boolean changed = false;
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        if (changed) {
+            insertions++;
+        }
+        return changed;
+    }
+    
+    /**
+     * @param hash A well-mixed 64-bit hash
+     * @return False if the key was certainly never added, true if it probably was
+     */
+    public boolean mightContain(long hash) {
+        long h1 = (int) hash;
+        long h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return Number of keys added (keys that collided with earlier ones in every bit are not counted)
+     */
+    public long getInsertions() {
+        return insertions;
+    }
+    
+    /**
+     * @return Current false-positive probability given the number of keys added
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions / bitCount), hashCount);
+    }
+    
+    /**
+     * @return Size of the bit array in bytes
+     */
+    public long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+    
+    /**
+     * Write the filter so readFrom can restore it
+     * @param out The output
+     * @throws IOException If writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(hashCount);
+        out.writeLong(insertions);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+    
+    /**
+     * Read a filter written by writeTo
+     * @param in The input
+     * @return The filter
+     * @throws IOException If reading fails or the data is not a filter
+     */
+    public static BloomFilter readFrom(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported Bloom filter format version: " + version);
+        }
+        int hashCount = in.readInt();
+        long insertions = in.readLong();
+        int words = in.readInt();
+        if (hashCount < 1 || words < 1) {
+            throw new IOException("Corrupt Bloom filter header");
+        }
+        long[] bits = new long[words];
+        for (int i = 0; i < words; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, hashCount, insertions);
+    }
+}
@@ -0,0 +1,81 @@
+package com.shrmagarv.tresatadis.service.sketch;
+
+/**
+ * 64-bit hashing for hash tables and sketches
+ * Strings are hashed with MurmurHash64A over their UTF-16 code units, so no byte encoding is needed,
+ * and results are well mixed in every bit as HyperLogLog and Bloom filters require.
+ */
+public final class Hashing {
+    
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+    private static final long SEED = 0x9747b28cL;
+    
+    private Hashing() {
+    }
+    
+    /**
+     * @param value The text, null hashes to a fixed value
+     * @return The 64-bit hash
+     */
+    public static long hash(CharSequence value) {
+        if (value == null) {
+            return mix(SEED);
+        }
+        int length = value.length();
+        long h = SEED ^ (length * 2L * M);
+        
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long k = value.charAt(i)
+                    | (long) value.charAt(i + 1) << 16
+                    | (long) value.charAt(i + 2) << 32
+                    | (long) value.charAt(i + 3) << 48;
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+            h ^= k;
+            h *= M;
+        }
+        if (i < length) {
+            long k = 0;
+            for (int shift = 0; i < length; i++, shift += 16) {
+                k |= (long) value.charAt(i) << shift;
+            }
+            h ^= k;
+            h *= M;
+        }
+        
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+    
+    /**
+     * @param value A 64-bit value
+     * @return The value with its bits mixed (MurmurHash3 finalizer)
+     */
+    public static long hash(long value) {
+        return mix(value);
+    }
+    
+    /**
+     * Combine hashes of a tuple's parts, order-sensitive
+     * @param hash The hash so far
+     * @param next The hash of the next part
+     * @return The combined hash
+     */
+    public static long combine(long hash, long next) {
+        return mix(hash * 31 + next);
+    }
+    
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,137 @@
+package com.shrmagarv.tresatadis.service.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * HyperLogLog distinct-count sketch over 64-bit hashes
+ * Uses 2^precision one-byte registers; the standard error is about 1.04 / sqrt(2^precision)
+ * (1.6% at the default precision of 12). Small cardinalities use linear counting. Sketches of the
+ * same precision merge losslessly, so partial counts from parallel workers or spilled partitions
+ * combine into the count of the union.
+ */
+public class HyperLogLog {
+    
+    public static final int DEFAULT_PRECISION = 12;
+    
+    private final int precision;
+    private final byte[] registers;
+    
+    /**
+     * @param precision Number of index bits, 4 to 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+    
+    /**
+     * Add a value by its hash
+     * @param hash A well-mixed 64-bit hash (see Hashing)
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first set bit in the remaining bits, with a sentinel so it is at most 64 - precision + 1
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+    
+    /**
+     * Merge another sketch into this one
+     * @param other A sketch of the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog of precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+    
+    /**
+     * @return The estimated number of distinct values added
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+    
+    public int getPrecision() {
+        return precision;
+    }
+    
+    /**
+     * @return Size of the registers in bytes
+     */
+    public int sizeInBytes() {
+        return registers.length;
+    }
+    
+    /**
+     * Write the registers (the precision is not written)
+     * @param out The output
+     * @throws IOException If writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.write(registers);
+    }
+    
+    /**
+     * Merge registers written by writeTo from a sketch of the same precision
+     * @param in The input
+     * @throws IOException If reading fails
+     */
+    public void mergeFrom(DataInput in) throws IOException {
+        for (int i = 0; i < registers.length; i++) {
+            byte register = in.readByte();
+            if (register > registers[i]) {
+                registers[i] = register;
+            }
+        }
+    }
+    
+    /**
+     * @return A copy of the registers, for storing the sketch
+     */
+    public byte[] toByteArray() {
+        return registers.clone();
+    }
+    
+    /**
+     * Restore a sketch from its registers
+     * @param registers Registers from toByteArray
+     * @return The sketch
+     */
+    public static HyperLogLog fromByteArray(byte[] registers) {
+        int precision = Integer.numberOfTrailingZeros(registers.length);
+        if (registers.length != 1 << precision) {
+            throw new IllegalArgumentException("Invalid HyperLogLog register count: " + registers.length);
+        }
+        HyperLogLog sketch = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, sketch.registers, 0, registers.length);
+        return sketch;
+    }
+}
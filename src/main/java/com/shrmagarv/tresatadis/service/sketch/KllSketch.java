@@ -0,0 +1,204 @@
+package com.shrmagarv.tresatadis.service.sketch;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * KLL quantile sketch over doubles
+ * Values go into a stack of compactors; a full compactor sorts its items and promotes every other one,
+ * at twice the weight, to the level above. Capacities shrink geometrically (factor 2/3) towards the
+ * lower levels, so the sketch keeps about 3k items and the rank error is about 1.65 / k
+ * (under 1% at the default k of 200) whatever the number of values.
+ */
+public class KllSketch {
+    
+    public static final int DEFAULT_K = 200;
+    
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 8;
+    
+    private final int k;
+    // A fixed seed keeps the profile of the same data reproducible
+    private final SplittableRandom random = new SplittableRandom(0x5eedL);
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    
+    /**
+     * @param k Accuracy parameter, at least 8
+     */
+    public KllSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("KLL k must be at least " + MIN_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        this.levels[0] = new double[capacity(0)];
+    }
+    
+    /**
+     * Add a value; NaN is ignored
+     * @param value The value
+     */
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count++ == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        append(0, value);
+        compress();
+    }
+    
+    /**
+     * Merge another sketch into this one
+     * @param other The sketch to merge
+     */
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compress();
+    }
+    
+    /**
+     * @return Number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Estimate the value at a rank
+     * @param fraction Rank as a fraction, 0 (the minimum) to 1 (the maximum)
+     * @return The estimated quantile, NaN if no values were added
+     */
+    public double quantile(double fraction) {
+        return quantiles(fraction)[0];
+    }
+    
+    /**
+     * Estimate several quantiles at once
+     * @param fractions Ranks as fractions between 0 and 1
+     * @return The estimated quantiles in the same order, NaN if no values were added
+     */
+    public double[] quantiles(double... fractions) {
+        double[] result = new double[fractions.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        
+        int retained = 0;
+        for (int size : sizes) {
+            retained += size;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                values[n] = levels[level][i];
+                weights[n++] = 1L << level;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for (int i = 0; i < retained; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long totalWeight = 0;
+        for (long weight : weights) {
+            totalWeight += weight;
+        }
+        
+        for (int q = 0; q < fractions.length; q++) {
+            double fraction = fractions[q];
+            if (fraction <= 0) {
+                result[q] = min;
+            } else if (fraction >= 1) {
+                result[q] = max;
+            } else {
+                double target = fraction * totalWeight;
+                long cumulative = 0;
+                result[q] = max;
+                for (int index : order) {
+                    cumulative += weights[index];
+                    if (cumulative >= target) {
+                        result[q] = values[index];
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    public double getMin() {
+        return min;
+    }
+    
+    public double getMax() {
+        return max;
+    }
+    
+    private int capacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+    
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            levels[level] = new double[capacity(level)];
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+    
+    /**
+     * Compact every level holding more than its capacity, lowest first
+     */
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] >= capacity(level)) {
+                compact(level);
+            }
+        }
+    }
+    
+    private void compact(int level) {
+        double[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+        // With an odd count the largest item stays behind at this level
+        int pairs = size / 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = 0; i < pairs; i++) {
+            append(level + 1, items[2 * i + offset]);
+        }
+        if (size % 2 == 1) {
+            items[0] = items[size - 1];
+            sizes[level] = 1;
+        } else {
+            sizes[level] = 0;
+        }
+    }
+}
@@ -28,4 +28,13 @@ public interface DataSourceConnector {
      * @throws Exception If extraction fails
      */
     Resource extractData(String sourceLocation, String sourceFormat) throws Exception;
+    
+    /**
+     * Acknowledge that data returned by extractData has been stored
+     * Connectors that track a read position (such as Kafka offsets) advance it here
+     * @param data The resource returned by extractData
+     * @throws Exception If the acknowledgement fails
+     */
+    default void commit(Resource data) throws Exception {
+    }
 }
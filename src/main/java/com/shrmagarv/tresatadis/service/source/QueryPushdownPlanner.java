@@ -0,0 +1,270 @@
+package com.shrmagarv.tresatadis.service.source;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.source.impl.DatabaseDataSourceConnector;
+import com.shrmagarv.tresatadis.service.transform.expr.Predicate;
+import com.shrmagarv.tresatadis.service.transform.expr.RecordExpressions;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pushes the projection and simple filters of a job's transformation into its DATABASE source query
+ * The user query is wrapped as a subselect that selects only the columns the transformation keeps
+ * and applies the filter predicates the database can evaluate with the same result. The transformer
+ * still runs on the reduced data, so a predicate only has to be pushed when the database keeps every
+ * row the transformer would; anything else is left to the transformer.
+ */
+@Service
+@Slf4j
+public class QueryPushdownPlanner {
+    
+    private enum ColumnKind { NUMBER, TEXT, DATE, TIMESTAMP, OTHER }
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Value("${app.database.pushdown.enabled:true}")
+    private boolean enabled = true;
+    
+    /**
+     * Plan the source query for a job
+     * @param connector The database connector, used to describe the query's columns
+     * @param query The user query
+     * @param sourceFormat The format the connector writes (CSV, JSON)
+     * @param transformationType The job's transformation type, may be null
+     * @param transformationConfig The job's transformation config, may be null
+     * @return The rewritten query, or null if nothing can be pushed down
+     */
+    public Plan plan(DatabaseDataSourceConnector connector, String query, String sourceFormat,
+                     String transformationType, String transformationConfig) {
+        // CSV and JSON transformers share fieldMappings / fieldsToRemove / filter / derive
+        if (!enabled || transformationConfig == null
+                || !("CSV".equals(transformationType) || "JSON".equals(transformationType))) {
+            return null;
+        }
+        
+        String subquery = query.trim();
+        while (subquery.endsWith(";")) {
+            subquery = subquery.substring(0, subquery.length() - 1).trim();
+        }
+        
+        try {
+            JsonNode config = objectMapper.readTree(transformationConfig);
+            RecordExpressions expressions = RecordExpressions.compile(config);
+            Map<String, Integer> columns = connector.describeColumns(subquery);
+            if (columns.isEmpty()) {
+                return null;
+            }
+            
+            // Keep every column the transformation outputs or reads
+            Set<String> removed = new HashSet<>();
+            config.path("fieldsToRemove").forEach(field -> removed.add(field.asText()));
+            config.path("fieldMappings").forEach(source -> removed.remove(source.asText()));
+            if (expressions != null) {
+                removed.removeAll(expressions.getFields());
+            }
+            List<String> kept = new ArrayList<>();
+            for (String column : columns.keySet()) {
+                if (!removed.contains(column)) {
+                    kept.add(column);
+                }
+            }
+            
+            String quote = connector.getIdentifierQuote();
+            List<Object> parameters = new ArrayList<>();
+            String where = null;
+            if (expressions != null && expressions.getFilterPredicate() != null) {
+                // CSV output writes SQL NULL as an empty field, which the filter does not read as null
+                boolean nullsAsText = "CSV".equalsIgnoreCase(sourceFormat);
+                where = translate(expressions.getFilterPredicate(), columns, nullsAsText, quote, parameters);
+            }
+            if (kept.isEmpty() || (kept.size() == columns.size() && where == null)) {
+                return null;
+            }
+            
+            StringBuilder sql = new StringBuilder("SELECT ");
+            for (int i = 0; i < kept.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(quote(kept.get(i), quote));
+            }
+            sql.append(" FROM (").append(subquery).append(") pushdown_src");
+            if (where != null) {
+                sql.append(" WHERE ").append(where);
+            }
+            return new Plan(sql.toString(), parameters.toArray(), columns.size() - kept.size(), where != null);
+        } catch (Exception e) {
+            // Not every query can be wrapped (e.g. stored procedure calls, repeated column labels); run it as written
+            log.debug("Not pushing down into source query: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Translate a predicate to SQL
+     * @return The SQL, or null if the database could drop rows the filter keeps
+     */
+    private String translate(Predicate predicate, Map<String, Integer> columns, boolean nullsAsText, String quote,
+                             List<Object> parameters) {
+        switch (predicate.kind()) {
+            case AND: {
+                List<String> parts = new ArrayList<>();
+                for (Predicate operand : predicate.operands()) {
+                    String part = translate(operand, columns, nullsAsText, quote, parameters);
+                    if (part != null) {
+                        parts.add(part);
+                    }
+                }
+                // AND binds tighter than OR, so only the ORs need parentheses
+                return parts.isEmpty() ? null : String.join(" AND ", parts);
+            }
+            case OR: {
+                int mark = parameters.size();
+                String left = translate(predicate.operands().get(0), columns, nullsAsText, quote, parameters);
+                String right = left == null ? null : translate(predicate.operands().get(1), columns, nullsAsText, quote, parameters);
+                if (right == null) {
+                    parameters.subList(mark, parameters.size()).clear();
+                    return null;
+                }
+                return "(" + left + " OR " + right + ")";
+            }
+            default:
+                break;
+        }
+        
+        Integer type = columns.get(predicate.field());
+        if (type == null) {
+            return null;
+        }
+        ColumnKind kind = kindOf(type);
+        String column = quote(predicate.field(), quote);
+        List<Object> values = predicate.values();
+        
+        switch (predicate.kind()) {
+            case IS_NULL:
+                return column + " IS NULL";
+            case IS_NOT_NULL:
+                return nullsAsText ? null : column + " IS NOT NULL";
+            case COMPARE:
+                // Text is only compared for equality, since collations order text differently
+                if (!compatible(kind, values) || (kind == ColumnKind.TEXT && !"=".equals(predicate.operator()))) {
+                    return null;
+                }
+                parameters.add(parameter(values.get(0)));
+                return column + " " + predicate.operator() + " ?";
+            case IN:
+                if (!compatible(kind, values)) {
+                    return null;
+                }
+                values.forEach(value -> parameters.add(parameter(value)));
+                return column + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")";
+            case BETWEEN:
+                if (kind == ColumnKind.TEXT || !compatible(kind, values)) {
+                    return null;
+                }
+                parameters.add(parameter(values.get(0)));
+                parameters.add(parameter(values.get(1)));
+                return column + " BETWEEN ? AND ?";
+            case LIKE:
+                // A backslash is an escape in some databases' LIKE but not in the filter's
+                String pattern = values.get(0).toString();
+                if (kind != ColumnKind.TEXT || pattern.contains("\\") || pattern.replace("%", "").isEmpty()) {
+                    return null;
+                }
+                parameters.add(pattern);
+                return column + " LIKE ?";
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Whether the literals compare the same way in the database as in the filter for this column
+     */
+    private boolean compatible(ColumnKind kind, List<Object> values) {
+        for (Object value : values) {
+            boolean matches = switch (kind) {
+                case NUMBER -> value instanceof Long || value instanceof BigDecimal
+                        || (value instanceof Double d && Double.isFinite(d));
+                // An empty literal would match SQL NULLs written as empty CSV fields
+                case TEXT -> value instanceof String s && !s.isEmpty();
+                case DATE -> value instanceof LocalDate;
+                case TIMESTAMP -> value instanceof LocalDateTime;
+                default -> false;
+            };
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Classify a column type; REAL, FLOAT and DOUBLE stay OTHER because the database compares the stored
+     * binary value while the filter reads the rounded text written for it, so comparisons can disagree
+     */
+    private ColumnKind kindOf(int type) {
+        return switch (type) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.NUMERIC,
+                 Types.DECIMAL -> ColumnKind.NUMBER;
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR,
+                 Types.LONGNVARCHAR -> ColumnKind.TEXT;
+            case Types.DATE -> ColumnKind.DATE;
+            case Types.TIMESTAMP -> ColumnKind.TIMESTAMP;
+            default -> ColumnKind.OTHER;
+        };
+    }
+    
+    private Object parameter(Object value) {
+        if (value instanceof LocalDate date) {
+            return Date.valueOf(date);
+        }
+        if (value instanceof LocalDateTime timestamp) {
+            return Timestamp.valueOf(timestamp);
+        }
+        return value;
+    }
+    
+    private String quote(String identifier, String quote) {
+        if (quote.isBlank()) {
+            return identifier;
+        }
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+    
+    /**
+     * A rewritten source query
+     */
+    @Getter
+    public static class Plan {
+        private final String sql;
+        private final Object[] parameters;
+        private final int columnsRemoved;
+        private final boolean filtered;
+        
+        Plan(String sql, Object[] parameters, int columnsRemoved, boolean filtered) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.columnsRemoved = columnsRemoved;
+            this.filtered = filtered;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d columns pruned%s", columnsRemoved, filtered ? ", rows filtered in the query" : "");
+        }
+    }
+}
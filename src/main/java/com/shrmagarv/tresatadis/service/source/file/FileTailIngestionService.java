@@ -0,0 +1,542 @@
+package com.shrmagarv.tresatadis.service.source.file;
+
+import com.shrmagarv.tresatadis.model.DataStatistics;
+import com.shrmagarv.tresatadis.model.Job;
+import com.shrmagarv.tresatadis.model.JobFileProgress;
+import com.shrmagarv.tresatadis.model.JobLog;
+import com.shrmagarv.tresatadis.model.JobStatus;
+import com.shrmagarv.tresatadis.repository.DataStatisticsRepository;
+import com.shrmagarv.tresatadis.repository.JobFileProgressRepository;
+import com.shrmagarv.tresatadis.repository.JobLogRepository;
+import com.shrmagarv.tresatadis.repository.JobRepository;
+import com.shrmagarv.tresatadis.service.source.impl.FileDataSourceConnector;
+import com.shrmagarv.tresatadis.service.streaming.MicroBatchPipeline;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Runs TAIL jobs that follow append-only CSV or NDJSON files
+ * The source location is a file, directory or glob. Its directory is watched with a WatchService and
+ * only the complete records appended since the last read are sent through the pipeline; a trailing
+ * partial line waits for its newline. The byte offset and file key (inode) of every file are stored in
+ * job_file_progress after each stored chunk, so a restarted job resumes where it left off. A changed file
+ * key or a file shorter than the offset is treated as rotation: the rest of the rotated file is read if it
+ * can still be found next to the new one, then the new file is read from the start. Each chunk is stored
+ * as its own part (see DataStorage.partLocation) named after the file and the offset it starts at, so
+ * file destinations collect every chunk instead of keeping only the last one.
+ */
+@Service
+@Slf4j
+public class FileTailIngestionService {
+    
+    private static final String TAILING = "TAILING";
+    private static final Pattern NDJSON_EXTENSION = Pattern.compile("\\.(json|ndjson|jsonl)$", Pattern.CASE_INSENSITIVE);
+    
+    @Autowired
+    private FileDataSourceConnector fileConnector;
+    
+    @Autowired
+    private MicroBatchPipeline pipeline;
+    
+    @Autowired
+    private JobRepository jobRepository;
+    
+    @Autowired
+    private JobLogRepository jobLogRepository;
+    
+    @Autowired
+    private JobFileProgressRepository progressRepository;
+    
+    @Autowired
+    private DataStatisticsRepository dataStatisticsRepository;
+    
+    @Value("${app.file.tail.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+    
+    @Value("${app.file.tail.max-batch-bytes:8388608}")
+    private int maxBatchBytes;
+    
+    private final Map<Long, TailTask> tasks = new ConcurrentHashMap<>();
+    
+    /**
+     * Start tailing the files of a job
+     * @param job The job to run
+     */
+    public void start(Job job) {
+        if (!"FILE".equals(job.getSourceType())) {
+            throw new IllegalArgumentException("Tail mode is only supported for FILE sources, got: " + job.getSourceType());
+        }
+        if (!"CSV".equalsIgnoreCase(job.getSourceFormat()) && !"JSON".equalsIgnoreCase(job.getSourceFormat())) {
+            throw new IllegalArgumentException("Tail mode supports CSV and NDJSON (JSON) files, got: " + job.getSourceFormat());
+        }
+        
+        TailTask task = new TailTask(job);
+        if (tasks.putIfAbsent(job.getId(), task) != null) {
+            log.info("Tail job {} is already running", job.getId());
+            return;
+        }
+        
+        Thread thread = new Thread(task, "FileTail-" + job.getId());
+        task.thread = thread;
+        thread.start();
+        log.info("Started tailing {} for job {}", job.getSourceLocation(), job.getId());
+    }
+    
+    /**
+     * Stop a tail job after the chunk it is currently storing
+     * @param jobId The job ID
+     * @return True if the job was running
+     */
+    public boolean stop(Long jobId) {
+        TailTask task = tasks.get(jobId);
+        if (task == null) {
+            return false;
+        }
+        task.running = false;
+        return true;
+    }
+    
+    /**
+     * Check whether a tail job is running in this instance
+     * @param jobId The job ID
+     * @return True if running
+     */
+    public boolean isRunning(Long jobId) {
+        return tasks.containsKey(jobId);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        tasks.values().forEach(task -> task.running = false);
+        for (TailTask task : tasks.values()) {
+            try {
+                task.thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private void logJobEvent(Job job, String level, String message) {
+        jobLogRepository.save(JobLog.builder()
+                .job(job)
+                .logLevel(level)
+                .message(message)
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
+    
+    private static String fileKey(BasicFileAttributes attributes) {
+        // Null on file systems without inodes; rotation is then detected by the file shrinking
+        return attributes.fileKey() != null ? attributes.fileKey().toString() : null;
+    }
+    
+    /**
+     * Watch loop for one tail job
+     */
+    private class TailTask implements Runnable {
+        
+        private final Job job;
+        private final boolean csv;
+        private final Map<Path, TailedFile> files = new LinkedHashMap<>();
+        private volatile boolean running = true;
+        private Exception failure;
+        private Thread thread;
+        
+        TailTask(Job job) {
+            this.job = job;
+            this.csv = "CSV".equalsIgnoreCase(job.getSourceFormat());
+        }
+        
+        @Override
+        public void run() {
+            try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+                Path directory = watchDirectory();
+                directory.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+                loadProgress();
+                
+                boolean rescan = true;
+                List<Path> changed = null;
+                while (running) {
+                    if (rescan) {
+                        discoverFiles();
+                    }
+                    // Read everything on a timeout, in case events were missed or the file system does not deliver them
+                    for (TailedFile file : files.values()) {
+                        if (changed == null || changed.contains(file.path)) {
+                            readAppended(file);
+                        }
+                    }
+                    
+                    WatchKey key = watcher.poll(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    rescan = false;
+                    changed = null;
+                    if (key != null) {
+                        changed = new ArrayList<>();
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.kind() == OVERFLOW) {
+                                rescan = true;
+                                changed = null;
+                                break;
+                            }
+                            Path path = directory.resolve((Path) event.context()).toAbsolutePath().normalize();
+                            rescan |= event.kind() == ENTRY_CREATE;
+                            changed.add(path);
+                        }
+                        if (rescan) {
+                            changed = null;
+                        }
+                        key.reset();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                tasks.remove(job.getId());
+                finish();
+            }
+        }
+        
+        /**
+         * The directory to watch; files matched by a ** glob in subdirectories are picked up by the periodic read
+         */
+        private Path watchDirectory() {
+            String location = job.getSourceLocation();
+            if (fileConnector.isMultiFile(location)) {
+                return fileConnector.baseDirectory(location);
+            }
+            Path parent = Paths.get(location).toAbsolutePath().getParent();
+            return parent != null ? parent : Paths.get(".");
+        }
+        
+        private void loadProgress() {
+            for (JobFileProgress progress : progressRepository.findByJobId(job.getId())) {
+                Path path = Paths.get(progress.getFilePath());
+                files.put(path, new TailedFile(path, progress));
+            }
+        }
+        
+        private void discoverFiles() throws IOException {
+            String location = job.getSourceLocation();
+            List<Path> paths = fileConnector.isMultiFile(location)
+                    ? fileConnector.resolveFiles(location, csv ? job.getSourceFormat() : null)
+                    : List.of(Paths.get(location));
+            for (Path found : paths) {
+                if (!csv && !NDJSON_EXTENSION.matcher(found.getFileName().toString()).find()) {
+                    continue;
+                }
+                Path path = found.toAbsolutePath().normalize();
+                files.computeIfAbsent(path, key -> new TailedFile(key, JobFileProgress.builder()
+                        .job(job)
+                        .filePath(key.toString())
+                        .status(TAILING)
+                        .byteOffset(0L)
+                        .recordsProcessed(0L)
+                        .build()));
+            }
+        }
+        
+        /**
+         * Ingest the complete records appended to a file since the last read
+         */
+        private void readAppended(TailedFile file) throws Exception {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file.path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // Rotated away and not yet recreated
+                return;
+            }
+            
+            JobFileProgress progress = file.progress;
+            String key = fileKey(attributes);
+            long offset = progress.getByteOffset() != null ? progress.getByteOffset() : 0;
+            boolean replaced = progress.getFileKey() != null && key != null && !key.equals(progress.getFileKey());
+            if (replaced || attributes.size() < offset) {
+                log.info("File {} was rotated or truncated, reading it from the start", file.path);
+                if (replaced) {
+                    findRotated(file.path, progress.getFileKey())
+                            .ifPresent(rotated -> readFrom(file, rotated, true));
+                }
+                offset = 0;
+                progress.setByteOffset(0L);
+                file.header = null;
+            }
+            progress.setFileKey(key);
+            
+            while (running && attributes.size() > offset) {
+                if (csv && file.header == null) {
+                    file.header = readHeader(file.path);
+                    if (file.header == null) {
+                        return;
+                    }
+                    if (offset == 0) {
+                        offset = file.header.length;
+                        progress.setByteOffset(offset);
+                    }
+                }
+                long consumed = readChunk(file, file.path, offset, attributes.size(), false);
+                if (consumed == 0) {
+                    // Only a partial record so far
+                    return;
+                }
+                offset += consumed;
+            }
+            
+            progress.setFileSize(attributes.size());
+            progress.setLastModified(attributes.lastModifiedTime().toMillis());
+        }
+        
+        private void readFrom(TailedFile file, Path rotated, boolean includePartial) {
+            try {
+                if (csv && file.header == null) {
+                    file.header = readHeader(rotated);
+                }
+                long offset = file.progress.getByteOffset();
+                long size = Files.size(rotated);
+                while (offset < size) {
+                    long consumed = readChunk(file, rotated, offset, size, includePartial);
+                    if (consumed == 0) {
+                        break;
+                    }
+                    offset += consumed;
+                }
+                log.info("Finished rotated file {} for job {}", rotated, job.getId());
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to finish rotated file " + rotated, e);
+            }
+        }
+        
+        private Optional<Path> findRotated(Path path, String previousKey) throws IOException {
+            Path directory = path.getParent();
+            try (Stream<Path> siblings = Files.list(directory)) {
+                return siblings.filter(Files::isRegularFile)
+                        .filter(sibling -> {
+                            try {
+                                return previousKey.equals(fileKey(Files.readAttributes(sibling, BasicFileAttributes.class)));
+                            } catch (IOException e) {
+                                return false;
+                            }
+                        })
+                        .findFirst();
+            }
+        }
+        
+        /**
+         * Read up to max-batch-bytes from an offset, store the complete records in it and save the new offset
+         * @return The number of bytes consumed, 0 if no complete record was available
+         */
+        private long readChunk(TailedFile file, Path path, long offset, long size, boolean includePartial) throws Exception {
+            long window = Math.min(size - offset, maxBatchBytes);
+            byte[] bytes;
+            int end;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (true) {
+                    ByteBuffer buffer = ByteBuffer.allocate((int) window);
+                    while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                        // Keep reading until the window is full or the end of the file is reached
+                    }
+                    bytes = buffer.array();
+                    end = lastNewline(bytes, buffer.position());
+                    if (end < 0 && includePartial) {
+                        end = buffer.position();
+                    }
+                    if (end >= 0 || window >= size - offset || window >= Integer.MAX_VALUE / 2) {
+                        break;
+                    }
+                    // A single record is longer than the window; widen it
+                    window = Math.min(size - offset, window * 2);
+                }
+            }
+            if (end < 0) {
+                return 0;
+            }
+            
+            long start = System.currentTimeMillis();
+            Payload payload = toPayload(file, bytes, end);
+            if (payload.records > 0) {
+                String result = pipeline.process(new ByteArrayResource(payload.data), job.getSourceFormat(),
+                        job.getTransformationType(), job.getTransformationConfig(),
+                        job.getDestinationType(), job.getDestinationLocation(), partName(file, offset));
+                log.debug("Tail job {} stored {} records from {}: {}", job.getId(), payload.records, path, result);
+                
+                dataStatisticsRepository.save(DataStatistics.builder()
+                        .job(job)
+                        .recordsProcessed((long) payload.records)
+                        .recordsFailed(0L)
+                        .bytesProcessed((long) end)
+                        .processingTimeMs(System.currentTimeMillis() - start)
+                        .timestamp(LocalDateTime.now())
+                        .build());
+            }
+            
+            // The offset is saved only after the records are stored, so a crash re-reads rather than loses them
+            JobFileProgress progress = file.progress;
+            progress.setByteOffset(offset + end);
+            long previousRecords = progress.getRecordsProcessed() != null ? progress.getRecordsProcessed() : 0;
+            progress.setRecordsProcessed(previousRecords + payload.records);
+            file.progress = progressRepository.save(progress);
+            return end;
+        }
+        
+        /**
+         * Build a pipeline payload from the complete lines in bytes[0, end):
+         * CSV lines under the file's header, or NDJSON lines wrapped in a JSON array
+         */
+        private Payload toPayload(TailedFile file, byte[] bytes, int end) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(end + 64);
+            if (csv) {
+                out.write(file.header, 0, file.header.length);
+            } else {
+                out.write('[');
+            }
+            
+            int records = 0;
+            int lineStart = 0;
+            for (int i = 0; i <= end; i++) {
+                if (i < end && bytes[i] != '\n') {
+                    continue;
+                }
+                int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+                if (lineEnd > lineStart) {
+                    if (!csv && records > 0) {
+                        out.write(',');
+                    }
+                    out.write(bytes, lineStart, lineEnd - lineStart);
+                    if (csv) {
+                        out.write('\n');
+                    }
+                    records++;
+                }
+                lineStart = i + 1;
+            }
+            
+            if (!csv) {
+                out.write(']');
+            }
+            return new Payload(out.toByteArray(), records);
+        }
+        
+        /**
+         * Part name for the chunk starting at an offset, stable across retries of the same chunk
+         * The file key is included so a rotated file does not reuse the parts of its predecessor.
+         */
+        private String partName(TailedFile file, long offset) {
+            String identity = file.path + "|" + file.progress.getFileKey();
+            UUID id = UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8));
+            return String.format("%016x-%d", id.getMostSignificantBits(), offset);
+        }
+        
+        private int lastNewline(byte[] bytes, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Read the header line of a CSV file including its line terminator
+         * @return The header bytes, or null while the header line is incomplete
+         */
+        private byte[] readHeader(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 64 * 1024));
+                channel.read(buffer, 0);
+                int end = -1;
+                for (int i = 0; i < buffer.position(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        end = i + 1;
+                        break;
+                    }
+                }
+                if (end < 0) {
+                    return null;
+                }
+                byte[] header = new byte[end];
+                buffer.get(0, header);
+                return header;
+            }
+        }
+        
+        private void finish() {
+            for (TailedFile file : files.values()) {
+                if (file.progress.getId() != null) {
+                    progressRepository.save(file.progress);
+                }
+            }
+            
+            Job current = jobRepository.findById(job.getId()).orElse(job);
+            current.setUpdatedAt(LocalDateTime.now());
+            if (failure == null) {
+                current.setStatus(JobStatus.COMPLETED);
+                current.setCompletedAt(LocalDateTime.now());
+                logJobEvent(current, "INFO", "Tail job stopped");
+                log.info("Tail job {} stopped", job.getId());
+            } else {
+                current.setRetryCount(current.getRetryCount() + 1);
+                current.setStatus(current.getRetryCount() >= current.getMaxRetries() ? JobStatus.FAILED : JobStatus.RETRYING);
+                logJobEvent(current, "ERROR", "Tail job failed: " + failure.getMessage());
+                log.error("Tail job {} failed", job.getId(), failure);
+            }
+            jobRepository.save(current);
+        }
+    }
+    
+    /**
+     * Read position of one tailed file
+     */
+    private static class TailedFile {
+        
+        private final Path path;
+        private JobFileProgress progress;
+        private byte[] header;
+        
+        TailedFile(Path path, JobFileProgress progress) {
+            this.path = path;
+            this.progress = progress;
+        }
+    }
+    
+    private record Payload(byte[] data, int records) {
+    }
+}
@@ -0,0 +1,354 @@
+package com.shrmagarv.tresatadis.service.source.file;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.shrmagarv.tresatadis.model.Job;
+import com.shrmagarv.tresatadis.model.JobFileProgress;
+import com.shrmagarv.tresatadis.repository.JobFileProgressRepository;
+import com.shrmagarv.tresatadis.service.csv.CsvReader;
+import com.shrmagarv.tresatadis.service.csv.CsvWriter;
+import com.shrmagarv.tresatadis.service.io.Compression;
+import com.shrmagarv.tresatadis.service.source.impl.FileDataSourceConnector;
+import com.shrmagarv.tresatadis.service.streaming.MicroBatchPipeline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingests FILE jobs whose source location is a directory or glob
+ * Small CSV and JSON files are coalesced into shared batches so they cost one storage call
+ * (one set of database batches) instead of one each; larger files are passed through as they are.
+ * Batches run in parallel on a bounded pool shared by all jobs, and each is stored as its own part
+ * (see DataStorage.partLocation) named after its first file, so file destinations are not overwritten.
+ * The outcome of every file is recorded in job_file_progress, and files completed by an earlier attempt
+ * are skipped on retry.
+ */
+@Service
+@Slf4j
+public class MultiFileIngestionService {
+    
+    private static final String COMPLETED = "COMPLETED";
+    private static final String FAILED = "FAILED";
+    
+    @Autowired
+    private MicroBatchPipeline pipeline;
+    
+    @Autowired
+    private JobFileProgressRepository progressRepository;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private FileDataSourceConnector fileConnector;
+    
+    @Value("${app.file.multi.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${app.file.multi.small-file-bytes:1048576}")
+    private long smallFileBytes;
+    
+    @Value("${app.file.multi.max-batch-bytes:16777216}")
+    private long maxBatchBytes;
+    
+    @Value("${app.file.multi.max-batch-files:1000}")
+    private int maxBatchFiles;
+    
+    private ExecutorService executor;
+    
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "FileIngest-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Ingest a set of files into the job's destination
+     * @param job The job
+     * @param files The files resolved from the job's source location
+     * @return Totals for the run
+     * @throws Exception If any file failed; completed files are recorded and will be skipped on retry
+     */
+    public Result ingest(Job job, List<Path> files) throws Exception {
+        Map<String, JobFileProgress> progress = new HashMap<>();
+        for (JobFileProgress entry : progressRepository.findByJobId(job.getId())) {
+            progress.put(entry.getFilePath(), entry);
+        }
+        
+        Result result = new Result(files.size());
+        List<SourceFile> pending = new ArrayList<>();
+        for (Path path : files) {
+            SourceFile file = SourceFile.of(path);
+            JobFileProgress previous = progress.get(file.key());
+            if (previous != null && COMPLETED.equals(previous.getStatus())
+                    && Objects.equals(previous.getFileSize(), file.size)
+                    && Objects.equals(previous.getLastModified(), file.lastModified)) {
+                result.skipped++;
+            } else {
+                pending.add(file);
+            }
+        }
+        
+        List<List<SourceFile>> batches = coalesce(pending, job.getSourceFormat());
+        log.info("Ingesting {} files for job {} in {} batches ({} already completed)",
+                pending.size(), job.getId(), batches.size(), result.skipped);
+        
+        List<CompletableFuture<Result>> futures = new ArrayList<>(batches.size());
+        for (List<SourceFile> batch : batches) {
+            futures.add(CompletableFuture.supplyAsync(() -> processBatch(job, batch, progress), executor));
+        }
+        for (CompletableFuture<Result> future : futures) {
+            result.add(future.join());
+        }
+        
+        if (result.failed > 0) {
+            throw new RuntimeException(String.format("%d of %d files failed (first error: %s)",
+                    result.failed, result.totalFiles, result.firstError));
+        }
+        return result;
+    }
+    
+    /**
+     * Group small files into batches, keeping large files on their own
+     * CSV files are only grouped with files that have the same header
+     */
+    private List<List<SourceFile>> coalesce(List<SourceFile> files, String sourceFormat) throws IOException {
+        boolean csv = "CSV".equalsIgnoreCase(sourceFormat);
+        boolean coalescable = csv || "JSON".equalsIgnoreCase(sourceFormat);
+        
+        List<List<SourceFile>> batches = new ArrayList<>();
+        List<SourceFile> current = new ArrayList<>();
+        long currentBytes = 0;
+        List<String> currentHeader = null;
+        
+        for (SourceFile file : files) {
+            if (!coalescable || file.size > smallFileBytes || file.compressed) {
+                batches.add(List.of(file));
+                continue;
+            }
+            
+            List<String> header = csv ? readHeader(file.path) : null;
+            if (!current.isEmpty() && (currentBytes + file.size > maxBatchBytes
+                    || current.size() >= maxBatchFiles || !Objects.equals(header, currentHeader))) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(file);
+            currentBytes += file.size;
+            currentHeader = header;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+    
+    /**
+     * Store one batch and record the outcome of its files
+     * If a coalesced batch fails, its files are retried one by one so a single bad file
+     * does not fail the rest
+     */
+    private Result processBatch(Job job, List<SourceFile> batch, Map<String, JobFileProgress> progress) {
+        Result result = new Result(batch.size());
+        try {
+            Payload payload = toPayload(batch, job.getSourceFormat());
+            String stored = pipeline.process(payload.data, job.getSourceFormat(), job.getTransformationType(),
+                    job.getTransformationConfig(), job.getDestinationType(), job.getDestinationLocation(),
+                    batch.get(0).partName());
+            
+            long records = MicroBatchPipeline.recordCount(stored);
+            for (int i = 0; i < batch.size(); i++) {
+                long fileRecords = batch.size() == 1 ? records : payload.recordCounts[i];
+                saveProgress(job, batch.get(i), progress, COMPLETED, fileRecords, null);
+                result.bytesProcessed += batch.get(i).size;
+            }
+            result.completed = batch.size();
+            result.recordsProcessed = records;
+        } catch (Exception e) {
+            if (batch.size() > 1) {
+                log.warn("Batch of {} files failed for job {}, retrying files individually: {}",
+                        batch.size(), job.getId(), e.getMessage());
+                Result individual = new Result(0);
+                for (SourceFile file : batch) {
+                    individual.add(processBatch(job, List.of(file), progress));
+                }
+                return individual;
+            }
+            
+            SourceFile file = batch.get(0);
+            log.error("Failed to ingest file {} for job {}", file.path, job.getId(), e);
+            saveProgress(job, file, progress, FAILED, 0, e.getMessage());
+            result.failed = 1;
+            result.firstError = file.path + ": " + e.getMessage();
+        }
+        return result;
+    }
+    
+    private Payload toPayload(List<SourceFile> batch, String sourceFormat) throws IOException {
+        long[] recordCounts = new long[batch.size()];
+        if (batch.size() == 1) {
+            return new Payload(fileConnector.openFile(batch.get(0).path, sourceFormat), recordCounts);
+        }
+        
+        if ("CSV".equalsIgnoreCase(sourceFormat)) {
+            // Keep the header of the first file only; the batch was formed so all headers match.
+            // Records are parsed rather than split on lines, so quoted fields may span lines.
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < batch.size(); i++) {
+                try (CsvReader reader = CsvReader.open(new FileSystemResource(batch.get(i).path))) {
+                    if (!reader.next()) {
+                        continue;
+                    }
+                    if (i == 0) {
+                        writeRecord(reader, out);
+                    }
+                    while (reader.next()) {
+                        writeRecord(reader, out);
+                        recordCounts[i]++;
+                    }
+                }
+            }
+            return new Payload(new ByteArrayResource(out.toByteArray()), recordCounts);
+        }
+        
+        ArrayNode records = objectMapper.createArrayNode();
+        for (int i = 0; i < batch.size(); i++) {
+            JsonNode node = objectMapper.readTree(batch.get(i).path.toFile());
+            if (node.isArray()) {
+                records.addAll((ArrayNode) node);
+                recordCounts[i] = node.size();
+            } else {
+                records.add(node);
+                recordCounts[i] = 1;
+            }
+        }
+        return new Payload(new ByteArrayResource(objectMapper.writeValueAsBytes(records)), recordCounts);
+    }
+    
+    private void saveProgress(Job job, SourceFile file, Map<String, JobFileProgress> progress,
+                              String status, long records, String error) {
+        JobFileProgress entry = progress.get(file.key());
+        if (entry == null) {
+            entry = JobFileProgress.builder()
+                    .job(job)
+                    .filePath(file.key())
+                    .build();
+        }
+        entry.setFileSize(file.size);
+        entry.setLastModified(file.lastModified);
+        entry.setStatus(status);
+        entry.setRecordsProcessed(records);
+        entry.setErrorMessage(error);
+        progressRepository.save(entry);
+    }
+    
+    private List<String> readHeader(Path path) throws IOException {
+        try (CsvReader reader = CsvReader.open(new FileSystemResource(path))) {
+            return reader.readRecord();
+        }
+    }
+    
+    private static void writeRecord(CsvReader reader, OutputStream out) throws IOException {
+        for (int i = 0; i < reader.getFieldCount(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            CsvWriter.writeField(reader.getField(i), reader.isEscaped(i), out);
+        }
+        out.write('\n');
+    }
+    
+    private record SourceFile(Path path, long size, long lastModified, boolean compressed) {
+        
+        static SourceFile of(Path path) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new SourceFile(path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    Compression.detect(path) != Compression.NONE);
+        }
+        
+        String key() {
+            return path.toAbsolutePath().normalize().toString();
+        }
+        
+        /**
+         * Part name for a batch starting with this file, stable across retries
+         */
+        String partName() {
+            UUID id = UUID.nameUUIDFromBytes(key().getBytes(StandardCharsets.UTF_8));
+            return String.format("%016x", id.getMostSignificantBits());
+        }
+    }
+    
+    private record Payload(Resource data, long[] recordCounts) {
+    }
+    
+    /**
+     * Totals for a multi-file run
+     */
+    @Getter
+    public static class Result {
+        private final int totalFiles;
+        private int skipped;
+        private int completed;
+        private int failed;
+        private long recordsProcessed;
+        private long bytesProcessed;
+        private String firstError;
+        
+        Result(int totalFiles) {
+            this.totalFiles = totalFiles;
+        }
+        
+        void add(Result other) {
+            completed += other.completed;
+            failed += other.failed;
+            recordsProcessed += other.recordsProcessed;
+            bytesProcessed += other.bytesProcessed;
+            if (firstError == null) {
+                firstError = other.firstError;
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Processed %d files (%d skipped as already completed, %d failed), inserted %d records",
+                    completed, skipped, failed, recordsProcessed);
+        }
+    }
+}
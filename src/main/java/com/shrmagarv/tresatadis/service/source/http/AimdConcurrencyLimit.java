@@ -0,0 +1,76 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+/**
+ * Additive-increase / multiplicative-decrease concurrency limit driven by response latency and overload signals
+ * The limit grows by roughly one per round trip while latency stays close to the best observed latency,
+ * shrinks gently when latency degrades and sharply when the upstream reports overload (429/503)
+ */
+public class AimdConcurrencyLimit {
+    
+    private static final long BASELINE_WINDOW_NANOS = 30_000_000_000L;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final double overloadBackoffRatio;
+    
+    private double limit;
+    private long baselineLatencyNanos = Long.MAX_VALUE;
+    private long candidateBaselineNanos = Long.MAX_VALUE;
+    private long baselineWindowEnd;
+    
+    public AimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                double latencyTolerance, double backoffRatio, double overloadBackoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.overloadBackoffRatio = overloadBackoffRatio;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.baselineWindowEnd = System.nanoTime() + BASELINE_WINDOW_NANOS;
+    }
+    
+    /**
+     * Record the outcome of a request and recompute the limit
+     * @param latencyNanos Observed request latency
+     * @param overloaded Whether the upstream signalled overload (429/503 or a connection failure)
+     * @param inFlight Requests in flight when the sample was taken
+     * @return The new limit
+     */
+    public synchronized int onSample(long latencyNanos, boolean overloaded, int inFlight) {
+        if (overloaded) {
+            limit = Math.max(minLimit, limit * overloadBackoffRatio);
+            return getLimit();
+        }
+        
+        updateBaseline(latencyNanos);
+        
+        if (latencyNanos > baselineLatencyNanos * latencyTolerance) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= limit) {
+            // Only probe for more capacity while the current limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+        return getLimit();
+    }
+    
+    /**
+     * The baseline is the lowest latency seen, re-learned every window so it can follow
+     * the upstream when its normal latency drifts
+     */
+    private void updateBaseline(long latencyNanos) {
+        long now = System.nanoTime();
+        candidateBaselineNanos = Math.min(candidateBaselineNanos, latencyNanos);
+        baselineLatencyNanos = Math.min(baselineLatencyNanos, latencyNanos);
+        if (now - baselineWindowEnd > 0) {
+            baselineLatencyNanos = candidateBaselineNanos;
+            candidateBaselineNanos = Long.MAX_VALUE;
+            baselineWindowEnd = now + BASELINE_WINDOW_NANOS;
+        }
+    }
+    
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+}
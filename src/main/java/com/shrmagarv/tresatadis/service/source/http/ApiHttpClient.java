@@ -0,0 +1,302 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled HTTP client used by the API source connector
+ * Connections are kept alive and multiplexed over HTTP/2 by the shared java.net.http.HttpClient.
+ * Traffic to each upstream host is shaped by a token-bucket rate limit and an AIMD concurrency limit
+ * that adapts to observed latency and 429/503 responses; Retry-After is honoured before retrying.
+ */
+@Service
+@Slf4j
+public class ApiHttpClient {
+    
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    
+    @Autowired
+    private HttpClient httpClient;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.api.http.request-timeout-ms:30000}")
+    private long requestTimeoutMs;
+    
+    @Value("${app.api.http.max-concurrency-per-host:16}")
+    private int maxConcurrencyPerHost;
+    
+    @Value("${app.api.adaptive.enabled:true}")
+    private boolean adaptiveEnabled;
+    
+    @Value("${app.api.adaptive.min-limit:1}")
+    private int adaptiveMinLimit;
+    
+    @Value("${app.api.adaptive.max-limit:128}")
+    private int adaptiveMaxLimit;
+    
+    @Value("${app.api.adaptive.latency-tolerance:2.0}")
+    private double latencyTolerance;
+    
+    @Value("${app.api.adaptive.backoff-ratio:0.9}")
+    private double backoffRatio;
+    
+    @Value("${app.api.adaptive.overload-backoff-ratio:0.5}")
+    private double overloadBackoffRatio;
+    
+    @Value("${app.api.rate-limit.default-requests-per-second:0}")
+    private double defaultRequestsPerSecond;
+    
+    @Value("${app.api.rate-limit.hosts:}")
+    private String hostRateLimits;
+    
+    @Value("${app.api.retry-after.max-retries:3}")
+    private int maxOverloadRetries;
+    
+    @Value("${app.api.retry-after.max-delay-ms:60000}")
+    private long maxRetryDelayMs;
+    
+    private final Map<String, UpstreamHost> upstreams = new ConcurrentHashMap<>();
+    private final Map<String, Double> rateLimitsByHost = new HashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        // Format: host=requestsPerSecond[,host=requestsPerSecond...]
+        for (String entry : hostRateLimits.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length == 2) {
+                rateLimitsByHost.put(parts[0].trim().toLowerCase(), Double.parseDouble(parts[1].trim()));
+            } else if (!entry.isBlank()) {
+                throw new IllegalArgumentException("Invalid host rate limit (expected host=rps): " + entry);
+            }
+        }
+    }
+    
+    /**
+     * Send a GET request asynchronously
+     * @param url The URL to fetch
+     * @return Future of the response
+     */
+    public CompletableFuture<HttpResponse<byte[]>> getAsync(String url) {
+        return sendAsync(requestBuilder(url).GET().build());
+    }
+    
+    /**
+     * Create a request builder with the configured request timeout
+     * @param url The URL to request
+     * @return The request builder
+     */
+    public HttpRequest.Builder requestBuilder(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(requestTimeoutMs));
+    }
+    
+    /**
+     * Send a request asynchronously
+     * The request waits for a per-host permit and rate-limit token, and is retried
+     * after the upstream's Retry-After delay when it answers 429 or 503
+     * @param request The request to send
+     * @return Future of the final response
+     */
+    public CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request) {
+        return sendAsync(request, upstreamFor(request.uri()), 0);
+    }
+    
+    private CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request, UpstreamHost upstream, int attempt) {
+        HostConcurrencyLimiter limiter = upstream.getLimiter();
+        
+        return limiter.acquire()
+                .thenCompose(permit -> delay(upstream.reserveSendDelay()))
+                .thenCompose(ready -> {
+                    long start = System.nanoTime();
+                    CompletableFuture<HttpResponse<byte[]>> future;
+                    try {
+                        future = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+                    } catch (RuntimeException e) {
+                        limiter.release();
+                        throw e;
+                    }
+                    return future.whenComplete((response, ex) -> {
+                        long elapsed = System.nanoTime() - start;
+                        upstream.onResponse(elapsed, ex != null || isOverloaded(response));
+                        limiter.release();
+                        recordMetrics(upstream.getKey(), response, ex, elapsed);
+                    });
+                })
+                .thenCompose(response -> {
+                    if (!isOverloaded(response) || attempt >= maxOverloadRetries) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    
+                    long waitNanos = retryDelayNanos(response, attempt);
+                    upstream.pauseFor(waitNanos);
+                    meterRegistry.counter("ingestion.api.client.throttled",
+                            "host", upstream.getKey(), "status", String.valueOf(response.statusCode())).increment();
+                    log.warn("Upstream {} answered {}, retrying in {} ms (attempt {} of {})",
+                            upstream.getKey(), response.statusCode(), TimeUnit.NANOSECONDS.toMillis(waitNanos),
+                            attempt + 1, maxOverloadRetries);
+                    return sendAsync(request, upstream, attempt + 1);
+                });
+    }
+    
+    /**
+     * Send a GET request and wait for the response
+     * @param url The URL to fetch
+     * @return The response
+     * @throws Exception If the request fails
+     */
+    public HttpResponse<byte[]> get(String url) throws Exception {
+        return await(getAsync(url));
+    }
+    
+    /**
+     * Send a request and wait for the response
+     * @param request The request to send
+     * @return The response
+     * @throws Exception If the request fails
+     */
+    public HttpResponse<byte[]> send(HttpRequest request) throws Exception {
+        return await(sendAsync(request));
+    }
+    
+    private HttpResponse<byte[]> await(CompletableFuture<HttpResponse<byte[]>> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Get the traffic control state for a host, creating it on first use
+     * @param uri A URI on the host
+     * @return The upstream host state
+     */
+    protected UpstreamHost upstreamFor(URI uri) {
+        return upstreams.computeIfAbsent(hostKey(uri), key -> {
+            HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(key, maxConcurrencyPerHost);
+            AimdConcurrencyLimit adaptiveLimit = adaptiveEnabled
+                    ? new AimdConcurrencyLimit(maxConcurrencyPerHost, adaptiveMinLimit, adaptiveMaxLimit,
+                            latencyTolerance, backoffRatio, overloadBackoffRatio)
+                    : null;
+            
+            double rate = rateLimitsByHost.getOrDefault(uri.getHost().toLowerCase(), defaultRequestsPerSecond);
+            TokenBucket tokenBucket = rate > 0 ? new TokenBucket(rate, rate) : null;
+            
+            Gauge.builder("ingestion.api.client.in.flight", limiter, HostConcurrencyLimiter::getInFlight)
+                    .tag("host", key)
+                    .register(meterRegistry);
+            Gauge.builder("ingestion.api.client.queued", limiter, HostConcurrencyLimiter::getQueued)
+                    .tag("host", key)
+                    .register(meterRegistry);
+            Gauge.builder("ingestion.api.client.concurrency.limit", limiter, HostConcurrencyLimiter::getLimit)
+                    .tag("host", key)
+                    .register(meterRegistry);
+            
+            log.info("Tracking upstream {} (rate limit: {}, adaptive concurrency: {})",
+                    key, rate > 0 ? rate + "/s" : "none", adaptiveEnabled);
+            return new UpstreamHost(key, limiter, adaptiveLimit, tokenBucket);
+        });
+    }
+    
+    private boolean isOverloaded(HttpResponse<byte[]> response) {
+        return response != null
+                && (response.statusCode() == TOO_MANY_REQUESTS || response.statusCode() == SERVICE_UNAVAILABLE);
+    }
+    
+    /**
+     * Work out how long to wait before retrying an overloaded request
+     * Uses Retry-After (delta-seconds or HTTP-date) when present, otherwise exponential backoff
+     */
+    private long retryDelayNanos(HttpResponse<byte[]> response, int attempt) {
+        long delayMs = parseRetryAfterMs(response.headers().firstValue("Retry-After").orElse(null))
+                .orElse(1000L << Math.min(attempt, 10));
+        return TimeUnit.MILLISECONDS.toNanos(Math.min(Math.max(0, delayMs), maxRetryDelayMs));
+    }
+    
+    /**
+     * Parse a Retry-After header
+     * @param header The header value (delta-seconds or HTTP-date), or null if absent
+     * @return The delay in milliseconds, or empty if the header is absent or invalid
+     */
+    static Optional<Long> parseRetryAfterMs(String header) {
+        if (header == null || header.isBlank()) {
+            return Optional.empty();
+        }
+        String value = header.trim();
+        try {
+            return Optional.of(Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Optional.of(Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt).toMillis());
+            } catch (DateTimeParseException ex) {
+                return Optional.empty();
+            }
+        }
+    }
+    
+    private CompletableFuture<Void> delay(long nanos) {
+        if (nanos <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS));
+    }
+    
+    private void recordMetrics(String host, HttpResponse<byte[]> response, Throwable ex, long elapsedNanos) {
+        String status = ex != null ? "IO_ERROR" : String.valueOf(response.statusCode());
+        Timer.builder("ingestion.api.client.requests")
+                .tag("host", host)
+                .tag("status", status)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(elapsedNanos));
+        
+        if (response != null && response.body() != null) {
+            DistributionSummary.builder("ingestion.api.client.response.bytes")
+                    .baseUnit("bytes")
+                    .tag("host", host)
+                    .register(meterRegistry)
+                    .record(response.body().length);
+        }
+        
+        if (ex != null) {
+            log.warn("API request to {} failed: {}", host, ex.getMessage());
+        }
+    }
+    
+    static String hostKey(URI uri) {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+}
@@ -0,0 +1,229 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Persistent cache of HTTP validators (ETag / Last-Modified) and payloads for API sources
+ * Validators are kept in an on-disk index; payloads live in a content store evicted in LRU order,
+ * and an evicted payload takes its validators with it so the index stays bounded too
+ */
+@Service
+@Slf4j
+public class ApiResponseCache {
+    
+    private static final String INDEX_FILE = "index.json";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Value("${app.api.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.api.cache.directory:${java.io.tmpdir}/tresata-dis/api-cache}")
+    private String directory;
+    
+    @Value("${app.api.cache.max-bytes:1073741824}")
+    private long maxBytes;
+    
+    @Value("${app.api.cache.not-modified-action:REUSE}")
+    private String notModifiedAction;
+    
+    private Path cacheDir;
+    private Map<String, CacheEntry> entries = new HashMap<>();
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        cacheDir = Paths.get(directory);
+        try {
+            Files.createDirectories(cacheDir);
+            Path index = cacheDir.resolve(INDEX_FILE);
+            if (Files.exists(index)) {
+                entries = objectMapper.readValue(index.toFile(), new TypeReference<HashMap<String, CacheEntry>>() {});
+                // Older indexes kept the validators of evicted payloads
+                entries.values().removeIf(entry -> entry.getSize() < 0);
+            }
+            log.info("API response cache loaded {} entries from {}", entries.size(), cacheDir);
+        } catch (IOException e) {
+            log.warn("Could not load API response cache index from {}, starting empty", cacheDir, e);
+            entries = new HashMap<>();
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Whether a 304 response should skip the job instead of reusing the cached payload
+     * @return True if not-modified sources are skipped
+     */
+    public boolean isSkipOnNotModified() {
+        return "SKIP".equalsIgnoreCase(notModifiedAction);
+    }
+    
+    /**
+     * Get the validators for a URL
+     * Entries whose payload file is missing are only returned in skip mode, since reuse needs the payload
+     * @param url The source URL
+     * @return The cache entry, if usable
+     */
+    public synchronized Optional<CacheEntry> getValidators(String url) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CacheEntry entry = entries.get(url);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!isSkipOnNotModified() && !Files.exists(cacheDir.resolve(entry.getContentFile()))) {
+            return Optional.empty();
+        }
+        return Optional.of(entry);
+    }
+    
+    /**
+     * Read the cached payload for a URL and mark it as recently used
+     * @param url The source URL
+     * @return The payload, or empty if it has been evicted
+     */
+    public synchronized Optional<byte[]> readPayload(String url) {
+        CacheEntry entry = entries.get(url);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payload = Files.readAllBytes(cacheDir.resolve(entry.getContentFile()));
+            entry.setLastAccess(System.currentTimeMillis());
+            saveIndex();
+            return Optional.of(payload);
+        } catch (IOException e) {
+            log.warn("Cached payload for {} is unavailable", url);
+            return Optional.empty();
+        }
+    }
+    
+    /**
+     * Mark a URL as seen again without changing its payload (used in skip mode)
+     * @param url The source URL
+     */
+    public synchronized void touch(String url) {
+        CacheEntry entry = entries.get(url);
+        if (entry != null) {
+            entry.setLastAccess(System.currentTimeMillis());
+            saveIndex();
+        }
+    }
+    
+    /**
+     * Store a fresh response
+     * Responses without validators are not cached since they can never be revalidated
+     * @param url The source URL
+     * @param etag The ETag header, if any
+     * @param lastModified The Last-Modified header, if any
+     * @param payload The response body
+     */
+    public synchronized void store(String url, String etag, String lastModified, byte[] payload) {
+        if (!enabled || (etag == null && lastModified == null) || payload.length > maxBytes) {
+            return;
+        }
+        String contentFile = contentFileName(url);
+        try {
+            Path target = cacheDir.resolve(contentFile);
+            Path temp = cacheDir.resolve(contentFile + ".tmp");
+            Files.write(temp, payload);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            
+            entries.put(url, new CacheEntry(etag, lastModified, contentFile, payload.length, System.currentTimeMillis()));
+            evictIfNeeded();
+            saveIndex();
+        } catch (IOException e) {
+            log.warn("Failed to cache API response for {}", url, e);
+        }
+    }
+    
+    private void evictIfNeeded() {
+        long total = 0;
+        for (CacheEntry entry : entries.values()) {
+            total += entry.getSize();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        
+        List<Map.Entry<String, CacheEntry>> stored = new ArrayList<>(entries.entrySet());
+        stored.sort((a, b) -> Long.compare(a.getValue().getLastAccess(), b.getValue().getLastAccess()));
+        for (Map.Entry<String, CacheEntry> entry : stored) {
+            if (total <= maxBytes) {
+                break;
+            }
+            CacheEntry evicted = entry.getValue();
+            try {
+                Files.deleteIfExists(cacheDir.resolve(evicted.getContentFile()));
+            } catch (IOException e) {
+                log.warn("Failed to delete evicted cache file {}", evicted.getContentFile());
+            }
+            total -= evicted.getSize();
+            // The validators go with the payload, so the index cannot outgrow the content store
+            entries.remove(entry.getKey());
+            log.debug("Evicted cached response for {}", entry.getKey());
+        }
+    }
+    
+    private void saveIndex() {
+        try {
+            Path temp = cacheDir.resolve(INDEX_FILE + ".tmp");
+            objectMapper.writeValue(temp.toFile(), entries);
+            Files.move(temp, cacheDir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to persist API response cache index", e);
+        }
+    }
+    
+    private String contentFileName(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8))) + ".bin";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Cached validators and payload location for a URL
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheEntry {
+        private String etag;
+        private String lastModified;
+        private String contentFile;
+        private long size;
+        private long lastAccess;
+    }
+}
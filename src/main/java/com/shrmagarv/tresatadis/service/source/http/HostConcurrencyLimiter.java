@@ -0,0 +1,92 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the number of in-flight requests against a single upstream host
+ * Permits are handed out asynchronously so callers never block a thread while waiting
+ */
+public class HostConcurrencyLimiter {
+    
+    private final String host;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int limit;
+    private int inFlight;
+    
+    public HostConcurrencyLimiter(String host, int limit) {
+        this.host = host;
+        this.limit = Math.max(1, limit);
+    }
+    
+    /**
+     * Acquire a permit for a request
+     * @return Future completed once the request may be sent
+     */
+    public CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (inFlight < limit && waiters.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.addLast(waiter);
+            return waiter;
+        }
+    }
+    
+    /**
+     * Release a permit and hand it to the next waiting request, if any
+     */
+    public void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            inFlight--;
+            next = pollRunnableWaiter();
+        }
+        if (next != null) {
+            next.complete(null);
+        }
+    }
+    
+    /**
+     * Change the concurrency limit, waking up waiters if the limit grew
+     * @param newLimit The new limit (at least 1)
+     */
+    public void setLimit(int newLimit) {
+        Deque<CompletableFuture<Void>> released = new ArrayDeque<>();
+        synchronized (this) {
+            this.limit = Math.max(1, newLimit);
+            CompletableFuture<Void> next;
+            while ((next = pollRunnableWaiter()) != null) {
+                released.add(next);
+            }
+        }
+        released.forEach(waiter -> waiter.complete(null));
+    }
+    
+    private CompletableFuture<Void> pollRunnableWaiter() {
+        if (inFlight < limit && !waiters.isEmpty()) {
+            inFlight++;
+            return waiters.pollFirst();
+        }
+        return null;
+    }
+    
+    public String getHost() {
+        return host;
+    }
+    
+    public synchronized int getLimit() {
+        return limit;
+    }
+    
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+    
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+}
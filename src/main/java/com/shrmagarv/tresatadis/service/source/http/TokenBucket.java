@@ -0,0 +1,59 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+/**
+ * Token bucket rate limiter
+ * Callers reserve a token and are told how long to wait for it instead of being blocked,
+ * so the bucket can be used from asynchronous request pipelines
+ */
+public class TokenBucket {
+    
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+    
+    /**
+     * @param permitsPerSecond Sustained rate
+     * @param burst Maximum number of tokens that can accumulate while idle
+     */
+    public TokenBucket(double permitsPerSecond, double burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + permitsPerSecond);
+        }
+        this.tokensPerNano = permitsPerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+    
+    /**
+     * Reserve one token
+     * The balance may go negative, which queues later callers behind this one
+     * @return Nanoseconds to wait before the reserved token may be used (0 if available now)
+     */
+    public synchronized long reserve() {
+        refill(System.nanoTime());
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens / tokensPerNano);
+    }
+    
+    /**
+     * Get the number of tokens currently available
+     * @return Available tokens (negative while callers are queued)
+     */
+    public synchronized double available() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+    
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = now;
+        }
+    }
+}
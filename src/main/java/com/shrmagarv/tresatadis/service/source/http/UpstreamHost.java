@@ -0,0 +1,68 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+/**
+ * Traffic control state for a single upstream host
+ * Combines the concurrency limiter, its adaptive limit, an optional token bucket
+ * and any pause requested by the upstream through Retry-After
+ */
+public class UpstreamHost {
+    
+    private final String key;
+    private final HostConcurrencyLimiter limiter;
+    private final AimdConcurrencyLimit adaptiveLimit;
+    private final TokenBucket tokenBucket;
+    private volatile long pausedUntilNanos = System.nanoTime();
+    
+    /**
+     * @param key The host key (scheme://host:port)
+     * @param limiter The concurrency limiter
+     * @param adaptiveLimit The adaptive limit, or null for a fixed limit
+     * @param tokenBucket The rate limit, or null if the host is not rate limited
+     */
+    public UpstreamHost(String key, HostConcurrencyLimiter limiter, AimdConcurrencyLimit adaptiveLimit, TokenBucket tokenBucket) {
+        this.key = key;
+        this.limiter = limiter;
+        this.adaptiveLimit = adaptiveLimit;
+        this.tokenBucket = tokenBucket;
+    }
+    
+    /**
+     * Reserve the right to send one request
+     * @return Nanoseconds to wait before sending
+     */
+    public long reserveSendDelay() {
+        long pauseDelay = pausedUntilNanos - System.nanoTime();
+        long rateDelay = tokenBucket != null ? tokenBucket.reserve() : 0;
+        return Math.max(0, Math.max(pauseDelay, rateDelay));
+    }
+    
+    /**
+     * Hold back all requests to this host for a while
+     * @param delayNanos How long to pause
+     */
+    public synchronized void pauseFor(long delayNanos) {
+        long until = System.nanoTime() + delayNanos;
+        if (until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+        }
+    }
+    
+    /**
+     * Feed a request outcome into the adaptive limit
+     * @param latencyNanos Observed latency
+     * @param overloaded Whether the upstream signalled overload
+     */
+    public void onResponse(long latencyNanos, boolean overloaded) {
+        if (adaptiveLimit != null) {
+            limiter.setLimit(adaptiveLimit.onSample(latencyNanos, overloaded, limiter.getInFlight()));
+        }
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public HostConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+}
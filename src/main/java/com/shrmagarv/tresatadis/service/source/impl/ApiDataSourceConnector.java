@@ -1,24 +1,35 @@
 package com.shrmagarv.tresatadis.service.source.impl;
 
+import com.shrmagarv.tresatadis.exception.SourceNotModifiedException;
 import com.shrmagarv.tresatadis.service.source.DataSourceConnector;
+import com.shrmagarv.tresatadis.service.source.http.ApiHttpClient;
+import com.shrmagarv.tresatadis.service.source.http.ApiResponseCache;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
 
 /**
  * Implementation of DataSourceConnector for API sources
+ * Sends conditional requests when validators from a previous run are cached
  */
 @Service
+@Slf4j
 public class ApiDataSourceConnector implements DataSourceConnector {
     
     private static final String SOURCE_TYPE = "API";
+    private static final int NOT_MODIFIED = 304;
+    
+    @Autowired
+    private ApiHttpClient apiHttpClient;
     
     @Autowired
-    private RestTemplate restTemplate;
+    private ApiResponseCache responseCache;
     
     @Override
     public String getSourceType() {
@@ -33,17 +44,51 @@ public class ApiDataSourceConnector implements DataSourceConnector {
     @Override
     public Resource extractData(String sourceLocation, String sourceFormat) throws Exception {
         // sourceLocation should be a URL
-        ResponseEntity<byte[]> response = restTemplate.exchange(
-                sourceLocation,
-                HttpMethod.GET,
-                null,
-                byte[].class
-        );
+        Optional<ApiResponseCache.CacheEntry> cached = responseCache.getValidators(sourceLocation);
+        HttpResponse<byte[]> response = apiHttpClient.send(buildRequest(sourceLocation, cached.orElse(null)));
         
-        if (response.getBody() == null) {
+        if (response.statusCode() == NOT_MODIFIED && cached.isPresent()) {
+            if (responseCache.isSkipOnNotModified()) {
+                responseCache.touch(sourceLocation);
+                throw new SourceNotModifiedException("API source not modified since last run: " + sourceLocation);
+            }
+            
+            Optional<byte[]> payload = responseCache.readPayload(sourceLocation);
+            if (payload.isPresent()) {
+                log.info("API source not modified, reusing cached payload for {}", sourceLocation);
+                return new ByteArrayResource(payload.get());
+            }
+            
+            // Payload was evicted between the lookup and the response, fetch it again unconditionally
+            response = apiHttpClient.send(buildRequest(sourceLocation, null));
+        }
+        
+        if (response.statusCode() >= 400) {
+            throw new RuntimeException("API request failed with status " + response.statusCode() + ": " + sourceLocation);
+        }
+        
+        if (response.body() == null || response.body().length == 0) {
             throw new RuntimeException("Received empty response from API: " + sourceLocation);
         }
         
-        return new ByteArrayResource(response.getBody());
+        responseCache.store(sourceLocation,
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null),
+                response.body());
+        
+        return new ByteArrayResource(response.body());
+    }
+    
+    private HttpRequest buildRequest(String url, ApiResponseCache.CacheEntry cached) {
+        HttpRequest.Builder builder = apiHttpClient.requestBuilder(url).GET();
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                builder.header("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                builder.header("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        return builder.build();
     }
 }
@@ -5,11 +5,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSetMetaData;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -37,9 +41,20 @@ public class DatabaseDataSourceConnector implements DataSourceConnector {
     
     @Override
     public Resource extractData(String sourceLocation, String sourceFormat) throws Exception {
-        // sourceLocation should be a SQL query
+        return extractData(sourceLocation, new Object[0], sourceFormat);
+    }
+    
+    /**
+     * Extract the results of a parameterized query
+     * @param query The SQL query
+     * @param parameters Values for the query's ? placeholders
+     * @param sourceFormat The format to write (CSV, JSON)
+     * @return Resource containing the data
+     * @throws Exception If extraction fails
+     */
+    public Resource extractData(String query, Object[] parameters, String sourceFormat) throws Exception {
         JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sourceLocation);
+        List<Map<String, Object>> results = jdbcTemplate.queryForList(query, parameters);
         
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         
@@ -90,4 +105,33 @@ public class DatabaseDataSourceConnector implements DataSourceConnector {
         
         return new ByteArrayResource(outputStream.toByteArray());
     }
+    
+    /**
+     * @return The string the database quotes identifiers with (blank if it does not support quoting)
+     * @throws Exception If the database metadata cannot be read
+     */
+    public String getIdentifierQuote() throws Exception {
+        return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getIdentifierQuoteString);
+    }
+    
+    /**
+     * Describe the columns a query returns without fetching any rows
+     * @param query The SQL query
+     * @return Column label to java.sql.Types code, in column order
+     * @throws IllegalArgumentException If a column label occurs more than once
+     */
+    public Map<String, Integer> describeColumns(String query) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return jdbcTemplate.query("SELECT * FROM (" + query + ") src WHERE 1 = 0", resultSet -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            Map<String, Integer> columns = new LinkedHashMap<>();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String label = metaData.getColumnLabel(i);
+                if (columns.put(label, metaData.getColumnType(i)) != null) {
+                    throw new IllegalArgumentException("Query returns more than one column labelled " + label);
+                }
+            }
+            return columns;
+        });
+    }
 }
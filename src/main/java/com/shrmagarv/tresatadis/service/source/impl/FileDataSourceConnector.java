@@ -1,22 +1,37 @@
 package com.shrmagarv.tresatadis.service.source.impl;
 
+import com.shrmagarv.tresatadis.service.io.CompressedFileResource;
+import com.shrmagarv.tresatadis.service.io.Compression;
 import com.shrmagarv.tresatadis.service.source.DataSourceConnector;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of DataSourceConnector for File sources
+ * The source location is a single file, a directory, or a glob such as data/in/*.csv.
+ * Gzip and zip files (detected by extension or magic bytes) are decompressed while they are read.
  */
 @Service
 public class FileDataSourceConnector implements DataSourceConnector {
     
     private static final String SOURCE_TYPE = "FILE";
+    private static final String GLOB_CHARS = "*?[{";
+    
+    @Value("${app.file.compression.async-threshold-bytes:8388608}")
+    private long asyncDecompressionThreshold;
     
     @Override
     public String getSourceType() {
@@ -30,6 +45,11 @@ public class FileDataSourceConnector implements DataSourceConnector {
     
     @Override
     public Resource extractData(String sourceLocation, String sourceFormat) throws Exception {
+        if (isMultiFile(sourceLocation)) {
+            throw new IllegalArgumentException(
+                    "Source location matches multiple files, resolve them with resolveFiles: " + sourceLocation);
+        }
+        
         Path path = Paths.get(sourceLocation);
         
         // Validate file exists and is readable
@@ -41,14 +61,117 @@ public class FileDataSourceConnector implements DataSourceConnector {
             throw new IllegalArgumentException("Cannot read file at: " + sourceLocation);
         }
         
-        // Validate file format by extension
-        String fileExtension = getExtension(path.toString()).toLowerCase();
-        if (sourceFormat != null && !sourceFormat.toLowerCase().equals(fileExtension)) {
+        // Validate file format by extension, looking through a compression extension (data.csv.gz)
+        Compression compression = Compression.detect(path);
+        String fileExtension = getExtension(Compression.stripExtension(path.getFileName().toString())).toLowerCase();
+        if (sourceFormat != null && compression != Compression.ZIP && !sourceFormat.toLowerCase().equals(fileExtension)
+                && !(compression == Compression.GZIP && fileExtension.isEmpty())) {
             throw new IllegalArgumentException(
                     "File format mismatch. Expected: " + sourceFormat + ", Found: " + fileExtension);
         }
         
-        return new FileSystemResource(path);
+        return openFile(path, compression, sourceFormat);
+    }
+    
+    /**
+     * Open a local file as a resource, decompressing it on the fly if it is compressed
+     * @param path The file
+     * @param sourceFormat The format of the (uncompressed) content
+     * @return The resource
+     * @throws IOException If the file cannot be read
+     */
+    public Resource openFile(Path path, String sourceFormat) throws IOException {
+        return openFile(path, Compression.detect(path), sourceFormat);
+    }
+    
+    private Resource openFile(Path path, Compression compression, String sourceFormat) {
+        if (compression == Compression.NONE) {
+            return new FileSystemResource(path);
+        }
+        return new CompressedFileResource(path, compression, sourceFormat, asyncDecompressionThreshold);
+    }
+    
+    /**
+     * Check whether a source location refers to a directory or glob rather than a single file
+     * @param sourceLocation The source location
+     * @return True if the location can match several files
+     */
+    public boolean isMultiFile(String sourceLocation) {
+        return globStart(sourceLocation) >= 0 || Files.isDirectory(Paths.get(sourceLocation));
+    }
+    
+    /**
+     * List the files a directory or glob location refers to
+     * A directory yields its regular files; a glob is matched against paths below its fixed prefix,
+     * with ** crossing directory boundaries. Only files whose extension matches the format are returned.
+     * @param sourceLocation The directory or glob
+     * @param sourceFormat The expected format, or null to accept any extension
+     * @return The matching files in path order
+     * @throws IOException If the directory cannot be listed
+     */
+    public List<Path> resolveFiles(String sourceLocation, String sourceFormat) throws IOException {
+        int globStart = globStart(sourceLocation);
+        Path baseDir = baseDirectory(sourceLocation);
+        PathMatcher matcher;
+        int maxDepth;
+        
+        if (globStart < 0) {
+            matcher = path -> true;
+            maxDepth = 1;
+        } else {
+            String pattern = sourceLocation.substring(lastSeparatorBefore(sourceLocation, globStart) + 1);
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            maxDepth = pattern.contains("**") ? Integer.MAX_VALUE : pattern.split("/").length;
+        }
+        
+        if (!Files.isDirectory(baseDir)) {
+            throw new IllegalArgumentException("Directory does not exist at: " + baseDir);
+        }
+        
+        try (Stream<Path> paths = Files.walk(baseDir, maxDepth)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(baseDir.relativize(path)))
+                    .filter(path -> sourceFormat == null || matchesFormat(path, sourceFormat))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Get the directory a multi-file location lists files from
+     * @param sourceLocation The directory or glob
+     * @return The directory itself, or for a glob the directory before its first wildcard
+     */
+    public Path baseDirectory(String sourceLocation) {
+        int globStart = globStart(sourceLocation);
+        if (globStart < 0) {
+            return Paths.get(sourceLocation);
+        }
+        // The base directory is everything up to the last separator before the first glob character
+        int lastSeparator = lastSeparatorBefore(sourceLocation, globStart);
+        return Paths.get(lastSeparator >= 0 ? sourceLocation.substring(0, lastSeparator + 1) : ".");
+    }
+    
+    private int lastSeparatorBefore(String sourceLocation, int index) {
+        String prefix = sourceLocation.substring(0, index);
+        return Math.max(prefix.lastIndexOf('/'), prefix.lastIndexOf(File.separatorChar));
+    }
+    
+    private boolean matchesFormat(Path path, String sourceFormat) {
+        String fileName = path.getFileName().toString();
+        // Archives are filtered by entry when they are read
+        return Compression.fromFileName(fileName) == Compression.ZIP
+                || sourceFormat.equalsIgnoreCase(getExtension(Compression.stripExtension(fileName)));
+    }
+    
+    private int globStart(String sourceLocation) {
+        for (int i = 0; i < sourceLocation.length(); i++) {
+            if (GLOB_CHARS.indexOf(sourceLocation.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
     }
     
     private String getExtension(String filename) {
@@ -0,0 +1,140 @@
+package com.shrmagarv.tresatadis.service.source.impl;
+
+import com.shrmagarv.tresatadis.service.source.DataSourceConnector;
+import com.shrmagarv.tresatadis.service.streaming.KafkaSourceSpec;
+import com.shrmagarv.tresatadis.service.streaming.MicroBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of DataSourceConnector for Kafka sources
+ * In batch mode a run drains the topic from the group's committed offsets up to the end offsets
+ * seen when the run started; the offsets are committed once the data has been stored.
+ * Long-running consumption is handled by STREAMING jobs instead.
+ */
+@Service
+@Slf4j
+public class KafkaDataSourceConnector implements DataSourceConnector {
+    
+    private static final String SOURCE_TYPE = "KAFKA";
+    
+    @Autowired
+    private ConsumerFactory<String, String> consumerFactory;
+    
+    @Value("${spring.kafka.consumer.group-id}")
+    private String defaultGroupId;
+    
+    @Value("${app.kafka.batch.max-records:1000000}")
+    private int maxRecords;
+    
+    @Value("${app.kafka.streaming.poll-timeout-ms:100}")
+    private long pollTimeoutMs;
+    
+    @Override
+    public String getSourceType() {
+        return SOURCE_TYPE;
+    }
+    
+    @Override
+    public boolean canHandle(String sourceType) {
+        return SOURCE_TYPE.equals(sourceType);
+    }
+    
+    @Override
+    public Resource extractData(String sourceLocation, String sourceFormat) throws Exception {
+        // sourceLocation should be a topic, optionally with parameters (see KafkaSourceSpec)
+        KafkaSourceSpec spec = KafkaSourceSpec.parse(sourceLocation, defaultGroupId);
+        int limit = spec.getMaxRecords() != null ? spec.getMaxRecords() : maxRecords;
+        MicroBatch batch = new MicroBatch(sourceFormat, spec.getCsvHeader());
+        
+        try (Consumer<String, String> consumer = createConsumer(spec)) {
+            List<TopicPartition> partitions = consumer.partitionsFor(spec.getTopic()).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .collect(Collectors.toList());
+            consumer.assign(partitions);
+            
+            Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(new HashSet<>(partitions));
+            for (TopicPartition partition : partitions) {
+                OffsetAndMetadata offset = committed.get(partition);
+                if (offset != null) {
+                    consumer.seek(partition, offset.offset());
+                }
+            }
+            
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            Set<TopicPartition> remaining = new HashSet<>(partitions);
+            remaining.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+            
+            while (!remaining.isEmpty() && batch.getRecordCount() < limit) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(pollTimeoutMs))) {
+                    TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                    if (record.offset() < endOffsets.get(partition)) {
+                        batch.add(record);
+                    }
+                }
+                remaining.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+            }
+        }
+        
+        log.info("Read {} records from Kafka topic {}", batch.getRecordCount(), spec.getTopic());
+        return new KafkaBatchResource(batch.toResource(), spec.getGroupId(), batch.getOffsets());
+    }
+    
+    @Override
+    public void commit(Resource data) throws Exception {
+        if (!(data instanceof KafkaBatchResource batchResource) || batchResource.getOffsets().isEmpty()) {
+            return;
+        }
+        KafkaSourceSpec spec = KafkaSourceSpec.builder().groupId(batchResource.getGroupId()).build();
+        try (Consumer<String, String> consumer = createConsumer(spec)) {
+            consumer.commitSync(batchResource.getOffsets());
+        }
+    }
+    
+    private Consumer<String, String> createConsumer(KafkaSourceSpec spec) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        return consumerFactory.createConsumer(spec.getGroupId(), null, "-batch", overrides);
+    }
+    
+    /**
+     * Batch payload that remembers the offsets to commit once it is stored
+     */
+    private static class KafkaBatchResource extends ByteArrayResource {
+        
+        private final String groupId;
+        private final Map<TopicPartition, OffsetAndMetadata> offsets;
+        
+        KafkaBatchResource(Resource data, String groupId, Map<TopicPartition, OffsetAndMetadata> offsets) throws Exception {
+            super(data.getContentAsByteArray());
+            this.groupId = groupId;
+            this.offsets = offsets;
+        }
+        
+        String getGroupId() {
+            return groupId;
+        }
+        
+        Map<TopicPartition, OffsetAndMetadata> getOffsets() {
+            return offsets;
+        }
+    }
+}
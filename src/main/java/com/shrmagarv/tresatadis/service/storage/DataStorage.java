@@ -29,4 +29,33 @@ public interface DataStorage {
      * @throws Exception If storage operation fails
      */
     String storeData(Resource data, String sourceFormat, String destinationLocation) throws Exception;
+    
+    /**
+     * Get the location for one part of a load that is stored in several calls
+     * (streaming micro-batches, tailed chunks, file batches)
+     * Storages that replace the destination on each call return a distinct location per part so parts
+     * do not overwrite each other; storages that append, such as a database table, keep the location
+     * @param destinationLocation The job's destination location
+     * @param part Identifier of the part, unique within the job
+     * @return The location to store the part at
+     */
+    default String partLocation(String destinationLocation, String part) {
+        return destinationLocation;
+    }
+    
+    /**
+     * Insert a part suffix before the file extension of a location
+     * For example "out/orders.json" becomes "out/orders-part-0-42.json"
+     * @param location The file location
+     * @param part The part identifier
+     * @return The location of the part
+     */
+    static String withPartSuffix(String location, String part) {
+        int separator = Math.max(Math.max(location.lastIndexOf('/'), location.lastIndexOf('\\')), location.lastIndexOf(':'));
+        int dot = location.lastIndexOf('.');
+        if (dot <= separator + 1) {
+            dot = location.length();
+        }
+        return location.substring(0, dot) + "-part-" + part + location.substring(dot);
+    }
 }
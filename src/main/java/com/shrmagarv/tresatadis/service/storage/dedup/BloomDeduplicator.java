@@ -0,0 +1,285 @@
+package com.shrmagarv.tresatadis.service.storage.dedup;
+
+import com.shrmagarv.tresatadis.service.sketch.BloomFilter;
+import com.shrmagarv.tresatadis.service.sketch.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Record-level deduplication of database loads using per-table Bloom filters
+ * Tables listed in app.storage.database.dedup.keys keep a Bloom filter of the key columns of every row
+ * loaded into them. The filter is kept in memory and, the first time a table is deduplicated, read from
+ * its file or built from the keys already in the table. The file is deleted when a load starts and
+ * written again once the load commits, so a crash in between leaves no file that misses committed keys
+ * and the next start rebuilds the filter. The file header records the key columns, their types and the
+ * filter sizing, and a file written for different settings is rebuilt too. A filter may hold keys of
+ * rolled-back loads; that only costs an extra verification query, never a lost record.
+ * Loads into the same deduplicated table run one at a time.
+ */
+@Service
+@Slf4j
+public class BloomDeduplicator {
+    
+    private static final int BOOTSTRAP_FETCH_SIZE = 10_000;
+    private static final int FILE_MAGIC = 0x42444631; // "BDF1"
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.storage.database.dedup.keys:}")
+    private String tableKeys;
+    
+    @Value("${app.storage.database.dedup.directory:${java.io.tmpdir}/tresata-dedup}")
+    private String directory;
+    
+    @Value("${app.storage.database.dedup.expected-records:10000000}")
+    private long expectedRecords;
+    
+    @Value("${app.storage.database.dedup.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+    
+    private final Map<String, List<String>> keyColumnsByTable = new HashMap<>();
+    private final Map<String, TableFilter> tables = new ConcurrentHashMap<>();
+    
+    /**
+     * Filter and lock of one table
+     */
+    static final class TableFilter {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private BloomFilter filter;
+        private String settings;
+        
+        private TableFilter(String name) {
+            this.name = name;
+        }
+        
+        String getName() {
+            return name;
+        }
+        
+        ReentrantLock getLock() {
+            return lock;
+        }
+        
+        BloomFilter getFilter() {
+            return filter;
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        // Format: table=column|column[,table=column...]
+        for (String entry : tableKeys.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length == 2 && !parts[1].isBlank()) {
+                List<String> columns = new ArrayList<>();
+                for (String column : parts[1].split("\\|")) {
+                    columns.add(column.trim());
+                }
+                keyColumnsByTable.put(parts[0].trim().toLowerCase(Locale.ROOT), List.copyOf(columns));
+            } else if (!entry.isBlank()) {
+                throw new IllegalArgumentException("Invalid dedup key (expected table=column|column): " + entry);
+            }
+        }
+        if (!keyColumnsByTable.isEmpty()) {
+            log.info("Deduplicating database loads into {}", keyColumnsByTable);
+        }
+    }
+    
+    /**
+     * Start deduplicating a load, waiting for any other load into the same table
+     * @param connection The load's connection
+     * @param tableName The destination table
+     * @param columns The columns of the loaded data, in input order
+     * @param columnTypes Column types from the destination schema
+     * @param pendingWrites Flushes the load's batched inserts
+     * @return The session, or null if the table is not deduplicated
+     * @throws Exception If the table's filter cannot be loaded or built
+     */
+    public DedupSession open(Connection connection, String tableName, List<String> columns,
+                             Map<String, String> columnTypes, DedupSession.PendingWrites pendingWrites) throws Exception {
+        List<String> keyColumns = keyColumnsByTable.get(tableName.toLowerCase(Locale.ROOT));
+        if (keyColumns == null) {
+            return null;
+        }
+        int[] keyIndexes = new int[keyColumns.size()];
+        String[] keyTypes = new String[keyColumns.size()];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            keyIndexes[i] = columns.indexOf(keyColumns.get(i));
+            if (keyIndexes[i] < 0) {
+                throw new IllegalArgumentException("Dedup key column '" + keyColumns.get(i) + "' of table "
+                        + tableName + " is not in the data");
+            }
+            keyTypes[i] = columnTypes.getOrDefault(keyColumns.get(i), "VARCHAR");
+        }
+        
+        String settings = settings(keyColumns, keyTypes);
+        TableFilter table = tables.computeIfAbsent(tableName.toLowerCase(Locale.ROOT), TableFilter::new);
+        table.lock.lock();
+        try {
+            if (table.filter == null || !settings.equals(table.settings)) {
+                table.filter = load(connection, table, keyColumns, keyTypes, settings);
+                table.settings = settings;
+            }
+            invalidate(table);
+        } catch (Exception e) {
+            table.lock.unlock();
+            throw e;
+        }
+        return new DedupSession(this, table, connection, keyColumns, keyIndexes, keyTypes, pendingWrites);
+    }
+    
+    /**
+     * Save a table's filter after a committed load
+     */
+    void save(TableFilter table, long newKeys, long duplicates, long falsePositives) {
+        meterRegistry.counter("ingestion.storage.dedup.records", "table", table.name, "result", "new").increment(newKeys);
+        meterRegistry.counter("ingestion.storage.dedup.records", "table", table.name, "result", "duplicate").increment(duplicates);
+        meterRegistry.counter("ingestion.storage.dedup.records", "table", table.name, "result", "false_positive").increment(falsePositives);
+        
+        BloomFilter filter = table.filter;
+        if (filter.getInsertions() > expectedRecords) {
+            log.warn("Dedup filter of {} holds {} keys, above the {} it is sized for (false-positive rate now {})",
+                    table.name, filter.getInsertions(), expectedRecords, filter.expectedFalsePositiveRate());
+        }
+        Path file = filterFile(table.name);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), table.name, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp);
+                 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+                data.writeInt(FILE_MAGIC);
+                data.writeUTF(table.settings);
+                filter.writeTo(data);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The in-memory filter stays current; the file was deleted when the load started, so a restart rebuilds it
+            log.warn("Failed to save dedup filter of {} to {}: {}", table.name, file, e.getMessage());
+        }
+    }
+    
+    /**
+     * Delete a table's filter file before a load changes the table
+     * Until the load commits and the file is written again, a crash leaves no file to trust.
+     */
+    private void invalidate(TableFilter table) throws IOException {
+        Files.deleteIfExists(filterFile(table.name));
+    }
+    
+    /**
+     * The settings a filter file must have been written with to be reused
+     */
+    private String settings(List<String> keyColumns, String[] keyTypes) {
+        StringBuilder settings = new StringBuilder();
+        for (int i = 0; i < keyTypes.length; i++) {
+            settings.append(i > 0 ? "|" : "").append(keyColumns.get(i)).append(':').append(keyTypes[i].toUpperCase(Locale.ROOT));
+        }
+        return settings.append(';').append(expectedRecords).append(';').append(falsePositiveRate).toString();
+    }
+    
+    private BloomFilter load(Connection connection, TableFilter table, List<String> keyColumns, String[] keyTypes,
+                             String settings) throws SQLException {
+        Path file = filterFile(table.name);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file);
+                 DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+                if (data.readInt() != FILE_MAGIC) {
+                    throw new IOException("not a dedup filter file");
+                }
+                String fileSettings = data.readUTF();
+                if (fileSettings.equals(settings)) {
+                    BloomFilter filter = BloomFilter.readFrom(data);
+                    log.info("Loaded dedup filter of {} with {} keys", table.name, filter.getInsertions());
+                    return filter;
+                }
+                log.info("Dedup filter {} was written for {}, rebuilding it from the table for {}", file, fileSettings, settings);
+            } catch (IOException e) {
+                log.warn("Dedup filter {} is unreadable, rebuilding it from the table: {}", file, e.getMessage());
+            }
+        }
+        
+        BloomFilter filter = BloomFilter.create(expectedRecords, falsePositiveRate);
+        String sql = "SELECT " + String.join(", ", keyColumns) + " FROM " + table.name;
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(BOOTSTRAP_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery(sql)) {
+                rows:
+                while (resultSet.next()) {
+                    long hash = 0;
+                    for (int i = 0; i < keyTypes.length; i++) {
+                        Object value = resultSet.getObject(i + 1);
+                        if (value == null) {
+                            continue rows;
+                        }
+                        Object key;
+                        try {
+                            key = normalize(value.toString(), keyTypes[i]);
+                        } catch (IllegalArgumentException e) {
+                            key = value.toString();
+                        }
+                        if (key == null) {
+                            continue rows;
+                        }
+                        hash = Hashing.combine(hash, Hashing.hash(key.toString()));
+                    }
+                    filter.put(hash);
+                }
+            }
+        }
+        log.info("Built dedup filter of {} from {} existing keys", table.name, filter.getInsertions());
+        return filter;
+    }
+    
+    private Path filterFile(String tableName) {
+        return Paths.get(directory).resolve(tableName.replaceAll("[^A-Za-z0-9_.-]", "_") + ".bloom");
+    }
+    
+    /**
+     * Convert a key value to the typed value it is stored as, so that a key reads the same from the
+     * input and from the table (e.g. "1.50" and 1.5 for DOUBLE)
+     * @return The value, or null for a null or empty value
+     */
+    static Object normalize(String value, String type) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return switch (type.toUpperCase(Locale.ROOT)) {
+            case "INTEGER", "INT" -> Integer.parseInt(value.trim());
+            case "LONG", "BIGINT" -> Long.parseLong(value.trim());
+            case "DOUBLE", "FLOAT" -> Double.parseDouble(value.trim());
+            case "BOOLEAN" -> Boolean.parseBoolean(value.trim());
+            case "DATE" -> java.sql.Date.valueOf(value.trim());
+            case "TIMESTAMP" -> java.sql.Timestamp.valueOf(value.trim());
+            default -> value;
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package com.shrmagarv.tresatadis.service.storage.dedup;
+
+import com.shrmagarv.tresatadis.service.sketch.BloomFilter;
+import com.shrmagarv.tresatadis.service.sketch.Hashing;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Duplicate check for one load into a table
+ * A key the table's Bloom filter has never seen is new without touching the database; only probable
+ * hits are verified with a lookup on the load's own connection, after flushing its pending batch so
+ * repeats within the load are found too. Holds the table's lock until closed.
+ */
+@Slf4j
+public class DedupSession implements AutoCloseable {
+    
+    /**
+     * Writes the load's batched inserts so the verification query can see them
+     */
+    @FunctionalInterface
+    public interface PendingWrites {
+        void flush() throws SQLException;
+    }
+    
+    private final BloomDeduplicator deduplicator;
+    private final BloomDeduplicator.TableFilter table;
+    private final Connection connection;
+    private final List<String> keyColumns;
+    private final int[] keyIndexes;
+    private final String[] keyTypes;
+    private final PendingWrites pendingWrites;
+    private final Object[] keyValues;
+    private PreparedStatement existsStatement;
+    private long newKeys;
+    private long duplicates;
+    private long falsePositives;
+    
+    DedupSession(BloomDeduplicator deduplicator, BloomDeduplicator.TableFilter table, Connection connection,
+                 List<String> keyColumns, int[] keyIndexes, String[] keyTypes, PendingWrites pendingWrites) {
+        this.deduplicator = deduplicator;
+        this.table = table;
+        this.connection = connection;
+        this.keyColumns = keyColumns;
+        this.keyIndexes = keyIndexes;
+        this.keyTypes = keyTypes;
+        this.pendingWrites = pendingWrites;
+        this.keyValues = new Object[keyIndexes.length];
+    }
+    
+    /**
+     * Check a record and remember its key
+     * Records with a null or empty key column are never treated as duplicates
+     * @param values The record's values by input column index
+     * @return True if a record with the same key is already in the table
+     * @throws SQLException If the verification query fails
+     */
+    public boolean isDuplicate(IntFunction<String> values) throws SQLException {
+        long hash = 0;
+        for (int i = 0; i < keyIndexes.length; i++) {
+            keyValues[i] = BloomDeduplicator.normalize(values.apply(keyIndexes[i]), keyTypes[i]);
+            if (keyValues[i] == null) {
+                return false;
+            }
+            hash = Hashing.combine(hash, Hashing.hash(keyValues[i].toString()));
+        }
+        
+        BloomFilter filter = table.getFilter();
+        if (!filter.mightContain(hash)) {
+            filter.put(hash);
+            newKeys++;
+            return false;
+        }
+        
+        pendingWrites.flush();
+        if (exists()) {
+            duplicates++;
+            return true;
+        }
+        falsePositives++;
+        return false;
+    }
+    
+    private boolean exists() throws SQLException {
+        if (existsStatement == null) {
+            StringBuilder sql = new StringBuilder("SELECT 1 FROM ").append(table.getName()).append(" WHERE ");
+            for (int i = 0; i < keyColumns.size(); i++) {
+                sql.append(i > 0 ? " AND " : "").append(keyColumns.get(i)).append(" = ?");
+            }
+            existsStatement = connection.prepareStatement(sql.toString());
+        }
+        for (int i = 0; i < keyValues.length; i++) {
+            existsStatement.setObject(i + 1, keyValues[i]);
+        }
+        try (ResultSet resultSet = existsStatement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+    
+    /**
+     * Persist the filter once the load is committed
+     */
+    public void commit() {
+        deduplicator.save(table, newKeys, duplicates, falsePositives);
+    }
+    
+    public long getDuplicates() {
+        return duplicates;
+    }
+    
+    /**
+     * Release the table
+     */
+    @Override
+    public void close() {
+        try {
+            if (existsStatement != null) {
+                existsStatement.close();
+            }
+        } catch (SQLException e) {
+            log.debug("Failed to close dedup lookup for {}: {}", table.getName(), e.getMessage());
+        } finally {
+            table.getLock().unlock();
+        }
+    }
+}
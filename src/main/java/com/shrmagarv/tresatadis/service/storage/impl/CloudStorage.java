@@ -110,6 +110,12 @@ public class CloudStorage implements DataStorage {
                 throw new IllegalArgumentException("Unsupported cloud provider: " + provider);
         }
     }
+    
+    @Override
+    public String partLocation(String destinationLocation, String part) {
+        // Uploading to an existing key replaces the object, so every part gets a key of its own
+        return DataStorage.withPartSuffix(destinationLocation, part);
+    }
 
     /**
      * Upload data to AWS S3
@@ -2,19 +2,23 @@ package com.shrmagarv.tresatadis.service.storage.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.csv.CsvReader;
+import com.shrmagarv.tresatadis.service.json.JsonRecordReader;
 import com.shrmagarv.tresatadis.service.storage.DataStorage;
+import com.shrmagarv.tresatadis.service.storage.dedup.BloomDeduplicator;
+import com.shrmagarv.tresatadis.service.storage.dedup.DedupSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.util.*;
+import java.util.function.IntFunction;
 
 /**
  * Implementation of DataStorage for database storage
@@ -28,6 +32,12 @@ public class DatabaseStorage implements DataStorage {
     @Autowired
     private DataSource dataSource;
     
+    @Autowired
+    private BloomDeduplicator deduplicator;
+    
+    @Value("${app.storage.database.batch-size:1000}")
+    private int batchSize;
+    
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     @Override
@@ -224,7 +234,7 @@ public class DatabaseStorage implements DataStorage {
         // Different handling based on source format
         if ("CSV".equalsIgnoreCase(sourceFormat)) {
             return storeCsvData(data, tableName, columnTypes);
-        } else if ("JSON".equalsIgnoreCase(sourceFormat)) {
+        } else if ("JSON".equalsIgnoreCase(sourceFormat) || "NDJSON".equalsIgnoreCase(sourceFormat)) {
             return storeJsonData(data, tableName, columnTypes);
         } else {
             throw new IllegalArgumentException("Unsupported format for database storage: " + sourceFormat);
@@ -232,15 +242,13 @@ public class DatabaseStorage implements DataStorage {
     }
     
     private String storeCsvData(Resource data, String tableName, Map<String, String> columnTypes) throws Exception {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(data.getInputStream()))) {
+        try (CsvReader reader = CsvReader.open(data)) {
             // Read headers
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
+            List<String> headers = reader.readRecord();
+            if (headers == null) {
                 throw new IllegalArgumentException("CSV file is empty");
             }
             
-            List<String> headers = parseCsvLine(headerLine);
-            
             // Validate headers against column types
             for (String header : headers) {
                 if (!columnTypes.containsKey(header)) {
@@ -271,21 +279,23 @@ public class DatabaseStorage implements DataStorage {
             
             sql.append(")");
             
-            // Insert data in batches
-            int batchSize = 100;
+            // Insert data in batches, committing once so the whole load is durable or not at all
             int totalRecords = 0;
+            long duplicates = 0;
             
             try (Connection conn = dataSource.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+                 PreparedStatement stmt = conn.prepareStatement(sql.toString());
+                 DedupSession dedup = deduplicator.open(conn, tableName, headers, columnTypes, stmt::executeBatch)) {
                 
-                String line;
+                conn.setAutoCommit(false);
                 int count = 0;
                 
-                while ((line = reader.readLine()) != null) {
-                    List<String> values = parseCsvLine(line);
-                    
-                    for (int i = 0; i < Math.min(headers.size(), values.size()); i++) {
-                        String value = values.get(i);
+                while (reader.next()) {
+                    if (dedup != null && dedup.isDuplicate(i -> i < reader.getFieldCount() ? reader.getString(i) : null)) {
+                        continue;
+                    }
+                    for (int i = 0; i < Math.min(headers.size(), reader.getFieldCount()); i++) {
+                        String value = reader.getString(i);
                         String type = columnTypes.get(headers.get(i));
                         
                         // Set parameter based on type
@@ -305,36 +315,43 @@ public class DatabaseStorage implements DataStorage {
                 if (count > 0) {
                     stmt.executeBatch();
                 }
+                commitOrRollback(conn);
+                if (dedup != null) {
+                    dedup.commit();
+                    duplicates = dedup.getDuplicates();
+                }
             }
             
-            return "Inserted " + totalRecords + " records into table " + tableName;
+            return insertedMessage(totalRecords, duplicates, tableName);
         }
     }
     
     private String storeJsonData(Resource data, String tableName, Map<String, String> columnTypes) throws Exception {
-        // Parse JSON
-        JsonNode rootNode = objectMapper.readTree(data.getInputStream());
-        
-        if (!rootNode.isArray()) {
-            throw new IllegalArgumentException("JSON data must be an array of objects");
-        }
-        
-        // Get all field names from the first object
-        List<String> fields = new ArrayList<>();
-        if (rootNode.size() > 0) {
-            JsonNode firstObject = rootNode.get(0);
-            for (Iterator<String> it = firstObject.fieldNames(); it.hasNext(); ) {
-                String field = it.next();
-                if (columnTypes.containsKey(field)) {
-                    fields.add(field);
+        // Stream records from a JSON array or NDJSON, holding one record at a time
+        try (JsonRecordReader reader = JsonRecordReader.open(objectMapper, data)) {
+            JsonNode record = nextObject(reader);
+            
+            // Get all field names from the first object
+            List<String> fields = new ArrayList<>();
+            if (record != null) {
+                for (Iterator<String> it = record.fieldNames(); it.hasNext(); ) {
+                    String field = it.next();
+                    if (columnTypes.containsKey(field)) {
+                        fields.add(field);
+                    }
                 }
             }
+            
+            if (fields.isEmpty()) {
+                return "No matching fields found in schema";
+            }
+            
+            return insertJsonRecords(reader, record, fields, tableName, columnTypes);
         }
-        
-        if (fields.isEmpty()) {
-            return "No matching fields found in schema";
-        }
-        
+    }
+    
+    private String insertJsonRecords(JsonRecordReader reader, JsonNode firstRecord, List<String> fields,
+                                     String tableName, Map<String, String> columnTypes) throws Exception {
         // Create SQL for insert
         StringBuilder sql = new StringBuilder("INSERT INTO ")
                 .append(tableName)
@@ -358,16 +375,21 @@ public class DatabaseStorage implements DataStorage {
         
         sql.append(")");
         
-        // Insert data in batches
-        int batchSize = 100;
+        // Insert data in batches, committing once so the whole load is durable or not at all
         int totalRecords = 0;
+        long duplicates = 0;
         
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+             PreparedStatement stmt = conn.prepareStatement(sql.toString());
+             DedupSession dedup = deduplicator.open(conn, tableName, fields, columnTypes, stmt::executeBatch)) {
             
+            conn.setAutoCommit(false);
             int count = 0;
             
-            for (JsonNode record : rootNode) {
+            for (JsonNode record = firstRecord; record != null; record = nextObject(reader)) {
+                if (dedup != null && dedup.isDuplicate(fieldValues(record, fields))) {
+                    continue;
+                }
                 for (int i = 0; i < fields.size(); i++) {
                     String field = fields.get(i);
                     JsonNode valueNode = record.get(field);
@@ -390,31 +412,48 @@ public class DatabaseStorage implements DataStorage {
             if (count > 0) {
                 stmt.executeBatch();
             }
+            commitOrRollback(conn);
+            if (dedup != null) {
+                dedup.commit();
+                duplicates = dedup.getDuplicates();
+            }
         }
         
-        return "Inserted " + totalRecords + " records into table " + tableName;
+        return insertedMessage(totalRecords, duplicates, tableName);
     }
     
-    private List<String> parseCsvLine(String line) {
-        List<String> result = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder field = new StringBuilder();
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                result.add(field.toString());
-                field.setLength(0);
-            } else {
-                field.append(c);
-            }
+    private IntFunction<String> fieldValues(JsonNode record, List<String> fields) {
+        return i -> {
+            JsonNode valueNode = record.get(fields.get(i));
+            return valueNode == null || valueNode.isNull() ? null : valueNode.asText();
+        };
+    }
+    
+    private String insertedMessage(int totalRecords, long duplicates, String tableName) {
+        return "Inserted " + totalRecords + " records into table " + tableName
+                + (duplicates > 0 ? " (skipped " + duplicates + " duplicates)" : "");
+    }
+    
+    private JsonNode nextObject(JsonRecordReader reader) throws Exception {
+        if (!reader.next()) {
+            return null;
+        }
+        JsonNode record = reader.getParser().readValueAsTree();
+        if (!record.isObject()) {
+            throw new IllegalArgumentException("JSON data must be an array of objects or newline-delimited objects");
+        }
+        return record;
+    }
+    
+    private void commitOrRollback(Connection conn) throws Exception {
+        try {
+            conn.commit();
+        } catch (Exception e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
-        
-        result.add(field.toString());
-        return result;
     }
     
     private void setParameter(PreparedStatement stmt, int index, String value, String type) throws Exception {
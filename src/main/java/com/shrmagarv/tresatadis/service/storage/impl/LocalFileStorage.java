@@ -58,4 +58,10 @@ public class LocalFileStorage implements DataStorage {
         
         return filePath.toString();
     }
+    
+    @Override
+    public String partLocation(String destinationLocation, String part) {
+        // Each store replaces the file, so every part gets a file of its own
+        return DataStorage.withPartSuffix(destinationLocation, part);
+    }
 }
@@ -0,0 +1,62 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parsed sourceLocation of a KAFKA job
+ * Format: topic[?group=groupId&header=col1,col2&maxRecords=n&maxBytes=n&lingerMs=n]
+ */
+@Data
+@Builder
+public class KafkaSourceSpec {
+    private String topic;
+    private String groupId;
+    private String csvHeader; // Header line for CSV records, which carry no header of their own
+    private Integer maxRecords;
+    private Long maxBytes;
+    private Long lingerMs;
+    
+    /**
+     * Parse a KAFKA source location
+     * @param sourceLocation The source location
+     * @param defaultGroupId Consumer group used when none is given
+     * @return The parsed spec
+     */
+    public static KafkaSourceSpec parse(String sourceLocation, String defaultGroupId) {
+        if (sourceLocation == null || sourceLocation.isBlank()) {
+            throw new IllegalArgumentException("Kafka source location must name a topic");
+        }
+        
+        String topic = sourceLocation;
+        Map<String, String> params = new HashMap<>();
+        int query = sourceLocation.indexOf('?');
+        if (query >= 0) {
+            topic = sourceLocation.substring(0, query);
+            for (String pair : sourceLocation.substring(query + 1).split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        
+        if (topic.isBlank()) {
+            throw new IllegalArgumentException("Kafka source location must name a topic: " + sourceLocation);
+        }
+        
+        return KafkaSourceSpec.builder()
+                .topic(topic.trim())
+                .groupId(params.getOrDefault("group", defaultGroupId + "-" + topic.trim()))
+                .csvHeader(params.get("header"))
+                .maxRecords(params.containsKey("maxRecords") ? Integer.valueOf(params.get("maxRecords")) : null)
+                .maxBytes(params.containsKey("maxBytes") ? Long.valueOf(params.get("maxBytes")) : null)
+                .lingerMs(params.containsKey("lingerMs") ? Long.valueOf(params.get("lingerMs")) : null)
+                .build();
+    }
+}
@@ -0,0 +1,386 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import com.shrmagarv.tresatadis.model.DataStatistics;
+import com.shrmagarv.tresatadis.model.Job;
+import com.shrmagarv.tresatadis.model.JobLog;
+import com.shrmagarv.tresatadis.model.JobStatus;
+import com.shrmagarv.tresatadis.repository.DataStatisticsRepository;
+import com.shrmagarv.tresatadis.repository.JobLogRepository;
+import com.shrmagarv.tresatadis.repository.JobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs STREAMING jobs that continuously ingest a Kafka topic
+ * Each job has a poll thread that accumulates records into micro-batches (by count, bytes or linger time)
+ * and a writer thread that transforms and bulk-stores them in order. Offsets are committed by the poll
+ * thread only after the writer reports the batch durable, giving at-least-once delivery.
+ * When the writer falls behind or the pipeline is under memory pressure the poll thread pauses its
+ * partitions instead of blocking, so it keeps polling and stays in the consumer group.
+ */
+@Service
+@Slf4j
+public class KafkaStreamingIngestionService {
+    
+    @Autowired
+    private ConsumerFactory<String, String> consumerFactory;
+    
+    @Autowired
+    private MicroBatchPipeline pipeline;
+    
+    @Autowired
+    private JobRepository jobRepository;
+    
+    @Autowired
+    private JobLogRepository jobLogRepository;
+    
+    @Autowired
+    private DataStatisticsRepository dataStatisticsRepository;
+    
+    @Autowired
+    private PipelineBackpressureMonitor backpressureMonitor;
+    
+    @Value("${spring.kafka.consumer.group-id}")
+    private String defaultGroupId;
+    
+    @Value("${app.kafka.streaming.batch.max-records:10000}")
+    private int maxBatchRecords;
+    
+    @Value("${app.kafka.streaming.batch.max-bytes:8388608}")
+    private long maxBatchBytes;
+    
+    @Value("${app.kafka.streaming.batch.linger-ms:500}")
+    private long lingerMs;
+    
+    @Value("${app.kafka.streaming.poll-timeout-ms:100}")
+    private long pollTimeoutMs;
+    
+    @Value("${app.kafka.streaming.max-poll-records:5000}")
+    private int maxPollRecords;
+    
+    @Value("${app.kafka.streaming.max-pending-batches:4}")
+    private int maxPendingBatches;
+    
+    private final Map<Long, StreamingTask> tasks = new ConcurrentHashMap<>();
+    
+    /**
+     * Start consuming for a streaming job
+     * @param job The job to run
+     */
+    public void start(Job job) {
+        if (!"KAFKA".equals(job.getSourceType())) {
+            throw new IllegalArgumentException("Streaming mode is only supported for KAFKA sources, got: " + job.getSourceType());
+        }
+        
+        KafkaSourceSpec spec = KafkaSourceSpec.parse(job.getSourceLocation(), defaultGroupId);
+        StreamingTask task = new StreamingTask(job, spec);
+        if (tasks.putIfAbsent(job.getId(), task) != null) {
+            log.info("Streaming job {} is already running", job.getId());
+            return;
+        }
+        
+        Thread thread = new Thread(task, "KafkaStream-" + job.getId());
+        task.pollThread = thread;
+        thread.start();
+        log.info("Started streaming job {} on topic {} (group {})", job.getId(), spec.getTopic(), spec.getGroupId());
+    }
+    
+    /**
+     * Stop a streaming job after flushing its current batch
+     * @param jobId The job ID
+     * @return True if the job was running
+     */
+    public boolean stop(Long jobId) {
+        StreamingTask task = tasks.get(jobId);
+        if (task == null) {
+            return false;
+        }
+        task.stop();
+        return true;
+    }
+    
+    /**
+     * Check whether a streaming job is running in this instance
+     * @param jobId The job ID
+     * @return True if running
+     */
+    public boolean isRunning(Long jobId) {
+        return tasks.containsKey(jobId);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        tasks.values().forEach(StreamingTask::stop);
+        for (StreamingTask task : tasks.values()) {
+            try {
+                task.pollThread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private Consumer<String, String> createConsumer(KafkaSourceSpec spec) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        return consumerFactory.createConsumer(spec.getGroupId(), null, "-stream", overrides);
+    }
+    
+    private void logJobEvent(Job job, String level, String message) {
+        jobLogRepository.save(JobLog.builder()
+                .job(job)
+                .logLevel(level)
+                .message(message)
+                .timestamp(LocalDateTime.now())
+                .build());
+    }
+    
+    /**
+     * Poll loop and ordered batch writer for one streaming job
+     */
+    private class StreamingTask implements Runnable {
+        
+        private final Job job;
+        private final KafkaSourceSpec spec;
+        private final ExecutorService writer;
+        private final AtomicInteger pendingBatches = new AtomicInteger();
+        private final Queue<Map<TopicPartition, OffsetAndMetadata>> durableOffsets = new ConcurrentLinkedQueue<>();
+        private volatile boolean running = true;
+        private volatile Exception failure;
+        private volatile Consumer<String, String> consumer;
+        private Thread pollThread;
+        private MicroBatch batch;
+        private long pausedAt;
+        private boolean paused;
+        
+        StreamingTask(Job job, KafkaSourceSpec spec) {
+            this.job = job;
+            this.spec = spec;
+            this.writer = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "KafkaStreamWriter-" + job.getId()));
+        }
+        
+        @Override
+        public void run() {
+            try (Consumer<String, String> kafkaConsumer = createConsumer(spec)) {
+                consumer = kafkaConsumer;
+                batch = newBatch();
+                kafkaConsumer.subscribe(List.of(spec.getTopic()), new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                        // Make everything read so far durable before another member takes over
+                        drain(kafkaConsumer);
+                    }
+                    
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                        log.info("Streaming job {} assigned partitions {}", job.getId(), partitions);
+                        if (paused) {
+                            // Newly assigned partitions start unpaused
+                            kafkaConsumer.pause(partitions);
+                        }
+                    }
+                });
+                
+                while (running && failure == null) {
+                    ConsumerRecords<String, String> records;
+                    try {
+                        records = kafkaConsumer.poll(Duration.ofMillis(pollTimeoutMs));
+                    } catch (WakeupException e) {
+                        // Raised by stop() to interrupt a blocking poll; fall through to the final drain
+                        break;
+                    }
+                    for (ConsumerRecord<String, String> record : records) {
+                        batch.add(record);
+                        if (batch.getRecordCount() >= maxRecords() || batch.getSizeBytes() >= maxBytes()) {
+                            submit(batch);
+                            batch = newBatch();
+                        }
+                    }
+                    if (batch.getAgeMillis() >= lingerMs()) {
+                        submit(batch);
+                        batch = newBatch();
+                    }
+                    commitDurable(kafkaConsumer);
+                    applyBackpressure(kafkaConsumer);
+                }
+                
+                if (failure == null) {
+                    drain(kafkaConsumer);
+                }
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                writer.shutdown();
+                tasks.remove(job.getId());
+                finish();
+            }
+        }
+        
+        void stop() {
+            running = false;
+            Consumer<String, String> current = consumer;
+            if (current != null) {
+                current.wakeup();
+            }
+        }
+        
+        private MicroBatch newBatch() {
+            return new MicroBatch(job.getSourceFormat(), spec.getCsvHeader());
+        }
+        
+        private int maxRecords() {
+            return spec.getMaxRecords() != null ? spec.getMaxRecords() : maxBatchRecords;
+        }
+        
+        private long maxBytes() {
+            return spec.getMaxBytes() != null ? spec.getMaxBytes() : maxBatchBytes;
+        }
+        
+        private long lingerMs() {
+            return spec.getLingerMs() != null ? spec.getLingerMs() : lingerMs;
+        }
+        
+        /**
+         * Hand a batch to the writer without blocking the poll thread
+         * applyBackpressure stops fetching once too many batches are pending, so at most one
+         * poll's worth of records can be queued beyond the limit
+         */
+        private void submit(MicroBatch toWrite) {
+            if (toWrite.isEmpty()) {
+                return;
+            }
+            long bytes = toWrite.getSizeBytes();
+            pendingBatches.incrementAndGet();
+            backpressureMonitor.batchQueued(bytes);
+            writer.execute(() -> {
+                try {
+                    // A failed batch must not be overtaken by later ones, or its offsets would be skipped
+                    if (failure == null) {
+                        write(toWrite);
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                } finally {
+                    pendingBatches.decrementAndGet();
+                    backpressureMonitor.batchCompleted(bytes);
+                }
+            });
+        }
+        
+        /**
+         * Pause all assigned partitions while the writer is saturated or the pipeline is overloaded,
+         * and resume once the writer has worked through half of its queue
+         */
+        private void applyBackpressure(Consumer<String, String> kafkaConsumer) {
+            int pending = pendingBatches.get();
+            boolean overloaded = backpressureMonitor.isOverloaded();
+            if (!paused && (pending >= maxPendingBatches || overloaded)) {
+                kafkaConsumer.pause(kafkaConsumer.assignment());
+                paused = true;
+                pausedAt = backpressureMonitor.recordPause(consumerName());
+            } else if (paused && pending <= maxPendingBatches / 2 && !overloaded) {
+                kafkaConsumer.resume(kafkaConsumer.paused());
+                paused = false;
+                backpressureMonitor.recordResume(consumerName(), pausedAt);
+            }
+        }
+        
+        private String consumerName() {
+            return "stream-" + job.getId();
+        }
+        
+        private void write(MicroBatch toWrite) throws Exception {
+            long start = System.currentTimeMillis();
+            String result = pipeline.process(toWrite.toResource(), job.getSourceFormat(), job.getTransformationType(),
+                    job.getTransformationConfig(), job.getDestinationType(), job.getDestinationLocation(),
+                    toWrite.getPartName());
+            durableOffsets.add(toWrite.getOffsets());
+            
+            dataStatisticsRepository.save(DataStatistics.builder()
+                    .job(job)
+                    .recordsProcessed((long) toWrite.getRecordCount())
+                    .recordsFailed(0L)
+                    .bytesProcessed(toWrite.getSizeBytes())
+                    .processingTimeMs(System.currentTimeMillis() - start)
+                    .timestamp(LocalDateTime.now())
+                    .build());
+            log.debug("Streaming job {} stored batch of {} records: {}", job.getId(), toWrite.getRecordCount(), result);
+        }
+        
+        /**
+         * Flush the open batch, wait for the writer to catch up and commit what is durable
+         */
+        private void drain(Consumer<String, String> kafkaConsumer) {
+            submit(batch);
+            batch = newBatch();
+            try {
+                // The writer is single-threaded, so this completes after every batch queued before it
+                writer.submit(() -> { }).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                failure = e;
+            }
+            commitDurable(kafkaConsumer);
+        }
+        
+        private void commitDurable(Consumer<String, String> kafkaConsumer) {
+            if (durableOffsets.isEmpty()) {
+                return;
+            }
+            Map<TopicPartition, OffsetAndMetadata> toCommit = new HashMap<>();
+            Map<TopicPartition, OffsetAndMetadata> offsets;
+            while ((offsets = durableOffsets.poll()) != null) {
+                toCommit.putAll(offsets);
+            }
+            kafkaConsumer.commitSync(toCommit);
+        }
+        
+        private void finish() {
+            Job current = jobRepository.findById(job.getId()).orElse(job);
+            current.setUpdatedAt(LocalDateTime.now());
+            if (failure == null) {
+                current.setStatus(JobStatus.COMPLETED);
+                current.setCompletedAt(LocalDateTime.now());
+                logJobEvent(current, "INFO", "Streaming job stopped");
+                log.info("Streaming job {} stopped", job.getId());
+            } else {
+                current.setRetryCount(current.getRetryCount() + 1);
+                current.setStatus(current.getRetryCount() >= current.getMaxRetries() ? JobStatus.FAILED : JobStatus.RETRYING);
+                logJobEvent(current, "ERROR", "Streaming job failed: " + failure.getMessage());
+                log.error("Streaming job {} failed", job.getId(), failure);
+            }
+            jobRepository.save(current);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Accumulates Kafka records into one payload in the job's source format
+ * Records are appended directly to the output buffer, so a flushed batch is a single
+ * contiguous document (a JSON array, or CSV lines under a header) ready for the transformer
+ */
+public class MicroBatch {
+    
+    private static final byte[] NEWLINE = {'\n'};
+    
+    private final String format;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    private final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    private long firstRecordAtMillis;
+    private int firstPartition;
+    private long firstOffset;
+    private int recordCount;
+    private boolean sealed;
+    
+    /**
+     * @param format The source format (JSON or CSV)
+     * @param csvHeader Header line for CSV batches
+     */
+    public MicroBatch(String format, String csvHeader) {
+        this.format = format.toUpperCase();
+        if ("CSV".equals(this.format)) {
+            if (csvHeader == null || csvHeader.isBlank()) {
+                throw new IllegalArgumentException("CSV Kafka sources need a header, e.g. topic?header=col1,col2");
+            }
+            write(csvHeader.getBytes(StandardCharsets.UTF_8));
+            write(NEWLINE);
+        } else if ("JSON".equals(this.format)) {
+            buffer.write('[');
+        } else {
+            throw new IllegalArgumentException("Unsupported format for Kafka sources: " + format);
+        }
+    }
+    
+    /**
+     * Append a record and remember its offset for the commit
+     * @param record The Kafka record
+     */
+    public void add(ConsumerRecord<String, String> record) {
+        if (sealed) {
+            throw new IllegalStateException("Cannot add records to a sealed batch");
+        }
+        if (offsets.isEmpty()) {
+            firstRecordAtMillis = System.currentTimeMillis();
+            firstPartition = record.partition();
+            firstOffset = record.offset();
+        }
+        if (record.value() != null) {
+            byte[] value = record.value().getBytes(StandardCharsets.UTF_8);
+            if ("JSON".equals(format)) {
+                if (recordCount > 0) {
+                    buffer.write(',');
+                }
+                write(value);
+            } else {
+                write(value);
+                write(NEWLINE);
+            }
+            recordCount++;
+        }
+        // The committed offset is the next one to read
+        offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+    }
+    
+    /**
+     * Build the payload for the pipeline
+     * The first call seals the batch, closing the JSON array; later calls return the same payload
+     * @return The batch data
+     */
+    public Resource toResource() {
+        if (!sealed) {
+            if ("JSON".equals(format)) {
+                buffer.write(']');
+            }
+            sealed = true;
+        }
+        return new ByteArrayResource(buffer.toByteArray());
+    }
+    
+    /**
+     * Identify the batch by its first record, so each batch of a job is stored as its own part
+     * @return The partition and offset of the first record, e.g. "0-1234"
+     */
+    public String getPartName() {
+        return firstPartition + "-" + firstOffset;
+    }
+    
+    public boolean isEmpty() {
+        return offsets.isEmpty();
+    }
+    
+    public int getRecordCount() {
+        return recordCount;
+    }
+    
+    public long getSizeBytes() {
+        return buffer.size();
+    }
+    
+    /**
+     * Time since the first record was added, used for the linger deadline
+     * @return Age in milliseconds, or 0 for an empty batch
+     */
+    public long getAgeMillis() {
+        return isEmpty() ? 0 : System.currentTimeMillis() - firstRecordAtMillis;
+    }
+    
+    public Map<TopicPartition, OffsetAndMetadata> getOffsets() {
+        return offsets;
+    }
+    
+    private void write(byte[] bytes) {
+        buffer.write(bytes, 0, bytes.length);
+    }
+}
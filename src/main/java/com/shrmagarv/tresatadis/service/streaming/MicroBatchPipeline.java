@@ -0,0 +1,95 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
+import com.shrmagarv.tresatadis.service.storage.DataStorage;
+import com.shrmagarv.tresatadis.service.storage.DataStorageFactory;
+import com.shrmagarv.tresatadis.service.transform.DataTransformer;
+import com.shrmagarv.tresatadis.service.transform.DataTransformerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs one micro-batch through the configured transformer and storage
+ * Returns only once the storage call has completed, so callers may treat the batch as durable afterwards
+ */
+@Service
+public class MicroBatchPipeline {
+    
+    @Autowired
+    private DataTransformerFactory transformerFactory;
+    
+    @Autowired
+    private DataStorageFactory storageFactory;
+    
+    /**
+     * Transform and store a batch
+     * @param data The batch payload
+     * @param sourceFormat The format of the payload
+     * @param transformationType The transformation to apply, or null
+     * @param transformationConfig The transformation configuration
+     * @param destinationType The destination type
+     * @param destinationLocation The destination location
+     * @return The storage result
+     * @throws Exception If transformation or storage fails
+     */
+    public String process(Resource data, String sourceFormat, String transformationType, String transformationConfig,
+                          String destinationType, String destinationLocation) throws Exception {
+        return process(data, sourceFormat, transformationType, transformationConfig, destinationType, destinationLocation, null);
+    }
+    
+    /**
+     * Transform and store one part of a load that is stored in several batches
+     * @param data The batch payload
+     * @param sourceFormat The format of the payload
+     * @param transformationType The transformation to apply, or null
+     * @param transformationConfig The transformation configuration
+     * @param destinationType The destination type
+     * @param destinationLocation The destination location
+     * @param part Identifier of the batch within the load (see DataStorage.partLocation), or null
+     * @return The storage result
+     * @throws Exception If transformation or storage fails
+     */
+    public String process(Resource data, String sourceFormat, String transformationType, String transformationConfig,
+                          String destinationType, String destinationLocation, String part) throws Exception {
+        Resource transformed = data;
+        String transformedFormat = sourceFormat;
+        if (transformationType != null && !transformationType.isEmpty()) {
+            DataTransformer transformer = transformerFactory.getTransformer(transformationType);
+            transformedFormat = transformer.getOutputFormat(sourceFormat, transformationConfig);
+            transformed = transformer.transform(data, sourceFormat, transformationConfig);
+        }
+        
+        try {
+            DataStorage storage = storageFactory.getStorage(destinationType);
+            String location = part != null ? storage.partLocation(destinationLocation, part) : destinationLocation;
+            return storage.storeData(transformed, transformedFormat, location);
+        } finally {
+            if (transformed != data) {
+                TempFileResource.release(transformed);
+            }
+        }
+    }
+    
+    /**
+     * Parse the record count from a storage result such as "Inserted 42 records into table t"
+     * @param result The storage result
+     * @return The number of records inserted, or 0 if the result does not report one
+     */
+    public static long recordCount(String result) {
+        if (result == null || !result.toLowerCase().contains("inserted")) {
+            return 0;
+        }
+        try {
+            String[] parts = result.split(" ");
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i].equalsIgnoreCase("inserted") && i + 1 < parts.length) {
+                    return Long.parseLong(parts[i + 1]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Ignore parsing error
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,188 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how much data the in-process pipeline is holding and tells Kafka consumers when to back off
+ * Load is the bytes and batches queued on streaming writers but not yet stored, plus old-generation heap
+ * occupancy after the last collection. Listeners that store synchronously do not report here, since their
+ * batches are released before the next poll. High and low watermarks give hysteresis so consumers are not
+ * paused and resumed on every poll. Paused consumers keep polling, which keeps their group membership alive.
+ */
+@Service
+@Slf4j
+public class PipelineBackpressureMonitor {
+    
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.kafka.backpressure.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.kafka.backpressure.max-pending-bytes:268435456}")
+    private long maxPendingBytes;
+    
+    @Value("${app.kafka.backpressure.resume-pending-bytes:134217728}")
+    private long resumePendingBytes;
+    
+    @Value("${app.kafka.backpressure.heap-high-watermark:0.85}")
+    private double heapHighWatermark;
+    
+    @Value("${app.kafka.backpressure.heap-low-watermark:0.70}")
+    private double heapLowWatermark;
+    
+    @Value("${app.kafka.backpressure.listener-ids:dataRecordListener}")
+    private String[] listenerIds;
+    
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong pendingBatches = new AtomicLong();
+    private final Map<String, Long> pausedListeners = new ConcurrentHashMap<>();
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private MemoryPoolMXBean tenuredPool;
+    private volatile boolean overloaded;
+    
+    @PostConstruct
+    public void init() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && (pool.getName().contains("Old") || pool.getName().contains("Tenured"))) {
+                tenuredPool = pool;
+            }
+        }
+        
+        Gauge.builder("ingestion.kafka.backpressure.pending.bytes", pendingBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.kafka.backpressure.pending.batches", pendingBatches, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("ingestion.kafka.backpressure.heap.usage", this, PipelineBackpressureMonitor::heapUsage)
+                .register(meterRegistry);
+        Gauge.builder("ingestion.kafka.backpressure.overloaded", this, monitor -> monitor.overloaded ? 1 : 0)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Record a batch queued for an asynchronous writer
+     * @param bytes The batch size in bytes
+     */
+    public void batchQueued(long bytes) {
+        pendingBatches.incrementAndGet();
+        if (pendingBytes.addAndGet(bytes) >= maxPendingBytes) {
+            evaluate();
+        }
+    }
+    
+    /**
+     * Record a batch the pipeline has finished with, whether it was stored or failed
+     * @param bytes The batch size in bytes
+     */
+    public void batchCompleted(long bytes) {
+        pendingBatches.decrementAndGet();
+        pendingBytes.addAndGet(-bytes);
+    }
+    
+    /**
+     * Check whether consumers should stop fetching
+     * @return True while the pipeline is above its high watermark and has not yet fallen below the low one
+     */
+    public boolean isOverloaded() {
+        return enabled && overloaded;
+    }
+    
+    /**
+     * Re-evaluate the watermarks and pause or resume the listener containers accordingly
+     */
+    @Scheduled(fixedDelayString = "${app.kafka.backpressure.check-interval-ms:500}")
+    public void checkListeners() {
+        if (!enabled) {
+            return;
+        }
+        boolean pause = evaluate();
+        for (String listenerId : listenerIds) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+            if (container == null || !container.isRunning()) {
+                continue;
+            }
+            
+            if (pause && !pausedListeners.containsKey(listenerId)) {
+                container.pause();
+                pausedListeners.put(listenerId, recordPause(listenerId));
+            } else if (!pause && pausedListeners.containsKey(listenerId)) {
+                container.resume();
+                recordResume(listenerId, pausedListeners.remove(listenerId));
+            }
+        }
+    }
+    
+    /**
+     * Record that a consumer has paused its partitions
+     * @param source The listener ID or streaming consumer name
+     * @return The pause start time, to pass to recordResume
+     */
+    public long recordPause(String source) {
+        meterRegistry.counter("ingestion.kafka.backpressure.events", "source", source, "action", "pause").increment();
+        log.warn("Pausing Kafka consumer {} (pending: {} batches, {} bytes, heap usage: {})",
+                source, pendingBatches.get(), pendingBytes.get(), String.format("%.2f", heapUsage()));
+        return System.nanoTime();
+    }
+    
+    /**
+     * Record that a consumer has resumed its partitions
+     * @param source The listener ID or streaming consumer name
+     * @param pausedAt The value returned by recordPause
+     */
+    public void recordResume(String source, long pausedAt) {
+        Duration paused = Duration.ofNanos(System.nanoTime() - pausedAt);
+        meterRegistry.counter("ingestion.kafka.backpressure.events", "source", source, "action", "resume").increment();
+        Timer.builder("ingestion.kafka.backpressure.paused.time")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(paused);
+        log.info("Resuming Kafka consumer {} after {} ms", source, paused.toMillis());
+    }
+    
+    private synchronized boolean evaluate() {
+        double heap = heapUsage();
+        if (overloaded) {
+            overloaded = pendingBytes.get() > resumePendingBytes || heap > heapLowWatermark;
+        } else {
+            overloaded = pendingBytes.get() >= maxPendingBytes || heap >= heapHighWatermark;
+        }
+        return overloaded;
+    }
+    
+    /**
+     * Old-generation occupancy after the last collection, which unlike raw heap usage
+     * does not count garbage that the next young collection would reclaim
+     */
+    private double heapUsage() {
+        MemoryUsage usage = tenuredPool != null && tenuredPool.getCollectionUsage() != null
+                ? tenuredPool.getCollectionUsage()
+                : memoryBean.getHeapMemoryUsage();
+        long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+        return max > 0 ? (double) usage.getUsed() / max : 0;
+    }
+}
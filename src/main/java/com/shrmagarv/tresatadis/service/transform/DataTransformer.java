@@ -29,4 +29,15 @@ public interface DataTransformer {
      * @throws Exception If transformation fails
      */
     Resource transform(Resource data, String sourceFormat, String transformationConfig) throws Exception;
+    
+    /**
+     * Get the format of the data produced by transform
+     * @param sourceFormat The format of the source data
+     * @param transformationConfig Configuration for the transformation (JSON)
+     * @return The output format; the source format unless the transformer converts between formats
+     * @throws Exception If the configuration is invalid
+     */
+    default String getOutputFormat(String sourceFormat, String transformationConfig) throws Exception {
+        return sourceFormat;
+    }
 }
@@ -0,0 +1,94 @@
+package com.shrmagarv.tresatadis.service.transform;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shrmagarv.tresatadis.service.convert.ConversionConfig;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled configs of a transformer by config text
+ * The least recently used config is evicted first. The record transformers (SORT, AGGREGATE, ENRICH,
+ * CHAIN) also carry the CONVERT writer options in their configs, which outputConfig resolves.
+ * @param <T> The compiled spec type
+ */
+public class TransformConfigCache<T> {
+    
+    private static final int MAX_CACHED_CONFIGS = 256;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Compiler<T> compiler;
+    private final List<String> specKeys;
+    private final Map<String, Compiled<T>> entries;
+    
+    /**
+     * @param compiler Compiles a parsed config into the transformer's spec
+     * @param specKeys The config keys the spec is built from, which are not writer options
+     */
+    public TransformConfigCache(Compiler<T> compiler, String... specKeys) {
+        this.compiler = compiler;
+        this.specKeys = List.of(specKeys);
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Compiled<T>> eldest) {
+                return size() > MAX_CACHED_CONFIGS;
+            }
+        });
+    }
+    
+    /**
+     * Get the compiled spec of a config, compiling it on first use
+     * @param transformationConfig The config text
+     * @return The spec
+     * @throws Exception If the config is not valid JSON or does not compile
+     */
+    public T spec(String transformationConfig) throws Exception {
+        return get(transformationConfig).spec;
+    }
+    
+    /**
+     * Writer settings: the CONVERT options of the config, targeting the source format by default
+     * @param transformationConfig The config text
+     * @param sourceFormat The format of the input
+     * @return A new conversion config, which the caller may modify
+     * @throws Exception If the config is not valid JSON or does not compile
+     */
+    public ConversionConfig outputConfig(String transformationConfig, String sourceFormat) throws Exception {
+        JsonNode configNode = get(transformationConfig).config;
+        ObjectNode options = configNode.isObject() ? ((ObjectNode) configNode).deepCopy() : objectMapper.createObjectNode();
+        options.remove(specKeys);
+        if (!options.hasNonNull("targetFormat")) {
+            options.put("targetFormat", sourceFormat);
+        }
+        return ConversionConfig.parse(options);
+    }
+    
+    private Compiled<T> get(String transformationConfig) throws Exception {
+        Compiled<T> compiled = entries.get(transformationConfig);
+        if (compiled == null) {
+            JsonNode configNode = objectMapper.readTree(transformationConfig);
+            compiled = new Compiled<>(configNode, compiler.compile(configNode));
+            entries.put(transformationConfig, compiled);
+        }
+        return compiled;
+    }
+    
+    /**
+     * Compiles a parsed config into a transformer's spec
+     * @param <T> The compiled spec type
+     */
+    @FunctionalInterface
+    public interface Compiler<T> {
+        T compile(JsonNode config) throws Exception;
+    }
+    
+    /**
+     * A parsed config and its spec; the config is only read, never modified
+     */
+    private record Compiled<T>(JsonNode config, T spec) {
+    }
+}
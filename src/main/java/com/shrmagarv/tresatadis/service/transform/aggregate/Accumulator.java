@@ -0,0 +1,431 @@
+package com.shrmagarv.tresatadis.service.transform.aggregate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.shrmagarv.tresatadis.service.sketch.Hashing;
+import com.shrmagarv.tresatadis.service.sketch.HyperLogLog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * State of one aggregate for every group of a GroupTable, held in primitive arrays indexed by group id
+ * Partial states merge, whether they come from another table (a parallel worker) or from a spill file.
+ */
+abstract class Accumulator {
+    
+    /**
+     * @param aggregate The aggregate
+     * @return A new accumulator for it
+     */
+    static Accumulator create(AggregateSpec.Aggregate aggregate) {
+        return switch (aggregate.op()) {
+            case COUNT -> new Count(aggregate.field() == null);
+            case SUM -> new Sum();
+            case MIN -> new MinMax(false);
+            case MAX -> new MinMax(true);
+            case AVG -> new Avg();
+            case APPROX_DISTINCT -> new Distinct(aggregate.precision());
+        };
+    }
+    
+    /**
+     * Make room for groups up to the capacity
+     */
+    abstract void grow(int capacity);
+    
+    /**
+     * Add a record's value to a group
+     * @param group The group id
+     * @param value The field value, null if the record has no such field
+     */
+    abstract void add(int group, JsonNode value);
+    
+    /**
+     * Merge another table's state for a group into this one
+     */
+    abstract void merge(int group, Accumulator other, int otherGroup);
+    
+    abstract void write(int group, DataOutput out) throws IOException;
+    
+    /**
+     * Merge state written by write into a group
+     */
+    abstract void mergeFrom(int group, DataInput in) throws IOException;
+    
+    abstract JsonNode result(int group);
+    
+    /**
+     * @return Approximate heap bytes per group
+     */
+    abstract int bytesPerGroup();
+    
+    /**
+     * Numeric value of a field; text is parsed, as CSV and XML values arrive as text
+     * @return The value, or NaN if it is missing or not a number
+     */
+    static double number(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return Double.NaN;
+        }
+        if (value.isNumber()) {
+            return value.doubleValue();
+        }
+        if (value.isTextual()) {
+            String text = value.textValue().trim();
+            if (!text.isEmpty()) {
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    return Double.NaN;
+                }
+            }
+        }
+        return Double.NaN;
+    }
+    
+    /**
+     * Integral numbers are output as integers, so counts and sums of integer fields stay integers
+     */
+    static JsonNode numberNode(double value, boolean integral) {
+        if (integral && value == Math.rint(value) && Math.abs(value) < 0x1p53) {
+            return LongNode.valueOf((long) value);
+        }
+        return DoubleNode.valueOf(value);
+    }
+    
+    static boolean isIntegral(double value) {
+        return value == Math.rint(value);
+    }
+    
+    private static final class Count extends Accumulator {
+        
+        private final boolean rows;
+        private long[] counts = new long[0];
+        
+        Count(boolean rows) {
+            this.rows = rows;
+        }
+        
+        @Override
+        void grow(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        
+        @Override
+        void add(int group, JsonNode value) {
+            if (rows || (value != null && !value.isNull())) {
+                counts[group]++;
+            }
+        }
+        
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            counts[group] += ((Count) other).counts[otherGroup];
+        }
+        
+        @Override
+        void write(int group, DataOutput out) throws IOException {
+            out.writeLong(counts[group]);
+        }
+        
+        @Override
+        void mergeFrom(int group, DataInput in) throws IOException {
+            counts[group] += in.readLong();
+        }
+        
+        @Override
+        JsonNode result(int group) {
+            return LongNode.valueOf(counts[group]);
+        }
+        
+        @Override
+        int bytesPerGroup() {
+            return 8;
+        }
+    }
+    
+    /**
+     * Sums integers exactly in a long until a fraction or an overflow moves the group to a double
+     */
+    private static final class Sum extends Accumulator {
+        
+        private long[] longSums = new long[0];
+        private double[] doubleSums = new double[0];
+        // 0 = no values, 1 = exact long sum, 2 = double sum
+        private byte[] states = new byte[0];
+        
+        @Override
+        void grow(int capacity) {
+            longSums = Arrays.copyOf(longSums, capacity);
+            doubleSums = Arrays.copyOf(doubleSums, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        
+        @Override
+        void add(int group, JsonNode value) {
+            double number = number(value);
+            if (Double.isNaN(number)) {
+                return;
+            }
+            if (value.isIntegralNumber() && value.canConvertToLong()) {
+                addLong(group, value.longValue());
+            } else if (isIntegral(number) && Math.abs(number) < 0x1p53) {
+                addLong(group, (long) number);
+            } else {
+                addDouble(group, number);
+            }
+        }
+        
+        private void addLong(int group, long value) {
+            if (states[group] == 2) {
+                doubleSums[group] += value;
+                return;
+            }
+            long sum = longSums[group] + value;
+            if (((longSums[group] ^ sum) & (value ^ sum)) < 0) {
+                // Overflow: continue in floating point
+                doubleSums[group] = (double) longSums[group] + value;
+                states[group] = 2;
+            } else {
+                longSums[group] = sum;
+                states[group] = 1;
+            }
+        }
+        
+        private void addDouble(int group, double value) {
+            if (states[group] != 2) {
+                doubleSums[group] = longSums[group];
+                states[group] = 2;
+            }
+            doubleSums[group] += value;
+        }
+        
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            Sum sum = (Sum) other;
+            merge(group, sum.states[otherGroup], sum.longSums[otherGroup], sum.doubleSums[otherGroup]);
+        }
+        
+        private void merge(int group, byte state, long longSum, double doubleSum) {
+            if (state == 1) {
+                addLong(group, longSum);
+            } else if (state == 2) {
+                addDouble(group, doubleSum);
+            }
+        }
+        
+        @Override
+        void write(int group, DataOutput out) throws IOException {
+            out.writeByte(states[group]);
+            out.writeLong(longSums[group]);
+            out.writeDouble(doubleSums[group]);
+        }
+        
+        @Override
+        void mergeFrom(int group, DataInput in) throws IOException {
+            merge(group, in.readByte(), in.readLong(), in.readDouble());
+        }
+        
+        @Override
+        JsonNode result(int group) {
+            return switch (states[group]) {
+                case 1 -> LongNode.valueOf(longSums[group]);
+                case 2 -> DoubleNode.valueOf(doubleSums[group]);
+                default -> NullNode.getInstance();
+            };
+        }
+        
+        @Override
+        int bytesPerGroup() {
+            return 17;
+        }
+    }
+    
+    private static final class MinMax extends Accumulator {
+        
+        private final boolean max;
+        private double[] values = new double[0];
+        // 0 = no values, 1 = integral values only, 2 = some fractional value
+        private byte[] states = new byte[0];
+        
+        MinMax(boolean max) {
+            this.max = max;
+        }
+        
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        
+        @Override
+        void add(int group, JsonNode value) {
+            double number = number(value);
+            if (!Double.isNaN(number)) {
+                accept(group, number, isIntegral(number) ? (byte) 1 : (byte) 2);
+            }
+        }
+        
+        private void accept(int group, double number, byte state) {
+            if (state == 0) {
+                return;
+            }
+            if (states[group] == 0 || (max ? number > values[group] : number < values[group])) {
+                values[group] = number;
+            }
+            states[group] = (byte) Math.max(states[group], state);
+        }
+        
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            MinMax minMax = (MinMax) other;
+            accept(group, minMax.values[otherGroup], minMax.states[otherGroup]);
+        }
+        
+        @Override
+        void write(int group, DataOutput out) throws IOException {
+            out.writeByte(states[group]);
+            out.writeDouble(values[group]);
+        }
+        
+        @Override
+        void mergeFrom(int group, DataInput in) throws IOException {
+            byte state = in.readByte();
+            accept(group, in.readDouble(), state);
+        }
+        
+        @Override
+        JsonNode result(int group) {
+            return states[group] == 0 ? NullNode.getInstance() : numberNode(values[group], states[group] == 1);
+        }
+        
+        @Override
+        int bytesPerGroup() {
+            return 9;
+        }
+    }
+    
+    private static final class Avg extends Accumulator {
+        
+        private double[] sums = new double[0];
+        private long[] counts = new long[0];
+        
+        @Override
+        void grow(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        
+        @Override
+        void add(int group, JsonNode value) {
+            double number = number(value);
+            if (!Double.isNaN(number)) {
+                sums[group] += number;
+                counts[group]++;
+            }
+        }
+        
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            Avg avg = (Avg) other;
+            sums[group] += avg.sums[otherGroup];
+            counts[group] += avg.counts[otherGroup];
+        }
+        
+        @Override
+        void write(int group, DataOutput out) throws IOException {
+            out.writeDouble(sums[group]);
+            out.writeLong(counts[group]);
+        }
+        
+        @Override
+        void mergeFrom(int group, DataInput in) throws IOException {
+            sums[group] += in.readDouble();
+            counts[group] += in.readLong();
+        }
+        
+        @Override
+        JsonNode result(int group) {
+            return counts[group] == 0 ? NullNode.getInstance() : DoubleNode.valueOf(sums[group] / counts[group]);
+        }
+        
+        @Override
+        int bytesPerGroup() {
+            return 16;
+        }
+    }
+    
+    /**
+     * Sketches are allocated on a group's first value
+     */
+    private static final class Distinct extends Accumulator {
+        
+        private final int precision;
+        private HyperLogLog[] sketches = new HyperLogLog[0];
+        
+        Distinct(int precision) {
+            this.precision = precision;
+        }
+        
+        @Override
+        void grow(int capacity) {
+            sketches = Arrays.copyOf(sketches, capacity);
+        }
+        
+        private HyperLogLog sketch(int group) {
+            HyperLogLog sketch = sketches[group];
+            if (sketch == null) {
+                sketch = new HyperLogLog(precision);
+                sketches[group] = sketch;
+            }
+            return sketch;
+        }
+        
+        @Override
+        void add(int group, JsonNode value) {
+            if (value != null && !value.isNull()) {
+                sketch(group).add(Hashing.hash(value.isValueNode() ? value.asText() : value.toString()));
+            }
+        }
+        
+        @Override
+        void merge(int group, Accumulator other, int otherGroup) {
+            HyperLogLog sketch = ((Distinct) other).sketches[otherGroup];
+            if (sketch != null) {
+                sketch(group).merge(sketch);
+            }
+        }
+        
+        @Override
+        void write(int group, DataOutput out) throws IOException {
+            HyperLogLog sketch = sketches[group];
+            out.writeBoolean(sketch != null);
+            if (sketch != null) {
+                sketch.writeTo(out);
+            }
+        }
+        
+        @Override
+        void mergeFrom(int group, DataInput in) throws IOException {
+            if (in.readBoolean()) {
+                sketch(group).mergeFrom(in);
+            }
+        }
+        
+        @Override
+        JsonNode result(int group) {
+            HyperLogLog sketch = sketches[group];
+            return LongNode.valueOf(sketch == null ? 0 : sketch.estimate());
+        }
+        
+        @Override
+        int bytesPerGroup() {
+            return 16 + (1 << precision);
+        }
+    }
+}
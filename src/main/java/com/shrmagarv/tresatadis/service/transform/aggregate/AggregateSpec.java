@@ -0,0 +1,93 @@
+package com.shrmagarv.tresatadis.service.transform.aggregate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shrmagarv.tresatadis.service.sketch.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Group keys and aggregates of an AGGREGATE config
+ * <pre>
+ *   {"groupBy": ["region", "day"],
+ *    "aggregates": [{"op": "COUNT", "as": "events"},
+ *                   {"op": "SUM", "field": "amount"},
+ *                   {"op": "APPROX_DISTINCT", "field": "user_id", "as": "users", "precision": 12}]}
+ * </pre>
+ * Ops are COUNT (rows, or non-null values of a field), SUM, MIN, MAX, AVG and APPROX_DISTINCT.
+ * The output name defaults to op_field (or "count").
+ */
+public class AggregateSpec {
+    
+    public enum Op { COUNT, SUM, MIN, MAX, AVG, APPROX_DISTINCT }
+    
+    /**
+     * One output aggregate
+     * @param op The aggregate function
+     * @param field The input field, null for COUNT of rows
+     * @param name The output name
+     * @param precision HyperLogLog precision for APPROX_DISTINCT
+     */
+    public record Aggregate(Op op, String field, String name, int precision) {
+    }
+    
+    private final List<String> groupBy;
+    private final List<Aggregate> aggregates;
+    
+    private AggregateSpec(List<String> groupBy, List<Aggregate> aggregates) {
+        this.groupBy = groupBy;
+        this.aggregates = aggregates;
+    }
+    
+    /**
+     * Parse an AGGREGATE config
+     * @param config The config
+     * @return The spec
+     * @throws IllegalArgumentException If the config is invalid
+     */
+    public static AggregateSpec parse(JsonNode config) {
+        List<String> groupBy = new ArrayList<>();
+        config.path("groupBy").forEach(field -> groupBy.add(field.asText()));
+        
+        List<Aggregate> aggregates = new ArrayList<>();
+        Set<String> names = new HashSet<>(groupBy);
+        for (JsonNode node : config.path("aggregates")) {
+            Op op;
+            try {
+                op = Op.valueOf(node.path("op").asText("").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown aggregate op: " + node.path("op").asText());
+            }
+            String field = node.hasNonNull("field") ? node.get("field").asText() : null;
+            if (field == null && op != Op.COUNT) {
+                throw new IllegalArgumentException(op + " requires a field");
+            }
+            String name = node.hasNonNull("as") ? node.get("as").asText()
+                    : field == null ? "count" : op.name().toLowerCase(Locale.ROOT) + "_" + field;
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("Duplicate output field: " + name);
+            }
+            int precision = node.path("precision").asInt(HyperLogLog.DEFAULT_PRECISION);
+            if (precision < 4 || precision > 18) {
+                throw new IllegalArgumentException("precision must be between 4 and 18: " + precision);
+            }
+            aggregates.add(new Aggregate(op, field, name, precision));
+        }
+        if (aggregates.isEmpty()) {
+            throw new IllegalArgumentException("AGGREGATE requires at least one aggregate");
+        }
+        return new AggregateSpec(Collections.unmodifiableList(groupBy), Collections.unmodifiableList(aggregates));
+    }
+    
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+    
+    public List<Aggregate> getAggregates() {
+        return aggregates;
+    }
+}
@@ -0,0 +1,232 @@
+package com.shrmagarv.tresatadis.service.transform.aggregate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shrmagarv.tresatadis.service.sketch.Hashing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash aggregation table
+ * Groups are found by open addressing with linear probing over a primitive long[] of key hashes and
+ * an int[] of group ids; the full key is only compared when the 64-bit hashes match. Aggregate state
+ * lives in per-aggregate primitive arrays indexed by group id, so adding a row allocates nothing
+ * unless it starts a new group.
+ */
+class GroupTable {
+    
+    private static final int EMPTY = -1;
+    private static final int BYTES_PER_SLOT = 12;
+    private static final int BYTES_PER_GROUP = 48;
+    
+    private final AggregateSpec spec;
+    private final String[] groupBy;
+    private final String[] fields;
+    private final Accumulator[] accumulators;
+    private final int accumulatorBytes;
+    
+    private long[] slotHashes;
+    private int[] slotGroups;
+    private int mask;
+    private JsonNode[][] keys;
+    private long[] groupHashes;
+    private int size;
+    private long keyBytes;
+    
+    GroupTable(AggregateSpec spec) {
+        this.spec = spec;
+        this.groupBy = spec.getGroupBy().toArray(new String[0]);
+        List<AggregateSpec.Aggregate> aggregates = spec.getAggregates();
+        this.fields = new String[aggregates.size()];
+        this.accumulators = new Accumulator[aggregates.size()];
+        int bytes = 0;
+        for (int i = 0; i < accumulators.length; i++) {
+            fields[i] = aggregates.get(i).field();
+            accumulators[i] = Accumulator.create(aggregates.get(i));
+            bytes += accumulators[i].bytesPerGroup();
+        }
+        this.accumulatorBytes = bytes;
+        clear();
+    }
+    
+    /**
+     * Add a record to its group
+     * @param record The record
+     */
+    void add(JsonNode record) {
+        JsonNode[] key = new JsonNode[groupBy.length];
+        long hash = 0;
+        for (int i = 0; i < groupBy.length; i++) {
+            JsonNode value = record.get(groupBy[i]);
+            key[i] = value == null ? NullNode.getInstance() : value;
+            hash = Hashing.combine(hash, hashKeyPart(key[i]));
+        }
+        
+        int group = findOrInsert(hash, key);
+        for (int i = 0; i < accumulators.length; i++) {
+            accumulators[i].add(group, fields[i] == null ? null : record.get(fields[i]));
+        }
+    }
+    
+    /**
+     * Merge all groups of another table into this one
+     * @param other A table for the same spec
+     */
+    void merge(GroupTable other) {
+        for (int g = 0; g < other.size; g++) {
+            int group = findOrInsert(other.groupHashes[g], other.keys[g]);
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i].merge(group, other.accumulators[i], g);
+            }
+        }
+    }
+    
+    private int findOrInsert(long hash, JsonNode[] key) {
+        int slot = (int) hash & mask;
+        while (slotGroups[slot] != EMPTY) {
+            int group = slotGroups[slot];
+            if (slotHashes[slot] == hash && Arrays.equals(keys[group], key)) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        int group = size++;
+        if (group == keys.length) {
+            growGroups(keys.length * 2);
+        }
+        keys[group] = key;
+        groupHashes[group] = hash;
+        for (JsonNode part : key) {
+            keyBytes += 40 + (part.isValueNode() ? 2L * part.asText().length() : 2L * part.toString().length());
+        }
+        slotHashes[slot] = hash;
+        slotGroups[slot] = group;
+        if (size * 4 > slotGroups.length * 3) {
+            rehash(slotGroups.length * 2);
+        }
+        return group;
+    }
+    
+    private void growGroups(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        groupHashes = Arrays.copyOf(groupHashes, capacity);
+        for (Accumulator accumulator : accumulators) {
+            accumulator.grow(capacity);
+        }
+    }
+    
+    private void rehash(int capacity) {
+        slotHashes = new long[capacity];
+        slotGroups = new int[capacity];
+        Arrays.fill(slotGroups, EMPTY);
+        mask = capacity - 1;
+        for (int group = 0; group < size; group++) {
+            int slot = (int) groupHashes[group] & mask;
+            while (slotGroups[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slotHashes[slot] = groupHashes[group];
+            slotGroups[slot] = group;
+        }
+    }
+    
+    /**
+     * Drop all groups and release the arrays
+     */
+    void clear() {
+        size = 0;
+        keyBytes = 0;
+        keys = new JsonNode[64][];
+        groupHashes = new long[64];
+        for (Accumulator accumulator : accumulators) {
+            accumulator.grow(0);
+            accumulator.grow(64);
+        }
+        rehash(128);
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    /**
+     * @return Approximate heap used by the groups, their keys and aggregate state
+     */
+    long estimateBytes() {
+        return (long) slotGroups.length * BYTES_PER_SLOT
+                + (long) keys.length * (BYTES_PER_GROUP + accumulatorBytes)
+                + keyBytes;
+    }
+    
+    /**
+     * @param group A group id
+     * @return The group's output record: key fields then aggregates
+     */
+    ObjectNode result(int group, ObjectMapper objectMapper) {
+        ObjectNode record = objectMapper.createObjectNode();
+        for (int i = 0; i < groupBy.length; i++) {
+            record.set(groupBy[i], keys[group][i]);
+        }
+        List<AggregateSpec.Aggregate> aggregates = spec.getAggregates();
+        for (int i = 0; i < accumulators.length; i++) {
+            record.set(aggregates.get(i).name(), accumulators[i].result(group));
+        }
+        return record;
+    }
+    
+    /**
+     * @param group A group id
+     * @return The group's key hash, which also picks its spill partition
+     */
+    long hash(int group) {
+        return groupHashes[group];
+    }
+    
+    /**
+     * Write a group's key and partial state
+     */
+    void write(int group, DataOutput out, ObjectMapper objectMapper) throws IOException {
+        out.writeLong(groupHashes[group]);
+        for (JsonNode part : keys[group]) {
+            byte[] bytes = objectMapper.writeValueAsBytes(part);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        for (Accumulator accumulator : accumulators) {
+            accumulator.write(group, out);
+        }
+    }
+    
+    /**
+     * Read a group written by write and merge it into this table
+     */
+    void mergeFrom(DataInput in, ObjectMapper objectMapper) throws IOException {
+        long hash = in.readLong();
+        JsonNode[] key = new JsonNode[groupBy.length];
+        for (int i = 0; i < key.length; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            key[i] = objectMapper.readTree(new String(bytes, StandardCharsets.UTF_8));
+        }
+        int group = findOrInsert(hash, key);
+        for (Accumulator accumulator : accumulators) {
+            accumulator.mergeFrom(group, in);
+        }
+    }
+    
+    /**
+     * Key values are hashed by type and text, so 1 and "1" stay separate groups like their JSON values
+     */
+    private static long hashKeyPart(JsonNode value) {
+        long text = Hashing.hash(value.isValueNode() ? value.asText() : value.toString());
+        return Hashing.combine(value.getNodeType().ordinal(), text);
+    }
+}
@@ -0,0 +1,288 @@
+package com.shrmagarv.tresatadis.service.transform.aggregate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel hash aggregation of a record stream
+ * The caller's thread hands batches of records to worker tasks, each aggregating into its own
+ * PartialAggregate with an equal share of the memory limit. On finish the partials are merged: in memory
+ * when nothing spilled, otherwise one spill partition at a time, a few partitions in parallel.
+ */
+@Slf4j
+public class HashAggregation implements Closeable {
+    
+    private static final int BATCH_SIZE = 1024;
+    private static final List<JsonNode> END = List.of();
+    
+    /**
+     * Receives the aggregated groups
+     */
+    @FunctionalInterface
+    public interface GroupSink {
+        void accept(JsonNode record) throws IOException;
+    }
+    
+    private final AggregateSpec spec;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final int partitions;
+    private final List<PartialAggregate> partials = new ArrayList<>();
+    private final List<Future<?>> workers = new ArrayList<>();
+    private final BlockingQueue<List<JsonNode>> queue;
+    private List<JsonNode> batch = new ArrayList<>(BATCH_SIZE);
+    private volatile Throwable failure;
+    private volatile boolean aborted;
+    private boolean inputClosed;
+    private long rows;
+    
+    /**
+     * @param spec The aggregation
+     * @param objectMapper Mapper for result records and spilled keys
+     * @param executor Pool for the workers, or null to aggregate on the caller's thread
+     * @param parallelism Number of workers when an executor is given
+     * @param memoryLimitBytes Approximate heap all workers may use before spilling
+     * @param partitions Number of spill partitions
+     */
+    public HashAggregation(AggregateSpec spec, ObjectMapper objectMapper, ExecutorService executor,
+                           int parallelism, long memoryLimitBytes, int partitions) {
+        this.spec = spec;
+        this.objectMapper = objectMapper;
+        this.executor = parallelism > 1 ? executor : null;
+        this.partitions = Math.max(1, partitions);
+        
+        int workerCount = this.executor != null ? parallelism : 1;
+        for (int i = 0; i < workerCount; i++) {
+            partials.add(new PartialAggregate(spec, objectMapper, memoryLimitBytes / workerCount, this.partitions));
+        }
+        
+        if (this.executor == null) {
+            queue = null;
+        } else {
+            queue = new ArrayBlockingQueue<>(workerCount * 2);
+            for (PartialAggregate partial : partials) {
+                workers.add(this.executor.submit(() -> work(partial)));
+            }
+        }
+    }
+    
+    /**
+     * Add a record
+     * @param record The record
+     * @throws IOException If spilling fails or a worker failed
+     */
+    public void add(JsonNode record) throws IOException {
+        rows++;
+        if (queue == null) {
+            partials.get(0).add(record);
+            return;
+        }
+        batch.add(record);
+        if (batch.size() == BATCH_SIZE) {
+            put(batch);
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+    
+    /**
+     * Merge the partial aggregates and emit one record per group
+     * @param sink Receives the group records
+     * @return Number of groups
+     * @throws IOException If spilling, merging or the sink fails
+     */
+    public long finish(GroupSink sink) throws IOException {
+        closeInput();
+        
+        boolean spilled = false;
+        for (PartialAggregate partial : partials) {
+            spilled |= partial.hasSpilled();
+        }
+        
+        if (!spilled) {
+            GroupTable merged = partials.get(0).getTable();
+            for (int i = 1; i < partials.size(); i++) {
+                merged.merge(partials.get(i).getTable());
+            }
+            emit(merged, sink);
+            return merged.size();
+        }
+        
+        for (PartialAggregate partial : partials) {
+            partial.finishSpilling();
+        }
+        return executor == null ? mergePartitions(sink) : mergePartitionsInParallel(sink);
+    }
+    
+    public long getRows() {
+        return rows;
+    }
+    
+    private long mergePartitions(GroupSink sink) throws IOException {
+        long groups = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            GroupTable table = mergePartition(partition);
+            emit(table, sink);
+            groups += table.size();
+        }
+        return groups;
+    }
+    
+    /**
+     * Merge up to one partition per worker at a time, emitting them in partition order
+     * so only that many partition tables are held in memory
+     */
+    private long mergePartitionsInParallel(GroupSink sink) throws IOException {
+        Deque<Future<GroupTable>> pending = new ArrayDeque<>();
+        int next = 0;
+        long groups = 0;
+        try {
+            while (next < partitions || !pending.isEmpty()) {
+                while (next < partitions && pending.size() < partials.size()) {
+                    int partition = next++;
+                    pending.add(executor.submit(() -> mergePartition(partition)));
+                }
+                GroupTable table = await(pending.poll());
+                emit(table, sink);
+                groups += table.size();
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+        return groups;
+    }
+    
+    private GroupTable mergePartition(int partition) throws IOException {
+        GroupTable table = new GroupTable(spec);
+        for (PartialAggregate partial : partials) {
+            partial.mergePartition(partition, table);
+        }
+        return table;
+    }
+    
+    private void emit(GroupTable table, GroupSink sink) throws IOException {
+        for (int group = 0; group < table.size(); group++) {
+            sink.accept(table.result(group, objectMapper));
+        }
+    }
+    
+    private void work(PartialAggregate partial) {
+        while (true) {
+            List<JsonNode> records;
+            try {
+                records = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (records == END) {
+                return;
+            }
+            // After a failure keep draining so the producer never blocks on a full queue
+            if (failure != null || aborted) {
+                continue;
+            }
+            try {
+                for (JsonNode record : records) {
+                    partial.add(record);
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+    }
+    
+    private void put(List<JsonNode> records) throws IOException {
+        rethrowFailure();
+        enqueue(records);
+    }
+    
+    private void enqueue(List<JsonNode> records) throws IOException {
+        try {
+            queue.put(records);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while aggregating");
+        }
+    }
+    
+    /**
+     * Send the last batch, stop the workers and wait for them
+     */
+    private void closeInput() throws IOException {
+        if (queue == null || inputClosed) {
+            return;
+        }
+        inputClosed = true;
+        try {
+            if (!batch.isEmpty() && !aborted && failure == null) {
+                enqueue(batch);
+            }
+        } finally {
+            for (int i = 0; i < workers.size(); i++) {
+                enqueue(END);
+            }
+        }
+        for (Future<?> worker : workers) {
+            await(worker);
+        }
+        rethrowFailure();
+    }
+    
+    private <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while aggregating");
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+            rethrowFailure();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    private void rethrowFailure() throws IOException {
+        Throwable error = failure;
+        if (error instanceof IOException ioException) {
+            throw ioException;
+        } else if (error instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (error instanceof Error fatal) {
+            throw fatal;
+        } else if (error != null) {
+            throw new IOException("Aggregation failed", error);
+        }
+    }
+    
+    /**
+     * Stop any running workers and delete the spill files
+     */
+    @Override
+    public void close() {
+        if (queue != null && !inputClosed) {
+            aborted = true;
+            queue.clear();
+            try {
+                closeInput();
+            } catch (Exception e) {
+                log.debug("Aggregation workers stopped with: {}", e.getMessage());
+                workers.forEach(worker -> worker.cancel(true));
+            }
+        }
+        partials.forEach(PartialAggregate::close);
+    }
+}
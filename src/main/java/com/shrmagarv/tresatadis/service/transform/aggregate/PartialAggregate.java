@@ -0,0 +1,144 @@
+package com.shrmagarv.tresatadis.service.transform.aggregate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One worker's share of an aggregation
+ * Rows are aggregated in a GroupTable; when its estimated size passes the memory limit, every group's
+ * partial state is written to the spill partition picked by its key hash and the table starts over.
+ * A group can then appear in several spills and workers, so partitions are merged with mergePartition.
+ */
+@Slf4j
+class PartialAggregate implements Closeable {
+    
+    // The size estimate is only checked every so many rows
+    private static final int CHECK_INTERVAL = 1024;
+    
+    private final GroupTable table;
+    private final ObjectMapper objectMapper;
+    private final long memoryLimitBytes;
+    private final int partitions;
+    private Path[] spillFiles;
+    private DataOutputStream[] spillStreams;
+    private long[] spilledGroups;
+    private long rows;
+    private int spills;
+    
+    PartialAggregate(AggregateSpec spec, ObjectMapper objectMapper, long memoryLimitBytes, int partitions) {
+        this.table = new GroupTable(spec);
+        this.objectMapper = objectMapper;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.partitions = partitions;
+    }
+    
+    void add(JsonNode record) throws IOException {
+        table.add(record);
+        if (++rows % CHECK_INTERVAL == 0 && table.estimateBytes() > memoryLimitBytes) {
+            spill();
+        }
+    }
+    
+    GroupTable getTable() {
+        return table;
+    }
+    
+    boolean hasSpilled() {
+        return spills > 0;
+    }
+    
+    /**
+     * Write every group to its partition and empty the table
+     * @throws IOException If writing fails
+     */
+    void spill() throws IOException {
+        if (spillStreams == null) {
+            spillFiles = new Path[partitions];
+            spillStreams = new DataOutputStream[partitions];
+            spilledGroups = new long[partitions];
+        }
+        for (int group = 0; group < table.size(); group++) {
+            int partition = partitionOf(table.hash(group), partitions);
+            if (spillStreams[partition] == null) {
+                spillFiles[partition] = Files.createTempFile("tresata-aggregate-", ".spill");
+                spillStreams[partition] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFiles[partition])));
+            }
+            table.write(group, spillStreams[partition], objectMapper);
+            spilledGroups[partition]++;
+        }
+        spills++;
+        log.debug("Spilled {} groups after {} rows (spill {})", table.size(), rows, spills);
+        table.clear();
+    }
+    
+    /**
+     * Spill what is left in memory and close the partition files for reading
+     * @throws IOException If writing fails
+     */
+    void finishSpilling() throws IOException {
+        spill();
+        for (DataOutputStream stream : spillStreams) {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+    
+    /**
+     * Merge this worker's spilled groups of a partition into a table
+     * @param partition The partition
+     * @param target The table to merge into
+     * @throws IOException If reading fails
+     */
+    void mergePartition(int partition, GroupTable target) throws IOException {
+        if (spillFiles == null || spillFiles[partition] == null) {
+            return;
+        }
+        try (InputStream file = Files.newInputStream(spillFiles[partition]);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            for (long i = 0; i < spilledGroups[partition]; i++) {
+                target.mergeFrom(in, objectMapper);
+            }
+        }
+        Files.deleteIfExists(spillFiles[partition]);
+        spillFiles[partition] = null;
+    }
+    
+    static int partitionOf(long hash, int partitions) {
+        // The table probes with the low bits, so partition by the high ones
+        return (int) ((hash >>> 32) % partitions);
+    }
+    
+    /**
+     * Delete any spill files left behind
+     */
+    @Override
+    public void close() {
+        if (spillFiles == null) {
+            return;
+        }
+        for (int i = 0; i < partitions; i++) {
+            try {
+                if (spillStreams[i] != null) {
+                    spillStreams[i].close();
+                }
+                if (spillFiles[i] != null) {
+                    Files.deleteIfExists(spillFiles[i]);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete aggregation spill file {}: {}", spillFiles[i], e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.shrmagarv.tresatadis.service.transform.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+
+/**
+ * Transformation steps fused into a single per-record operator
+ * Each record runs through every step before the next record is read, so the data is parsed and
+ * serialized once however many steps are configured, and a record dropped by a step skips the rest.
+ */
+public class OperatorChain implements RecordOperator {
+    
+    private final RecordOperator[] operators;
+    
+    /**
+     * Compile the steps of a CHAIN config
+     * @param steps The step configs, in order
+     * @return The fused chain
+     */
+    public static OperatorChain compile(JsonNode steps) {
+        if (!steps.isArray() || steps.isEmpty()) {
+            throw new IllegalArgumentException("CHAIN requires a non-empty steps array");
+        }
+        RecordOperator[] operators = new RecordOperator[steps.size()];
+        for (int i = 0; i < operators.length; i++) {
+            try {
+                operators[i] = RecordOperators.compile(steps.get(i));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid CHAIN step " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return new OperatorChain(List.of(operators));
+    }
+    
+    public OperatorChain(List<RecordOperator> operators) {
+        this.operators = operators.toArray(new RecordOperator[0]);
+    }
+    
+    @Override
+    public ObjectNode apply(ObjectNode record) {
+        for (RecordOperator operator : operators) {
+            record = operator.apply(record);
+            if (record == null) {
+                return null;
+            }
+        }
+        return record;
+    }
+    
+    public int size() {
+        return operators.length;
+    }
+}
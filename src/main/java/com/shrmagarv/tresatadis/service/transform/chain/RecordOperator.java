@@ -0,0 +1,19 @@
+package com.shrmagarv.tresatadis.service.transform.chain;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * One step of a transformation chain, applied to each record
+ * Operators may modify the record in place and must be thread-safe, as a compiled chain is shared
+ * between concurrent transforms.
+ */
+@FunctionalInterface
+public interface RecordOperator {
+    
+    /**
+     * Apply the step to a record
+     * @param record The record
+     * @return The resulting record, or null to drop it
+     */
+    ObjectNode apply(ObjectNode record);
+}
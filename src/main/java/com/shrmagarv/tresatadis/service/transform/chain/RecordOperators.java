@@ -0,0 +1,244 @@
+package com.shrmagarv.tresatadis.service.transform.chain;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.shrmagarv.tresatadis.service.convert.Flattener;
+import com.shrmagarv.tresatadis.service.transform.expr.Expression;
+import com.shrmagarv.tresatadis.service.transform.expr.ExpressionCompiler;
+import com.shrmagarv.tresatadis.service.transform.expr.Row;
+import com.shrmagarv.tresatadis.service.transform.expr.Values;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Built-in chain steps, compiled from their JSON config
+ * <ul>
+ * <li>RENAME {"fields": {"newName": "oldName"}}</li>
+ * <li>REMOVE {"fields": ["a", "b"]}</li>
+ * <li>KEEP {"fields": ["a", "b"]} keeps only these fields, in this order</li>
+ * <li>FILTER {"field": "status", "op": "EQ", "value": "active"} keeps matching records;
+ * op is EQ, NE, GT, GE, LT, LE, CONTAINS, EXISTS or MISSING. Or {"expression": "amount &gt; 0 AND status = 'active'"}</li>
+ * <li>DERIVE {"field": "name", "template": "${first} ${last}"}, {"field": "source", "value": "feed"}
+ * or {"field": "total", "expression": "CAST(qty AS INTEGER) * price"}</li>
+ * <li>FLATTEN {"separator": ".", "arrays": "INDEX", "maxDepth": 16}</li>
+ * </ul>
+ */
+public final class RecordOperators {
+    
+    private RecordOperators() {
+    }
+    
+    /**
+     * Compile one step
+     * @param step The step config, with a "type"
+     * @return The operator
+     */
+    public static RecordOperator compile(JsonNode step) {
+        String type = step.path("type").asText("").toUpperCase();
+        return switch (type) {
+            case "RENAME" -> rename(step.path("fields"));
+            case "REMOVE" -> remove(step.path("fields"));
+            case "KEEP" -> keep(step.path("fields"));
+            case "FILTER" -> filter(step);
+            case "DERIVE" -> derive(step);
+            case "FLATTEN" -> flatten(step);
+            default -> throw new IllegalArgumentException("Unknown step type: " + step.path("type").asText());
+        };
+    }
+    
+    private static RecordOperator rename(JsonNode fields) {
+        Map<String, String> targetBySource = new HashMap<>();
+        for (Iterator<String> it = fields.fieldNames(); it.hasNext(); ) {
+            String target = it.next();
+            targetBySource.put(fields.get(target).asText(), target);
+        }
+        if (targetBySource.isEmpty()) {
+            throw new IllegalArgumentException("RENAME requires fields");
+        }
+        return record -> {
+            // Rebuild so renamed fields keep their position
+            ObjectNode renamed = record.objectNode();
+            for (Iterator<Map.Entry<String, JsonNode>> it = record.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                renamed.set(targetBySource.getOrDefault(field.getKey(), field.getKey()), field.getValue());
+            }
+            return renamed;
+        };
+    }
+    
+    private static RecordOperator remove(JsonNode fields) {
+        Set<String> removed = new HashSet<>(names(fields, "REMOVE"));
+        return record -> {
+            record.remove(removed);
+            return record;
+        };
+    }
+    
+    private static RecordOperator keep(JsonNode fields) {
+        List<String> kept = names(fields, "KEEP");
+        return record -> {
+            ObjectNode result = record.objectNode();
+            for (String name : kept) {
+                JsonNode value = record.get(name);
+                if (value != null) {
+                    result.set(name, value);
+                }
+            }
+            return result;
+        };
+    }
+    
+    private static RecordOperator filter(JsonNode step) {
+        if (step.has("expression")) {
+            ExpressionCompiler compiler = new ExpressionCompiler();
+            Expression expression = compiler.compile(step.get("expression").asText());
+            List<String> fields = compiler.getFields();
+            return record -> expression.test(row(record, fields)) ? record : null;
+        }
+        String field = step.path("field").asText(null);
+        if (field == null) {
+            throw new IllegalArgumentException("FILTER requires field");
+        }
+        String op = step.path("op").asText("EQ").toUpperCase();
+        JsonNode expected = step.path("value");
+        return switch (op) {
+            case "EXISTS" -> record -> present(record.get(field)) ? record : null;
+            case "MISSING" -> record -> present(record.get(field)) ? null : record;
+            case "EQ", "NE", "GT", "GE", "LT", "LE", "CONTAINS" -> {
+                if (expected.isMissingNode()) {
+                    throw new IllegalArgumentException("FILTER " + op + " requires value");
+                }
+                yield record -> matches(record.get(field), op, expected) ? record : null;
+            }
+            default -> throw new IllegalArgumentException("Unknown FILTER op: " + op);
+        };
+    }
+    
+    private static boolean present(JsonNode value) {
+        return value != null && !value.isNull();
+    }
+    
+    private static boolean matches(JsonNode actual, String op, JsonNode expected) {
+        if (!present(actual)) {
+            return "NE".equals(op);
+        }
+        if ("CONTAINS".equals(op)) {
+            return actual.asText().contains(expected.asText());
+        }
+        
+        int comparison = compare(actual, expected);
+        return switch (op) {
+            case "EQ" -> comparison == 0;
+            case "NE" -> comparison != 0;
+            case "GT" -> comparison > 0;
+            case "GE" -> comparison >= 0;
+            case "LT" -> comparison < 0;
+            default -> comparison <= 0;
+        };
+    }
+    
+    /**
+     * Compare numerically when both sides are numbers (CSV values arrive as text), otherwise as text
+     */
+    private static int compare(JsonNode actual, JsonNode expected) {
+        if (expected.isNumber() || actual.isNumber()) {
+            try {
+                return Double.compare(actual.isNumber() ? actual.doubleValue() : Double.parseDouble(actual.asText()),
+                        expected.isNumber() ? expected.doubleValue() : Double.parseDouble(expected.asText()));
+            } catch (NumberFormatException e) {
+                // Not a number after all: fall through to text comparison
+            }
+        }
+        return actual.asText().compareTo(expected.asText());
+    }
+    
+    private static RecordOperator derive(JsonNode step) {
+        String field = step.path("field").asText(null);
+        if (field == null) {
+            throw new IllegalArgumentException("DERIVE requires field");
+        }
+        if (step.has("value")) {
+            JsonNode value = step.get("value");
+            return record -> {
+                record.set(field, value.deepCopy());
+                return record;
+            };
+        }
+        if (step.has("expression")) {
+            ExpressionCompiler compiler = new ExpressionCompiler();
+            Expression expression = compiler.compile(step.get("expression").asText());
+            List<String> fields = compiler.getFields();
+            return record -> {
+                record.set(field, Values.toJson(expression.evaluate(row(record, fields))));
+                return record;
+            };
+        }
+        if (!step.has("template")) {
+            throw new IllegalArgumentException("DERIVE requires template, value or expression");
+        }
+        
+        // Split "${first} ${last}" once into literal and field parts
+        String template = step.get("template").asText();
+        List<String> literals = new ArrayList<>();
+        List<String> references = new ArrayList<>();
+        int position = 0;
+        int start;
+        while ((start = template.indexOf("${", position)) >= 0) {
+            int end = template.indexOf('}', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated ${ in template: " + template);
+            }
+            literals.add(template.substring(position, start));
+            references.add(template.substring(start + 2, end));
+            position = end + 1;
+        }
+        String tail = template.substring(position);
+        
+        return record -> {
+            StringBuilder value = new StringBuilder();
+            for (int i = 0; i < references.size(); i++) {
+                value.append(literals.get(i));
+                JsonNode reference = record.get(references.get(i));
+                if (present(reference)) {
+                    value.append(reference.asText());
+                }
+            }
+            value.append(tail);
+            record.set(field, TextNode.valueOf(value.toString()));
+            return record;
+        };
+    }
+    
+    private static Row row(ObjectNode record, List<String> fields) {
+        return slot -> Values.fromJson(record.get(fields.get(slot)));
+    }
+    
+    private static RecordOperator flatten(JsonNode step) {
+        Flattener flattener = new Flattener(
+                step.path("separator").asText("."),
+                Flattener.ArrayMode.valueOf(step.path("arrays").asText("INDEX").toUpperCase()),
+                step.path("joinSeparator").asText("|"),
+                step.path("maxDepth").asInt(16));
+        return record -> {
+            ObjectNode flat = record.objectNode();
+            flattener.flatten(record).forEach(flat::set);
+            return flat;
+        };
+    }
+    
+    private static List<String> names(JsonNode fields, String type) {
+        List<String> names = new ArrayList<>();
+        fields.forEach(field -> names.add(field.asText()));
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException(type + " requires fields");
+        }
+        return names;
+    }
+}
@@ -0,0 +1,88 @@
+package com.shrmagarv.tresatadis.service.transform.enrich;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Settings of an ENRICH config
+ * <pre>
+ *   {"key": "product_code",
+ *    "reference": {"sourceType": "FILE", "location": "/data/products.csv", "format": "CSV",
+ *                  "key": "code", "name": "products", "ttlSeconds": 600},
+ *    "fields": ["category", "brand"], "prefix": "product_", "onMiss": "NULL"}
+ * </pre>
+ * The reference is read through the source connector of its sourceType (a SQL query for DATABASE).
+ * Its key defaults to the record key and fields to every reference field but the key.
+ * onMiss is NULL (add the fields as null), KEEP (leave the record unchanged) or DROP.
+ */
+@Getter
+public class EnrichSpec {
+    
+    public enum MissPolicy { NULL, KEEP, DROP }
+    
+    private final String key;
+    private final String sourceType;
+    private final String location;
+    private final String format;
+    private final String recordPath;
+    private final String referenceKey;
+    private final String name;
+    private final long ttlMillis;
+    private final List<String> fields;
+    private final String prefix;
+    private final MissPolicy onMiss;
+    
+    private EnrichSpec(JsonNode config, long defaultTtlMillis) {
+        JsonNode reference = config.path("reference");
+        this.key = required(config, "key", "key");
+        this.sourceType = required(reference, "sourceType", "reference.sourceType").toUpperCase(Locale.ROOT);
+        this.location = required(reference, "location", "reference.location");
+        this.format = reference.path("format").asText("CSV").toUpperCase(Locale.ROOT);
+        this.recordPath = reference.hasNonNull("recordPath") ? reference.get("recordPath").asText() : null;
+        this.referenceKey = reference.path("key").asText(key);
+        this.name = reference.path("name").asText("default");
+        this.ttlMillis = reference.has("ttlSeconds") ? reference.get("ttlSeconds").asLong() * 1000 : defaultTtlMillis;
+        
+        List<String> fieldList = new ArrayList<>();
+        config.path("fields").forEach(field -> fieldList.add(field.asText()));
+        this.fields = Collections.unmodifiableList(fieldList);
+        this.prefix = config.path("prefix").asText("");
+        try {
+            this.onMiss = MissPolicy.valueOf(config.path("onMiss").asText("NULL").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("onMiss must be one of NULL, KEEP, DROP: " + config.path("onMiss").asText());
+        }
+    }
+    
+    /**
+     * Parse an ENRICH config
+     * @param config The config
+     * @param defaultTtlMillis Refresh interval of the reference when the config does not set ttlSeconds
+     * @return The settings
+     * @throws IllegalArgumentException If the config is invalid
+     */
+    public static EnrichSpec parse(JsonNode config, long defaultTtlMillis) {
+        return new EnrichSpec(config, defaultTtlMillis);
+    }
+    
+    /**
+     * @return Identifies the reference index: the same dataset indexed the same way shares one index
+     */
+    public String getIndexKey() {
+        return sourceType + ":" + format + ":" + location + "#" + referenceKey
+                + (recordPath != null ? "@" + recordPath : "")
+                + (fields.isEmpty() ? "" : fields.toString());
+    }
+    
+    private static String required(JsonNode config, String field, String label) {
+        if (!config.hasNonNull(field) || config.get(field).asText().isBlank()) {
+            throw new IllegalArgumentException("ENRICH requires " + label);
+        }
+        return config.get(field).asText();
+    }
+}
@@ -0,0 +1,299 @@
+package com.shrmagarv.tresatadis.service.transform.enrich;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.shrmagarv.tresatadis.service.sketch.Hashing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read-only key to attributes index of a reference dataset
+ * Entries are packed into a direct (off-heap) buffer so a large dimension table costs the heap only
+ * its primitive probe arrays: a long[] of key hashes and an int[] of entry offsets, searched by linear
+ * probing. Lookups use absolute buffer reads, so an index can be shared by any number of threads.
+ * <p>
+ * Entry layout: key length in chars, the key as UTF-16 chars, then one tagged value per field.
+ */
+public class ReferenceIndex {
+    
+    private static final int EMPTY = -1;
+    private static final byte NULL = 0;
+    private static final byte TEXT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte JSON = 6;
+    
+    private final List<String> fields;
+    private final ByteBuffer data;
+    private final long[] hashes;
+    private final int[] offsets;
+    private final int mask;
+    private final int size;
+    
+    private ReferenceIndex(List<String> fields, ByteBuffer data, long[] hashes, int[] offsets, int size) {
+        this.fields = fields;
+        this.data = data;
+        this.hashes = hashes;
+        this.offsets = offsets;
+        this.mask = offsets.length - 1;
+        this.size = size;
+    }
+    
+    /**
+     * Find the attributes of a key
+     * @param key The key
+     * @return The values of the fields in field order, or null if the key is not in the index
+     */
+    public JsonNode[] lookup(String key) {
+        if (key == null) {
+            return null;
+        }
+        long hash = Hashing.hash(key);
+        for (int slot = (int) hash & mask; offsets[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && keyEquals(offsets[slot], key)) {
+                return values(offsets[slot] + 4 + key.length() * 2);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return The attribute names, in the order lookup returns their values
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+    
+    /**
+     * @return Number of keys
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * @return Bytes held by the index, on and off the heap
+     */
+    public long sizeInBytes() {
+        return data.capacity() + (long) hashes.length * Long.BYTES + (long) offsets.length * Integer.BYTES;
+    }
+    
+    private boolean keyEquals(int offset, String key) {
+        if (data.getInt(offset) != key.length()) {
+            return false;
+        }
+        int position = offset + 4;
+        for (int i = 0; i < key.length(); i++, position += 2) {
+            if (data.getChar(position) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private JsonNode[] values(int position) {
+        JsonNode[] values = new JsonNode[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            byte tag = data.get(position++);
+            switch (tag) {
+                case NULL -> values[i] = NullNode.getInstance();
+                case TRUE -> values[i] = BooleanNode.TRUE;
+                case FALSE -> values[i] = BooleanNode.FALSE;
+                case LONG -> {
+                    values[i] = LongNode.valueOf(data.getLong(position));
+                    position += 8;
+                }
+                case DOUBLE -> {
+                    values[i] = DoubleNode.valueOf(data.getDouble(position));
+                    position += 8;
+                }
+                default -> {
+                    byte[] bytes = new byte[data.getInt(position)];
+                    data.get(position + 4, bytes);
+                    position += 4 + bytes.length;
+                    values[i] = tag == TEXT ? TextNode.valueOf(new String(bytes, StandardCharsets.UTF_8)) : parse(bytes);
+                }
+            }
+        }
+        return values;
+    }
+    
+    private static JsonNode parse(byte[] json) {
+        try {
+            return Builder.OBJECT_MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Builds an index one reference record at a time; a repeated key replaces the earlier entry
+     */
+    public static class Builder {
+        
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+        
+        private final List<String> fields;
+        private ByteBuffer data = ByteBuffer.allocateDirect(64 * 1024);
+        private long[] hashes = new long[1024];
+        private int[] offsets = newOffsets(1024);
+        private int size;
+        private long duplicates;
+        
+        /**
+         * @param fields The attribute names to keep for each key
+         */
+        public Builder(List<String> fields) {
+            this.fields = List.copyOf(fields);
+        }
+        
+        /**
+         * Add a key and its attributes
+         * @param key The key, ignored if null
+         * @param record The reference record holding the fields
+         */
+        public void add(String key, JsonNode record) {
+            if (key == null) {
+                return;
+            }
+            int offset = data.position();
+            ensureCapacity(4 + key.length() * 2L);
+            data.putInt(key.length());
+            for (int i = 0; i < key.length(); i++) {
+                data.putChar(key.charAt(i));
+            }
+            for (String field : fields) {
+                putValue(record.get(field));
+            }
+            
+            if ((size + 1) * 4L > offsets.length * 3L) {
+                rehash(offsets.length * 2);
+            }
+            long hash = Hashing.hash(key);
+            int slot = (int) hash & (offsets.length - 1);
+            while (offsets[slot] != EMPTY) {
+                if (hashes[slot] == hash && sameKey(offsets[slot], key)) {
+                    offsets[slot] = offset;
+                    duplicates++;
+                    return;
+                }
+                slot = (slot + 1) & (offsets.length - 1);
+            }
+            hashes[slot] = hash;
+            offsets[slot] = offset;
+            size++;
+        }
+        
+        /**
+         * @return Number of records whose key replaced an earlier record
+         */
+        public long getDuplicates() {
+            return duplicates;
+        }
+        
+        /**
+         * Finish the index, trimming the entry buffer and probe arrays to what the keys need
+         * @return The index
+         */
+        public ReferenceIndex build() {
+            int capacity = 16;
+            while (size * 4L > capacity * 3L) {
+                capacity *= 2;
+            }
+            if (capacity < offsets.length) {
+                rehash(capacity);
+            }
+            ByteBuffer packed = ByteBuffer.allocateDirect(Math.max(1, data.position()));
+            packed.put(data.flip());
+            data = null;
+            return new ReferenceIndex(Collections.unmodifiableList(fields), packed, hashes, offsets, size);
+        }
+        
+        private void putValue(JsonNode value) {
+            if (value == null || value.isNull() || value.isMissingNode()) {
+                ensureCapacity(1);
+                data.put(NULL);
+            } else if (value.isBoolean()) {
+                ensureCapacity(1);
+                data.put(value.booleanValue() ? TRUE : FALSE);
+            } else if (value.isIntegralNumber() && value.canConvertToLong()) {
+                ensureCapacity(9);
+                data.put(LONG).putLong(value.longValue());
+            } else if (value.isDouble() || value.isFloat()) {
+                ensureCapacity(9);
+                data.put(DOUBLE).putDouble(value.doubleValue());
+            } else if (value.isTextual()) {
+                putBytes(TEXT, value.textValue().getBytes(StandardCharsets.UTF_8));
+            } else {
+                putBytes(JSON, value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        
+        private void putBytes(byte tag, byte[] bytes) {
+            ensureCapacity(5L + bytes.length);
+            data.put(tag).putInt(bytes.length).put(bytes);
+        }
+        
+        private void ensureCapacity(long bytes) {
+            if (data.remaining() >= bytes) {
+                return;
+            }
+            long required = data.position() + bytes;
+            if (required > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Reference dataset exceeds the 2 GB index limit");
+            }
+            int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(required, data.capacity() * 2L));
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+            grown.put(data.flip());
+            data = grown;
+        }
+        
+        private boolean sameKey(int offset, String key) {
+            if (data.getInt(offset) != key.length()) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                if (data.getChar(offset + 4 + i * 2) != key.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void rehash(int capacity) {
+            long[] oldHashes = hashes;
+            int[] oldOffsets = offsets;
+            hashes = new long[capacity];
+            offsets = newOffsets(capacity);
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != EMPTY) {
+                    int slot = (int) oldHashes[i] & (capacity - 1);
+                    while (offsets[slot] != EMPTY) {
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    hashes[slot] = oldHashes[i];
+                    offsets[slot] = oldOffsets[i];
+                }
+            }
+        }
+        
+        private static int[] newOffsets(int capacity) {
+            int[] offsets = new int[capacity];
+            Arrays.fill(offsets, EMPTY);
+            return offsets;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.shrmagarv.tresatadis.service.transform.enrich;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reference indexes shared by all ENRICH jobs
+ * An index is loaded on first use and reloaded by the first job that finds it older than its TTL;
+ * jobs arriving during the reload keep using the previous index. The least recently used indexes
+ * are dropped when their combined size passes the memory cap; their off-heap memory is returned
+ * once the last job using them finishes.
+ */
+@Service
+@Slf4j
+public class ReferenceIndexCache {
+    
+    /**
+     * Loads a reference dataset into an index
+     */
+    @FunctionalInterface
+    public interface Loader {
+        ReferenceIndex load() throws Exception;
+    }
+    
+    private static final class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile ReferenceIndex index;
+        private volatile long loadedAtNanos;
+    }
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.transform.enrich.max-memory-bytes:536870912}")
+    private long maxMemoryBytes = 512L * 1024 * 1024;
+    
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    @PostConstruct
+    public void init() {
+        Gauge.builder("ingestion.transform.enrich.index.bytes", this, ReferenceIndexCache::sizeInBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ingestion.transform.enrich.index.entries", this, ReferenceIndexCache::entryCount)
+                .register(meterRegistry);
+        Gauge.builder("ingestion.transform.enrich.indexes", this, ReferenceIndexCache::indexCount)
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Get an index, loading or refreshing it if needed
+     * @param key Identifies the reference dataset and how it is indexed
+     * @param ttlMillis How long a loaded index may be used before it is reloaded
+     * @param loader Loads the index
+     * @return The index
+     * @throws Exception If the index has never been loaded and loading fails
+     */
+    public ReferenceIndex get(String key, long ttlMillis, Loader loader) throws Exception {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+        }
+        
+        ReferenceIndex index = entry.index;
+        if (index != null && !isExpired(entry, ttlMillis)) {
+            return index;
+        }
+        if (index != null) {
+            if (!entry.lock.tryLock()) {
+                // Another job is already reloading it
+                return index;
+            }
+        } else {
+            entry.lock.lock();
+        }
+        
+        try {
+            index = entry.index;
+            if (index != null && !isExpired(entry, ttlMillis)) {
+                return index;
+            }
+            try {
+                long start = System.nanoTime();
+                ReferenceIndex loaded = loader.load();
+                entry.index = loaded;
+                entry.loadedAtNanos = System.nanoTime();
+                log.info("Loaded reference index {} ({} keys, {} bytes) in {} ms", key, loaded.size(),
+                        loaded.sizeInBytes(), TimeUnit.NANOSECONDS.toMillis(entry.loadedAtNanos - start));
+                index = loaded;
+            } catch (Exception e) {
+                if (index == null) {
+                    throw e;
+                }
+                log.warn("Failed to refresh reference index {}, keeping the previous one: {}", key, e.getMessage());
+                meterRegistry.counter("ingestion.transform.enrich.refresh.failures").increment();
+                // Retry after another TTL rather than on every lookup
+                entry.loadedAtNanos = System.nanoTime();
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+        
+        evict(key);
+        return index;
+    }
+    
+    /**
+     * Drop least recently used indexes until the cache is within its memory cap
+     * The index just loaded is kept even if it alone exceeds the cap
+     */
+    private void evict(String keep) {
+        synchronized (entries) {
+            long total = sizeInBytes();
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (total > maxMemoryBytes && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                ReferenceIndex index = eldest.getValue().index;
+                if (eldest.getKey().equals(keep) || index == null) {
+                    continue;
+                }
+                iterator.remove();
+                total -= index.sizeInBytes();
+                log.info("Evicted reference index {} ({} bytes) to stay within {} bytes",
+                        eldest.getKey(), index.sizeInBytes(), maxMemoryBytes);
+            }
+            if (total > maxMemoryBytes) {
+                log.warn("Reference indexes use {} bytes, above the {} byte cap", total, maxMemoryBytes);
+            }
+        }
+    }
+    
+    private static boolean isExpired(Entry entry, long ttlMillis) {
+        return ttlMillis >= 0 && System.nanoTime() - entry.loadedAtNanos > TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+    
+    /**
+     * @return Bytes held by the cached indexes
+     */
+    public long sizeInBytes() {
+        synchronized (entries) {
+            long total = 0;
+            for (Entry entry : entries.values()) {
+                ReferenceIndex index = entry.index;
+                total += index != null ? index.sizeInBytes() : 0;
+            }
+            return total;
+        }
+    }
+    
+    /**
+     * @return Keys held by the cached indexes
+     */
+    public long entryCount() {
+        synchronized (entries) {
+            long total = 0;
+            for (Entry entry : entries.values()) {
+                ReferenceIndex index = entry.index;
+                total += index != null ? index.size() : 0;
+            }
+            return total;
+        }
+    }
+    
+    /**
+     * @return Number of cached indexes
+     */
+    public int indexCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+/**
+ * A compiled expression: a tree of evaluators built once, with no parsing or reflection per row
+ */
+@FunctionalInterface
+public interface Expression {
+    
+    /**
+     * Evaluate against a row
+     * @param row The field values
+     * @return The result, or null
+     */
+    Object evaluate(Row row);
+    
+    /**
+     * Evaluate as a row filter; null (e.g. a comparison with a missing value) counts as false
+     * @param row The field values
+     * @return True if the row is kept
+     */
+    default boolean test(Row row) {
+        return Boolean.TRUE.equals(evaluate(row));
+    }
+}
@@ -0,0 +1,83 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles expression text into evaluator trees
+ * Field names are resolved to slots shared by every expression compiled with the same compiler,
+ * so a job's filter and derived columns read each input field through one binding.
+ *
+ * Syntax (SQL-like, keywords are case-insensitive):
+ * <pre>
+ *   amount &gt; 0 AND status IN ('OPEN', 'PENDING')
+ *   first || ' ' || last
+ *   CAST(quantity AS INTEGER) * price
+ *   to_date(created, 'dd/MM/yyyy') &gt;= DATE '2024-01-01'
+ *   coalesce(nickname, name) LIKE 'A%'
+ * </pre>
+ * Fields are bare identifiers or `quoted`; strings use single quotes.
+ */
+public class ExpressionCompiler {
+    
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> fields = new ArrayList<>();
+    private final Map<Expression, String> fieldReferences = new IdentityHashMap<>();
+    private final Map<Expression, Predicate> predicates = new IdentityHashMap<>();
+    
+    /**
+     * Parse and compile an expression
+     * @param text The expression
+     * @return The compiled expression
+     * @throws IllegalArgumentException If the expression is invalid
+     */
+    public Expression compile(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Expression is empty");
+        }
+        return new ExpressionParser(text, this).parse();
+    }
+    
+    /**
+     * @return Field names in slot order
+     */
+    public List<String> getFields() {
+        return Collections.unmodifiableList(fields);
+    }
+    
+    /**
+     * Describe a compiled expression as a predicate over fields and literals
+     * @param expression An expression returned by compile
+     * @return The predicate, or null if the expression is not a simple predicate
+     */
+    public Predicate describe(Expression expression) {
+        return predicates.get(expression);
+    }
+    
+    void describe(Expression expression, Predicate predicate) {
+        predicates.put(expression, predicate);
+    }
+    
+    Predicate predicateOf(Expression expression) {
+        return predicates.get(expression);
+    }
+    
+    void fieldReference(Expression expression, String field) {
+        fieldReferences.put(expression, field);
+    }
+    
+    String fieldOf(Expression expression) {
+        return fieldReferences.get(expression);
+    }
+    
+    int slot(String field) {
+        return slots.computeIfAbsent(field, name -> {
+            fields.add(name);
+            return fields.size() - 1;
+        });
+    }
+}
@@ -0,0 +1,624 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Recursive-descent parser that builds evaluators directly
+ * Subtrees without field references are folded to constants, and comparisons against a literal
+ * are specialized so the literal is converted once instead of on every row.
+ */
+class ExpressionParser {
+    
+    private enum TokenType { NUMBER, STRING, IDENTIFIER, QUOTED_IDENTIFIER, SYMBOL, END }
+    
+    private record Token(TokenType type, String text, int position) {
+    }
+    
+    private final String text;
+    private final ExpressionCompiler compiler;
+    private final List<Token> tokens;
+    private int index;
+    
+    ExpressionParser(String text, ExpressionCompiler compiler) {
+        this.text = text;
+        this.compiler = compiler;
+        this.tokens = tokenize(text);
+    }
+    
+    Expression parse() {
+        Expression expression = parseOr();
+        if (peek().type != TokenType.END) {
+            throw error("Unexpected '" + peek().text + "'");
+        }
+        return expression;
+    }
+    
+    private Expression parseOr() {
+        Expression left = parseAnd();
+        while (acceptKeyword("OR")) {
+            Expression l = left;
+            Expression r = parseAnd();
+            left = fold(row -> {
+                Boolean a = Values.toBoolean(l.evaluate(row));
+                if (Boolean.TRUE.equals(a)) {
+                    return true;
+                }
+                Boolean b = Values.toBoolean(r.evaluate(row));
+                return Boolean.TRUE.equals(b) ? Boolean.TRUE : (a == null || b == null ? null : Boolean.FALSE);
+            }, l, r);
+            Predicate pl = compiler.predicateOf(l);
+            Predicate pr = compiler.predicateOf(r);
+            if (pl != null && pr != null) {
+                compiler.describe(left, Predicate.of(Predicate.Kind.OR, List.of(pl, pr)));
+            }
+        }
+        return left;
+    }
+    
+    private Expression parseAnd() {
+        Expression left = parseNot();
+        while (acceptKeyword("AND")) {
+            Expression l = left;
+            Expression r = parseNot();
+            left = fold(row -> {
+                Boolean a = Values.toBoolean(l.evaluate(row));
+                if (Boolean.FALSE.equals(a)) {
+                    return false;
+                }
+                Boolean b = Values.toBoolean(r.evaluate(row));
+                return Boolean.FALSE.equals(b) ? Boolean.FALSE : (a == null || b == null ? null : Boolean.TRUE);
+            }, l, r);
+            // An AND is described by whichever operands are simple predicates
+            List<Predicate> operands = new ArrayList<>();
+            for (Expression operand : List.of(l, r)) {
+                Predicate predicate = compiler.predicateOf(operand);
+                if (predicate != null) {
+                    operands.add(predicate);
+                }
+            }
+            if (!operands.isEmpty()) {
+                compiler.describe(left, Predicate.of(Predicate.Kind.AND, operands));
+            }
+        }
+        return left;
+    }
+    
+    private Expression parseNot() {
+        if (acceptKeyword("NOT")) {
+            Expression operand = parseNot();
+            return fold(row -> not(Values.toBoolean(operand.evaluate(row))), operand);
+        }
+        return parseComparison();
+    }
+    
+    private Expression parseComparison() {
+        Expression left = parseConcat();
+        
+        if (acceptKeyword("IS")) {
+            boolean negated = acceptKeyword("NOT");
+            expectKeyword("NULL");
+            Expression isNull = fold(row -> (left.evaluate(row) == null) != negated, left);
+            return describeLeaf(isNull, negated ? Predicate.Kind.IS_NOT_NULL : Predicate.Kind.IS_NULL, left, null);
+        }
+        
+        boolean negated = acceptKeyword("NOT");
+        if (acceptKeyword("IN")) {
+            return negate(parseIn(left), negated);
+        }
+        if (acceptKeyword("LIKE")) {
+            Expression pattern = parseConcat();
+            Expression like = like(left, pattern);
+            return negated ? negate(like, true) : describeLeaf(like, Predicate.Kind.LIKE, left, null, pattern);
+        }
+        if (acceptKeyword("BETWEEN")) {
+            Expression low = parseConcat();
+            expectKeyword("AND");
+            Expression high = parseConcat();
+            Expression range = fold(row -> {
+                Object value = left.evaluate(row);
+                Integer a = Values.compare(value, low.evaluate(row));
+                Integer b = Values.compare(value, high.evaluate(row));
+                return a == null || b == null ? null : a >= 0 && b <= 0;
+            }, left, low, high);
+            return negated ? negate(range, true) : describeLeaf(range, Predicate.Kind.BETWEEN, left, null, low, high);
+        }
+        if (negated) {
+            throw error("Expected IN, LIKE or BETWEEN after NOT");
+        }
+        
+        String op = peek().type == TokenType.SYMBOL ? peek().text : "";
+        switch (op) {
+            case "=", "==", "!=", "<>", "<", "<=", ">", ">=" -> index++;
+            default -> {
+                return left;
+            }
+        }
+        return comparison(op, left, parseConcat());
+    }
+    
+    private Expression parseIn(Expression left) {
+        expectSymbol("(");
+        List<Expression> items = new ArrayList<>();
+        do {
+            items.add(parseConcat());
+        } while (acceptSymbol(","));
+        expectSymbol(")");
+        
+        Expression[] candidates = items.toArray(new Expression[0]);
+        List<Expression> all = new ArrayList<>(items);
+        all.add(left);
+        Expression in = fold(row -> {
+            Object value = left.evaluate(row);
+            if (value == null) {
+                return null;
+            }
+            boolean sawNull = false;
+            for (Expression candidate : candidates) {
+                Integer cmp = Values.compare(value, candidate.evaluate(row));
+                if (cmp == null) {
+                    sawNull = true;
+                } else if (cmp == 0) {
+                    return true;
+                }
+            }
+            return sawNull ? null : Boolean.FALSE;
+        }, all.toArray(new Expression[0]));
+        return describeLeaf(in, Predicate.Kind.IN, left, null, candidates);
+    }
+    
+    private Expression parseConcat() {
+        Expression left = parseAdditive();
+        while (acceptSymbol("||")) {
+            Expression l = left;
+            Expression r = parseAdditive();
+            left = fold(row -> {
+                String a = Values.toText(l.evaluate(row));
+                String b = Values.toText(r.evaluate(row));
+                return a == null || b == null ? null : a + b;
+            }, l, r);
+        }
+        return left;
+    }
+    
+    private Expression parseAdditive() {
+        Expression left = parseMultiplicative();
+        while (peek().type == TokenType.SYMBOL && (peek().text.equals("+") || peek().text.equals("-"))) {
+            char op = next().text.charAt(0);
+            Expression l = left;
+            Expression r = parseMultiplicative();
+            left = fold(row -> Values.arithmetic(op, l.evaluate(row), r.evaluate(row)), l, r);
+        }
+        return left;
+    }
+    
+    private Expression parseMultiplicative() {
+        Expression left = parseUnary();
+        while (peek().type == TokenType.SYMBOL
+                && (peek().text.equals("*") || peek().text.equals("/") || peek().text.equals("%"))) {
+            char op = next().text.charAt(0);
+            Expression l = left;
+            Expression r = parseUnary();
+            left = fold(row -> Values.arithmetic(op, l.evaluate(row), r.evaluate(row)), l, r);
+        }
+        return left;
+    }
+    
+    private Expression parseUnary() {
+        if (acceptSymbol("-")) {
+            Expression operand = parseUnary();
+            return fold(row -> Values.arithmetic('-', 0L, operand.evaluate(row)), operand);
+        }
+        acceptSymbol("+");
+        return parsePrimary();
+    }
+    
+    private Expression parsePrimary() {
+        Token token = next();
+        switch (token.type) {
+            case NUMBER:
+                return new Constant(parseNumber(token));
+            case STRING:
+                return new Constant(token.text);
+            case QUOTED_IDENTIFIER:
+                return field(token.text);
+            case SYMBOL:
+                if (token.text.equals("(")) {
+                    Expression inner = parseOr();
+                    expectSymbol(")");
+                    return inner;
+                }
+                throw error("Unexpected '" + token.text + "'", token);
+            case IDENTIFIER:
+                return parseIdentifier(token);
+            default:
+                throw error("Unexpected end of expression", token);
+        }
+    }
+    
+    private Expression parseIdentifier(Token token) {
+        String keyword = token.text.toUpperCase(Locale.ROOT);
+        switch (keyword) {
+            case "TRUE":
+                return new Constant(Boolean.TRUE);
+            case "FALSE":
+                return new Constant(Boolean.FALSE);
+            case "NULL":
+                return new Constant(null);
+            case "DATE":
+            case "TIMESTAMP":
+                if (peek().type == TokenType.STRING) {
+                    return new Constant(castConstant(next().text, keyword, token));
+                }
+                break;
+            case "CAST":
+                if (peek().text.equals("(")) {
+                    return parseCast();
+                }
+                break;
+            case "CASE":
+                return parseCase();
+            default:
+                break;
+        }
+        if (acceptSymbol("(")) {
+            List<Expression> args = new ArrayList<>();
+            if (!acceptSymbol(")")) {
+                do {
+                    args.add(parseOr());
+                } while (acceptSymbol(","));
+                expectSymbol(")");
+            }
+            try {
+                Expression function = Functions.compile(keyword, args.toArray(new Expression[0]));
+                return fold(function, args.toArray(new Expression[0]));
+            } catch (IllegalArgumentException e) {
+                throw error(e.getMessage(), token);
+            }
+        }
+        return field(token.text);
+    }
+    
+    private Expression parseCast() {
+        expectSymbol("(");
+        Expression value = parseOr();
+        expectKeyword("AS");
+        Token typeToken = next();
+        if (typeToken.type != TokenType.IDENTIFIER) {
+            throw error("Expected a type name", typeToken);
+        }
+        String type = typeToken.text.toUpperCase(Locale.ROOT);
+        if (!Values.TYPES.contains(type)) {
+            throw error("Unknown type " + typeToken.text, typeToken);
+        }
+        expectSymbol(")");
+        return fold(row -> Values.cast(value.evaluate(row), type), value);
+    }
+    
+    private Expression parseCase() {
+        List<Expression> conditions = new ArrayList<>();
+        List<Expression> results = new ArrayList<>();
+        while (acceptKeyword("WHEN")) {
+            conditions.add(parseOr());
+            expectKeyword("THEN");
+            results.add(parseOr());
+        }
+        if (conditions.isEmpty()) {
+            throw error("CASE needs at least one WHEN");
+        }
+        Expression otherwise = acceptKeyword("ELSE") ? parseOr() : new Constant(null);
+        expectKeyword("END");
+        
+        Expression[] whens = conditions.toArray(new Expression[0]);
+        Expression[] thens = results.toArray(new Expression[0]);
+        return row -> {
+            for (int i = 0; i < whens.length; i++) {
+                if (whens[i].test(row)) {
+                    return thens[i].evaluate(row);
+                }
+            }
+            return otherwise.evaluate(row);
+        };
+    }
+    
+    private Expression field(String name) {
+        int slot = compiler.slot(name);
+        Expression field = row -> row.value(slot);
+        compiler.fieldReference(field, name);
+        return field;
+    }
+    
+    /**
+     * Record the shape of a predicate on a field against literal values, if it has that shape
+     */
+    private Expression describeLeaf(Expression expression, Predicate.Kind kind, Expression field, String operator,
+                                    Expression... literals) {
+        String name = compiler.fieldOf(field);
+        if (name == null || expression instanceof Constant) {
+            return expression;
+        }
+        List<Object> values = new ArrayList<>();
+        for (Expression literal : literals) {
+            if (!(literal instanceof Constant c) || c.value == null) {
+                return expression;
+            }
+            values.add(c.value);
+        }
+        compiler.describe(expression, Predicate.leaf(kind, name, operator, values));
+        return expression;
+    }
+    
+    private Expression comparison(String op, Expression left, Expression right) {
+        Expression generic = fold(row -> {
+            Integer cmp = Values.compare(left.evaluate(row), right.evaluate(row));
+            return cmp == null ? null : matches(op, cmp);
+        }, left, right);
+        if (generic instanceof Constant) {
+            return generic;
+        }
+        
+        // Numeric literal on one side: compare as primitive doubles without re-converting the literal
+        Expression operand = right instanceof Constant ? left : left instanceof Constant ? right : null;
+        Object literal = right instanceof Constant c ? c.value : left instanceof Constant c ? c.value : null;
+        boolean flipped = operand == right;
+        Expression result = generic;
+        if (operand != null && (literal instanceof Long || literal instanceof Double)) {
+            double number = ((Number) literal).doubleValue();
+            result = row -> {
+                double value = Values.toDouble(operand.evaluate(row));
+                if (Double.isNaN(value)) {
+                    return null;
+                }
+                int cmp = Double.compare(value, number);
+                return matches(op, flipped ? -cmp : cmp);
+            };
+        }
+        if (operand != null) {
+            describeLeaf(result, Predicate.Kind.COMPARE, operand, flipped ? mirror(op) : normalize(op),
+                    flipped ? left : right);
+        }
+        return result;
+    }
+    
+    private static String normalize(String op) {
+        return switch (op) {
+            case "==" -> "=";
+            case "!=" -> "<>";
+            default -> op;
+        };
+    }
+    
+    /**
+     * The operator with its operands swapped (literal &lt; field becomes field &gt; literal)
+     */
+    private static String mirror(String op) {
+        return switch (op) {
+            case "<" -> ">";
+            case "<=" -> ">=";
+            case ">" -> "<";
+            case ">=" -> "<=";
+            default -> normalize(op);
+        };
+    }
+    
+    private static boolean matches(String op, int cmp) {
+        return switch (op) {
+            case "=", "==" -> cmp == 0;
+            case "!=", "<>" -> cmp != 0;
+            case "<" -> cmp < 0;
+            case "<=" -> cmp <= 0;
+            case ">" -> cmp > 0;
+            default -> cmp >= 0;
+        };
+    }
+    
+    private Expression like(Expression value, Expression pattern) {
+        if (pattern instanceof Constant c && c.value != null) {
+            Pattern compiled = likePattern(Values.toText(c.value));
+            return fold(row -> {
+                String text = Values.toText(value.evaluate(row));
+                return text == null ? null : compiled.matcher(text).matches();
+            }, value);
+        }
+        return fold(row -> {
+            String text = Values.toText(value.evaluate(row));
+            String p = Values.toText(pattern.evaluate(row));
+            return text == null || p == null ? null : likePattern(p).matcher(text).matches();
+        }, value, pattern);
+    }
+    
+    private static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+    
+    private static Expression negate(Expression expression, boolean negated) {
+        if (!negated) {
+            return expression;
+        }
+        return fold(row -> not(Values.toBoolean(expression.evaluate(row))), expression);
+    }
+    
+    private static Boolean not(Boolean value) {
+        return value == null ? null : !value;
+    }
+    
+    /**
+     * Evaluate the expression now if all of its operands are constants
+     */
+    private static Expression fold(Expression expression, Expression... operands) {
+        for (Expression operand : operands) {
+            if (!(operand instanceof Constant)) {
+                return expression;
+            }
+        }
+        return new Constant(expression.evaluate(slot -> null));
+    }
+    
+    private Object castConstant(String value, String type, Token token) {
+        try {
+            return Values.cast(value, type);
+        } catch (RuntimeException e) {
+            throw error("Invalid " + type + " literal '" + value + "'", token);
+        }
+    }
+    
+    private Object parseNumber(Token token) {
+        String number = token.text;
+        if (number.contains(".") || number.contains("e") || number.contains("E")) {
+            return Double.parseDouble(number);
+        }
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return new BigDecimal(number);
+        }
+    }
+    
+    private Token peek() {
+        return tokens.get(index);
+    }
+    
+    private Token next() {
+        Token token = tokens.get(index);
+        if (token.type != TokenType.END) {
+            index++;
+        }
+        return token;
+    }
+    
+    private boolean acceptKeyword(String keyword) {
+        if (peek().type == TokenType.IDENTIFIER && peek().text.equalsIgnoreCase(keyword)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+    
+    private void expectKeyword(String keyword) {
+        if (!acceptKeyword(keyword)) {
+            throw error("Expected " + keyword);
+        }
+    }
+    
+    private boolean acceptSymbol(String symbol) {
+        if (peek().type == TokenType.SYMBOL && peek().text.equals(symbol)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+    
+    private void expectSymbol(String symbol) {
+        if (!acceptSymbol(symbol)) {
+            throw error("Expected '" + symbol + "'");
+        }
+    }
+    
+    private IllegalArgumentException error(String message) {
+        return error(message, peek());
+    }
+    
+    private IllegalArgumentException error(String message, Token token) {
+        return new IllegalArgumentException(message + " at position " + (token.position + 1) + " in: " + text);
+    }
+    
+    private List<Token> tokenize(String source) {
+        List<Token> result = new ArrayList<>();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < source.length() && Character.isDigit(source.charAt(i + 1)))) {
+                int start = i;
+                while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                if (i < source.length() && (source.charAt(i) == 'e' || source.charAt(i) == 'E')) {
+                    i++;
+                    if (i < source.length() && (source.charAt(i) == '+' || source.charAt(i) == '-')) {
+                        i++;
+                    }
+                    while (i < source.length() && Character.isDigit(source.charAt(i))) {
+                        i++;
+                    }
+                }
+                result.add(new Token(TokenType.NUMBER, source.substring(start, i), start));
+            } else if (c == '\'' || c == '`' || c == '"') {
+                int start = i;
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= source.length()) {
+                        throw new IllegalArgumentException("Unterminated quote at position " + (start + 1) + " in: " + source);
+                    }
+                    char d = source.charAt(i++);
+                    if (d == c) {
+                        // A doubled quote is an escaped quote
+                        if (i < source.length() && source.charAt(i) == c) {
+                            value.append(c);
+                            i++;
+                            continue;
+                        }
+                        break;
+                    }
+                    value.append(d);
+                }
+                TokenType type = c == '\'' ? TokenType.STRING : TokenType.QUOTED_IDENTIFIER;
+                result.add(new Token(type, value.toString(), start));
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < source.length() && (Character.isLetterOrDigit(source.charAt(i))
+                        || source.charAt(i) == '_' || source.charAt(i) == '.')) {
+                    i++;
+                }
+                result.add(new Token(TokenType.IDENTIFIER, source.substring(start, i), start));
+            } else {
+                String two = i + 1 < source.length() ? source.substring(i, i + 2) : "";
+                if (two.equals("||") || two.equals("<=") || two.equals(">=") || two.equals("<>")
+                        || two.equals("!=") || two.equals("==")) {
+                    result.add(new Token(TokenType.SYMBOL, two, i));
+                    i += 2;
+                } else if ("()+-*/%,<>=".indexOf(c) >= 0) {
+                    result.add(new Token(TokenType.SYMBOL, String.valueOf(c), i));
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + (i + 1) + " in: " + source);
+                }
+            }
+        }
+        result.add(new Token(TokenType.END, "", source.length()));
+        return result;
+    }
+    
+    /**
+     * A literal or folded subtree
+     */
+    static final class Constant implements Expression {
+        
+        final Object value;
+        
+        Constant(Object value) {
+            this.value = value;
+        }
+        
+        @Override
+        public Object evaluate(Row row) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Built-in functions
+ * Arguments that are constants (date patterns, type names) are resolved when the expression is
+ * compiled rather than per row.
+ */
+final class Functions {
+    
+    private Functions() {
+    }
+    
+    /**
+     * @param name The upper-cased function name
+     * @param args The compiled arguments
+     * @return The function evaluator
+     * @throws IllegalArgumentException If the function is unknown or the arity is wrong
+     */
+    static Expression compile(String name, Expression[] args) {
+        return switch (name) {
+            case "UPPER" -> text(name, args, s -> s.toUpperCase(Locale.ROOT));
+            case "LOWER" -> text(name, args, s -> s.toLowerCase(Locale.ROOT));
+            case "TRIM" -> text(name, args, String::trim);
+            case "LENGTH" -> {
+                arity(name, args, 1, 1);
+                Expression arg = args[0];
+                yield row -> {
+                    String s = Values.toText(arg.evaluate(row));
+                    return s == null ? null : (Object) (long) s.length();
+                };
+            }
+            case "SUBSTRING", "SUBSTR" -> {
+                arity(name, args, 2, 3);
+                yield row -> {
+                    String s = Values.toText(args[0].evaluate(row));
+                    Object start = Values.toNumber(args[1].evaluate(row));
+                    if (s == null || start == null) {
+                        return null;
+                    }
+                    // 1-based like SQL
+                    int from = Math.min(s.length(), Math.max(0, ((Number) start).intValue() - 1));
+                    int to = s.length();
+                    if (args.length == 3) {
+                        Object length = Values.toNumber(args[2].evaluate(row));
+                        if (length == null) {
+                            return null;
+                        }
+                        to = Math.min(s.length(), from + Math.max(0, ((Number) length).intValue()));
+                    }
+                    return s.substring(from, to);
+                };
+            }
+            case "REPLACE" -> {
+                arity(name, args, 3, 3);
+                yield row -> {
+                    String s = Values.toText(args[0].evaluate(row));
+                    String target = Values.toText(args[1].evaluate(row));
+                    String replacement = Values.toText(args[2].evaluate(row));
+                    return s == null || target == null || replacement == null ? null : s.replace(target, replacement);
+                };
+            }
+            case "CONCAT" -> row -> {
+                StringBuilder result = new StringBuilder();
+                for (Expression arg : args) {
+                    String s = Values.toText(arg.evaluate(row));
+                    if (s != null) {
+                        result.append(s);
+                    }
+                }
+                return result.toString();
+            };
+            case "COALESCE" -> {
+                arity(name, args, 1, Integer.MAX_VALUE);
+                yield row -> {
+                    for (Expression arg : args) {
+                        Object value = arg.evaluate(row);
+                        if (value != null && !(value instanceof String s && s.isEmpty())) {
+                            return value;
+                        }
+                    }
+                    return null;
+                };
+            }
+            case "NULLIF" -> {
+                arity(name, args, 2, 2);
+                yield row -> {
+                    Object value = args[0].evaluate(row);
+                    Integer cmp = Values.compare(value, args[1].evaluate(row));
+                    return cmp != null && cmp == 0 ? null : value;
+                };
+            }
+            case "IF" -> {
+                arity(name, args, 3, 3);
+                yield row -> args[0].test(row) ? args[1].evaluate(row) : args[2].evaluate(row);
+            }
+            case "ABS" -> number(name, args, n -> n instanceof Long l ? (Object) Math.abs(l)
+                    : n instanceof BigDecimal b ? b.abs() : Math.abs(n.doubleValue()));
+            case "FLOOR" -> number(name, args, n -> n instanceof Long ? n
+                    : n instanceof BigDecimal b ? b.setScale(0, RoundingMode.FLOOR) : Math.floor(n.doubleValue()));
+            case "CEIL", "CEILING" -> number(name, args, n -> n instanceof Long ? n
+                    : n instanceof BigDecimal b ? b.setScale(0, RoundingMode.CEILING) : Math.ceil(n.doubleValue()));
+            case "ROUND" -> {
+                arity(name, args, 1, 2);
+                yield row -> {
+                    Object value = Values.toNumber(args[0].evaluate(row));
+                    Object places = args.length == 2 ? Values.toNumber(args[1].evaluate(row)) : 0L;
+                    if (value == null || places == null) {
+                        return null;
+                    }
+                    if (value instanceof Long && ((Number) places).intValue() >= 0) {
+                        return value;
+                    }
+                    BigDecimal rounded = Values.toDecimal(value).setScale(((Number) places).intValue(), RoundingMode.HALF_UP);
+                    return value instanceof BigDecimal ? rounded : (Object) rounded.doubleValue();
+                };
+            }
+            case "TO_DATE" -> temporal(name, args, LocalDate::from, Values::toDate);
+            case "TO_TIMESTAMP" -> temporal(name, args, LocalDateTime::from, Values::toTimestamp);
+            case "FORMAT_DATE" -> {
+                arity(name, args, 2, 2);
+                Function<Object, DateTimeFormatter> formatter = formatter(args[1]);
+                yield row -> {
+                    Object value = args[0].evaluate(row);
+                    if (value == null) {
+                        return null;
+                    }
+                    Object date = value instanceof LocalDate || value instanceof LocalDateTime ? value : Values.toTimestamp(value);
+                    DateTimeFormatter format = formatter.apply(args[1].evaluate(row));
+                    return format == null ? null : format.format((TemporalAccessor) date);
+                };
+            }
+            case "YEAR" -> datePart(name, args, date -> (long) date.getYear());
+            case "MONTH" -> datePart(name, args, date -> (long) date.getMonthValue());
+            case "DAY" -> datePart(name, args, date -> (long) date.getDayOfMonth());
+            default -> throw new IllegalArgumentException("Unknown function " + name);
+        };
+    }
+    
+    private static void arity(String name, Expression[] args, int min, int max) {
+        if (args.length < min || args.length > max) {
+            String expected = min == max ? String.valueOf(min) : max == Integer.MAX_VALUE ? "at least " + min : min + " to " + max;
+            throw new IllegalArgumentException(name + " takes " + expected + " argument(s), got " + args.length);
+        }
+    }
+    
+    private static Expression text(String name, Expression[] args, Function<String, Object> function) {
+        arity(name, args, 1, 1);
+        Expression arg = args[0];
+        return row -> {
+            String s = Values.toText(arg.evaluate(row));
+            return s == null ? null : function.apply(s);
+        };
+    }
+    
+    private static Expression number(String name, Expression[] args, Function<Number, Object> function) {
+        arity(name, args, 1, 1);
+        Expression arg = args[0];
+        return row -> {
+            Object n = Values.toNumber(arg.evaluate(row));
+            return n == null ? null : function.apply((Number) n);
+        };
+    }
+    
+    private static Expression datePart(String name, Expression[] args, Function<LocalDate, Object> function) {
+        arity(name, args, 1, 1);
+        Expression arg = args[0];
+        return row -> {
+            Object value = arg.evaluate(row);
+            return value == null ? null : function.apply(Values.toDate(value));
+        };
+    }
+    
+    /**
+     * TO_DATE / TO_TIMESTAMP with an optional pattern; ISO formats without one
+     */
+    private static Expression temporal(String name, Expression[] args, Function<TemporalAccessor, Object> from,
+                                       Function<Object, Object> iso) {
+        arity(name, args, 1, 2);
+        Expression arg = args[0];
+        if (args.length == 1) {
+            return row -> {
+                Object value = arg.evaluate(row);
+                return value == null || (value instanceof String s && s.isBlank()) ? null : iso.apply(value);
+            };
+        }
+        Function<Object, DateTimeFormatter> formatter = formatter(args[1]);
+        return row -> {
+            String text = Values.toText(arg.evaluate(row));
+            DateTimeFormatter format = formatter.apply(args[1].evaluate(row));
+            if (text == null || text.isBlank() || format == null) {
+                return null;
+            }
+            return from.apply(format.parse(text.trim()));
+        };
+    }
+    
+    /**
+     * Resolve a pattern argument, building the formatter once when the pattern is a literal
+     */
+    private static Function<Object, DateTimeFormatter> formatter(Expression pattern) {
+        if (pattern instanceof ExpressionParser.Constant c) {
+            if (c.value == null) {
+                return ignored -> null;
+            }
+            DateTimeFormatter format = DateTimeFormatter.ofPattern(Values.toText(c.value), Locale.ROOT);
+            return ignored -> format;
+        }
+        return value -> value == null ? null : DateTimeFormatter.ofPattern(Values.toText(value), Locale.ROOT);
+    }
+}
@@ -0,0 +1,26 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+import java.util.List;
+
+/**
+ * Structure of a simple predicate inside a compiled expression, for planners that push filters to a source
+ * Only shapes over a single field and literal values are described (e.g. amount &gt; 100,
+ * status IN ('A', 'B'), name LIKE 'x%'); an AND lists whichever of its operands could be described.
+ * @param kind The predicate shape
+ * @param field The field compared, for leaf predicates
+ * @param operator The comparison operator (=, &lt;&gt;, &lt;, &lt;=, &gt;, &gt;=) with the field on the left
+ * @param values The literal values
+ * @param operands The operands of AND / OR
+ */
+public record Predicate(Kind kind, String field, String operator, List<Object> values, List<Predicate> operands) {
+    
+    public enum Kind { COMPARE, IN, LIKE, BETWEEN, IS_NULL, IS_NOT_NULL, AND, OR }
+    
+    static Predicate leaf(Kind kind, String field, String operator, List<Object> values) {
+        return new Predicate(kind, field, operator, values, List.of());
+    }
+    
+    static Predicate of(Kind kind, List<Predicate> operands) {
+        return new Predicate(kind, null, null, List.of(), operands);
+    }
+}
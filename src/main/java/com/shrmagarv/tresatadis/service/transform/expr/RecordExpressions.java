@@ -0,0 +1,127 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The row filter and derived columns of a transformation config, compiled once per job
+ * <pre>
+ *   "filter": "amount &gt; 0 AND status = 'OPEN'",
+ *   "derive": {"full_name": "first || ' ' || last", "amount_eur": "CAST(amount AS DOUBLE) * 0.92"}
+ * </pre>
+ * Expressions refer to the input field names, before any renames or removals.
+ */
+public class RecordExpressions {
+    
+    private final List<String> fields;
+    private final Expression filter;
+    private final Predicate filterPredicate;
+    private final List<String> derivedNames;
+    private final Expression[] derived;
+    
+    private RecordExpressions(List<String> fields, Expression filter, Predicate filterPredicate,
+                              List<String> derivedNames, Expression[] derived) {
+        this.fields = fields;
+        this.filter = filter;
+        this.filterPredicate = filterPredicate;
+        this.derivedNames = derivedNames;
+        this.derived = derived;
+    }
+    
+    /**
+     * Compile the "filter" and "derive" entries of a config
+     * @param config The parsed transformation config
+     * @return The compiled expressions, or null if the config has neither
+     * @throws IllegalArgumentException If an expression is invalid
+     */
+    public static RecordExpressions compile(JsonNode config) {
+        JsonNode filterText = config.path("filter");
+        JsonNode derive = config.path("derive");
+        if (filterText.isMissingNode() && derive.isMissingNode()) {
+            return null;
+        }
+        if (!derive.isMissingNode() && !derive.isObject()) {
+            throw new IllegalArgumentException("derive must be an object of column name to expression");
+        }
+        
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        Expression filter = filterText.isMissingNode() ? null : compiler.compile(filterText.asText());
+        List<String> derivedNames = new ArrayList<>();
+        List<Expression> derived = new ArrayList<>();
+        for (Iterator<String> it = derive.fieldNames(); it.hasNext(); ) {
+            String name = it.next();
+            derivedNames.add(name);
+            derived.add(compiler.compile(derive.get(name).asText()));
+        }
+        return new RecordExpressions(compiler.getFields(), filter, filter == null ? null : compiler.describe(filter),
+                derivedNames, derived.toArray(new Expression[0]));
+    }
+    
+    /**
+     * @return Input field names referenced by the expressions, in slot order
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+    
+    /**
+     * @return Names of the derived columns, in config order
+     */
+    public List<String> getDerivedNames() {
+        return derivedNames;
+    }
+    
+    public boolean hasFilter() {
+        return filter != null;
+    }
+    
+    /**
+     * @return The simple predicates implied by the filter, or null if there are none
+     */
+    public Predicate getFilterPredicate() {
+        return filterPredicate;
+    }
+    
+    /**
+     * @param row The input row
+     * @return True if the row passes the filter (or there is none)
+     */
+    public boolean test(Row row) {
+        return filter == null || filter.test(row);
+    }
+    
+    /**
+     * Evaluate the derived columns
+     * @param row The input row
+     * @param values Receives one value per derived column
+     */
+    public void derive(Row row, Object[] values) {
+        for (int i = 0; i < derived.length; i++) {
+            values[i] = derived[i].evaluate(row);
+        }
+    }
+    
+    /**
+     * Bind the field slots to a JSON record
+     * @param record The input record
+     * @return The row
+     */
+    public Row row(ObjectNode record) {
+        return slot -> Values.fromJson(record.get(fields.get(slot)));
+    }
+    
+    /**
+     * Set derived column values on a JSON record
+     * @param values Values from derive(Row, Object[])
+     * @param target The record to set the derived columns on
+     */
+    public void setDerived(Object[] values, ObjectNode target) {
+        for (int i = 0; i < values.length; i++) {
+            target.set(derivedNames.get(i), Values.toJson(values[i]));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+/**
+ * Field values of the record an expression is evaluated against
+ * Fields are addressed by the slot the ExpressionCompiler assigned to their name, so each format
+ * can bind slots to its own storage (a CSV column index, a JSON field) once per input.
+ */
+@FunctionalInterface
+public interface Row {
+    
+    /**
+     * @param slot The field slot
+     * @return The value (String, Long, Double, BigDecimal, Boolean, LocalDate, LocalDateTime) or null
+     */
+    Object value(int slot);
+}
@@ -0,0 +1,307 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+
+/**
+ * Value conversions and operators for expressions
+ * Values are String, Long, Double, BigDecimal, Boolean, LocalDate, LocalDateTime or null. Text that
+ * looks like a number or date is coerced when compared with or computed against one, because CSV
+ * and XML fields arrive as text.
+ */
+public final class Values {
+    
+    /**
+     * Type names accepted by CAST
+     */
+    static final Set<String> TYPES = Set.of("INTEGER", "INT", "LONG", "BIGINT", "DOUBLE", "FLOAT", "DECIMAL",
+            "NUMERIC", "STRING", "VARCHAR", "TEXT", "BOOLEAN", "DATE", "TIMESTAMP", "DATETIME");
+    
+    private Values() {
+    }
+    
+    /**
+     * Convert a JSON value to an expression value
+     * @param node The node, may be null
+     * @return The value
+     */
+    public static Object fromJson(JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isIntegralNumber() && node.canConvertToLong()) {
+            return node.longValue();
+        }
+        if (node.isBigDecimal()) {
+            return node.decimalValue();
+        }
+        if (node.isNumber()) {
+            return node.doubleValue();
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        return node.toString();
+    }
+    
+    /**
+     * Convert an expression value to JSON
+     * @param value The value
+     * @return The node (dates as ISO text)
+     */
+    public static JsonNode toJson(Object value) {
+        if (value == null) {
+            return NullNode.getInstance();
+        }
+        if (value instanceof Long l) {
+            return LongNode.valueOf(l);
+        }
+        if (value instanceof Double d) {
+            return DoubleNode.valueOf(d);
+        }
+        if (value instanceof BigDecimal b) {
+            return DecimalNode.valueOf(b);
+        }
+        if (value instanceof Boolean b) {
+            return BooleanNode.valueOf(b);
+        }
+        return TextNode.valueOf(value.toString());
+    }
+    
+    /**
+     * @param value The value
+     * @return The value as text, null stays null
+     */
+    public static String toText(Object value) {
+        if (value instanceof BigDecimal b) {
+            return b.toPlainString();
+        }
+        return value == null ? null : value.toString();
+    }
+    
+    static boolean isNumber(Object value) {
+        return value instanceof Long || value instanceof Double || value instanceof BigDecimal;
+    }
+    
+    /**
+     * Interpret a value as a number
+     * @return Long, Double or BigDecimal, or null if the value is not numeric
+     */
+    static Object toNumber(Object value) {
+        if (value == null || isNumber(value)) {
+            return value;
+        }
+        if (value instanceof Boolean b) {
+            return b ? 1L : 0L;
+        }
+        String text = value.toString().trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * @return The value as a double, or NaN if it is not numeric
+     */
+    static double toDouble(Object value) {
+        if (value instanceof Long l) {
+            return l;
+        }
+        if (value instanceof Double d) {
+            return d;
+        }
+        Object number = toNumber(value);
+        return number == null ? Double.NaN : ((Number) number).doubleValue();
+    }
+    
+    static Boolean toBoolean(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (isNumber(value)) {
+            return toDouble(value) != 0;
+        }
+        String text = value.toString().trim();
+        if (text.equalsIgnoreCase("true") || text.equals("1") || text.equalsIgnoreCase("yes")) {
+            return true;
+        }
+        if (text.equalsIgnoreCase("false") || text.equals("0") || text.equalsIgnoreCase("no")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + text);
+    }
+    
+    /**
+     * Compare two values, coercing text to the type of the other side
+     * @return The comparison result, or null if either side is null or the values are not comparable
+     */
+    static Integer compare(Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (isNumber(left) || isNumber(right)) {
+            Object l = toNumber(left);
+            Object r = toNumber(right);
+            if (l == null || r == null) {
+                return null;
+            }
+            if (l instanceof Long a && r instanceof Long b) {
+                return Long.compare(a, b);
+            }
+            if (l instanceof BigDecimal || r instanceof BigDecimal) {
+                return toDecimal(l).compareTo(toDecimal(r));
+            }
+            return Double.compare(((Number) l).doubleValue(), ((Number) r).doubleValue());
+        }
+        if (left instanceof LocalDateTime || right instanceof LocalDateTime) {
+            try {
+                return toTimestamp(left).compareTo(toTimestamp(right));
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        if (left instanceof LocalDate || right instanceof LocalDate) {
+            try {
+                return toDate(left).compareTo(toDate(right));
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        if (left instanceof Boolean || right instanceof Boolean) {
+            return Boolean.compare(toBoolean(left), toBoolean(right));
+        }
+        return left.toString().compareTo(right.toString());
+    }
+    
+    static BigDecimal toDecimal(Object value) {
+        if (value instanceof BigDecimal b) {
+            return b;
+        }
+        if (value instanceof Long l) {
+            return BigDecimal.valueOf(l);
+        }
+        if (value instanceof Double d) {
+            return BigDecimal.valueOf(d);
+        }
+        return new BigDecimal(value.toString().trim());
+    }
+    
+    static LocalDate toDate(Object value) {
+        if (value instanceof LocalDate d) {
+            return d;
+        }
+        if (value instanceof LocalDateTime t) {
+            return t.toLocalDate();
+        }
+        return LocalDate.parse(value.toString().trim());
+    }
+    
+    static LocalDateTime toTimestamp(Object value) {
+        if (value instanceof LocalDateTime t) {
+            return t;
+        }
+        if (value instanceof LocalDate d) {
+            return d.atStartOfDay();
+        }
+        String text = value.toString().trim();
+        return text.length() <= 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text.replace(' ', 'T'));
+    }
+    
+    /**
+     * Apply an arithmetic operator (+ - * / %), in long arithmetic when both sides are integers
+     * @return The result, or null if either side is null or not numeric
+     */
+    static Object arithmetic(char op, Object left, Object right) {
+        Object l = toNumber(left);
+        Object r = toNumber(right);
+        if (l == null || r == null) {
+            return null;
+        }
+        if (l instanceof Long a && r instanceof Long b && op != '/') {
+            return switch (op) {
+                case '+' -> a + b;
+                case '-' -> a - b;
+                case '*' -> a * b;
+                default -> b == 0 ? null : a % b;
+            };
+        }
+        if (l instanceof BigDecimal || r instanceof BigDecimal) {
+            BigDecimal a = toDecimal(l);
+            BigDecimal b = toDecimal(r);
+            return switch (op) {
+                case '+' -> a.add(b);
+                case '-' -> a.subtract(b);
+                case '*' -> a.multiply(b);
+                case '/' -> b.signum() == 0 ? null : a.divide(b, Math.max(a.scale(), 10), RoundingMode.HALF_UP);
+                default -> b.signum() == 0 ? null : a.remainder(b);
+            };
+        }
+        double a = ((Number) l).doubleValue();
+        double b = ((Number) r).doubleValue();
+        return switch (op) {
+            case '+' -> a + b;
+            case '-' -> a - b;
+            case '*' -> a * b;
+            case '/' -> b == 0 ? null : a / b;
+            default -> b == 0 ? null : a % b;
+        };
+    }
+    
+    /**
+     * Convert a value to a type named in CAST
+     * @param value The value
+     * @param type INTEGER, LONG, DOUBLE, DECIMAL, STRING, BOOLEAN, DATE or TIMESTAMP
+     * @return The converted value; null if the value is null or blank text
+     */
+    static Object cast(Object value, String type) {
+        if (value == null || (value instanceof String s && s.isBlank() && !"STRING".equals(type))) {
+            return null;
+        }
+        return switch (type) {
+            case "INTEGER", "INT", "LONG", "BIGINT" -> {
+                Object number = toNumber(value);
+                if (number == null) {
+                    throw new IllegalArgumentException("Cannot cast to " + type + ": " + value);
+                }
+                yield ((Number) number).longValue();
+            }
+            case "DOUBLE", "FLOAT" -> {
+                double number = toDouble(value);
+                if (Double.isNaN(number)) {
+                    throw new IllegalArgumentException("Cannot cast to " + type + ": " + value);
+                }
+                yield number;
+            }
+            case "DECIMAL", "NUMERIC" -> toDecimal(value);
+            case "STRING", "VARCHAR", "TEXT" -> toText(value);
+            case "BOOLEAN" -> toBoolean(value);
+            case "DATE" -> toDate(value);
+            case "TIMESTAMP", "DATETIME" -> toTimestamp(value);
+            default -> throw new IllegalArgumentException("Unknown type: " + type);
+        };
+    }
+}
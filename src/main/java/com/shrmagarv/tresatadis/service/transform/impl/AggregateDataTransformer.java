@@ -0,0 +1,119 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.convert.ConversionConfig;
+import com.shrmagarv.tresatadis.service.convert.RecordReader;
+import com.shrmagarv.tresatadis.service.convert.RecordWriter;
+import com.shrmagarv.tresatadis.service.io.SpillOutputStream;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
+import com.shrmagarv.tresatadis.service.transform.DataTransformer;
+import com.shrmagarv.tresatadis.service.transform.TransformConfigCache;
+import com.shrmagarv.tresatadis.service.transform.aggregate.AggregateSpec;
+import com.shrmagarv.tresatadis.service.transform.aggregate.HashAggregation;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataTransformer that groups records and writes one aggregate record per group
+ * Config: {"groupBy": [...], "aggregates": [...]} (see AggregateSpec) plus the CONVERT writer options;
+ * output is in the source format unless targetFormat is given. Rows are aggregated by parallel
+ * workers into primitive hash tables that spill partial aggregates to disk beyond the memory limit,
+ * and the partials are merged at the end. Groups are written in no particular order.
+ */
+@Service
+@Slf4j
+public class AggregateDataTransformer implements DataTransformer {
+    
+    private static final String TRANSFORMATION_TYPE = "AGGREGATE";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransformConfigCache<AggregateSpec> configs = new TransformConfigCache<>(
+            AggregateSpec::parse, "groupBy", "aggregates");
+    
+    @Value("${app.transform.spill-threshold-bytes:67108864}")
+    private int spillThresholdBytes = 64 * 1024 * 1024;
+    
+    @Value("${app.transform.aggregate.parallelism:4}")
+    private int parallelism = 4;
+    
+    @Value("${app.transform.aggregate.memory-limit-bytes:268435456}")
+    private long memoryLimitBytes = 256L * 1024 * 1024;
+    
+    @Value("${app.transform.aggregate.spill-partitions:32}")
+    private int spillPartitions = 32;
+    
+    private ExecutorService executor;
+    
+    @PostConstruct
+    public void init() {
+        if (parallelism > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "Aggregate-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Override
+    public String getTransformationType() {
+        return TRANSFORMATION_TYPE;
+    }
+    
+    @Override
+    public boolean canHandle(String transformationType) {
+        return TRANSFORMATION_TYPE.equals(transformationType);
+    }
+    
+    @Override
+    public String getOutputFormat(String sourceFormat, String transformationConfig) throws Exception {
+        return configs.outputConfig(transformationConfig, sourceFormat).getTargetFormat();
+    }
+    
+    @Override
+    public Resource transform(Resource data, String sourceFormat, String transformationConfig) throws Exception {
+        if (sourceFormat == null || !ConversionConfig.FORMATS.contains(sourceFormat.toUpperCase())) {
+            throw new IllegalArgumentException("Unsupported format for AGGREGATE: " + sourceFormat);
+        }
+        AggregateSpec spec = configs.spec(transformationConfig);
+        ConversionConfig output = configs.outputConfig(transformationConfig, sourceFormat);
+        
+        int workers = executor == null ? 1 : parallelism;
+        SpillOutputStream outputStream = new SpillOutputStream(spillThresholdBytes);
+        try (HashAggregation aggregation = new HashAggregation(spec, objectMapper, executor, workers,
+                memoryLimitBytes, spillPartitions)) {
+            try (RecordReader reader = RecordReader.open(sourceFormat, data, output, objectMapper)) {
+                JsonNode record;
+                while ((record = reader.next()) != null) {
+                    aggregation.add(record);
+                }
+            }
+            
+            try (RecordWriter writer = RecordWriter.open(output, outputStream, objectMapper)) {
+                long groups = aggregation.finish(writer::write);
+                log.debug("Aggregated {} rows into {} groups", aggregation.getRows(), groups);
+            }
+        } catch (Exception e) {
+            TempFileResource.release(outputStream.toResource());
+            throw e;
+        }
+        
+        return outputStream.toResource();
+    }
+}
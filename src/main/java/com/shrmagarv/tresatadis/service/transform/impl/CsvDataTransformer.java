@@ -1,29 +1,43 @@
 package com.shrmagarv.tresatadis.service.transform.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.csv.CsvProjection;
+import com.shrmagarv.tresatadis.service.csv.CsvReader;
+import com.shrmagarv.tresatadis.service.io.SpillOutputStream;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
 import com.shrmagarv.tresatadis.service.transform.DataTransformer;
-import org.springframework.core.io.ByteArrayResource;
+import com.shrmagarv.tresatadis.service.transform.TransformConfigCache;
+import com.shrmagarv.tresatadis.service.transform.expr.RecordExpressions;
+import com.shrmagarv.tresatadis.service.transform.expr.Row;
+import com.shrmagarv.tresatadis.service.transform.parallel.OrderedBatchExecutor;
+import com.shrmagarv.tresatadis.service.transform.parallel.ParallelTransformPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.nio.charset.StandardCharsets;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Implementation of DataTransformer for CSV data
- * Handles transformation of CSV files based on configuration
+ * Handles transformation of CSV files based on configuration: column renames and removals,
+ * an optional row "filter" expression and "derive" expressions for computed columns.
+ * With "parallelism" above 1, rows with expressions are evaluated in batches on the parallel
+ * transform pool and written back in input order.
  */
 @Service
 public class CsvDataTransformer implements DataTransformer {
     
     private static final String TRANSFORMATION_TYPE = "CSV";
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransformConfigCache<CompiledConfig> configs = new TransformConfigCache<>(this::compile);
+    
+    @Value("${app.transform.spill-threshold-bytes:67108864}")
+    private int spillThresholdBytes = 64 * 1024 * 1024;
+    
+    @Autowired
+    private ParallelTransformPool parallelPool;
     
     @Override
     public String getTransformationType() {
@@ -41,157 +55,103 @@ public class CsvDataTransformer implements DataTransformer {
             throw new IllegalArgumentException("This transformer only works with CSV data");
         }
         
-        // Parse the CSV data
-        List<String> headers;
-        List<Map<String, String>> records = new ArrayList<>();
+        CompiledConfig config = configs.spec(transformationConfig);
+        SpillOutputStream outputStream = new SpillOutputStream(spillThresholdBytes);
         
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(data.getInputStream()))) {
+        try (CsvReader reader = CsvReader.open(data)) {
             // Read headers
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
+            List<String> headers = reader.readRecord();
+            if (headers == null) {
                 throw new IllegalArgumentException("CSV file is empty");
             }
             
-            headers = parseCsvLine(headerLine);
-            
-            // Read records
-            String line;
-            while ((line = reader.readLine()) != null) {
-                List<String> values = parseCsvLine(line);
-                Map<String, String> record = new HashMap<>();
-                
-                // Map values to headers
-                for (int i = 0; i < Math.min(headers.size(), values.size()); i++) {
-                    record.put(headers.get(i), values.get(i));
+            // Project each row as it is parsed
+            CsvProjection.Plan plan = config.projection.bind(headers);
+            RecordExpressions expressions = config.expressions;
+            if (expressions == null) {
+                plan.writeHeader(outputStream);
+                while (reader.next()) {
+                    plan.writeRow(reader, outputStream);
                 }
+            } else {
+                plan = plan.withDerived(expressions.getDerivedNames());
+                plan.writeHeader(outputStream);
                 
-                records.add(record);
-            }
-        }
-        
-        // Parse transformation config
-        JsonNode configNode = objectMapper.readTree(transformationConfig);
-        
-        // Apply transformations
-        List<String> newHeaders;
-        List<Map<String, String>> transformedRecords;
-        
-        if (configNode.has("fieldMappings")) {
-            Map<String, String> fieldMappings = new HashMap<>();
-            JsonNode mappings = configNode.get("fieldMappings");
-            
-            for (Iterator<String> it = mappings.fieldNames(); it.hasNext(); ) {
-                String targetField = it.next();
-                String sourceField = mappings.get(targetField).asText();
-                fieldMappings.put(sourceField, targetField);
-            }
-            
-            // Get new headers from mappings
-            newHeaders = new ArrayList<>();
-            for (String oldHeader : headers) {
-                if (fieldMappings.containsKey(oldHeader)) {
-                    newHeaders.add(fieldMappings.get(oldHeader));
-                } else if (!configNode.has("fieldsToRemove") || 
-                        !containsField(configNode.get("fieldsToRemove"), oldHeader)) {
-                    newHeaders.add(oldHeader);
+                // Bind expression fields to column indexes; only referenced cells are decoded
+                int[] columns = new int[expressions.getFields().size()];
+                for (int slot = 0; slot < columns.length; slot++) {
+                    columns[slot] = headers.indexOf(expressions.getFields().get(slot));
                 }
-            }
-            
-            // Transform records
-            transformedRecords = records.stream()
-                    .map(record -> {
-                        Map<String, String> newRecord = new HashMap<>();
-                        for (Map.Entry<String, String> entry : record.entrySet()) {
-                            String oldHeader = entry.getKey();
-                            String value = entry.getValue();
-                            
-                            if (fieldMappings.containsKey(oldHeader)) {
-                                newRecord.put(fieldMappings.get(oldHeader), value);
-                            } else if (!configNode.has("fieldsToRemove") || 
-                                    !containsField(configNode.get("fieldsToRemove"), oldHeader)) {
-                                newRecord.put(oldHeader, value);
-                            }
+                if (config.parallelism > 1) {
+                    transformParallel(reader, plan, expressions, columns, config.parallelism, outputStream);
+                } else {
+                    Row row = slot -> {
+                        int column = columns[slot];
+                        return column >= 0 && column < reader.getFieldCount() ? reader.getString(column) : null;
+                    };
+                    Object[] derivedValues = new Object[expressions.getDerivedNames().size()];
+                    while (reader.next()) {
+                        if (expressions.test(row)) {
+                            expressions.derive(row, derivedValues);
+                            plan.writeRow(reader, derivedValues, outputStream);
                         }
-                        return newRecord;
-                    })
-                    .collect(Collectors.toList());
-        } else {
-            // No field mappings, just filter out removed fields
-            if (configNode.has("fieldsToRemove")) {
-                newHeaders = headers.stream()
-                        .filter(header -> !containsField(configNode.get("fieldsToRemove"), header))
-                        .collect(Collectors.toList());
-                
-                transformedRecords = records.stream()
-                        .map(record -> {
-                            Map<String, String> newRecord = new HashMap<>();
-                            for (Map.Entry<String, String> entry : record.entrySet()) {
-                                String header = entry.getKey();
-                                if (!containsField(configNode.get("fieldsToRemove"), header)) {
-                                    newRecord.put(header, entry.getValue());
-                                }
-                            }
-                            return newRecord;
-                        })
-                        .collect(Collectors.toList());
-            } else {
-                // No transformations
-                newHeaders = headers;
-                transformedRecords = records;
-            }
-        }
-        
-        // Convert back to CSV
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        try (PrintWriter writer = new PrintWriter(outputStream)) {
-            // Write headers
-            writer.println(String.join(",", newHeaders));
-            
-            // Write records
-            for (Map<String, String> record : transformedRecords) {
-                List<String> values = newHeaders.stream()
-                        .map(header -> {
-                            String value = record.getOrDefault(header, "");
-                            // Escape commas in values
-                            return value.contains(",") ? "\"" + value + "\"" : value;
-                        })
-                        .collect(Collectors.toList());
-                
-                writer.println(String.join(",", values));
+                    }
+                }
             }
+        } catch (Exception e) {
+            TempFileResource.release(outputStream.toResource());
+            throw e;
         }
         
-        return new ByteArrayResource(outputStream.toByteArray());
+        return outputStream.toResource();
     }
     
-    private List<String> parseCsvLine(String line) {
-        List<String> result = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder field = new StringBuilder();
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                result.add(field.toString());
-                field.setLength(0);
-            } else {
-                field.append(c);
+    /**
+     * Evaluate the expressions of batches of decoded rows on the parallel transform pool
+     */
+    private void transformParallel(CsvReader reader, CsvProjection.Plan plan, RecordExpressions expressions,
+                                   int[] columns, int parallelism, SpillOutputStream outputStream) throws IOException {
+        try (OrderedBatchExecutor<String[], byte[]> executor = parallelPool.executor(parallelism,
+                batch -> transformBatch(batch, plan, expressions, columns), outputStream::write)) {
+            while (reader.next()) {
+                String[] fields = new String[reader.getFieldCount()];
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = reader.getString(i);
+                }
+                executor.add(fields);
             }
+            executor.finish();
         }
-        
-        result.add(field.toString());
-        return result;
     }
     
-    private boolean containsField(JsonNode fieldsArray, String fieldName) {
-        for (JsonNode field : fieldsArray) {
-            if (field.asText().equals(fieldName)) {
-                return true;
+    private static byte[] transformBatch(List<String[]> batch, CsvProjection.Plan plan, RecordExpressions expressions,
+                                         int[] columns) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(batch.size() * 64);
+        Object[] derivedValues = new Object[expressions.getDerivedNames().size()];
+        for (String[] fields : batch) {
+            Row row = slot -> {
+                int column = columns[slot];
+                return column >= 0 && column < fields.length ? fields[column] : null;
+            };
+            if (expressions.test(row)) {
+                expressions.derive(row, derivedValues);
+                plan.writeRow(fields, derivedValues, out);
             }
         }
-        return false;
+        return out.toByteArray();
+    }
+    
+    /**
+     * Compile a transformation config; the result is reused for later batches of the same job
+     */
+    private CompiledConfig compile(JsonNode configNode) {
+        int parallelism = parallelPool != null ? parallelPool.parallelism(configNode) : 1;
+        return new CompiledConfig(CsvProjection.compile(configNode), RecordExpressions.compile(configNode), parallelism);
+    }
+    
+    /**
+     * Column projection plus optional filter and derived columns, and the job's transform parallelism
+     */
+    private record CompiledConfig(CsvProjection projection, RecordExpressions expressions, int parallelism) {
     }
 }
@@ -0,0 +1,170 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shrmagarv.tresatadis.service.convert.ConversionConfig;
+import com.shrmagarv.tresatadis.service.convert.RecordReader;
+import com.shrmagarv.tresatadis.service.convert.RecordWriter;
+import com.shrmagarv.tresatadis.service.io.SpillOutputStream;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
+import com.shrmagarv.tresatadis.service.source.DataSourceConnectorFactory;
+import com.shrmagarv.tresatadis.service.transform.DataTransformer;
+import com.shrmagarv.tresatadis.service.transform.TransformConfigCache;
+import com.shrmagarv.tresatadis.service.transform.enrich.EnrichSpec;
+import com.shrmagarv.tresatadis.service.transform.enrich.ReferenceIndex;
+import com.shrmagarv.tresatadis.service.transform.enrich.ReferenceIndexCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * DataTransformer that adds attributes from a reference dataset to each record by key
+ * Config: see EnrichSpec, plus the CONVERT writer options; output is in the source format unless
+ * targetFormat is given. The reference is loaded once into an off-heap ReferenceIndex shared by all
+ * jobs through the ReferenceIndexCache, so per-record lookups never leave the process.
+ */
+@Service
+@Slf4j
+public class EnrichDataTransformer implements DataTransformer {
+    
+    private static final String TRANSFORMATION_TYPE = "ENRICH";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransformConfigCache<EnrichSpec> configs = new TransformConfigCache<>(
+            configNode -> EnrichSpec.parse(configNode, this.defaultTtlSeconds * 1000),
+            "key", "reference", "fields", "prefix", "onMiss");
+    
+    @Autowired
+    private DataSourceConnectorFactory connectorFactory;
+    
+    @Autowired
+    private ReferenceIndexCache referenceIndexCache;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${app.transform.spill-threshold-bytes:67108864}")
+    private int spillThresholdBytes = 64 * 1024 * 1024;
+    
+    @Value("${app.transform.enrich.ttl-seconds:300}")
+    private long defaultTtlSeconds = 300;
+    
+    @Override
+    public String getTransformationType() {
+        return TRANSFORMATION_TYPE;
+    }
+    
+    @Override
+    public boolean canHandle(String transformationType) {
+        return TRANSFORMATION_TYPE.equals(transformationType);
+    }
+    
+    @Override
+    public String getOutputFormat(String sourceFormat, String transformationConfig) throws Exception {
+        return configs.outputConfig(transformationConfig, sourceFormat).getTargetFormat();
+    }
+    
+    @Override
+    public Resource transform(Resource data, String sourceFormat, String transformationConfig) throws Exception {
+        if (sourceFormat == null || !ConversionConfig.FORMATS.contains(sourceFormat.toUpperCase())) {
+            throw new IllegalArgumentException("Unsupported format for ENRICH: " + sourceFormat);
+        }
+        EnrichSpec spec = configs.spec(transformationConfig);
+        ConversionConfig output = configs.outputConfig(transformationConfig, sourceFormat);
+        ReferenceIndex index = referenceIndexCache.get(spec.getIndexKey(), spec.getTtlMillis(), () -> load(spec));
+        
+        List<String> fields = index.getFields();
+        String[] outputNames = new String[fields.size()];
+        for (int i = 0; i < outputNames.length; i++) {
+            outputNames[i] = spec.getPrefix() + fields.get(i);
+        }
+        
+        long hits = 0;
+        long misses = 0;
+        SpillOutputStream outputStream = new SpillOutputStream(spillThresholdBytes);
+        try (RecordReader reader = RecordReader.open(sourceFormat, data, output, objectMapper);
+             RecordWriter writer = RecordWriter.open(output, outputStream, objectMapper)) {
+            JsonNode record;
+            while ((record = reader.next()) != null) {
+                if (!(record instanceof ObjectNode object)) {
+                    writer.write(record);
+                    continue;
+                }
+                JsonNode key = object.get(spec.getKey());
+                JsonNode[] values = key == null || key.isNull() || key.isContainerNode() ? null : index.lookup(key.asText());
+                if (values != null) {
+                    hits++;
+                    for (int i = 0; i < values.length; i++) {
+                        object.set(outputNames[i], values[i]);
+                    }
+                } else {
+                    misses++;
+                    if (spec.getOnMiss() == EnrichSpec.MissPolicy.DROP) {
+                        continue;
+                    }
+                    if (spec.getOnMiss() == EnrichSpec.MissPolicy.NULL) {
+                        for (String name : outputNames) {
+                            object.set(name, NullNode.getInstance());
+                        }
+                    }
+                }
+                writer.write(object);
+            }
+        } catch (Exception e) {
+            TempFileResource.release(outputStream.toResource());
+            throw e;
+        } finally {
+            meterRegistry.counter("ingestion.transform.enrich.lookups", "reference", spec.getName(), "result", "hit").increment(hits);
+            meterRegistry.counter("ingestion.transform.enrich.lookups", "reference", spec.getName(), "result", "miss").increment(misses);
+        }
+        
+        log.debug("Enriched from reference {}: {} hits, {} misses", spec.getName(), hits, misses);
+        return outputStream.toResource();
+    }
+    
+    /**
+     * Read the reference dataset through its source connector and index it
+     */
+    private ReferenceIndex load(EnrichSpec spec) throws Exception {
+        Resource reference = connectorFactory.getConnector(spec.getSourceType()).extractData(spec.getLocation(), spec.getFormat());
+        ConversionConfig readConfig = new ConversionConfig();
+        readConfig.setRecordPath(spec.getRecordPath());
+        
+        try (RecordReader reader = RecordReader.open(spec.getFormat(), reference, readConfig, objectMapper)) {
+            JsonNode record = reader.next();
+            List<String> fields = spec.getFields();
+            if (fields.isEmpty() && record != null) {
+                fields = new ArrayList<>();
+                for (Iterator<String> names = record.fieldNames(); names.hasNext(); ) {
+                    String name = names.next();
+                    if (!name.equals(spec.getReferenceKey())) {
+                        fields.add(name);
+                    }
+                }
+            }
+            
+            ReferenceIndex.Builder builder = new ReferenceIndex.Builder(fields);
+            for (; record != null; record = reader.next()) {
+                JsonNode key = record.get(spec.getReferenceKey());
+                if (key != null && !key.isNull() && !key.isContainerNode()) {
+                    builder.add(key.asText(), record);
+                }
+            }
+            if (builder.getDuplicates() > 0) {
+                log.warn("Reference {} has {} duplicate keys, the last record of each key is used",
+                        spec.getName(), builder.getDuplicates());
+            }
+            return builder.build();
+        } finally {
+            TempFileResource.release(reference);
+        }
+    }
+}
@@ -1,27 +1,57 @@
 package com.shrmagarv.tresatadis.service.transform.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shrmagarv.tresatadis.service.io.SpillOutputStream;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
+import com.shrmagarv.tresatadis.service.json.JsonRecordReader;
 import com.shrmagarv.tresatadis.service.transform.DataTransformer;
-import org.springframework.core.io.ByteArrayResource;
+import com.shrmagarv.tresatadis.service.transform.TransformConfigCache;
+import com.shrmagarv.tresatadis.service.transform.expr.RecordExpressions;
+import com.shrmagarv.tresatadis.service.transform.expr.Row;
+import com.shrmagarv.tresatadis.service.transform.parallel.OrderedBatchExecutor;
+import com.shrmagarv.tresatadis.service.transform.parallel.ParallelTransformPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Implementation of DataTransformer for JSON data
+ * Streams records from a top-level array or newline-delimited JSON and writes them in the same layout.
+ * Records are transformed while tokens are copied: only a record with field mappings, a filter or
+ * derived fields is materialized, and unchanged records are copied through token by token.
+ * With "parallelism" above 1, materialized records are transformed and serialized in batches on the
+ * parallel transform pool and written back in input order.
  */
 @Service
 public class JsonDataTransformer implements DataTransformer {
     
     private static final String TRANSFORMATION_TYPE = "JSON";
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransformConfigCache<FieldConfig> configs = new TransformConfigCache<>(
+            configNode -> new FieldConfig(configNode, this.parallelPool));
+    
+    @Value("${app.transform.spill-threshold-bytes:67108864}")
+    private int spillThresholdBytes = 64 * 1024 * 1024;
+    
+    @Autowired
+    private ParallelTransformPool parallelPool;
     
     @Override
     public String getTransformationType() {
@@ -35,94 +65,196 @@ public class JsonDataTransformer implements DataTransformer {
     
     @Override
     public Resource transform(Resource data, String sourceFormat, String transformationConfig) throws Exception {
-        if (!"JSON".equalsIgnoreCase(sourceFormat)) {
+        if (!"JSON".equalsIgnoreCase(sourceFormat) && !"NDJSON".equalsIgnoreCase(sourceFormat)) {
             throw new IllegalArgumentException("This transformer only works with JSON data");
         }
         
-        // Parse the JSON data
-        try (InputStream inputStream = data.getInputStream()) {
-            JsonNode rootNode;
-            if (sourceFormat.equalsIgnoreCase("JSON")) {
-                rootNode = objectMapper.readTree(inputStream);
+        FieldConfig config = configs.spec(transformationConfig);
+        int parallelism = config.parallelism;
+        
+        SpillOutputStream outputStream = new SpillOutputStream(spillThresholdBytes);
+        try (JsonRecordReader reader = JsonRecordReader.open(objectMapper, data);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            // Root values (NDJSON records) go one per line; array elements stay comma separated
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            JsonParser parser = reader.getParser();
+            
+            boolean hasRecord = reader.next();
+            if (reader.isArray()) {
+                generator.writeStartArray();
+            }
+            if (parallelism > 1) {
+                transformParallel(reader, hasRecord, generator, config, parallelism);
             } else {
-                throw new IllegalArgumentException("Unsupported source format: " + sourceFormat);
+                for (; hasRecord; hasRecord = reader.next()) {
+                    transformRecord(parser, generator, config);
+                }
             }
-            
-            // Parse transformation config
-            JsonNode configNode = objectMapper.readTree(transformationConfig);
-            
-            // Apply transformations
-            JsonNode transformedNode = applyTransformations(rootNode, configNode);
-            
-            // Convert back to bytes
-            byte[] transformedBytes = objectMapper.writeValueAsBytes(transformedNode);
-            return new ByteArrayResource(transformedBytes);
+            if (reader.isArray()) {
+                generator.writeEndArray();
+            }
+        } catch (Exception e) {
+            TempFileResource.release(outputStream.toResource());
+            throw e;
+        }
+        
+        return outputStream.toResource();
+    }
+    
+    private void transformRecord(JsonParser parser, JsonGenerator generator, FieldConfig config) throws IOException {
+        if (parser.currentToken() == JsonToken.START_OBJECT && config.expressions != null) {
+            transformWithExpressions(parser.readValueAsTree(), generator, config);
+        } else if (parser.currentToken() != JsonToken.START_OBJECT || config.isIdentity()) {
+            // Nothing to change: copy the tokens straight through
+            generator.copyCurrentStructure(parser);
+        } else if (config.mappings.isEmpty()) {
+            copyWithoutRemovedFields(parser, generator, config.removed);
+        } else {
+            // Mapped fields come first, so the record has to be materialized
+            ObjectNode record = parser.readValueAsTree();
+            generator.writeTree(applyTransformationsToObject(record, config));
         }
     }
     
-    private JsonNode applyTransformations(JsonNode data, JsonNode config) {
-        // Handle arrays
-        if (data.isArray()) {
-            List<JsonNode> transformedItems = new ArrayList<>();
-            for (JsonNode item : data) {
-                JsonNode transformedItem = applyTransformationsToObject(item, config);
-                transformedItems.add(transformedItem);
+    /**
+     * Read records on the caller's thread and transform batches of them on the parallel transform pool
+     * Workers serialize their records, so the generator only has to place them in the output
+     */
+    private void transformParallel(JsonRecordReader reader, boolean hasRecord, JsonGenerator generator,
+                                   FieldConfig config, int parallelism) throws IOException {
+        JsonParser parser = reader.getParser();
+        try (OrderedBatchExecutor<JsonNode, List<String>> executor = parallelPool.executor(parallelism,
+                batch -> transformBatch(batch, config),
+                records -> {
+                    for (String record : records) {
+                        generator.writeRawValue(record);
+                    }
+                })) {
+            for (; hasRecord; hasRecord = reader.next()) {
+                JsonNode record = parser.readValueAsTree();
+                executor.add(record != null ? record : NullNode.getInstance());
             }
-            return objectMapper.valueToTree(transformedItems);
+            executor.finish();
+        }
+    }
+    
+    private List<String> transformBatch(List<JsonNode> batch, FieldConfig config) throws IOException {
+        List<String> results = new ArrayList<>(batch.size());
+        for (JsonNode record : batch) {
+            JsonNode result = record;
+            if (record.isObject()) {
+                result = config.expressions != null
+                        ? applyExpressions((ObjectNode) record, config)
+                        : applyTransformationsToObject((ObjectNode) record, config);
+            }
+            if (result != null) {
+                results.add(objectMapper.writeValueAsString(result));
+            }
+        }
+        return results;
+    }
+    
+    private void transformWithExpressions(ObjectNode record, JsonGenerator generator, FieldConfig config) throws IOException {
+        ObjectNode result = applyExpressions(record, config);
+        if (result != null) {
+            generator.writeTree(result);
         }
-        
-        // Handle objects
-        return applyTransformationsToObject(data, config);
     }
     
-    private JsonNode applyTransformationsToObject(JsonNode data, JsonNode config) {
-        if (!data.isObject()) {
-            return data; // Can't transform non-objects
+    /**
+     * Filter the record and add derived fields; expressions see the record before mappings and removals
+     * @return The transformed record, or null if the filter rejects it
+     */
+    private ObjectNode applyExpressions(ObjectNode record, FieldConfig config) {
+        RecordExpressions expressions = config.expressions;
+        Row row = expressions.row(record);
+        if (!expressions.test(row)) {
+            return null;
         }
+        Object[] derivedValues = new Object[expressions.getDerivedNames().size()];
+        expressions.derive(row, derivedValues);
         
+        ObjectNode result;
+        if (!config.mappings.isEmpty()) {
+            result = (ObjectNode) applyTransformationsToObject(record, config);
+        } else {
+            record.remove(config.removed);
+            result = record;
+        }
+        expressions.setDerived(derivedValues, result);
+        return result;
+    }
+    
+    private void copyWithoutRemovedFields(JsonParser parser, JsonGenerator generator, Set<String> removed) throws IOException {
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (removed.contains(field)) {
+                parser.skipChildren();
+            } else {
+                generator.writeFieldName(field);
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        generator.writeEndObject();
+    }
+    
+    private JsonNode applyTransformationsToObject(ObjectNode data, FieldConfig config) {
         ObjectNode result = objectMapper.createObjectNode();
         
         // Field mappings
-        if (config.has("fieldMappings")) {
-            JsonNode mappings = config.get("fieldMappings");
-            for (Iterator<String> it = mappings.fieldNames(); it.hasNext(); ) {
-                String targetField = it.next();
-                String sourceField = mappings.get(targetField).asText();
-                
-                if (data.has(sourceField)) {
-                    result.set(targetField, data.get(sourceField));
-                }
+        for (Map.Entry<String, String> mapping : config.mappings.entrySet()) {
+            JsonNode value = data.get(mapping.getValue());
+            if (value != null) {
+                result.set(mapping.getKey(), value);
             }
         }
         
-        // Field removals
-        if (config.has("fieldsToRemove")) {
-            // For fields not in the mapping but in the original data, keep them unless specified to remove
-            for (Iterator<String> it = data.fieldNames(); it.hasNext(); ) {
-                String field = it.next();
-                boolean shouldRemove = false;
-                
-                for (JsonNode fieldToRemove : config.get("fieldsToRemove")) {
-                    if (field.equals(fieldToRemove.asText())) {
-                        shouldRemove = true;
-                        break;
-                    }
-                }
-                
-                if (!shouldRemove && !result.has(field)) {
-                    result.set(field, data.get(field));
-                }
-            }
-        } else {
-            // Keep all fields that weren't mapped
-            for (Iterator<String> it = data.fieldNames(); it.hasNext(); ) {
-                String field = it.next();
-                if (!result.has(field)) {
-                    result.set(field, data.get(field));
-                }
+        // Keep the remaining fields unless they are removed or already set by a mapping
+        for (Iterator<Map.Entry<String, JsonNode>> it = data.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            if (!config.removed.contains(field.getKey()) && !result.has(field.getKey())) {
+                result.set(field.getKey(), field.getValue());
             }
         }
         
         return result;
     }
+    
+    /**
+     * fieldMappings (target to source, in config order), fieldsToRemove, the filter and derive
+     * expressions and the transform parallelism, resolved once per config
+     */
+    private static class FieldConfig {
+        
+        private final Map<String, String> mappings = new LinkedHashMap<>();
+        private final Set<String> removed = new HashSet<>();
+        private final RecordExpressions expressions;
+        private final int parallelism;
+        
+        FieldConfig(JsonNode config, ParallelTransformPool parallelPool) {
+            JsonNode fieldMappings = config.path("fieldMappings");
+            for (Iterator<String> it = fieldMappings.fieldNames(); it.hasNext(); ) {
+                String targetField = it.next();
+                mappings.put(targetField, fieldMappings.get(targetField).asText());
+            }
+            for (JsonNode field : config.path("fieldsToRemove")) {
+                removed.add(field.asText());
+            }
+            expressions = RecordExpressions.compile(config);
+            parallelism = parallelPool != null && materializes() ? parallelPool.parallelism(config) : 1;
+        }
+        
+        boolean isIdentity() {
+            return mappings.isEmpty() && removed.isEmpty();
+        }
+        
+        /**
+         * @return True if records are built as trees, which is the work the parallel mode spreads out
+         */
+        boolean materializes() {
+            return expressions != null || !mappings.isEmpty();
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.convert.ConversionConfig;
+import com.shrmagarv.tresatadis.service.convert.RecordReader;
+import com.shrmagarv.tresatadis.service.convert.RecordWriter;
+import com.shrmagarv.tresatadis.service.io.SpillOutputStream;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
+import com.shrmagarv.tresatadis.service.transform.DataTransformer;
+import com.shrmagarv.tresatadis.service.transform.TransformConfigCache;
+import com.shrmagarv.tresatadis.service.transform.sort.ExternalSorter;
+import com.shrmagarv.tresatadis.service.transform.sort.SortSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+/**
+ * DataTransformer that sorts records by configured keys and optionally drops duplicates
+ * Config: see SortSpec, plus the CONVERT writer options; output is in the source format unless
+ * targetFormat is given. Inputs larger than the memory limit are sorted in runs spilled to disk and
+ * merged, deduplicating as the runs meet.
+ */
+@Service
+@Slf4j
+public class SortDataTransformer implements DataTransformer {
+    
+    private static final String TRANSFORMATION_TYPE = "SORT";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransformConfigCache<SortSpec> configs = new TransformConfigCache<>(
+            SortSpec::parse, "keys", "dedup", "keep");
+    
+    @Value("${app.transform.spill-threshold-bytes:67108864}")
+    private int spillThresholdBytes = 64 * 1024 * 1024;
+    
+    @Value("${app.transform.sort.memory-limit-bytes:134217728}")
+    private long memoryLimitBytes = 128L * 1024 * 1024;
+    
+    @Value("${app.transform.sort.merge-fan-in:64}")
+    private int mergeFanIn = 64;
+    
+    @Override
+    public String getTransformationType() {
+        return TRANSFORMATION_TYPE;
+    }
+    
+    @Override
+    public boolean canHandle(String transformationType) {
+        return TRANSFORMATION_TYPE.equals(transformationType);
+    }
+    
+    @Override
+    public String getOutputFormat(String sourceFormat, String transformationConfig) throws Exception {
+        return configs.outputConfig(transformationConfig, sourceFormat).getTargetFormat();
+    }
+    
+    @Override
+    public Resource transform(Resource data, String sourceFormat, String transformationConfig) throws Exception {
+        if (sourceFormat == null || !ConversionConfig.FORMATS.contains(sourceFormat.toUpperCase())) {
+            throw new IllegalArgumentException("Unsupported format for SORT: " + sourceFormat);
+        }
+        SortSpec spec = configs.spec(transformationConfig);
+        ConversionConfig output = configs.outputConfig(transformationConfig, sourceFormat);
+        
+        SpillOutputStream outputStream = new SpillOutputStream(spillThresholdBytes);
+        try (ExternalSorter sorter = new ExternalSorter(spec, objectMapper, memoryLimitBytes, mergeFanIn)) {
+            try (RecordReader reader = RecordReader.open(sourceFormat, data, output, objectMapper)) {
+                JsonNode record;
+                while ((record = reader.next()) != null) {
+                    sorter.add(record);
+                }
+            }
+            try (RecordWriter writer = RecordWriter.open(output, outputStream, objectMapper)) {
+                sorter.finish(writer);
+            }
+        } catch (Exception e) {
+            TempFileResource.release(outputStream.toResource());
+            throw e;
+        }
+        
+        return outputStream.toResource();
+    }
+}
@@ -1,10 +1,18 @@
 package com.shrmagarv.tresatadis.service.transform.impl;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.shrmagarv.tresatadis.service.io.SpillOutputStream;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
 import com.shrmagarv.tresatadis.service.transform.DataTransformer;
-import org.springframework.core.io.ByteArrayResource;
+import com.shrmagarv.tresatadis.service.transform.TransformConfigCache;
+import com.shrmagarv.tresatadis.service.transform.expr.RecordExpressions;
+import com.shrmagarv.tresatadis.service.transform.expr.Row;
+import com.shrmagarv.tresatadis.service.transform.expr.Values;
+import com.shrmagarv.tresatadis.service.xml.XmlElementPath;
+import com.shrmagarv.tresatadis.service.xml.XmlFactories;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.w3c.dom.Document;
@@ -12,33 +20,54 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-import java.io.ByteArrayOutputStream;
+import javax.xml.xpath.XPathExpressionException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Implementation of DataTransformer for XML data
- * Handles transformation of XML files based on configuration
+ * Handles transformation of XML files based on configuration. When every configured path only names
+ * elements (e.g. /orders/order/price or //price) the document is rewritten in a single StAX pass with
+ * memory bounded by the nesting depth; other XPaths are evaluated on a DOM. An optional "filter" and
+ * "derive" expressions apply to record elements (recordPath, by default the children of the document
+ * element), whose fields are their child elements' text or their attributes.
  */
 @Service
+@Slf4j
 public class XmlDataTransformer implements DataTransformer {
     
     private static final String TRANSFORMATION_TYPE = "XML";
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Records are the children of the document element unless the config names a recordPath
+    private static final String DEFAULT_RECORD_PATH = "/*/*";
     private final XmlMapper xmlMapper = new XmlMapper();
+    private final XMLEventFactory eventFactory = XmlFactories.eventFactory();
+    private final TransformConfigCache<CompiledConfig> configs = new TransformConfigCache<>(this::compile);
+    
+    @Value("${app.transform.spill-threshold-bytes:67108864}")
+    private int spillThresholdBytes = 64 * 1024 * 1024;
     
     @Override
     public String getTransformationType() {
@@ -56,19 +85,18 @@ public class XmlDataTransformer implements DataTransformer {
             throw new IllegalArgumentException("This transformer only works with XML data");
         }
         
-        // Parse the transformation config
-        JsonNode configNode = objectMapper.readTree(transformationConfig);
+        CompiledConfig config = configs.spec(transformationConfig);
         
-        // Parse the XML file
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document document;
-        try (InputStream is = data.getInputStream()) {
-            document = builder.parse(is);
+        if (!config.isStreamable()) {
+            log.debug("XML transformation needs random access, using DOM");
+            return transformDom(data, config);
         }
-        
+        return transformStreaming(data, config);
+    }
+    
+    private CompiledConfig compile(JsonNode configNode) throws Exception {
         // Extract xpath expressions and transformations from config
-        Map<String, String> elementMappings = new HashMap<>();
+        Map<String, String> elementMappings = new LinkedHashMap<>();
         List<String> elementsToRemove = new ArrayList<>();
         
         if (configNode.has("elementMappings")) {
@@ -82,64 +110,404 @@ public class XmlDataTransformer implements DataTransformer {
             toRemove.forEach(node -> elementsToRemove.add(node.asText()));
         }
         
-        // Apply transformations
-        XPathFactory xPathFactory = XPathFactory.newInstance();
-        XPath xpath = xPathFactory.newXPath();
+        // Optional row filter and derived fields, evaluated per record element
+        RecordExpressions expressions = RecordExpressions.compile(configNode);
+        String recordPath = configNode.path("recordPath").asText(DEFAULT_RECORD_PATH);
+        
+        CompiledConfig config = new CompiledConfig(elementMappings, elementsToRemove, recordPath, expressions);
+        if (!config.isStreamable()) {
+            // Compile once up front so invalid XPaths fail fast, and seed the pool
+            config.releaseXPaths(config.borrowXPaths());
+        }
+        return config;
+    }
+    
+    /**
+     * Rename and prune elements with StAX, holding only the stack of open element names
+     * (plus the current record while a filter or derived fields are configured)
+     */
+    private Resource transformStreaming(Resource data, CompiledConfig config) throws Exception {
+        SpillOutputStream outputStream = new SpillOutputStream(spillThresholdBytes);
+        try (InputStream is = data.getInputStream()) {
+            XMLEventReader reader = XmlFactories.inputFactory().createXMLEventReader(is);
+            XMLEventWriter writer = XmlFactories.outputFactory().createXMLEventWriter(outputStream, "UTF-8");
+            try {
+                StreamRewriter rewriter = new StreamRewriter(writer, config);
+                while (reader.hasNext()) {
+                    rewriter.add(reader.nextEvent());
+                }
+                writer.flush();
+            } finally {
+                writer.close();
+                reader.close();
+            }
+        } catch (Exception e) {
+            TempFileResource.release(outputStream.toResource());
+            throw e;
+        }
+        
+        return outputStream.toResource();
+    }
+    
+    private boolean matchesAny(List<XmlElementPath> paths, List<String> elementPath) {
+        for (XmlElementPath path : paths) {
+            if (path.matches(elementPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Rewrites a stream of events
+     * Rename paths are matched against the source names and removal paths against the renamed
+     * names, as the DOM path applies renames before removals. Record elements are buffered whole
+     * when a filter or derived fields are configured, then dropped or replayed with the derived
+     * fields appended as child elements.
+     */
+    private class StreamRewriter {
+        
+        private final XMLEventWriter writer;
+        private final CompiledConfig config;
+        private final List<String> sourcePath = new ArrayList<>();
+        private final List<String> outputPath = new ArrayList<>();
+        private final Deque<QName> openElements = new ArrayDeque<>();
+        // Depth inside a removed element whose events are being dropped
+        private int skipDepth;
+        private List<XMLEvent> recordEvents;
+        private int recordDepth;
+        private boolean replaying;
+        private Object[] derivedValues;
+        private int recordLevel;
+        
+        StreamRewriter(XMLEventWriter writer, CompiledConfig config) {
+            this.writer = writer;
+            this.config = config;
+        }
+        
+        void add(XMLEvent event) throws XMLStreamException {
+            if (recordEvents != null) {
+                bufferRecord(event);
+            } else if (skipDepth > 0) {
+                if (event.isStartElement()) {
+                    skipDepth++;
+                } else if (event.isEndElement()) {
+                    skipDepth--;
+                }
+            } else if (event.isStartElement()) {
+                startElement(event.asStartElement());
+            } else if (event.isEndElement()) {
+                if (derivedValues != null && sourcePath.size() == recordLevel) {
+                    writeDerived();
+                }
+                writer.add(eventFactory.createEndElement(openElements.pop(), event.asEndElement().getNamespaces()));
+                sourcePath.remove(sourcePath.size() - 1);
+                outputPath.remove(outputPath.size() - 1);
+            } else if (event.isStartDocument()) {
+                // The output is always written as UTF-8, whatever the input declared
+                StartDocument startDocument = (StartDocument) event;
+                writer.add(eventFactory.createStartDocument("UTF-8", startDocument.getVersion()));
+            } else {
+                writer.add(event);
+            }
+        }
         
-        // Handle element mappings (renames)
-        for (Map.Entry<String, String> mapping : elementMappings.entrySet()) {
-            String oldElementXPath = mapping.getKey();
-            String newElementName = mapping.getValue();
+        private void startElement(StartElement start) throws XMLStreamException {
+            String name = XmlElementPath.qualifiedName(start.getName());
+            sourcePath.add(name);
+            
+            if (config.expressions != null && !replaying && config.recordPath.matches(sourcePath)) {
+                // Hold the record back until its fields are known
+                sourcePath.remove(sourcePath.size() - 1);
+                recordEvents = new ArrayList<>();
+                recordEvents.add(start);
+                recordDepth = 1;
+                return;
+            }
+            
+            String renamed = null;
+            for (int i = 0; i < config.renamePaths.size() && renamed == null; i++) {
+                if (config.renamePaths.get(i).matches(sourcePath)) {
+                    renamed = config.renameNames.get(i);
+                }
+            }
+            outputPath.add(renamed != null ? renamed : name);
+            
+            if (matchesAny(config.removePaths, outputPath)) {
+                skipDepth = 1;
+                sourcePath.remove(sourcePath.size() - 1);
+                outputPath.remove(outputPath.size() - 1);
+                return;
+            }
             
-            XPathExpression expr = xpath.compile(oldElementXPath);
-            NodeList nodes = (NodeList) expr.evaluate(document, XPathConstants.NODESET);
+            if (renamed != null) {
+                start = eventFactory.createStartElement(new QName(renamed), start.getAttributes(), start.getNamespaces());
+            }
+            openElements.push(start.getName());
+            writer.add(start);
+        }
+        
+        private void bufferRecord(XMLEvent event) throws XMLStreamException {
+            recordEvents.add(event);
+            if (event.isStartElement()) {
+                recordDepth++;
+            } else if (event.isEndElement() && --recordDepth == 0) {
+                List<XMLEvent> events = recordEvents;
+                recordEvents = null;
+                
+                RecordExpressions expressions = config.expressions;
+                Row row = recordRow(events);
+                if (!expressions.test(row)) {
+                    return;
+                }
+                Object[] values = new Object[expressions.getDerivedNames().size()];
+                expressions.derive(row, values);
+                
+                replaying = true;
+                derivedValues = values;
+                recordLevel = sourcePath.size() + 1;
+                for (XMLEvent recordEvent : events) {
+                    add(recordEvent);
+                }
+                replaying = false;
+                derivedValues = null;
+            }
+        }
+        
+        /**
+         * Fields of a buffered record: the text of its child elements, or else its attributes
+         */
+        private Row recordRow(List<XMLEvent> events) {
+            String[] values = new String[config.fieldSlots.size()];
+            StartElement record = events.get(0).asStartElement();
+            for (Iterator<?> it = record.getAttributes(); it.hasNext(); ) {
+                Attribute attribute = (Attribute) it.next();
+                Integer slot = config.fieldSlots.get(XmlElementPath.qualifiedName(attribute.getName()));
+                if (slot != null) {
+                    values[slot] = attribute.getValue();
+                }
+            }
             
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node node = nodes.item(i);
-                if (node.getNodeType() == Node.ELEMENT_NODE) {
-                    Element oldElement = (Element) node;
-                    Element newElement = document.createElement(newElementName);
-                    
-                    // Copy all attributes
-                    for (int j = 0; j < oldElement.getAttributes().getLength(); j++) {
-                        Node attribute = oldElement.getAttributes().item(j);
-                        newElement.setAttribute(attribute.getNodeName(), attribute.getNodeValue());
+            int depth = 0;
+            Integer slot = null;
+            StringBuilder text = new StringBuilder();
+            boolean[] fromChild = new boolean[values.length];
+            for (XMLEvent event : events) {
+                if (event.isStartElement()) {
+                    depth++;
+                    if (depth == 2) {
+                        slot = config.fieldSlots.get(XmlElementPath.qualifiedName(event.asStartElement().getName()));
+                        text.setLength(0);
                     }
-                    
-                    // Move all child nodes to new element
-                    while (oldElement.hasChildNodes()) {
-                        newElement.appendChild(oldElement.getFirstChild());
+                } else if (event.isCharacters() && depth == 2 && slot != null) {
+                    text.append(event.asCharacters().getData());
+                } else if (event.isEndElement()) {
+                    if (depth == 2 && slot != null && !fromChild[slot]) {
+                        values[slot] = text.toString().trim();
+                        fromChild[slot] = true;
                     }
-                    
-                    // Replace old element with new one
-                    Node parent = oldElement.getParentNode();
-                    parent.replaceChild(newElement, oldElement);
+                    depth--;
+                }
+            }
+            return s -> values[s];
+        }
+        
+        private void writeDerived() throws XMLStreamException {
+            List<String> names = config.expressions.getDerivedNames();
+            for (int i = 0; i < names.size(); i++) {
+                String text = Values.toText(derivedValues[i]);
+                if (text != null) {
+                    QName name = new QName(names.get(i));
+                    writer.add(eventFactory.createStartElement(name, null, null));
+                    writer.add(eventFactory.createCharacters(text));
+                    writer.add(eventFactory.createEndElement(name, null));
                 }
             }
         }
+    }
+    
+    /**
+     * Apply the transformations to a DOM, for XPaths that need random access
+     */
+    private Resource transformDom(Resource data, CompiledConfig config) throws Exception {
+        // Parse the XML file
+        Document document;
+        try (InputStream is = data.getInputStream()) {
+            document = XmlFactories.documentBuilder().parse(is);
+        }
         
-        // Remove elements
-        for (String removeXPath : elementsToRemove) {
-            XPathExpression expr = xpath.compile(removeXPath);
-            NodeList nodes = (NodeList) expr.evaluate(document, XPathConstants.NODESET);
+        CompiledXPaths xpaths = config.borrowXPaths();
+        try {
+            // Filter records and add derived fields while they still have their input names
+            if (xpaths.records != null) {
+                applyExpressions(document, xpaths.records, config);
+            }
+            
+            // Handle element mappings (renames)
+            for (int m = 0; m < xpaths.renames.size(); m++) {
+                String newElementName = config.renameNames.get(m);
+                NodeList nodes = (NodeList) xpaths.renames.get(m).evaluate(document, XPathConstants.NODESET);
+                
+                for (int i = 0; i < nodes.getLength(); i++) {
+                    Node node = nodes.item(i);
+                    if (node.getNodeType() == Node.ELEMENT_NODE) {
+                        Element oldElement = (Element) node;
+                        Element newElement = document.createElement(newElementName);
+                        
+                        // Copy all attributes
+                        for (int j = 0; j < oldElement.getAttributes().getLength(); j++) {
+                            Node attribute = oldElement.getAttributes().item(j);
+                            newElement.setAttribute(attribute.getNodeName(), attribute.getNodeValue());
+                        }
+                        
+                        // Move all child nodes to new element
+                        while (oldElement.hasChildNodes()) {
+                            newElement.appendChild(oldElement.getFirstChild());
+                        }
+                        
+                        // Replace old element with new one
+                        Node parent = oldElement.getParentNode();
+                        parent.replaceChild(newElement, oldElement);
+                    }
+                }
+            }
             
-            for (int i = nodes.getLength() - 1; i >= 0; i--) {
-                Node node = nodes.item(i);
-                if (node.getNodeType() == Node.ELEMENT_NODE) {
-                    Node parent = node.getParentNode();
-                    parent.removeChild(node);
+            // Remove elements
+            for (XPathExpression expr : xpaths.removals) {
+                NodeList nodes = (NodeList) expr.evaluate(document, XPathConstants.NODESET);
+                
+                for (int i = nodes.getLength() - 1; i >= 0; i--) {
+                    Node node = nodes.item(i);
+                    if (node.getNodeType() == Node.ELEMENT_NODE) {
+                        Node parent = node.getParentNode();
+                        parent.removeChild(node);
+                    }
                 }
             }
+        } finally {
+            config.releaseXPaths(xpaths);
         }
         
         // Write the transformed XML to output
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        DOMSource source = new DOMSource(document);
-        StreamResult result = new StreamResult(outputStream);
-        transformer.transform(source, result);
-        
-        return new ByteArrayResource(outputStream.toByteArray());
+        SpillOutputStream outputStream = new SpillOutputStream(spillThresholdBytes);
+        try (outputStream) {
+            XmlFactories.transformer().transform(new DOMSource(document), new StreamResult(outputStream));
+        } catch (Exception e) {
+            TempFileResource.release(outputStream.toResource());
+            throw e;
+        }
+        
+        return outputStream.toResource();
+    }
+    
+    private void applyExpressions(Document document, XPathExpression records, CompiledConfig config) throws Exception {
+        RecordExpressions expressions = config.expressions;
+        List<String> fields = expressions.getFields();
+        List<String> derivedNames = expressions.getDerivedNames();
+        Object[] derivedValues = new Object[derivedNames.size()];
+        
+        NodeList nodes = (NodeList) records.evaluate(document, XPathConstants.NODESET);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            if (nodes.item(i).getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            Element record = (Element) nodes.item(i);
+            Row row = slot -> {
+                String field = fields.get(slot);
+                for (Node child = record.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child.getNodeType() == Node.ELEMENT_NODE && field.equals(child.getNodeName())) {
+                        return child.getTextContent().trim();
+                    }
+                }
+                return record.hasAttribute(field) ? record.getAttribute(field) : null;
+            };
+            
+            if (!expressions.test(row)) {
+                record.getParentNode().removeChild(record);
+                continue;
+            }
+            expressions.derive(row, derivedValues);
+            for (int d = 0; d < derivedValues.length; d++) {
+                String text = Values.toText(derivedValues[d]);
+                if (text != null) {
+                    Element derived = document.createElement(derivedNames.get(d));
+                    derived.setTextContent(text);
+                    record.appendChild(derived);
+                }
+            }
+        }
+    }
+    
+    /**
+     * A transformation config resolved once: element paths for streaming, or pooled XPaths for the DOM path
+     */
+    private static class CompiledConfig {
+        
+        private final List<String> renameXPaths = new ArrayList<>();
+        private final List<String> renameNames = new ArrayList<>();
+        private final List<String> removeXPaths;
+        private final List<XmlElementPath> renamePaths = new ArrayList<>();
+        private final List<XmlElementPath> removePaths = new ArrayList<>();
+        private final String recordXPath;
+        private final XmlElementPath recordPath;
+        private final RecordExpressions expressions;
+        private final Map<String, Integer> fieldSlots = new HashMap<>();
+        private final boolean streamable;
+        // XPathExpression is not thread-safe, so each concurrent transform borrows its own compiled set
+        private final Queue<CompiledXPaths> xpathPool = new ConcurrentLinkedQueue<>();
+        
+        CompiledConfig(Map<String, String> elementMappings, List<String> elementsToRemove,
+                       String recordXPath, RecordExpressions expressions) {
+            for (Map.Entry<String, String> mapping : elementMappings.entrySet()) {
+                renameXPaths.add(mapping.getKey());
+                renameNames.add(mapping.getValue());
+                renamePaths.add(XmlElementPath.compile(mapping.getKey()));
+            }
+            removeXPaths = elementsToRemove;
+            for (String removeXPath : elementsToRemove) {
+                removePaths.add(XmlElementPath.compile(removeXPath));
+            }
+            this.expressions = expressions;
+            this.recordXPath = expressions != null ? recordXPath : null;
+            this.recordPath = expressions != null ? XmlElementPath.compile(recordXPath) : null;
+            if (expressions != null) {
+                for (int slot = 0; slot < expressions.getFields().size(); slot++) {
+                    fieldSlots.put(expressions.getFields().get(slot), slot);
+                }
+            }
+            // Stream in one pass when every path only names elements; otherwise the XPaths need a DOM
+            streamable = !renamePaths.contains(null) && !removePaths.contains(null)
+                    && (expressions == null || recordPath != null);
+        }
+        
+        boolean isStreamable() {
+            return streamable;
+        }
+        
+        CompiledXPaths borrowXPaths() throws XPathExpressionException {
+            CompiledXPaths xpaths = xpathPool.poll();
+            if (xpaths != null) {
+                return xpaths;
+            }
+            XPath xpath = XmlFactories.xpath();
+            List<XPathExpression> renames = new ArrayList<>();
+            for (String expression : renameXPaths) {
+                renames.add(xpath.compile(expression));
+            }
+            List<XPathExpression> removals = new ArrayList<>();
+            for (String expression : removeXPaths) {
+                removals.add(xpath.compile(expression));
+            }
+            XPathExpression records = recordXPath != null ? xpath.compile(recordXPath) : null;
+            return new CompiledXPaths(renames, removals, records);
+        }
+        
+        void releaseXPaths(CompiledXPaths xpaths) {
+            xpathPool.offer(xpaths);
+        }
+    }
+    
+    private record CompiledXPaths(List<XPathExpression> renames, List<XPathExpression> removals,
+                                  XPathExpression records) {
     }
 }
@@ -0,0 +1,143 @@
+package com.shrmagarv.tresatadis.service.transform.parallel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Transforms batches of records on a fork-join pool and hands the results back in input order
+ * Records are collected into batches on the caller's thread. At most maxInFlight batches are queued
+ * or running at once, and submitting another first waits for the oldest and passes its result to the
+ * sink, so memory stays bounded and one job never uses more than maxInFlight pool threads.
+ * @param <I> Record type
+ * @param <O> Batch result type
+ */
+public class OrderedBatchExecutor<I, O> implements Closeable {
+    
+    /**
+     * Transforms one batch; called on a pool thread, so it must not touch state shared between batches
+     */
+    @FunctionalInterface
+    public interface BatchFunction<I, O> {
+        O apply(List<I> batch) throws Exception;
+    }
+    
+    /**
+     * Receives batch results in input order on the caller's thread
+     */
+    @FunctionalInterface
+    public interface ResultSink<O> {
+        void accept(O result) throws IOException;
+    }
+    
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final BatchFunction<I, O> function;
+    private final ResultSink<O> sink;
+    private final ArrayDeque<ForkJoinTask<O>> inFlight = new ArrayDeque<>();
+    private List<I> batch;
+    
+    /**
+     * @param pool The pool that runs the batches
+     * @param maxInFlight Maximum number of batches queued or running at once
+     * @param batchSize Records per batch
+     * @param function Transforms a batch
+     * @param sink Receives the results in order
+     */
+    public OrderedBatchExecutor(ForkJoinPool pool, int maxInFlight, int batchSize,
+                                BatchFunction<I, O> function, ResultSink<O> sink) {
+        this.pool = pool;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.batchSize = Math.max(1, batchSize);
+        this.function = function;
+        this.sink = sink;
+        this.batch = new ArrayList<>(this.batchSize);
+    }
+    
+    /**
+     * Add a record, submitting the current batch once it is full
+     * @param record The record
+     * @throws IOException If an earlier batch failed or its result could not be written
+     */
+    public void add(I record) throws IOException {
+        batch.add(record);
+        if (batch.size() >= batchSize) {
+            submitBatch();
+        }
+    }
+    
+    /**
+     * Submit the last partial batch and pass all remaining results to the sink
+     * @throws IOException If a batch failed or its result could not be written
+     */
+    public void finish() throws IOException {
+        if (!batch.isEmpty()) {
+            submitBatch();
+        }
+        while (!inFlight.isEmpty()) {
+            drainOldest();
+        }
+    }
+    
+    private void submitBatch() throws IOException {
+        while (inFlight.size() >= maxInFlight) {
+            drainOldest();
+        }
+        List<I> records = batch;
+        batch = new ArrayList<>(batchSize);
+        inFlight.add(pool.submit(() -> {
+            try {
+                return function.apply(records);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                // Wrapped recognizably so drainOldest can rethrow the original exception
+                throw new CompletionException(e);
+            }
+        }));
+    }
+    
+    private void drainOldest() throws IOException {
+        ForkJoinTask<O> task = inFlight.poll();
+        O result;
+        try {
+            result = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a transform batch");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            // The pool may rethrow a copy of the worker's exception that wraps the original
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Transform batch failed: " + cause.getMessage(), cause);
+        }
+        sink.accept(result);
+    }
+    
+    /**
+     * Cancel batches that have not been drained, e.g. after a failure
+     */
+    @Override
+    public void close() {
+        for (ForkJoinTask<O> task : inFlight) {
+            task.cancel(false);
+        }
+        inFlight.clear();
+    }
+}
@@ -0,0 +1,75 @@
+package com.shrmagarv.tresatadis.service.transform.parallel;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fork-join pool shared by the record transformers' parallel mode
+ * A job asks for parallel transformation with "parallelism" in its transformation config (default
+ * app.transform.parallel.default-parallelism); the value is capped by the pool size and limits how
+ * many of the job's batches are in flight, so concurrent jobs share the pool instead of each taking all of it.
+ */
+@Service
+@Slf4j
+public class ParallelTransformPool {
+    
+    @Value("${app.transform.parallel.threads:0}")
+    private int threads;
+    
+    @Value("${app.transform.parallel.default-parallelism:1}")
+    private int defaultParallelism = 1;
+    
+    @Value("${app.transform.parallel.batch-size:1024}")
+    private int batchSize = 1024;
+    
+    private ForkJoinPool pool;
+    
+    @PostConstruct
+    public void init() {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        pool = new ForkJoinPool(size, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Transform-" + threadCount.incrementAndGet());
+            return thread;
+        }, null, false);
+        log.info("Parallel transform pool started with {} threads", size);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Work out the parallelism of a job
+     * @param transformationConfig The job's parsed transformation config
+     * @return Batches the job may have in flight, 1 for sequential transformation
+     */
+    public int parallelism(JsonNode transformationConfig) {
+        int requested = transformationConfig.path("parallelism").asInt(defaultParallelism);
+        return Math.max(1, Math.min(requested, pool.getParallelism()));
+    }
+    
+    /**
+     * Create an executor for one transform
+     * @param parallelism The job's parallelism, from parallelism(JsonNode)
+     * @param function Transforms a batch
+     * @param sink Receives the results in input order
+     * @return The executor
+     */
+    public <I, O> OrderedBatchExecutor<I, O> executor(int parallelism, OrderedBatchExecutor.BatchFunction<I, O> function,
+                                                      OrderedBatchExecutor.ResultSink<O> sink) {
+        return new OrderedBatchExecutor<>(pool, parallelism, batchSize, function, sink);
+    }
+}
@@ -0,0 +1,393 @@
+package com.shrmagarv.tresatadis.service.transform.sort;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.convert.RecordWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External merge sort of a record stream, with optional deduplication
+ * Records are held serialized with their extracted sort keys until the memory budget is reached,
+ * then sorted and written to a run file. At the end the runs are k-way merged, in several passes if
+ * there are more runs than the merge fan-in. The sort is stable: ties keep their input order, so
+ * duplicates can be dropped as they meet while runs are written and merged.
+ */
+@Slf4j
+public class ExternalSorter implements Closeable {
+    
+    // Rough heap cost of an entry beyond its record bytes and key strings
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte NULL = 0;
+    private static final byte NUMBER = 1;
+    private static final byte TEXT = 2;
+    
+    /**
+     * A record and its sort key
+     */
+    private record Entry(Object[] key, byte[] record) {
+    }
+    
+    @FunctionalInterface
+    private interface EntrySink {
+        void accept(Entry entry) throws IOException;
+    }
+    
+    @FunctionalInterface
+    private interface RunContent {
+        void writeTo(EntrySink sink) throws IOException;
+    }
+    
+    /**
+     * A finished run file
+     */
+    private record Run(Path file, long count) {
+    }
+    
+    private final SortSpec spec;
+    private final ObjectMapper objectMapper;
+    private final long memoryLimitBytes;
+    private final int fanIn;
+    private final Comparator<Entry> comparator;
+    private final List<Entry> buffer = new ArrayList<>();
+    private final List<Run> runs = new ArrayList<>();
+    private long bufferedBytes;
+    private long records;
+    
+    /**
+     * @param spec The sort keys and deduplication
+     * @param objectMapper Mapper used to serialize records
+     * @param memoryLimitBytes Approximate heap the buffered records may use before a run is written
+     * @param fanIn Maximum number of runs merged at once
+     */
+    public ExternalSorter(SortSpec spec, ObjectMapper objectMapper, long memoryLimitBytes, int fanIn) {
+        this.spec = spec;
+        this.objectMapper = objectMapper;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.fanIn = Math.max(2, fanIn);
+        Comparator<Entry> byKey = (a, b) -> compareKeys(a.key(), b.key());
+        // Identical records must meet to be dropped, so RECORD dedup also orders by the record itself
+        this.comparator = spec.getDedup() == SortSpec.Dedup.RECORD
+                ? byKey.thenComparing((a, b) -> Arrays.compare(a.record(), b.record()))
+                : byKey;
+    }
+    
+    /**
+     * Add a record
+     * @param record The record
+     * @throws IOException If a run cannot be written
+     */
+    public void add(JsonNode record) throws IOException {
+        Object[] key = new Object[spec.getKeys().size()];
+        long size = ENTRY_OVERHEAD;
+        for (int i = 0; i < key.length; i++) {
+            key[i] = keyValue(record.get(spec.getKeys().get(i).field()), spec.getKeys().get(i).type());
+            size += key[i] instanceof String text ? 48 + text.length() * 2L : 24;
+        }
+        byte[] bytes = objectMapper.writeValueAsBytes(record);
+        buffer.add(new Entry(key, bytes));
+        bufferedBytes += size + bytes.length;
+        records++;
+        if (bufferedBytes > memoryLimitBytes) {
+            spill();
+        }
+    }
+    
+    /**
+     * Sort, merge and write the records
+     * @param writer Receives the records in order
+     * @return Number of records written
+     * @throws IOException If reading or writing fails
+     */
+    public long finish(RecordWriter writer) throws IOException {
+        long[] written = new long[1];
+        EntrySink output = entry -> {
+            writer.write(objectMapper.readTree(entry.record()));
+            written[0]++;
+        };
+        
+        if (runs.isEmpty()) {
+            buffer.sort(comparator);
+            emit(buffer, output);
+            buffer.clear();
+            return written[0];
+        }
+        
+        spill();
+        int passes = 0;
+        while (runs.size() > fanIn) {
+            mergePass();
+            passes++;
+        }
+        merge(runs, output);
+        log.debug("Sorted {} records through {} intermediate merge passes, {} written", records, passes, written[0]);
+        return written[0];
+    }
+    
+    /**
+     * Sort the buffered records and write them as a run
+     */
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        buffer.sort(comparator);
+        runs.add(writeRun(sink -> emit(buffer, sink)));
+        log.debug("Wrote sort run {} of {} buffered bytes", runs.size(), bufferedBytes);
+        buffer.clear();
+        bufferedBytes = 0;
+    }
+    
+    /**
+     * Merge consecutive groups of runs, keeping runs in input order so the sort stays stable
+     */
+    private void mergePass() throws IOException {
+        List<Run> merged = new ArrayList<>();
+        try {
+            for (int start = 0; start < runs.size(); start += fanIn) {
+                List<Run> group = runs.subList(start, Math.min(runs.size(), start + fanIn));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                merged.add(writeRun(sink -> merge(group, sink)));
+                for (Run run : group) {
+                    Files.deleteIfExists(run.file());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // The runs still listed are deleted by close
+            for (Run run : merged) {
+                Files.deleteIfExists(run.file());
+            }
+            throw e;
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+    
+    private Run writeRun(RunContent content) throws IOException {
+        Path file = Files.createTempFile("tresata-sort-", ".run");
+        long[] count = new long[1];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            content.writeTo(entry -> {
+                writeEntry(entry, out);
+                count[0]++;
+            });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new Run(file, count[0]);
+    }
+    
+    /**
+     * K-way merge of sorted runs; ties go to the earlier run
+     */
+    private void merge(List<Run> sources, EntrySink sink) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> heap = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+                int c = comparator.compare(a.current, b.current);
+                return c != 0 ? c : Integer.compare(a.order, b.order);
+            });
+            for (int i = 0; i < sources.size(); i++) {
+                RunReader reader = new RunReader(sources.get(i), i, spec.getKeys().size());
+                readers.add(reader);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+            
+            Deduplicator dedup = new Deduplicator(sink);
+            while (!heap.isEmpty()) {
+                RunReader reader = heap.poll();
+                dedup.accept(reader.current);
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+            dedup.flush();
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+    
+    private void emit(List<Entry> sorted, EntrySink sink) throws IOException {
+        Deduplicator dedup = new Deduplicator(sink);
+        for (Entry entry : sorted) {
+            dedup.accept(entry);
+        }
+        dedup.flush();
+    }
+    
+    /**
+     * Drops all but the first (or last) entry of each run of duplicates in sorted input
+     */
+    private final class Deduplicator implements EntrySink {
+        
+        private final EntrySink sink;
+        private Entry pending;
+        
+        private Deduplicator(EntrySink sink) {
+            this.sink = sink;
+        }
+        
+        @Override
+        public void accept(Entry entry) throws IOException {
+            if (spec.getDedup() == SortSpec.Dedup.NONE) {
+                sink.accept(entry);
+                return;
+            }
+            if (pending != null && isDuplicate(pending, entry)) {
+                if (spec.isKeepLast()) {
+                    pending = entry;
+                }
+                return;
+            }
+            flush();
+            pending = entry;
+        }
+        
+        void flush() throws IOException {
+            if (pending != null) {
+                sink.accept(pending);
+                pending = null;
+            }
+        }
+        
+        private boolean isDuplicate(Entry a, Entry b) {
+            return compareKeys(a.key(), b.key()) == 0
+                    && (spec.getDedup() == SortSpec.Dedup.KEYS || Arrays.equals(a.record(), b.record()));
+        }
+    }
+    
+    private int compareKeys(Object[] a, Object[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int c = compareValues(a[i], b[i]);
+            if (c != 0) {
+                return spec.getKeys().get(i).descending() ? -c : c;
+            }
+        }
+        return 0;
+    }
+    
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof Double x && b instanceof Double y) {
+            return Double.compare(x, y);
+        }
+        return ((String) a).compareTo((String) b);
+    }
+    
+    private static Object keyValue(JsonNode value, SortSpec.KeyType type) {
+        if (value == null || value.isNull() || value.isMissingNode()) {
+            return null;
+        }
+        if (type == SortSpec.KeyType.TEXT) {
+            return value.isValueNode() ? value.asText() : value.toString();
+        }
+        if (value.isNumber()) {
+            return value.doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.asText().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static void writeEntry(Entry entry, DataOutputStream out) throws IOException {
+        for (Object value : entry.key()) {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Double number) {
+                out.writeByte(NUMBER);
+                out.writeDouble(number);
+            } else {
+                byte[] text = ((String) value).getBytes(StandardCharsets.UTF_8);
+                out.writeByte(TEXT);
+                out.writeInt(text.length);
+                out.write(text);
+            }
+        }
+        out.writeInt(entry.record().length);
+        out.write(entry.record());
+    }
+    
+    /**
+     * Sequential reader of a run file
+     */
+    private static final class RunReader {
+        
+        private final DataInputStream in;
+        private final int order;
+        private final int keys;
+        private long remaining;
+        private Entry current;
+        
+        private RunReader(Run run, int order, int keys) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file()), BUFFER_SIZE));
+            this.order = order;
+            this.keys = keys;
+            this.remaining = run.count();
+        }
+        
+        private boolean advance() throws IOException {
+            if (remaining-- <= 0) {
+                current = null;
+                return false;
+            }
+            Object[] key = new Object[keys];
+            for (int i = 0; i < keys; i++) {
+                byte tag = in.readByte();
+                if (tag == NUMBER) {
+                    key[i] = in.readDouble();
+                } else if (tag == TEXT) {
+                    byte[] text = new byte[in.readInt()];
+                    in.readFully(text);
+                    key[i] = new String(text, StandardCharsets.UTF_8);
+                }
+            }
+            byte[] record = new byte[in.readInt()];
+            in.readFully(record);
+            current = new Entry(key, record);
+            return true;
+        }
+    }
+    
+    /**
+     * Delete the run files
+     */
+    @Override
+    public void close() {
+        for (Run run : runs) {
+            try {
+                Files.deleteIfExists(run.file());
+            } catch (IOException e) {
+                log.warn("Failed to delete sort run {}: {}", run.file(), e.getMessage());
+            }
+        }
+        runs.clear();
+        buffer.clear();
+    }
+}
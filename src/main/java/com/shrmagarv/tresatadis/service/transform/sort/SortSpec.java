@@ -0,0 +1,92 @@
+package com.shrmagarv.tresatadis.service.transform.sort;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Settings of a SORT config
+ * <pre>
+ *   {"keys": ["customer", {"field": "ts", "order": "DESC", "type": "NUMBER"}],
+ *    "dedup": "KEYS", "keep": "LAST"}
+ * </pre>
+ * Keys compare as TEXT by default or as NUMBER; missing, null and non-numeric NUMBER values sort first.
+ * dedup is NONE, KEYS (one record per distinct key) or RECORD (drop exact repeats of a record);
+ * keep picks the FIRST or LAST record of each duplicate group in input order.
+ */
+@Getter
+public class SortSpec {
+    
+    public enum Dedup { NONE, KEYS, RECORD }
+    
+    public enum KeyType { TEXT, NUMBER }
+    
+    /**
+     * One sort key
+     * @param field The record field
+     * @param descending Whether the key sorts in descending order
+     * @param type How values are compared
+     */
+    public record Key(String field, boolean descending, KeyType type) {
+    }
+    
+    private final List<Key> keys;
+    private final Dedup dedup;
+    private final boolean keepLast;
+    
+    private SortSpec(List<Key> keys, Dedup dedup, boolean keepLast) {
+        this.keys = keys;
+        this.dedup = dedup;
+        this.keepLast = keepLast;
+    }
+    
+    /**
+     * Parse a SORT config
+     * @param config The config
+     * @return The settings
+     * @throws IllegalArgumentException If the config is invalid
+     */
+    public static SortSpec parse(JsonNode config) {
+        List<Key> keys = new ArrayList<>();
+        for (JsonNode key : config.path("keys")) {
+            if (key.isTextual()) {
+                keys.add(new Key(key.asText(), false, KeyType.TEXT));
+                continue;
+            }
+            if (!key.hasNonNull("field")) {
+                throw new IllegalArgumentException("Sort key requires a field: " + key);
+            }
+            String order = key.path("order").asText("ASC").toUpperCase(Locale.ROOT);
+            if (!order.equals("ASC") && !order.equals("DESC")) {
+                throw new IllegalArgumentException("Sort order must be ASC or DESC: " + order);
+            }
+            keys.add(new Key(key.get("field").asText(), order.equals("DESC"),
+                    parseEnum(KeyType.class, key.path("type").asText("TEXT"), "type")));
+        }
+        
+        JsonNode dedupNode = config.path("dedup");
+        Dedup dedup = dedupNode.isBoolean()
+                ? (dedupNode.booleanValue() ? Dedup.KEYS : Dedup.NONE)
+                : parseEnum(Dedup.class, dedupNode.asText("NONE"), "dedup");
+        if (keys.isEmpty() && dedup != Dedup.RECORD) {
+            throw new IllegalArgumentException("SORT requires keys unless dedup is RECORD");
+        }
+        String keep = config.path("keep").asText("FIRST").toUpperCase(Locale.ROOT);
+        if (!keep.equals("FIRST") && !keep.equals("LAST")) {
+            throw new IllegalArgumentException("keep must be FIRST or LAST: " + keep);
+        }
+        return new SortSpec(Collections.unmodifiableList(keys), dedup, keep.equals("LAST"));
+    }
+    
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String option) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + option + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.shrmagarv.tresatadis.service.xml;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * An XPath restricted to element steps, matched against the stack of open elements while streaming
+ * Supports paths such as /orders/order/price, //price, order/price and /orders/x/item,
+ * made of child (/) and descendant (//) steps over element names or *. Anything that needs random access
+ * (predicates, attributes, axes, functions, text()) does not compile and must be evaluated on a DOM.
+ */
+public class XmlElementPath {
+    
+    private static final String NAME = "(?:\\*|[A-Za-z_][\\w.\\-]*)";
+    private static final Pattern SIMPLE_PATH = Pattern.compile("(?:/{1,2})?" + NAME + "(?:/{1,2}" + NAME + ")*");
+    private static final String WILDCARD = "*";
+    
+    private final String expression;
+    private final String[] names;
+    private final boolean[] descendant;
+    
+    private XmlElementPath(String expression, String[] names, boolean[] descendant) {
+        this.expression = expression;
+        this.names = names;
+        this.descendant = descendant;
+    }
+    
+    /**
+     * Compile an XPath if it only uses element steps
+     * Relative paths are evaluated from the document, like the DOM transformer does
+     * @param expression The XPath
+     * @return The path, or null if the expression needs a full XPath engine
+     */
+    public static XmlElementPath compile(String expression) {
+        String path = expression.trim();
+        if (!SIMPLE_PATH.matcher(path).matches()) {
+            return null;
+        }
+        
+        List<String> names = new ArrayList<>();
+        List<Boolean> descendant = new ArrayList<>();
+        int i = 0;
+        while (i < path.length()) {
+            boolean anyDepth = false;
+            if (path.charAt(i) == '/') {
+                i++;
+                if (i < path.length() && path.charAt(i) == '/') {
+                    anyDepth = true;
+                    i++;
+                }
+            }
+            int end = path.indexOf('/', i);
+            end = end < 0 ? path.length() : end;
+            names.add(path.substring(i, end));
+            descendant.add(anyDepth);
+            i = end;
+        }
+        
+        boolean[] flags = new boolean[descendant.size()];
+        for (int j = 0; j < flags.length; j++) {
+            flags[j] = descendant.get(j);
+        }
+        return new XmlElementPath(path, names.toArray(new String[0]), flags);
+    }
+    
+    /**
+     * Check whether the innermost open element is selected by this path
+     * @param elementPath Names of the open elements, from the document element down
+     * @return True if the path selects the last element of the stack
+     */
+    public boolean matches(List<String> elementPath) {
+        return matches(0, elementPath, 0);
+    }
+    
+    /**
+     * Name of an element as paths refer to it (prefix:local, or local without a prefix)
+     * @param name The element name
+     * @return The qualified name
+     */
+    public static String qualifiedName(QName name) {
+        return name.getPrefix().isEmpty() ? name.getLocalPart() : name.getPrefix() + ":" + name.getLocalPart();
+    }
+    
+    private boolean matches(int step, List<String> elementPath, int depth) {
+        if (step == names.length) {
+            return depth == elementPath.size();
+        }
+        if (descendant[step]) {
+            for (int d = depth; d < elementPath.size(); d++) {
+                if (nameMatches(step, elementPath.get(d)) && matches(step + 1, elementPath, d + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return depth < elementPath.size()
+                && nameMatches(step, elementPath.get(depth))
+                && matches(step + 1, elementPath, depth + 1);
+    }
+    
+    private boolean nameMatches(int step, String name) {
+        return WILDCARD.equals(names[step]) || names[step].equals(name);
+    }
+    
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,130 @@
+package com.shrmagarv.tresatadis.service.xml;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * Shared, hardened XML processing objects
+ * Factory lookups go through the service loader and are slow, so every factory is created and configured
+ * once. External entities, external DTDs, XInclude and external stylesheets are disabled (XXE), and
+ * secure processing caps entity expansion; internal DTD subsets are still accepted.
+ * DocumentBuilder, Transformer and XPath are not thread-safe, so they are kept per thread and reset
+ * before each use. The StAX factories are thread-safe once configured.
+ */
+public final class XmlFactories {
+    
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+    private static final TransformerFactory TRANSFORMER_FACTORY = createTransformerFactory();
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+    
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = ThreadLocal.withInitial(() -> {
+        try {
+            return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Cannot create XML document builder", e);
+        }
+    });
+    
+    private static final ThreadLocal<Transformer> TRANSFORMERS = ThreadLocal.withInitial(() -> {
+        try {
+            return TRANSFORMER_FACTORY.newTransformer();
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("Cannot create XML transformer", e);
+        }
+    });
+    
+    private static final ThreadLocal<XPath> XPATHS = ThreadLocal.withInitial(() -> {
+        synchronized (XPATH_FACTORY) {
+            return XPATH_FACTORY.newXPath();
+        }
+    });
+    
+    private XmlFactories() {
+    }
+    
+    /**
+     * @return This thread's document builder, reset for a new parse
+     */
+    public static DocumentBuilder documentBuilder() {
+        DocumentBuilder builder = DOCUMENT_BUILDERS.get();
+        builder.reset();
+        return builder;
+    }
+    
+    /**
+     * @return This thread's identity transformer, reset for a new serialization
+     */
+    public static Transformer transformer() {
+        Transformer transformer = TRANSFORMERS.get();
+        transformer.reset();
+        return transformer;
+    }
+    
+    /**
+     * @return This thread's XPath compiler, reset for a new compilation
+     */
+    public static XPath xpath() {
+        XPath xpath = XPATHS.get();
+        xpath.reset();
+        return xpath;
+    }
+    
+    public static XMLInputFactory inputFactory() {
+        return INPUT_FACTORY;
+    }
+    
+    public static XMLOutputFactory outputFactory() {
+        return OUTPUT_FACTORY;
+    }
+    
+    public static XMLEventFactory eventFactory() {
+        return EVENT_FACTORY;
+    }
+    
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            factory.setXIncludeAware(false);
+            return factory;
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Cannot configure XML parser", e);
+        }
+    }
+    
+    private static TransformerFactory createTransformerFactory() {
+        try {
+            TransformerFactory factory = TransformerFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+            return factory;
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("Cannot configure XML transformer", e);
+        }
+    }
+    
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,3 @@
+-- Jobs can run as one-off batches or as long-running streaming consumers
+ALTER TABLE ingestion_jobs
+    ADD COLUMN execution_mode VARCHAR(20) NOT NULL DEFAULT 'BATCH';
@@ -0,0 +1,13 @@
+-- Per-file outcome of multi-file FILE jobs, so a retry only reprocesses files that failed
+CREATE TABLE job_file_progress (
+    id BIGSERIAL PRIMARY KEY,
+    job_id BIGINT NOT NULL REFERENCES ingestion_jobs(id),
+    file_path VARCHAR(1000) NOT NULL,
+    file_size BIGINT,
+    last_modified BIGINT,
+    status VARCHAR(20) NOT NULL,
+    records_processed BIGINT DEFAULT 0,
+    error_message TEXT,
+    updated_at TIMESTAMP NOT NULL,
+    UNIQUE (job_id, file_path)
+);
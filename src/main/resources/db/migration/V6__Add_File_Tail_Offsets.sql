@@ -0,0 +1,4 @@
+-- TAIL jobs remember how far each file has been ingested and which file (inode) the offset refers to
+ALTER TABLE job_file_progress
+    ADD COLUMN byte_offset BIGINT DEFAULT 0,
+    ADD COLUMN file_key VARCHAR(255);
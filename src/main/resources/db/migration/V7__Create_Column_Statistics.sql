@@ -0,0 +1,25 @@
+-- Jobs can profile the columns of the data they load
+ALTER TABLE ingestion_jobs
+    ADD COLUMN profiling_enabled BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Per-column profile of one job run, computed from the data as the job stores it
+CREATE TABLE column_statistics (
+    id BIGSERIAL PRIMARY KEY,
+    job_id BIGINT NOT NULL REFERENCES ingestion_jobs(id),
+    data_statistics_id BIGINT REFERENCES data_statistics(id),
+    column_name VARCHAR(255) NOT NULL,
+    value_type VARCHAR(20),
+    record_count BIGINT DEFAULT 0,
+    null_count BIGINT DEFAULT 0,
+    numeric_count BIGINT DEFAULT 0,
+    min_value VARCHAR(1000),
+    max_value VARCHAR(1000),
+    mean DOUBLE PRECISION,
+    approx_distinct BIGINT,
+    p25 DOUBLE PRECISION,
+    p50 DOUBLE PRECISION,
+    p75 DOUBLE PRECISION,
+    p90 DOUBLE PRECISION,
+    p99 DOUBLE PRECISION,
+    timestamp TIMESTAMP NOT NULL
+);
@@ -0,0 +1,3 @@
+-- Job ids are allocated by the application in blocks of 50 so that job inserts can be batched;
+-- the step must match the allocationSize of Job's sequence generator
+ALTER SEQUENCE ingestion_jobs_id_seq INCREMENT BY 50;
@@ -2,12 +2,18 @@ package com.shrmagarv.tresatadis.service;
 
 import com.shrmagarv.tresatadis.model.Job;
 import com.shrmagarv.tresatadis.model.JobStatus;
+import com.shrmagarv.tresatadis.repository.JobLogRepository;
 import com.shrmagarv.tresatadis.repository.JobRepository;
+import com.shrmagarv.tresatadis.service.source.QueryPushdownPlanner;
+import com.shrmagarv.tresatadis.service.source.impl.DatabaseDataSourceConnector;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -16,6 +22,8 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -26,6 +34,12 @@ class DataIngestionServiceTest {
     @Mock
     private JobRepository jobRepository;
     
+    @Mock
+    private JobLogRepository jobLogRepository;
+    
+    @Mock
+    private QueryPushdownPlanner pushdownPlanner;
+    
     @InjectMocks
     private DataIngestionService ingestionService;
     
@@ -66,6 +80,31 @@ class DataIngestionServiceTest {
         verify(jobRepository, times(1)).save(any(Job.class));
     }
     
+    @Test
+    void testProfilingIsRejectedForStreamingJobs() {
+        testJob.setExecutionMode("STREAMING");
+        testJob.setProfilingEnabled(true);
+        
+        assertThrows(IllegalArgumentException.class, () -> ingestionService.createJob(testJob));
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+    
+    @Test
+    void testCreateJobs() {
+        Job other = Job.builder().name("Other Job").build();
+        when(jobRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        List<Job> createdJobs = ingestionService.createJobs(Arrays.asList(testJob, other));
+        
+        assertEquals(2, createdJobs.size());
+        assertEquals(JobStatus.CREATED, createdJobs.get(1).getStatus());
+        assertEquals(0, createdJobs.get(1).getRetryCount());
+        assertEquals(3, createdJobs.get(1).getMaxRetries());
+        
+        verify(jobRepository, times(1)).saveAll(anyList());
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+    
     @Test
     void testQueueJob() {
         when(jobRepository.findById(1L)).thenReturn(Optional.of(testJob));
@@ -132,4 +171,28 @@ class DataIngestionServiceTest {
         
         verify(jobRepository, times(1)).findByStatus(JobStatus.COMPLETED);
     }
+    
+    @Test
+    void testFailedPushdownQueryFallsBackToUserQuery() throws Exception {
+        testJob.setSourceType("DATABASE");
+        testJob.setSourceLocation("SELECT * FROM orders");
+        testJob.setTransformationType("CSV");
+        testJob.setTransformationConfig("{\"fieldsToRemove\": [\"payload\"]}");
+        
+        DatabaseDataSourceConnector connector = mock(DatabaseDataSourceConnector.class);
+        String pushed = "SELECT \"id\" FROM (SELECT * FROM orders) pushdown_src";
+        QueryPushdownPlanner.Plan plan = mock(QueryPushdownPlanner.Plan.class);
+        when(plan.getSql()).thenReturn(pushed);
+        when(plan.getParameters()).thenReturn(new Object[0]);
+        when(pushdownPlanner.plan(any(), anyString(), anyString(), anyString(), anyString())).thenReturn(plan);
+        when(connector.extractData(eq(pushed), any(Object[].class), eq("CSV")))
+                .thenThrow(new IllegalStateException("column reference \"id\" is ambiguous"));
+        Resource original = new ByteArrayResource("id\n1\n".getBytes());
+        when(connector.extractData("SELECT * FROM orders", "CSV")).thenReturn(original);
+        
+        Resource data = ReflectionTestUtils.invokeMethod(ingestionService, "extractData", testJob, connector);
+        
+        assertSame(original, data);
+        verify(connector).extractData("SELECT * FROM orders", "CSV");
+    }
 }
@@ -0,0 +1,139 @@
+package com.shrmagarv.tresatadis.service.csv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares CsvReader with the line-based parser the CSV transformer and database storage used before
+ * Not part of the test suite; run main() against the test classpath after mvn test-compile
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParserBenchmark {
+    
+    @Param({"100000"})
+    private int rows;
+    
+    private Path file;
+    
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        Random random = new Random(7);
+        StringBuilder csv = new StringBuilder("id,name,city,amount,comment\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(',')
+                    .append("name-").append(random.nextInt(10_000)).append(',')
+                    .append(random.nextBoolean() ? "London" : "\"Paris, France\"").append(',')
+                    .append(random.nextInt(1_000_000) / 100.0).append(',')
+                    .append("some free text comment number ").append(i).append('\n');
+        }
+        file = Files.createTempFile("csv-benchmark", ".csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+    }
+    
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    /**
+     * readLine plus the previous char-by-char parseCsvLine, decoding every field
+     */
+    @Benchmark
+    public void legacyLineParser(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(parseCsvLine(line));
+            }
+        }
+    }
+    
+    /**
+     * CsvReader, decoding every field
+     */
+    @Benchmark
+    public void csvReaderStrings(Blackhole blackhole) throws IOException {
+        try (CsvReader reader = CsvReader.open(new FileSystemResource(file))) {
+            while (reader.next()) {
+                for (int i = 0; i < reader.getFieldCount(); i++) {
+                    blackhole.consume(reader.getString(i));
+                }
+            }
+        }
+    }
+    
+    /**
+     * CsvReader, touching field bounds only (what a projection that copies bytes through pays)
+     */
+    @Benchmark
+    public void csvReaderSlices(Blackhole blackhole) throws IOException {
+        try (CsvReader reader = CsvReader.open(new FileSystemResource(file))) {
+            while (reader.next()) {
+                for (int i = 0; i < reader.getFieldCount(); i++) {
+                    blackhole.consume(reader.getFieldLength(i));
+                }
+            }
+        }
+    }
+    
+    private static List<String> parseCsvLine(String line) {
+        List<String> result = new ArrayList<>();
+        boolean inQuotes = false;
+        StringBuilder field = new StringBuilder();
+        
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                result.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        
+        result.add(field.toString());
+        return result;
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CsvParserBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,43 @@
+package com.shrmagarv.tresatadis.service.csv;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.service.transform.impl.CsvDataTransformer;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CsvProjection and its use by the CSV transformer
+ */
+class CsvProjectionTest {
+    
+    private static final String CONFIG = "{\"fieldMappings\": {\"full_name\": \"name\"}, \"fieldsToRemove\": [\"secret\", \"name\"]}";
+    
+    @Test
+    void testBindResolvesRenamesAndRemovals() throws Exception {
+        CsvProjection projection = CsvProjection.compile(new ObjectMapper().readTree(CONFIG));
+        CsvProjection.Plan plan = projection.bind(List.of("id", "secret", "name", "city"));
+        
+        assertEquals(List.of("id", "full_name", "city"), plan.getOutputHeaders());
+        assertArrayEquals(new int[] {0, 2, 3}, plan.getSourceIndexes());
+    }
+    
+    @Test
+    void testTransformCopiesFieldsWithQuoting() throws Exception {
+        String input = "id,secret,name,city\n"
+                + "1,x,\"Smith, John\",\"said \"\"hi\"\"\"\n"
+                + "2,y,café\n";
+        
+        byte[] output = new CsvDataTransformer()
+                .transform(new ByteArrayResource(input.getBytes(StandardCharsets.UTF_8)), "CSV", CONFIG)
+                .getContentAsByteArray();
+        
+        assertEquals("id,full_name,city\n"
+                + "1,\"Smith, John\",\"said \"\"hi\"\"\"\n"
+                + "2,café,\n", new String(output, StandardCharsets.UTF_8));
+    }
+}
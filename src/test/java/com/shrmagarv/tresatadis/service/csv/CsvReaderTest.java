@@ -0,0 +1,161 @@
+package com.shrmagarv.tresatadis.service.csv;
+
+import com.shrmagarv.tresatadis.service.io.ByteWindow;
+import com.shrmagarv.tresatadis.service.io.MappedByteWindow;
+import com.shrmagarv.tresatadis.service.io.StreamByteWindow;
+import com.shrmagarv.tresatadis.service.io.TempFileResource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CsvReader and the byte windows it reads from
+ */
+class CsvReaderTest {
+    
+    private static final String CONTENT = "id,name,notes\r\n"
+            + "1,café,plain\n"
+            + "2,\"Smith, John\",\"said \"\"hi\"\"\"\n"
+            + "\n"
+            + "3,\"multi\nline\",\"\"\n"
+            + "4,,last";
+    
+    private static final List<List<String>> EXPECTED = List.of(
+            List.of("id", "name", "notes"),
+            List.of("1", "café", "plain"),
+            List.of("2", "Smith, John", "said \"hi\""),
+            List.of("3", "multi\nline", ""),
+            List.of("4", "", "last"));
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testParsesQuotedFieldsAndLineEndings() throws IOException {
+        try (CsvReader reader = CsvReader.open(resource(CONTENT))) {
+            assertEquals(EXPECTED, readAll(reader));
+        }
+    }
+    
+    @Test
+    void testRecordsCrossingWindowBoundaries() throws IOException {
+        Path file = tempDir.resolve("data.csv");
+        Files.writeString(file, CONTENT, StandardCharsets.UTF_8);
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+        
+        // Windows smaller than a record force sliding and growth at every possible split point
+        for (int size = 8; size <= 32; size++) {
+            try (CsvReader mapped = new CsvReader(new MappedByteWindow(file, size));
+                 CsvReader streamed = new CsvReader(new StreamByteWindow(new ByteArrayInputStream(bytes), size))) {
+                assertEquals(EXPECTED, readAll(mapped), "mapped window " + size);
+                assertEquals(EXPECTED, readAll(streamed), "stream window " + size);
+            }
+        }
+    }
+    
+    @Test
+    void testOpensLocalFilesAsMappedWindows() throws IOException {
+        Path file = tempDir.resolve("data.csv");
+        Files.writeString(file, CONTENT, StandardCharsets.UTF_8);
+        
+        try (ByteWindow window = ByteWindow.open(new FileSystemResource(file))) {
+            assertInstanceOf(MappedByteWindow.class, window);
+        }
+        try (CsvReader reader = CsvReader.open(new FileSystemResource(file))) {
+            assertEquals(EXPECTED, readAll(reader));
+        }
+    }
+    
+    @Test
+    void testStreamsTemporaryFilesSoTheyCanBeDeleted() throws IOException {
+        Path file = tempDir.resolve("spill.tmp");
+        Files.writeString(file, CONTENT, StandardCharsets.UTF_8);
+        
+        TempFileResource spill = new TempFileResource(file);
+        try (ByteWindow window = ByteWindow.open(spill)) {
+            assertInstanceOf(StreamByteWindow.class, window);
+        }
+        try (CsvReader reader = CsvReader.open(spill)) {
+            assertEquals(EXPECTED, readAll(reader));
+        }
+        spill.close();
+        assertFalse(Files.exists(file));
+    }
+    
+    @Test
+    void testEmptyInput() throws IOException {
+        Path file = tempDir.resolve("empty.csv");
+        Files.createFile(file);
+        
+        try (CsvReader reader = CsvReader.open(new FileSystemResource(file))) {
+            assertNull(reader.readRecord());
+        }
+    }
+    
+    @Test
+    void testUnterminatedQuoteTakesRestOfInput() throws IOException {
+        try (CsvReader reader = CsvReader.open(resource("a,\"b\nc"))) {
+            assertEquals(List.of("a", "b\nc"), reader.readRecord());
+            assertFalse(reader.next());
+        }
+    }
+    
+    @Test
+    void testWordAtATimeSearchMatchesByteSearch() {
+        Random random = new Random(42);
+        byte[] alphabet = {'a', 'b', ',', '\n', '"', (byte) 0xc3, (byte) 0xa9};
+        for (int run = 0; run < 1000; run++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int from = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            
+            int expected = -1;
+            for (int i = from; i < bytes.length; i++) {
+                if (bytes[i] == ',' || bytes[i] == '\n') {
+                    expected = i;
+                    break;
+                }
+            }
+            assertEquals(expected, CsvReader.indexOf(buffer, from, bytes.length,
+                    0x0101010101010101L * ',', 0x0101010101010101L * '\n'));
+        }
+    }
+    
+    @Test
+    void testWriterQuotesOnlyWhenNeeded() {
+        assertEquals("plain", CsvWriter.escape("plain"));
+        assertEquals("\"Smith, John\"", CsvWriter.escape("Smith, John"));
+        assertEquals("\"said \"\"hi\"\"\"", CsvWriter.escape("said \"hi\""));
+        assertEquals("\"multi\nline\"", CsvWriter.escape("multi\nline"));
+    }
+    
+    private ByteArrayResource resource(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private List<List<String>> readAll(CsvReader reader) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+}
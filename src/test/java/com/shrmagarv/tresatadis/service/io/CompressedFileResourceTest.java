@@ -0,0 +1,90 @@
+package com.shrmagarv.tresatadis.service.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for on-the-fly decompression of source files
+ */
+class CompressedFileResourceTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testDetectsCompressionFromMagicBytes() throws IOException {
+        Path gzip = tempDir.resolve("data.csv.gz");
+        writeGzip(gzip, "a,b\n1,2\n");
+        Path renamed = Files.copy(gzip, tempDir.resolve("data.bin"));
+        
+        assertEquals(Compression.GZIP, Compression.detect(gzip));
+        assertEquals(Compression.GZIP, Compression.detect(renamed));
+        assertEquals("data.csv", Compression.stripExtension("data.csv.gz"));
+    }
+    
+    @Test
+    void testGzipSyncAndAsyncGiveSameContent() throws IOException {
+        StringBuilder content = new StringBuilder("id,value\n");
+        for (int i = 0; i < 100_000; i++) {
+            content.append(i).append(",value-").append(i).append('\n');
+        }
+        Path gzip = tempDir.resolve("big.csv.gz");
+        writeGzip(gzip, content.toString());
+        
+        assertEquals(content.toString(), read(new CompressedFileResource(gzip, Compression.GZIP, "CSV", Long.MAX_VALUE)));
+        assertEquals(content.toString(), read(new CompressedFileResource(gzip, Compression.GZIP, "CSV", 0)));
+    }
+    
+    @Test
+    void testZipCsvEntriesShareOneHeader() throws IOException {
+        Path zip = tempDir.resolve("drop.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            addEntry(out, "b.csv", "id,name\n3,c\n");
+            addEntry(out, "a.csv", "id,name\n1,a\n2,b");
+            addEntry(out, "readme.txt", "ignored");
+        }
+        
+        assertEquals("id,name\n1,a\n2,b\n3,c\n", read(new CompressedFileResource(zip, Compression.ZIP, "CSV", 0)));
+    }
+    
+    @Test
+    void testZipJsonEntriesAreMergedIntoOneArray() throws IOException {
+        Path zip = tempDir.resolve("drop.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            addEntry(out, "1.json", "[{\"id\":1},{\"id\":2}]");
+            addEntry(out, "2.json", "{\"id\":3}");
+        }
+        
+        assertEquals("[{\"id\":1},{\"id\":2},{\"id\":3}]", read(new CompressedFileResource(zip, Compression.ZIP, "JSON", 0)));
+    }
+    
+    private void writeGzip(Path path, String content) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    private void addEntry(ZipOutputStream out, String name, String content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+    
+    private String read(CompressedFileResource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
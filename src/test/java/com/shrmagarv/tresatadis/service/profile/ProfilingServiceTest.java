@@ -0,0 +1,122 @@
+package com.shrmagarv.tresatadis.service.profile;
+
+import com.shrmagarv.tresatadis.model.ColumnStatistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for single-pass column profiling
+ */
+class ProfilingServiceTest {
+    
+    private ProfilingService profilingService;
+    
+    @BeforeEach
+    void setUp() {
+        profilingService = new ProfilingService();
+    }
+    
+    @Test
+    void testEachColumnIsProfiledInOnePass() throws Exception {
+        StringBuilder csv = new StringBuilder("id,amount,city,note\n");
+        int rows = 100_000;
+        for (int i = 1; i <= rows; i++) {
+            csv.append(i).append(',')
+                    .append(i % 10 == 0 ? "" : String.valueOf(i % 1000)).append(',')
+                    .append("city").append(i % 50).append(',')
+                    .append(i % 2 == 0 ? "x" : String.valueOf(i)).append('\n');
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+        
+        // The store reads the data once; the profile is taken from the bytes it reads
+        ProfilingTap tap = profilingService.tap(new ByteArrayResource(bytes), "CSV");
+        assertFalse(tap.resource().isFile());
+        assertArrayEquals(bytes, store(tap.resource()));
+        Map<String, ColumnStatistics> columns = tap.finish().stream()
+                .collect(Collectors.toMap(ColumnStatistics::getColumnName, Function.identity()));
+        
+        ColumnStatistics id = columns.get("id");
+        assertEquals("NUMBER", id.getValueType());
+        assertEquals(rows, id.getRecordCount());
+        assertEquals(0, id.getNullCount());
+        assertEquals("1", id.getMinValue());
+        assertEquals("100000", id.getMaxValue());
+        assertEquals(50_000.5, id.getMean(), 1e-6);
+        assertEquals(50_000, id.getP50(), rows * 0.02);
+        assertEquals(99_000, id.getP99(), rows * 0.02);
+        assertEquals(rows, id.getApproxDistinct(), rows * 0.05);
+        
+        ColumnStatistics amount = columns.get("amount");
+        assertEquals(rows / 10, amount.getNullCount());
+        assertEquals(rows - rows / 10, amount.getNumericCount());
+        
+        ColumnStatistics city = columns.get("city");
+        assertEquals("TEXT", city.getValueType());
+        assertEquals("city0", city.getMinValue());
+        assertEquals("city9", city.getMaxValue());
+        assertNull(city.getMean());
+        assertEquals(50, city.getApproxDistinct(), 2);
+        
+        ColumnStatistics note = columns.get("note");
+        assertEquals("MIXED", note.getValueType());
+        assertEquals(rows / 2, note.getNumericCount());
+        assertNotNull(note.getP50());
+    }
+    
+    @Test
+    void testDataThatCanOnlyBeReadOnceIsProfiled() throws Exception {
+        InputStreamResource stream = new InputStreamResource(new ByteArrayInputStream("a\n1\n2\n".getBytes(StandardCharsets.UTF_8)));
+        
+        ProfilingTap tap = profilingService.tap(stream, "CSV");
+        assertEquals("a\n1\n2\n", new String(store(tap.resource()), StandardCharsets.UTF_8));
+        assertEquals(2, tap.finish().get(0).getRecordCount());
+        assertNull(profilingService.tap(stream, "PARQUET"));
+    }
+    
+    @Test
+    void testFailedProfileDoesNotHoldUpTheStore() throws Exception {
+        // Far more than the tap buffers, none of it valid JSON
+        byte[] bytes = "}".repeat(4 * 1024 * 1024).getBytes(StandardCharsets.UTF_8);
+        
+        ProfilingTap tap = profilingService.tap(new ByteArrayResource(bytes), "JSON");
+        assertEquals(bytes.length, store(tap.resource()).length);
+        assertEquals(List.of(), tap.finish());
+        
+        // A store that fails before reading anything still ends the profile
+        assertEquals(List.of(), profilingService.tap(new ByteArrayResource(bytes), "JSON").finish());
+    }
+    
+    @Test
+    void testLongNamesAndValuesAreCutToTheirColumns() throws Exception {
+        String name = "c".repeat(300);
+        String json = "[{\"" + name + "\": \"" + "z".repeat(5000) + "\"}, {\"" + name + "\": \"" + "a".repeat(5000) + "\"}]";
+        ByteArrayResource data = new ByteArrayResource(json.getBytes(StandardCharsets.UTF_8));
+        
+        ColumnStatistics column = profilingService.profile(data, "JSON").get(0);
+        assertEquals("c".repeat(255), column.getColumnName());
+        assertEquals("a".repeat(1000), column.getMinValue());
+        assertEquals("z".repeat(1000), column.getMaxValue());
+    }
+    
+    /**
+     * Read a resource the way LocalFileStorage does
+     */
+    private static byte[] store(Resource resource) throws Exception {
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.shrmagarv.tresatadis.service.source;
+
+import com.shrmagarv.tresatadis.service.source.impl.DatabaseDataSourceConnector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for projection and filter pushdown into database source queries
+ */
+class QueryPushdownPlannerTest {
+    
+    private final QueryPushdownPlanner planner = new QueryPushdownPlanner();
+    private final DatabaseDataSourceConnector connector = mock(DatabaseDataSourceConnector.class);
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        columns.put("id", Types.BIGINT);
+        columns.put("name", Types.VARCHAR);
+        columns.put("amount", Types.NUMERIC);
+        columns.put("created", Types.DATE);
+        columns.put("payload", Types.CLOB);
+        when(connector.describeColumns(anyString())).thenReturn(columns);
+        when(connector.getIdentifierQuote()).thenReturn("\"");
+    }
+    
+    @Test
+    void testProjectionKeepsMappedAndReferencedColumns() {
+        QueryPushdownPlanner.Plan plan = planner.plan(connector, "SELECT * FROM orders;", "CSV", "CSV",
+                "{\"fieldMappings\": {\"full_name\": \"name\"}, \"fieldsToRemove\": [\"name\", \"payload\", \"created\"],"
+                        + " \"derive\": {\"year\": \"year(created)\"}}");
+        
+        assertEquals("SELECT \"id\", \"name\", \"amount\", \"created\" FROM (SELECT * FROM orders) pushdown_src", plan.getSql());
+        assertEquals(0, plan.getParameters().length);
+    }
+    
+    @Test
+    void testOnlySafePredicatesArePushed() {
+        QueryPushdownPlanner.Plan plan = planner.plan(connector, "SELECT * FROM orders", "CSV", "CSV",
+                "{\"fieldsToRemove\": [\"payload\"], \"filter\": \"amount >= 10.5 AND name <> 'x' AND id IN (1, 2)"
+                        + " AND created > DATE '2024-01-01' AND upper(name) = 'A' AND name LIKE 'A%'\"}");
+        
+        assertEquals("SELECT \"id\", \"name\", \"amount\", \"created\" FROM (SELECT * FROM orders) pushdown_src"
+                + " WHERE \"amount\" >= ? AND \"id\" IN (?, ?) AND \"created\" > ? AND \"name\" LIKE ?", plan.getSql());
+        assertArrayEquals(new Object[] {10.5, 1L, 2L, Date.valueOf("2024-01-01"), "A%"}, plan.getParameters());
+    }
+    
+    @Test
+    void testNothingToPushLeavesQueryAlone() {
+        assertNull(planner.plan(connector, "SELECT * FROM orders", "CSV", "CSV", "{\"filter\": \"name > 'm' OR amount > 1\"}"));
+        assertNull(planner.plan(connector, "SELECT * FROM orders", "CSV", "XML", "{\"fieldsToRemove\": [\"payload\"]}"));
+        
+        QueryPushdownPlanner.Plan plan = planner.plan(connector, "SELECT * FROM orders", "JSON", "JSON",
+                "{\"filter\": \"amount < 5 OR amount > 100 OR id = 7\"}");
+        assertTrue(plan.getSql().endsWith("WHERE ((\"amount\" < ? OR \"amount\" > ?) OR \"id\" = ?)"), plan.getSql());
+        assertArrayEquals(new Object[] {5L, 100L, 7L}, plan.getParameters());
+        assertFalse(plan.getParameters()[0] instanceof BigDecimal);
+    }
+    
+    @Test
+    void testApproximateNumbersAreNotFiltered() {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        columns.put("id", Types.BIGINT);
+        columns.put("score", Types.REAL);
+        columns.put("ratio", Types.DOUBLE);
+        when(connector.describeColumns(anyString())).thenReturn(columns);
+        
+        assertNull(planner.plan(connector, "SELECT * FROM results", "CSV", "CSV", "{\"filter\": \"score = 0.1 AND ratio > 2\"}"));
+        
+        QueryPushdownPlanner.Plan plan = planner.plan(connector, "SELECT * FROM results", "CSV", "CSV",
+                "{\"filter\": \"score >= 0.1 AND id = 3\"}");
+        assertTrue(plan.getSql().endsWith("WHERE \"id\" = ?"), plan.getSql());
+        assertArrayEquals(new Object[] {3L}, plan.getParameters());
+    }
+    
+    @Test
+    void testQueryThatCannotBeDescribedIsLeftAlone() {
+        when(connector.describeColumns(anyString()))
+                .thenThrow(new IllegalArgumentException("Query returns more than one column labelled id"));
+        
+        assertNull(planner.plan(connector, "SELECT a.id, b.id FROM a JOIN b ON a.k = b.k", "CSV", "CSV",
+                "{\"fieldsToRemove\": [\"id\"]}"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.shrmagarv.tresatadis.service.source.file;
+
+import com.shrmagarv.tresatadis.model.Job;
+import com.shrmagarv.tresatadis.model.JobFileProgress;
+import com.shrmagarv.tresatadis.repository.DataStatisticsRepository;
+import com.shrmagarv.tresatadis.repository.JobFileProgressRepository;
+import com.shrmagarv.tresatadis.repository.JobLogRepository;
+import com.shrmagarv.tresatadis.repository.JobRepository;
+import com.shrmagarv.tresatadis.service.csv.CsvReader;
+import com.shrmagarv.tresatadis.service.source.impl.FileDataSourceConnector;
+import com.shrmagarv.tresatadis.service.storage.DataStorageFactory;
+import com.shrmagarv.tresatadis.service.storage.impl.LocalFileStorage;
+import com.shrmagarv.tresatadis.service.streaming.MicroBatchPipeline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for tailing a CSV file into a local destination
+ */
+class FileTailIngestionServiceTest {
+    
+    @TempDir
+    Path inputDir;
+    
+    @TempDir
+    Path outputDir;
+    
+    private FileTailIngestionService service;
+    
+    @BeforeEach
+    void setUp() {
+        LocalFileStorage storage = new LocalFileStorage();
+        ReflectionTestUtils.setField(storage, "basePath", outputDir.toString());
+        MicroBatchPipeline pipeline = new MicroBatchPipeline();
+        ReflectionTestUtils.setField(pipeline, "storageFactory", new DataStorageFactory(List.of(storage)));
+        
+        JobFileProgressRepository progressRepository = mock(JobFileProgressRepository.class);
+        when(progressRepository.save(any(JobFileProgress.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        JobRepository jobRepository = mock(JobRepository.class);
+        when(jobRepository.findById(any())).thenReturn(Optional.empty());
+        
+        service = new FileTailIngestionService();
+        ReflectionTestUtils.setField(service, "fileConnector", new FileDataSourceConnector());
+        ReflectionTestUtils.setField(service, "pipeline", pipeline);
+        ReflectionTestUtils.setField(service, "jobRepository", jobRepository);
+        ReflectionTestUtils.setField(service, "jobLogRepository", mock(JobLogRepository.class));
+        ReflectionTestUtils.setField(service, "progressRepository", progressRepository);
+        ReflectionTestUtils.setField(service, "dataStatisticsRepository", mock(DataStatisticsRepository.class));
+        ReflectionTestUtils.setField(service, "pollIntervalMs", 50L);
+        // Small enough that each read is split over several chunks
+        ReflectionTestUtils.setField(service, "maxBatchBytes", 32);
+    }
+    
+    @Test
+    void testEveryChunkIsKept() throws Exception {
+        Path source = inputDir.resolve("events.csv");
+        Files.writeString(source, "id,name\n" + rows(0, 5));
+        
+        Job job = Job.builder()
+                .id(1L)
+                .sourceType("FILE")
+                .sourceFormat("CSV")
+                .sourceLocation(source.toString())
+                .destinationType("LOCAL")
+                .destinationLocation("out/events.csv")
+                .build();
+        service.start(job);
+        try {
+            assertEquals(5, awaitRows(5).size());
+            Files.writeString(source, rows(5, 10), StandardOpenOption.APPEND);
+            awaitRows(10);
+        } finally {
+            service.stop(job.getId());
+            service.shutdown();
+        }
+        assertFalse(service.isRunning(job.getId()));
+        
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, storedIds().stream().sorted().toList());
+        assertTrue(outputs().size() >= 2);
+    }
+    
+    private static String rows(int from, int to) {
+        StringBuilder rows = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            rows.append(i).append(",name-").append(i).append('\n');
+        }
+        return rows.toString();
+    }
+    
+    private List<String> awaitRows(int expected) throws Exception {
+        List<String> ids = List.of();
+        for (int attempt = 0; attempt < 200 && ids.size() < expected; attempt++) {
+            Thread.sleep(50);
+            ids = storedIds();
+        }
+        return ids;
+    }
+    
+    private List<String> storedIds() throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (Path output : outputs()) {
+            try (CsvReader reader = CsvReader.open(new FileSystemResource(output))) {
+                List<String> header = reader.readRecord();
+                if (header == null) {
+                    // Created but not yet written
+                    continue;
+                }
+                assertEquals(List.of("id", "name"), header);
+                List<String> record;
+                while ((record = reader.readRecord()) != null) {
+                    ids.add(record.get(0));
+                }
+            }
+        }
+        return ids;
+    }
+    
+    private List<Path> outputs() throws Exception {
+        Path directory = outputDir.resolve("out");
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.toList();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.shrmagarv.tresatadis.service.source.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shrmagarv.tresatadis.model.Job;
+import com.shrmagarv.tresatadis.repository.JobFileProgressRepository;
+import com.shrmagarv.tresatadis.service.csv.CsvReader;
+import com.shrmagarv.tresatadis.service.source.impl.FileDataSourceConnector;
+import com.shrmagarv.tresatadis.service.storage.DataStorageFactory;
+import com.shrmagarv.tresatadis.service.storage.impl.LocalFileStorage;
+import com.shrmagarv.tresatadis.service.streaming.MicroBatchPipeline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for coalesced multi-file ingestion into a local destination
+ */
+class MultiFileIngestionServiceTest {
+    
+    @TempDir
+    Path inputDir;
+    
+    @TempDir
+    Path outputDir;
+    
+    private MultiFileIngestionService service;
+    
+    @BeforeEach
+    void setUp() {
+        LocalFileStorage storage = new LocalFileStorage();
+        ReflectionTestUtils.setField(storage, "basePath", outputDir.toString());
+        MicroBatchPipeline pipeline = new MicroBatchPipeline();
+        ReflectionTestUtils.setField(pipeline, "storageFactory", new DataStorageFactory(List.of(storage)));
+        
+        service = new MultiFileIngestionService();
+        ReflectionTestUtils.setField(service, "pipeline", pipeline);
+        ReflectionTestUtils.setField(service, "progressRepository", mock(JobFileProgressRepository.class));
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "fileConnector", new FileDataSourceConnector());
+        ReflectionTestUtils.setField(service, "parallelism", 4);
+        ReflectionTestUtils.setField(service, "smallFileBytes", 1024L);
+        ReflectionTestUtils.setField(service, "maxBatchBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(service, "maxBatchFiles", 2);
+        service.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+    
+    @Test
+    void testParallelBatchesKeepEveryRow() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Path file = inputDir.resolve("orders-" + i + ".csv");
+            // The second row holds a quoted line break, which must stay one record
+            Files.writeString(file, "id,note\n" + i + "0,plain\n" + i + "1,\"line one\nline two\"\n");
+            files.add(file);
+        }
+        
+        MultiFileIngestionService.Result result = service.ingest(job(), files);
+        
+        assertEquals(7, result.getCompleted());
+        assertEquals(0, result.getFailed());
+        
+        List<Path> outputs;
+        try (Stream<Path> listing = Files.list(outputDir.resolve("out"))) {
+            outputs = listing.toList();
+        }
+        assertEquals(4, outputs.size());
+        
+        Set<String> ids = new HashSet<>();
+        for (Path output : outputs) {
+            try (CsvReader reader = CsvReader.open(new FileSystemResource(output))) {
+                assertEquals(List.of("id", "note"), reader.readRecord());
+                List<String> record;
+                while ((record = reader.readRecord()) != null) {
+                    assertTrue(ids.add(record.get(0)));
+                    if (record.get(0).endsWith("1")) {
+                        assertEquals("line one\nline two", record.get(1));
+                    }
+                }
+            }
+        }
+        assertEquals(14, ids.size());
+    }
+    
+    private static Job job() {
+        return Job.builder()
+                .id(1L)
+                .sourceFormat("CSV")
+                .destinationType("LOCAL")
+                .destinationLocation("out/orders.csv")
+                .build();
+    }
+}
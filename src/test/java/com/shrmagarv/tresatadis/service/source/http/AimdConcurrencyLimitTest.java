@@ -0,0 +1,63 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the AIMD adaptive concurrency limit
+ */
+class AimdConcurrencyLimitTest {
+    
+    private static final long MILLIS = 1_000_000L;
+    
+    @Test
+    void testLimitGrowsWhileLatencyIsStable() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(4, 1, 64, 2.0, 0.9, 0.5);
+        
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(10 * MILLIS, false, limit.getLimit());
+        }
+        
+        assertTrue(limit.getLimit() > 4);
+        assertTrue(limit.getLimit() <= 64);
+    }
+    
+    @Test
+    void testLimitDoesNotGrowWhenUnused() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(8, 1, 64, 2.0, 0.9, 0.5);
+        
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(10 * MILLIS, false, 1);
+        }
+        
+        assertEquals(8, limit.getLimit());
+    }
+    
+    @Test
+    void testOverloadHalvesLimit() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(32, 1, 64, 2.0, 0.9, 0.5);
+        
+        assertEquals(16, limit.onSample(10 * MILLIS, true, 32));
+        assertEquals(8, limit.onSample(10 * MILLIS, true, 16));
+    }
+    
+    @Test
+    void testLatencySpikeBacksOff() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(20, 1, 64, 2.0, 0.9, 0.5);
+        limit.onSample(10 * MILLIS, false, 0);
+        
+        assertEquals(18, limit.onSample(50 * MILLIS, false, 20));
+    }
+    
+    @Test
+    void testLimitNeverDropsBelowMinimum() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(2, 1, 64, 2.0, 0.9, 0.5);
+        
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(10 * MILLIS, true, 2);
+        }
+        
+        assertEquals(1, limit.getLimit());
+    }
+}
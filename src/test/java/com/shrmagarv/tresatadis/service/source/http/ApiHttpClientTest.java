@@ -0,0 +1,116 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for per-host limiting and response handling of the API client
+ */
+class ApiHttpClientTest {
+    
+    private final HttpClient httpClient = mock(HttpClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<HttpRequest> sent = new ArrayList<>();
+    private final List<CompletableFuture<HttpResponse<byte[]>>> pending = new ArrayList<>();
+    private ApiHttpClient client;
+    
+    @BeforeEach
+    void setUp() {
+        client = new ApiHttpClient();
+        ReflectionTestUtils.setField(client, "httpClient", httpClient);
+        ReflectionTestUtils.setField(client, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(client, "requestTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(client, "maxConcurrencyPerHost", 2);
+        ReflectionTestUtils.setField(client, "adaptiveEnabled", false);
+        ReflectionTestUtils.setField(client, "hostRateLimits", "");
+        ReflectionTestUtils.setField(client, "maxOverloadRetries", 3);
+        ReflectionTestUtils.setField(client, "maxRetryDelayMs", 1000L);
+        client.init();
+        
+        doAnswer(invocation -> {
+            CompletableFuture<HttpResponse<byte[]>> future = new CompletableFuture<>();
+            sent.add(invocation.getArgument(0));
+            pending.add(future);
+            return future;
+        }).when(httpClient).sendAsync(any(HttpRequest.class), any());
+    }
+    
+    @Test
+    void testRequestsQueueBeyondPerHostLimit() {
+        List<CompletableFuture<HttpResponse<byte[]>>> slowHost = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            slowHost.add(client.getAsync("http://slow.example/items/" + i));
+        }
+        CompletableFuture<HttpResponse<byte[]>> otherHost = client.getAsync("http://other.example/items");
+        
+        // The third request to the slow host waits; the other host is not held up by it
+        assertEquals(3, sent.size());
+        assertEquals("other.example", sent.get(2).uri().getHost());
+        
+        pending.get(0).complete(response(200, Map.of(), "a"));
+        assertTrue(slowHost.get(0).isDone());
+        assertEquals(4, sent.size());
+        assertEquals("/items/2", sent.get(3).uri().getPath());
+        
+        pending.get(2).complete(response(200, Map.of(), "b"));
+        assertEquals("b", new String(otherHost.join().body()));
+    }
+    
+    @Test
+    void testOverloadedResponseIsRetriedAfterRetryAfter() throws Exception {
+        CompletableFuture<HttpResponse<byte[]>> future = client.getAsync("http://busy.example/data");
+        pending.get(0).complete(response(503, Map.of("Retry-After", List.of("0")), ""));
+        
+        assertEquals(2, sent.size());
+        pending.get(1).complete(response(200, Map.of(), "ok"));
+        
+        assertEquals(200, future.get().statusCode());
+        assertEquals(1, meterRegistry.counter("ingestion.api.client.throttled",
+                "host", "http://busy.example:80", "status", "503").count());
+    }
+    
+    @Test
+    void testFailedRequestReleasesItsPermit() {
+        CompletableFuture<HttpResponse<byte[]>> future = client.getAsync("http://down.example/data");
+        pending.get(0).completeExceptionally(new ConnectException("refused"));
+        
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(ConnectException.class, e.getCause());
+        assertEquals(0, client.upstreamFor(sent.get(0).uri()).getLimiter().getInFlight());
+    }
+    
+    @Test
+    void testParseRetryAfter() {
+        assertEquals(Optional.of(120_000L), ApiHttpClient.parseRetryAfterMs("120"));
+        assertEquals(Optional.empty(), ApiHttpClient.parseRetryAfterMs("soon"));
+        assertEquals(Optional.empty(), ApiHttpClient.parseRetryAfterMs(null));
+        assertTrue(ApiHttpClient.parseRetryAfterMs("Wed, 21 Oct 2015 07:28:00 GMT").get() < 0);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<byte[]> response(int status, Map<String, List<String>> headers, String body) {
+        HttpResponse<byte[]> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.headers()).thenReturn(HttpHeaders.of(headers, (name, value) -> true));
+        when(response.body()).thenReturn(body.getBytes());
+        return response;
+    }
+}
@@ -0,0 +1,141 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import com.shrmagarv.tresatadis.exception.SourceNotModifiedException;
+import com.shrmagarv.tresatadis.service.source.impl.ApiDataSourceConnector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for conditional API requests backed by the response cache
+ */
+class ApiResponseCacheTest {
+    
+    private static final String URL = "http://api.example/orders";
+    
+    @TempDir
+    Path cacheDir;
+    
+    private final ApiHttpClient apiHttpClient = mock(ApiHttpClient.class);
+    private final List<HttpRequest> sent = new ArrayList<>();
+    private final List<HttpResponse<byte[]>> responses = new ArrayList<>();
+    private ApiResponseCache cache;
+    private ApiDataSourceConnector connector;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        cache = new ApiResponseCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directory", cacheDir.toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(cache, "notModifiedAction", "REUSE");
+        cache.init();
+        
+        connector = new ApiDataSourceConnector();
+        ReflectionTestUtils.setField(connector, "apiHttpClient", apiHttpClient);
+        ReflectionTestUtils.setField(connector, "responseCache", cache);
+        
+        when(apiHttpClient.requestBuilder(anyString()))
+                .thenAnswer(invocation -> HttpRequest.newBuilder(URI.create(invocation.getArgument(0))));
+        when(apiHttpClient.send(any())).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            return responses.remove(0);
+        });
+    }
+    
+    @Test
+    void testEtagIsRevalidatedAndPayloadReusedOnNotModified() throws Exception {
+        responses.add(response(200, Map.of("ETag", List.of("\"v1\"")), "[1,2]"));
+        responses.add(response(304, Map.of(), ""));
+        
+        assertEquals("[1,2]", read(connector.extractData(URL, "JSON")));
+        assertTrue(sent.get(0).headers().firstValue("If-None-Match").isEmpty());
+        
+        assertEquals("[1,2]", read(connector.extractData(URL, "JSON")));
+        assertEquals("\"v1\"", sent.get(1).headers().firstValue("If-None-Match").orElse(null));
+    }
+    
+    @Test
+    void testLastModifiedIsRevalidatedAndSkippedOnNotModified() throws Exception {
+        ReflectionTestUtils.setField(cache, "notModifiedAction", "SKIP");
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        responses.add(response(200, Map.of("Last-Modified", List.of(lastModified)), "[1]"));
+        responses.add(response(304, Map.of(), ""));
+        
+        connector.extractData(URL, "JSON");
+        assertThrows(SourceNotModifiedException.class, () -> connector.extractData(URL, "JSON"));
+        assertEquals(lastModified, sent.get(1).headers().firstValue("If-Modified-Since").orElse(null));
+    }
+    
+    @Test
+    void testResponsesWithoutValidatorsAreNotCached() throws Exception {
+        responses.add(response(200, Map.of(), "[1]"));
+        responses.add(response(200, Map.of(), "[2]"));
+        
+        connector.extractData(URL, "JSON");
+        assertEquals("[2]", read(connector.extractData(URL, "JSON")));
+        assertTrue(cache.getValidators(URL).isEmpty());
+        assertTrue(sent.get(1).headers().map().isEmpty());
+    }
+    
+    @Test
+    void testValidatorsSurviveRestart() throws Exception {
+        responses.add(response(200, Map.of("ETag", List.of("\"v2\"")), "[3]"));
+        connector.extractData(URL, "JSON");
+        
+        ApiResponseCache restarted = new ApiResponseCache();
+        ReflectionTestUtils.setField(restarted, "enabled", true);
+        ReflectionTestUtils.setField(restarted, "directory", cacheDir.toString());
+        ReflectionTestUtils.setField(restarted, "notModifiedAction", "REUSE");
+        restarted.init();
+        
+        assertEquals("\"v2\"", restarted.getValidators(URL).map(ApiResponseCache.CacheEntry::getEtag).orElse(null));
+        assertEquals("[3]", new String(restarted.readPayload(URL).orElseThrow(), StandardCharsets.UTF_8));
+    }
+    
+    @Test
+    void testEvictedPayloadTakesItsValidatorsWithIt() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxBytes", 8L);
+        cache.store(URL, "\"v1\"", null, "[1,2,3]".getBytes(StandardCharsets.UTF_8));
+        Thread.sleep(2);
+        cache.store(URL + "/2", "\"v2\"", null, "[4,5,6]".getBytes(StandardCharsets.UTF_8));
+        
+        assertTrue(cache.getValidators(URL).isEmpty());
+        ReflectionTestUtils.setField(cache, "notModifiedAction", "SKIP");
+        assertTrue(cache.getValidators(URL).isEmpty());
+        assertEquals("\"v2\"", cache.getValidators(URL + "/2").map(ApiResponseCache.CacheEntry::getEtag).orElse(null));
+        
+        Map<?, ?> entries = (Map<?, ?>) ReflectionTestUtils.getField(cache, "entries");
+        assertEquals(1, entries.size());
+    }
+    
+    private static String read(Resource resource) throws Exception {
+        return new String(resource.getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static HttpResponse<byte[]> response(int status, Map<String, List<String>> headers, String body) {
+        HttpResponse<byte[]> response = mock(HttpResponse.class);
+        when(response.statusCode()).thenReturn(status);
+        when(response.headers()).thenReturn(HttpHeaders.of(headers, (name, value) -> true));
+        when(response.body()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return response;
+    }
+}
@@ -0,0 +1,71 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the per-host concurrency limiter
+ */
+class HostConcurrencyLimiterTest {
+    
+    @Test
+    void testLimiterQueuesBeyondLimitAndWakesOnRaise() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter("http://example:80", 1);
+        
+        CompletableFuture<Void> first = limiter.acquire();
+        CompletableFuture<Void> second = limiter.acquire();
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, limiter.getQueued());
+        
+        limiter.setLimit(2);
+        assertTrue(second.isDone());
+        assertEquals(2, limiter.getInFlight());
+        
+        limiter.release();
+        limiter.release();
+        assertEquals(0, limiter.getInFlight());
+    }
+    
+    @Test
+    void testReleaseHandsPermitsToWaitersInOrder() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter("http://example:80", 2);
+        
+        assertTrue(limiter.acquire().isDone());
+        assertTrue(limiter.acquire().isDone());
+        CompletableFuture<Void> third = limiter.acquire();
+        CompletableFuture<Void> fourth = limiter.acquire();
+        assertFalse(third.isDone());
+        assertEquals(2, limiter.getQueued());
+        
+        limiter.release();
+        assertTrue(third.isDone());
+        assertFalse(fourth.isDone());
+        assertEquals(2, limiter.getInFlight());
+        
+        limiter.release();
+        assertTrue(fourth.isDone());
+        assertEquals(0, limiter.getQueued());
+    }
+    
+    @Test
+    void testLoweredLimitAppliesAsPermitsAreReleased() {
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter("http://example:80", 3);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+        }
+        CompletableFuture<Void> waiter = limiter.acquire();
+        
+        limiter.setLimit(1);
+        limiter.release();
+        limiter.release();
+        assertFalse(waiter.isDone(), "Two requests are still in flight above the new limit of 1");
+        
+        limiter.release();
+        assertTrue(waiter.isDone());
+        assertEquals(1, limiter.getInFlight());
+    }
+}
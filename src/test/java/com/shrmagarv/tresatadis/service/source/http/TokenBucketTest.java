@@ -0,0 +1,32 @@
+package com.shrmagarv.tresatadis.service.source.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the token bucket rate limiter
+ */
+class TokenBucketTest {
+    
+    private static final long MILLIS = 1_000_000L;
+    
+    @Test
+    void testTokenBucketReservesBeyondBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        
+        assertEquals(0, bucket.reserve());
+        assertEquals(0, bucket.reserve());
+        long wait = bucket.reserve();
+        assertTrue(wait > 0 && wait <= 100 * MILLIS, "Third token should wait about 100ms but was " + wait);
+    }
+    
+    @Test
+    void testTokensRefillOverTime() throws Exception {
+        TokenBucket bucket = new TokenBucket(1000, 1);
+        
+        assertEquals(0, bucket.reserve());
+        Thread.sleep(5);
+        assertEquals(0, bucket.reserve());
+    }
+}
@@ -0,0 +1,154 @@
+package com.shrmagarv.tresatadis.service.storage.dedup;
+
+import com.shrmagarv.tresatadis.service.sketch.BloomFilter;
+import com.shrmagarv.tresatadis.service.sketch.Hashing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for Bloom filter deduplication of database loads
+ */
+class BloomDeduplicatorTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private static final List<String> COLUMNS = List.of("id", "region", "amount");
+    private static final Map<String, String> TYPES = Map.of("id", "BIGINT", "region", "VARCHAR", "amount", "DOUBLE");
+    
+    @Test
+    void testOnlyProbableHitsAreVerified() throws Exception {
+        Connection connection = mock(Connection.class);
+        Statement scan = mock(Statement.class);
+        ResultSet existing = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(scan);
+        when(scan.executeQuery("SELECT id, region FROM orders")).thenReturn(existing);
+        when(existing.next()).thenReturn(true, false);
+        when(existing.getObject(1)).thenReturn(1L);
+        when(existing.getObject(2)).thenReturn("eu");
+        
+        PreparedStatement lookup = mock(PreparedStatement.class);
+        ResultSet found = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(lookup);
+        when(lookup.executeQuery()).thenReturn(found);
+        when(found.next()).thenReturn(true);
+        
+        AtomicInteger flushes = new AtomicInteger();
+        BloomDeduplicator deduplicator = deduplicator();
+        try (DedupSession session = deduplicator.open(connection, "orders", COLUMNS, TYPES, flushes::incrementAndGet)) {
+            assertFalse(session.isDuplicate(row("2", "eu")));
+            assertFalse(session.isDuplicate(row("", "eu")));
+            verify(connection, never()).prepareStatement(anyString());
+            
+            // The key loaded from the table is a probable hit, confirmed by a lookup after flushing the batch
+            assertTrue(session.isDuplicate(row("01", "eu")));
+            assertEquals(1, flushes.get());
+            verify(connection).prepareStatement("SELECT 1 FROM orders WHERE id = ? AND region = ?");
+            verify(lookup).setObject(1, 1L);
+            session.commit();
+        }
+        assertTrue(Files.exists(tempDir.resolve("orders.bloom")));
+        assertNull(deduplicator.open(connection, "customers", COLUMNS, TYPES, flushes::incrementAndGet));
+        
+        // After a restart the saved filter is used instead of scanning the table
+        Connection restarted = mock(Connection.class);
+        PreparedStatement missing = mock(PreparedStatement.class);
+        ResultSet empty = mock(ResultSet.class);
+        when(restarted.prepareStatement(anyString())).thenReturn(missing);
+        when(missing.executeQuery()).thenReturn(empty);
+        try (DedupSession session = deduplicator().open(restarted, "ORDERS", COLUMNS, TYPES, () -> { })) {
+            assertFalse(session.isDuplicate(row("2", "eu")));
+            assertFalse(session.isDuplicate(row("3", "us")));
+        }
+        verify(restarted, never()).createStatement();
+        verify(missing, times(1)).executeQuery();
+    }
+    
+    @Test
+    void testFileIsOnlyTrustedBetweenCommittedLoadsWithTheSameSettings() throws Exception {
+        Connection connection = mock(Connection.class);
+        Statement scan = mock(Statement.class);
+        ResultSet empty = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(scan);
+        when(scan.executeQuery("SELECT id, region FROM orders")).thenReturn(empty);
+        
+        Path file = tempDir.resolve("orders.bloom");
+        try (DedupSession session = deduplicator().open(connection, "orders", COLUMNS, TYPES, () -> { })) {
+            session.commit();
+        }
+        assertTrue(Files.exists(file));
+        
+        // A load that never commits leaves no file behind, so a restart rebuilds the filter from the table
+        try (DedupSession session = deduplicator().open(connection, "orders", COLUMNS, TYPES, () -> { })) {
+            assertFalse(Files.exists(file));
+        }
+        assertFalse(Files.exists(file));
+        verify(connection, times(1)).createStatement();
+        
+        try (DedupSession session = deduplicator().open(connection, "orders", COLUMNS, TYPES, () -> { })) {
+            session.commit();
+        }
+        verify(connection, times(2)).createStatement();
+        
+        // A file sized for another expected record count is rebuilt rather than reused
+        BloomDeduplicator resized = deduplicator();
+        ReflectionTestUtils.setField(resized, "expectedRecords", 5000L);
+        try (DedupSession session = resized.open(connection, "orders", COLUMNS, TYPES, () -> { })) {
+            session.commit();
+        }
+        verify(connection, times(3)).createStatement();
+        
+        // So is a file written for other key types
+        try (DedupSession session = deduplicator().open(connection, "orders", COLUMNS,
+                Map.of("id", "VARCHAR", "region", "VARCHAR"), () -> { })) {
+            session.commit();
+        }
+        verify(connection, times(4)).createStatement();
+    }
+    
+    @Test
+    void testFilterStaysNearItsFalsePositiveRate() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(Hashing.hash("key-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(Hashing.hash("key-" + i)));
+            falsePositives += filter.mightContain(Hashing.hash("other-" + i)) ? 1 : 0;
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+    }
+    
+    private BloomDeduplicator deduplicator() {
+        BloomDeduplicator deduplicator = new BloomDeduplicator();
+        ReflectionTestUtils.setField(deduplicator, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(deduplicator, "tableKeys", "orders=id|region");
+        ReflectionTestUtils.setField(deduplicator, "directory", tempDir.toString());
+        ReflectionTestUtils.setField(deduplicator, "expectedRecords", 1000L);
+        ReflectionTestUtils.setField(deduplicator, "falsePositiveRate", 0.01);
+        deduplicator.init();
+        return deduplicator;
+    }
+    
+    private static IntFunction<String> row(String id, String region) {
+        return i -> i == 0 ? id : i == 1 ? region : "9.5";
+    }
+}
@@ -0,0 +1,47 @@
+package com.shrmagarv.tresatadis.service.storage.impl;
+
+import com.shrmagarv.tresatadis.service.storage.DataStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for local file storage of multi-part loads
+ */
+class LocalFileStorageTest {
+    
+    @TempDir
+    Path basePath;
+    
+    @Test
+    void testPartsAreStoredInSeparateFiles() throws Exception {
+        LocalFileStorage storage = new LocalFileStorage();
+        ReflectionTestUtils.setField(storage, "basePath", basePath.toString());
+        
+        String first = storage.storeData(resource("[1]"), "JSON", storage.partLocation("out/orders.json", "0-10"));
+        String second = storage.storeData(resource("[2]"), "JSON", storage.partLocation("out/orders.json", "0-12"));
+        
+        assertEquals(basePath.resolve("out/orders-part-0-10.json").toString(), first);
+        assertEquals("[1]", Files.readString(Path.of(first)));
+        assertEquals("[2]", Files.readString(Path.of(second)));
+    }
+    
+    @Test
+    void testPartSuffixGoesBeforeTheExtension() {
+        assertEquals("orders-part-3", DataStorage.withPartSuffix("orders", "3"));
+        assertEquals("data.v1/orders-part-3", DataStorage.withPartSuffix("data.v1/orders", "3"));
+        assertEquals("aws:bucket:a/b-part-3.csv", DataStorage.withPartSuffix("aws:bucket:a/b.csv", "3"));
+        assertEquals("dir/.hidden-part-3", DataStorage.withPartSuffix("dir/.hidden", "3"));
+    }
+    
+    private static ByteArrayResource resource(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
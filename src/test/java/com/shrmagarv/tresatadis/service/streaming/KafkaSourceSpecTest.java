@@ -0,0 +1,41 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for parsing KAFKA source locations
+ */
+class KafkaSourceSpecTest {
+    
+    @Test
+    void testTopicOnlyUsesDefaults() {
+        KafkaSourceSpec spec = KafkaSourceSpec.parse("orders", "ingest");
+        
+        assertEquals("orders", spec.getTopic());
+        assertEquals("ingest-orders", spec.getGroupId());
+        assertNull(spec.getCsvHeader());
+        assertNull(spec.getMaxRecords());
+        assertNull(spec.getLingerMs());
+    }
+    
+    @Test
+    void testParametersAreDecoded() {
+        KafkaSourceSpec spec = KafkaSourceSpec.parse(
+                "orders?group=team-a&header=id%2Cname&maxRecords=500&maxBytes=1048576&lingerMs=250", "ingest");
+        
+        assertEquals("orders", spec.getTopic());
+        assertEquals("team-a", spec.getGroupId());
+        assertEquals("id,name", spec.getCsvHeader());
+        assertEquals(500, spec.getMaxRecords());
+        assertEquals(1_048_576L, spec.getMaxBytes());
+        assertEquals(250L, spec.getLingerMs());
+    }
+    
+    @Test
+    void testTopicIsRequired() {
+        assertThrows(IllegalArgumentException.class, () -> KafkaSourceSpec.parse(" ", "ingest"));
+        assertThrows(IllegalArgumentException.class, () -> KafkaSourceSpec.parse("?group=a", "ingest"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for packing Kafka records into micro-batch payloads
+ */
+class MicroBatchTest {
+    
+    @Test
+    void testJsonBatchIsOneArrayHoweverOftenItIsRead() throws Exception {
+        MicroBatch batch = new MicroBatch("json", null);
+        batch.add(record(0, 10, "{\"id\":1}"));
+        batch.add(record(0, 11, null));
+        batch.add(record(1, 5, "{\"id\":2}"));
+        
+        String first = read(batch);
+        assertEquals("[{\"id\":1},{\"id\":2}]", first);
+        assertEquals(first, read(batch));
+        JsonNode parsed = new ObjectMapper().readTree(first);
+        assertEquals(2, parsed.size());
+        
+        assertEquals(2, batch.getRecordCount());
+        assertEquals(new OffsetAndMetadata(12), batch.getOffsets().get(new TopicPartition("orders", 0)));
+        assertEquals(new OffsetAndMetadata(6), batch.getOffsets().get(new TopicPartition("orders", 1)));
+        assertEquals("0-10", batch.getPartName());
+        assertThrows(IllegalStateException.class, () -> batch.add(record(0, 12, "{\"id\":3}")));
+    }
+    
+    @Test
+    void testCsvBatchHasHeaderLine() throws Exception {
+        MicroBatch batch = new MicroBatch("CSV", "id,name");
+        assertTrue(batch.isEmpty());
+        batch.add(record(2, 7, "1,a"));
+        batch.add(record(2, 8, "2,b"));
+        
+        assertFalse(batch.isEmpty());
+        assertEquals("id,name\n1,a\n2,b\n", read(batch));
+        assertThrows(IllegalArgumentException.class, () -> new MicroBatch("CSV", " "));
+        assertThrows(IllegalArgumentException.class, () -> new MicroBatch("XML", null));
+    }
+    
+    private static ConsumerRecord<String, String> record(int partition, long offset, String value) {
+        return new ConsumerRecord<>("orders", partition, offset, null, value);
+    }
+    
+    private static String read(MicroBatch batch) throws Exception {
+        return new String(batch.toResource().getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
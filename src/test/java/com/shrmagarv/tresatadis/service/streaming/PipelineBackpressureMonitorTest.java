@@ -0,0 +1,82 @@
+package com.shrmagarv.tresatadis.service.streaming;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for pausing and resuming listener containers on queued bytes
+ */
+class PipelineBackpressureMonitorTest {
+    
+    private PipelineBackpressureMonitor monitor;
+    private MessageListenerContainer container;
+    private SimpleMeterRegistry meterRegistry;
+    
+    @BeforeEach
+    void setUp() {
+        container = mock(MessageListenerContainer.class);
+        when(container.isRunning()).thenReturn(true);
+        KafkaListenerEndpointRegistry listenerRegistry = mock(KafkaListenerEndpointRegistry.class);
+        when(listenerRegistry.getListenerContainer("dataRecordListener")).thenReturn(container);
+        meterRegistry = new SimpleMeterRegistry();
+        
+        monitor = new PipelineBackpressureMonitor();
+        ReflectionTestUtils.setField(monitor, "listenerRegistry", listenerRegistry);
+        ReflectionTestUtils.setField(monitor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(monitor, "enabled", true);
+        ReflectionTestUtils.setField(monitor, "maxPendingBytes", 1000L);
+        ReflectionTestUtils.setField(monitor, "resumePendingBytes", 500L);
+        // Keep the test independent of the heap the build happens to run with
+        ReflectionTestUtils.setField(monitor, "heapHighWatermark", 2.0);
+        ReflectionTestUtils.setField(monitor, "heapLowWatermark", 2.0);
+        ReflectionTestUtils.setField(monitor, "listenerIds", new String[] {"dataRecordListener"});
+        monitor.init();
+    }
+    
+    @Test
+    void testListenerPausesAboveHighWatermarkAndResumesBelowLow() {
+        monitor.batchQueued(600);
+        monitor.checkListeners();
+        assertFalse(monitor.isOverloaded());
+        verify(container, never()).pause();
+        
+        monitor.batchQueued(600);
+        monitor.checkListeners();
+        assertTrue(monitor.isOverloaded());
+        verify(container).pause();
+        
+        // Still above the resume mark, so the container stays paused
+        monitor.batchCompleted(600);
+        monitor.checkListeners();
+        assertTrue(monitor.isOverloaded());
+        verify(container, never()).resume();
+        
+        monitor.batchCompleted(600);
+        monitor.checkListeners();
+        assertFalse(monitor.isOverloaded());
+        verify(container).resume();
+        verify(container, times(1)).pause();
+        
+        assertEquals(1, meterRegistry.counter("ingestion.kafka.backpressure.events",
+                "source", "dataRecordListener", "action", "pause").count());
+        assertEquals(1, meterRegistry.counter("ingestion.kafka.backpressure.events",
+                "source", "dataRecordListener", "action", "resume").count());
+    }
+    
+    @Test
+    void testDisabledMonitorNeverPauses() {
+        ReflectionTestUtils.setField(monitor, "enabled", false);
+        monitor.batchQueued(5000);
+        monitor.checkListeners();
+        
+        assertFalse(monitor.isOverloaded());
+        verify(container, never()).pause();
+    }
+}
@@ -0,0 +1,60 @@
+package com.shrmagarv.tresatadis.service.transform;
+
+import com.shrmagarv.tresatadis.service.convert.ConversionConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the compiled config cache shared by the record transformers
+ */
+class TransformConfigCacheTest {
+    
+    @Test
+    void testSpecIsCompiledOncePerConfig() throws Exception {
+        AtomicInteger compilations = new AtomicInteger();
+        TransformConfigCache<String> configs = new TransformConfigCache<>(configNode -> {
+            compilations.incrementAndGet();
+            return configNode.path("keys").toString();
+        }, "keys");
+        
+        String config = "{\"keys\": [\"id\"]}";
+        assertEquals("[\"id\"]", configs.spec(config));
+        assertEquals("[\"id\"]", configs.spec(config));
+        configs.outputConfig(config, "CSV");
+        assertEquals(1, compilations.get());
+    }
+    
+    @Test
+    void testOutputConfigDropsSpecKeysAndDefaultsToSourceFormat() throws Exception {
+        TransformConfigCache<Object> configs = new TransformConfigCache<>(configNode -> new Object(), "keys", "dedup");
+        
+        ConversionConfig output = configs.outputConfig("{\"keys\": [\"id\"], \"dedup\": true}", "json");
+        assertEquals("JSON", output.getTargetFormat());
+        
+        ConversionConfig converted = configs.outputConfig(
+                "{\"keys\": [\"id\"], \"targetFormat\": \"CSV\", \"flatten\": {\"separator\": \"_\"}}", "JSON");
+        assertEquals("CSV", converted.getTargetFormat());
+        assertEquals("_", converted.getSeparator());
+    }
+    
+    @Test
+    void testLeastRecentlyUsedConfigIsEvicted() throws Exception {
+        AtomicInteger compilations = new AtomicInteger();
+        TransformConfigCache<Integer> configs = new TransformConfigCache<>(configNode -> compilations.incrementAndGet());
+        
+        configs.spec("{\"n\": 0}");
+        for (int i = 1; i <= 256; i++) {
+            // Keep the first config in use while the others fill the cache
+            configs.spec("{\"n\": 0}");
+            configs.spec("{\"n\": " + i + "}");
+        }
+        assertEquals(257, compilations.get());
+        
+        assertEquals(1, configs.spec("{\"n\": 0}"));
+        configs.spec("{\"n\": 1}");
+        assertEquals(258, compilations.get());
+    }
+}
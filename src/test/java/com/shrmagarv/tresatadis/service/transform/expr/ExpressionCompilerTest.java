@@ -0,0 +1,70 @@
+package com.shrmagarv.tresatadis.service.transform.expr;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for expression parsing and evaluation
+ */
+class ExpressionCompilerTest {
+    
+    @Test
+    void testComparisonsCoerceTextFields() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        Expression filter = compiler.compile("amount > 100 AND status IN ('OPEN', 'PENDING') AND NOT note IS NULL");
+        
+        assertEquals(List.of("amount", "status", "note"), compiler.getFields());
+        assertTrue(filter.test(row(compiler, Map.of("amount", "150", "status", "OPEN", "note", "x"))));
+        assertFalse(filter.test(row(compiler, Map.of("amount", "99.5", "status", "OPEN", "note", "x"))));
+        assertFalse(filter.test(row(compiler, Map.of("amount", "150", "status", "OPEN"))));
+        // Non-numeric text never satisfies a numeric comparison
+        assertFalse(filter.test(row(compiler, Map.of("amount", "n/a", "status", "OPEN", "note", "x"))));
+    }
+    
+    @Test
+    void testArithmeticConcatenationAndFunctions() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        Expression total = compiler.compile("CAST(qty AS INTEGER) * price");
+        Expression name = compiler.compile("upper(first) || ' ' || coalesce(middle, last)");
+        Expression bucket = compiler.compile("CASE WHEN qty >= 10 THEN 'bulk' ELSE 'single' END");
+        Row row = row(compiler, Map.of("qty", "12", "price", 2.5, "first", "ada", "last", "Lovelace"));
+        
+        assertEquals(30.0, total.evaluate(row));
+        assertEquals("ADA Lovelace", name.evaluate(row));
+        assertEquals("bulk", bucket.evaluate(row));
+        assertEquals(7L, compiler.compile("1 + 2 * 3").evaluate(slot -> null));
+    }
+    
+    @Test
+    void testDates() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        Expression parsed = compiler.compile("to_date(created, 'dd/MM/yyyy')");
+        Expression recent = compiler.compile("to_date(created, 'dd/MM/yyyy') >= DATE '2024-01-01'");
+        
+        assertEquals(LocalDate.of(2024, 3, 5), parsed.evaluate(row(compiler, Map.of("created", "05/03/2024"))));
+        assertTrue(recent.test(row(compiler, Map.of("created", "05/03/2024"))));
+        assertFalse(recent.test(row(compiler, Map.of("created", "31/12/2023"))));
+        assertEquals(2024L, compiler.compile("year('2024-03-05')").evaluate(slot -> null));
+    }
+    
+    @Test
+    void testInvalidExpressionsFailAtCompileTime() {
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> compiler.compile("amount >"));
+        assertTrue(e.getMessage().contains("position"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("nosuch(amount)"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("CAST(a AS BLOB)"));
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile("name = 'unterminated"));
+    }
+    
+    private Row row(ExpressionCompiler compiler, Map<String, Object> values) {
+        List<String> fields = compiler.getFields();
+        return slot -> values.get(fields.get(slot));
+    }
+}
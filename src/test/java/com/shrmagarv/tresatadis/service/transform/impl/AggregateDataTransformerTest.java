@@ -0,0 +1,90 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shrmagarv.tresatadis.service.transform.aggregate.AggregateSpec;
+import com.shrmagarv.tresatadis.service.transform.aggregate.HashAggregation;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the AGGREGATE transformer
+ */
+class AggregateDataTransformerTest {
+    
+    private final AggregateDataTransformer transformer = new AggregateDataTransformer();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Test
+    void testGroupByWithAllOps() throws Exception {
+        String csv = "region,user,amount\neu,a,10\nus,b,5\neu,b,2.5\neu,a,\n";
+        String config = "{\"groupBy\": [\"region\"], \"targetFormat\": \"NDJSON\", \"aggregates\": ["
+                + "{\"op\": \"COUNT\"},"
+                + "{\"op\": \"SUM\", \"field\": \"amount\"},"
+                + "{\"op\": \"MIN\", \"field\": \"amount\"},"
+                + "{\"op\": \"MAX\", \"field\": \"amount\"},"
+                + "{\"op\": \"AVG\", \"field\": \"amount\"},"
+                + "{\"op\": \"APPROX_DISTINCT\", \"field\": \"user\", \"as\": \"users\"}]}";
+        
+        String output = new String(transformer.transform(new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8)), "CSV", config)
+                .getContentAsByteArray(), StandardCharsets.UTF_8);
+        
+        Map<String, JsonNode> byRegion = new HashMap<>();
+        for (String line : output.split("\n")) {
+            JsonNode record = objectMapper.readTree(line);
+            byRegion.put(record.get("region").asText(), record);
+        }
+        JsonNode eu = byRegion.get("eu");
+        assertEquals(3, eu.get("count").asInt());
+        assertEquals(12.5, eu.get("sum_amount").asDouble());
+        assertEquals(2.5, eu.get("min_amount").asDouble());
+        assertEquals(10, eu.get("max_amount").asDouble());
+        assertEquals(6.25, eu.get("avg_amount").asDouble());
+        assertEquals(2, eu.get("users").asLong());
+        assertEquals(1, byRegion.get("us").get("count").asInt());
+        assertEquals("NDJSON", transformer.getOutputFormat("CSV", config));
+    }
+    
+    @Test
+    void testParallelWorkersSpillAndMerge() throws Exception {
+        AggregateSpec spec = AggregateSpec.parse(objectMapper.readTree("{\"groupBy\": [\"key\"], \"aggregates\": ["
+                + "{\"op\": \"COUNT\"}, {\"op\": \"SUM\", \"field\": \"value\"},"
+                + "{\"op\": \"APPROX_DISTINCT\", \"field\": \"id\", \"as\": \"ids\"}]}"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<String, JsonNode> groups = new HashMap<>();
+        try (HashAggregation aggregation = new HashAggregation(spec, objectMapper, executor, 4, 64 * 1024, 8)) {
+            for (int i = 0; i < 100_000; i++) {
+                ObjectNode record = objectMapper.createObjectNode();
+                record.put("key", "k" + (i % 5000));
+                record.put("value", i % 7);
+                record.put("id", i / 5000);
+                aggregation.add(record);
+            }
+            long count = aggregation.finish(record -> groups.put(record.get("key").asText(), record));
+            assertEquals(5000, count);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(5000, groups.size());
+        for (int k = 0; k < 5000; k++) {
+            JsonNode group = groups.get("k" + k);
+            long expectedSum = 0;
+            for (int i = k; i < 100_000; i += 5000) {
+                expectedSum += i % 7;
+            }
+            assertEquals(20, group.get("count").asLong());
+            assertEquals(expectedSum, group.get("sum_value").asLong());
+            assertEquals(20, group.get("ids").asLong());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CHAIN transformer
+ */
+class ChainDataTransformerTest {
+    
+    private final ChainDataTransformer transformer = new ChainDataTransformer();
+    
+    @Test
+    void testRenameFilterDeriveInOnePass() throws Exception {
+        String csv = "id,first,last,amount\n1,Ann,Lee,150\n2,Bob,Ray,20\n3,Cy,Oh,100\n";
+        String config = "{\"steps\": ["
+                + "{\"type\": \"RENAME\", \"fields\": {\"given\": \"first\"}},"
+                + "{\"type\": \"FILTER\", \"field\": \"amount\", \"op\": \"GE\", \"value\": 100},"
+                + "{\"type\": \"DERIVE\", \"field\": \"name\", \"template\": \"${given} ${last}\"},"
+                + "{\"type\": \"KEEP\", \"fields\": [\"id\", \"name\"]}]}";
+        
+        assertEquals("id,name\n1,Ann Lee\n3,Cy Oh\n", transform(csv, "CSV", config));
+        assertEquals("CSV", transformer.getOutputFormat("CSV", config));
+    }
+    
+    @Test
+    void testFlattenAndConvertTarget() throws Exception {
+        String json = "[{\"id\": 1, \"a\": {\"b\": 2}, \"tmp\": 0}, {\"id\": 2, \"a\": {\"b\": 3}}]";
+        String config = "{\"targetFormat\": \"NDJSON\", \"steps\": ["
+                + "{\"type\": \"REMOVE\", \"fields\": [\"tmp\"]},"
+                + "{\"type\": \"FLATTEN\", \"separator\": \"_\"},"
+                + "{\"type\": \"FILTER\", \"field\": \"a_b\", \"op\": \"NE\", \"value\": 3}]}";
+        
+        assertEquals("{\"id\":1,\"a_b\":2}", transform(json, "JSON", config));
+        assertEquals("NDJSON", transformer.getOutputFormat("JSON", config));
+    }
+    
+    @Test
+    void testInvalidStepIsReported() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> transform("[]", "JSON", "{\"steps\": [{\"type\": \"KEEP\", \"fields\": [\"a\"]}, {\"type\": \"SHUFFLE\"}]}"));
+        assertTrue(e.getMessage().contains("step 2"), e.getMessage());
+    }
+    
+    private String transform(String input, String sourceFormat, String config) throws Exception {
+        return new String(transformer.transform(new ByteArrayResource(input.getBytes(StandardCharsets.UTF_8)), sourceFormat, config)
+                .getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,55 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CONVERT transformer
+ */
+class ConvertDataTransformerTest {
+    
+    private final ConvertDataTransformer transformer = new ConvertDataTransformer();
+    
+    @Test
+    void testXmlToCsvFlattensRecords() throws Exception {
+        String xml = "<?xml version=\"1.0\"?><export><orders>"
+                + "<order id=\"1\"><customer><name>Ann, Jr.</name></customer><item>a</item><item>b</item></order>"
+                + "<order id=\"2\"><customer><name>Bob</name></customer><item>c</item></order>"
+                + "</orders></export>";
+        
+        String csv = convert(xml, "XML", "{\"targetFormat\": \"CSV\", \"recordPath\": \"//order\", "
+                + "\"flatten\": {\"arrays\": \"JOIN\"}}");
+        
+        assertEquals("id,customer.name,item\n1,\"Ann, Jr.\",a|b\n2,Bob,c\n", csv);
+        assertEquals("CSV", transformer.getOutputFormat("XML", "{\"targetFormat\": \"csv\"}"));
+    }
+    
+    @Test
+    void testNestedJsonToCsvWithIndexedArraysAndFixedColumns() throws Exception {
+        String json = "[{\"id\": 1, \"tags\": [\"x\", \"y\"], \"meta\": {\"a\": null}}, {\"id\": 2, \"extra\": true}]";
+        
+        assertEquals("id,tags.0,tags.1,meta.a\n1,x,y,\n2,,,\n", convert(json, "JSON", "{\"targetFormat\": \"CSV\"}"));
+        assertEquals("tags.1,id\ny,1\n,2\n",
+                convert(json, "JSON", "{\"targetFormat\": \"CSV\", \"columns\": [\"tags.1\", \"id\"]}"));
+    }
+    
+    @Test
+    void testCsvToNdjsonAndJsonToXml() throws Exception {
+        assertEquals("{\"id\":\"1\",\"name\":\"a\"}\n{\"id\":\"2\",\"name\":\"b\"}",
+                convert("id,name\n1,a\n2,b\n", "CSV", "{\"targetFormat\": \"NDJSON\"}"));
+        
+        String xml = convert("{\"id\": 1, \"tags\": [\"x\", \"y\"], \"bad key\": {\"k\": \"<v>\"}}", "NDJSON",
+                "{\"targetFormat\": \"XML\", \"rootElement\": \"items\", \"recordElement\": \"item\"}");
+        assertTrue(xml.endsWith("<items><item><id>1</id><tags>x</tags><tags>y</tags>"
+                + "<bad_key><k>&lt;v></k></bad_key></item></items>"), xml);
+    }
+    
+    private String convert(String input, String sourceFormat, String config) throws Exception {
+        return new String(transformer.transform(new ByteArrayResource(input.getBytes(StandardCharsets.UTF_8)), sourceFormat, config)
+                .getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,86 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import com.shrmagarv.tresatadis.service.source.DataSourceConnectorFactory;
+import com.shrmagarv.tresatadis.service.source.impl.FileDataSourceConnector;
+import com.shrmagarv.tresatadis.service.transform.enrich.ReferenceIndexCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ENRICH transformer
+ */
+class EnrichDataTransformerTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private final EnrichDataTransformer transformer = new EnrichDataTransformer();
+    private final ReferenceIndexCache cache = new ReferenceIndexCache();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        cache.init();
+        ReflectionTestUtils.setField(transformer, "referenceIndexCache", cache);
+        ReflectionTestUtils.setField(transformer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(transformer, "connectorFactory",
+                new DataSourceConnectorFactory(List.of(new FileDataSourceConnector())));
+    }
+    
+    @Test
+    void testLookupAddsReferenceFields() throws Exception {
+        Path products = Files.writeString(tempDir.resolve("products.csv"), "code,category,brand\nA1,toys,acme\nB2,books,\n");
+        String config = "{\"key\": \"product\", \"prefix\": \"product_\", \"fields\": [\"category\"],"
+                + " \"reference\": {\"sourceType\": \"FILE\", \"location\": \"" + products + "\", \"key\": \"code\", \"name\": \"products\"}}";
+        
+        String csv = "id,product\n1,A1\n2,C3\n3,B2\n";
+        assertEquals("id,product,product_category\n1,A1,toys\n2,C3,\n3,B2,books\n", transform(csv, "CSV", config));
+        assertEquals(2, meterRegistry.counter("ingestion.transform.enrich.lookups", "reference", "products", "result", "hit").count());
+        assertEquals(1, meterRegistry.counter("ingestion.transform.enrich.lookups", "reference", "products", "result", "miss").count());
+        assertEquals(2, meterRegistry.get("ingestion.transform.enrich.index.entries").gauge().value());
+        
+        String json = "[{\"product\": \"B2\"}, {\"product\": 7}]";
+        String drop = config.replace("\"fields\"", "\"onMiss\": \"DROP\", \"fields\"");
+        assertEquals("[{\"product\":\"B2\",\"product_category\":\"books\"}]", transform(json, "JSON", drop));
+    }
+    
+    @Test
+    void testReferenceIsReloadedAfterTtlAndEvictedBeyondCap() throws Exception {
+        Path first = Files.writeString(tempDir.resolve("first.json"), "[{\"id\": 1, \"label\": \"one\", \"score\": 2.5}]");
+        Path second = Files.writeString(tempDir.resolve("second.json"), "[{\"id\": 2, \"label\": \"two\"}]");
+        String firstConfig = "{\"key\": \"id\", \"targetFormat\": \"NDJSON\", \"reference\": {\"sourceType\": \"FILE\","
+                + " \"format\": \"JSON\", \"location\": \"" + first + "\", \"ttlSeconds\": 0}}";
+        String secondConfig = firstConfig.replace(first.toString(), second.toString());
+        
+        assertEquals("{\"id\":1,\"label\":\"one\",\"score\":2.5}", transform("[{\"id\": 1}]", "JSON", firstConfig));
+        
+        // A TTL of 0 reloads the reference on the next use
+        Files.writeString(first, "[{\"id\": 1, \"label\": \"uno\", \"score\": 3}]");
+        Thread.sleep(5);
+        assertEquals("{\"id\":1,\"label\":\"uno\",\"score\":3}", transform("[{\"id\": 1}]", "JSON", firstConfig));
+        
+        // With a 1 byte cap only the most recently loaded index is kept
+        ReflectionTestUtils.setField(cache, "maxMemoryBytes", 1L);
+        transform("[{\"id\": 2}]", "JSON", secondConfig);
+        assertEquals(1, cache.indexCount());
+        assertTrue(cache.sizeInBytes() > 0);
+    }
+    
+    private String transform(String input, String sourceFormat, String config) throws Exception {
+        return new String(transformer.transform(new ByteArrayResource(input.getBytes(StandardCharsets.UTF_8)), sourceFormat, config)
+                .getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
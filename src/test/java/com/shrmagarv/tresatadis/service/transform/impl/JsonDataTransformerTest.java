@@ -0,0 +1,52 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the streaming JSON transformer
+ */
+class JsonDataTransformerTest {
+    
+    private final JsonDataTransformer transformer = new JsonDataTransformer();
+    
+    @Test
+    void testArrayWithMappingsAndRemovals() throws Exception {
+        String output = transform("[{\"id\":1,\"name\":\"a\",\"secret\":\"x\"},{\"id\":2,\"nested\":{\"k\":[1,2]}},3]",
+                "{\"fieldMappings\":{\"full_name\":\"name\"},\"fieldsToRemove\":[\"secret\",\"name\"]}");
+        
+        assertEquals("[{\"full_name\":\"a\",\"id\":1},{\"id\":2,\"nested\":{\"k\":[1,2]}},3]", output);
+    }
+    
+    @Test
+    void testNewlineDelimitedRecordsKeepTheirLayout() throws Exception {
+        String output = transform("{\"id\":1,\"secret\":\"x\"}\n{\"id\":2,\"tags\":[\"a\"]}\n",
+                "{\"fieldsToRemove\":[\"secret\"]}");
+        
+        assertEquals("{\"id\":1}\n{\"id\":2,\"tags\":[\"a\"]}", output);
+    }
+    
+    @Test
+    void testFilterAndDeriveSeeInputFieldNames() throws Exception {
+        String output = transform("[{\"id\":1,\"name\":\"a\",\"qty\":2,\"price\":1.5},{\"id\":2,\"name\":\"b\",\"qty\":0}]",
+                "{\"fieldMappings\":{\"full_name\":\"name\"},\"fieldsToRemove\":[\"name\"],"
+                        + "\"filter\":\"qty > 0\",\"derive\":{\"total\":\"qty * price\",\"label\":\"upper(name) || id\"}}");
+        
+        assertEquals("[{\"full_name\":\"a\",\"id\":1,\"qty\":2,\"price\":1.5,\"total\":3.0,\"label\":\"A1\"}]", output);
+    }
+    
+    @Test
+    void testEmptyConfigCopiesThrough() throws Exception {
+        assertEquals("[]", transform("[ ]", "{}"));
+        assertEquals("{\"a\":{\"b\":null}}", transform("{ \"a\" : { \"b\" : null } }", "{}"));
+    }
+    
+    private String transform(String json, String config) throws Exception {
+        return new String(transformer.transform(new ByteArrayResource(json.getBytes(StandardCharsets.UTF_8)), "JSON", config)
+                .getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SORT transformer
+ */
+class SortDataTransformerTest {
+    
+    private final SortDataTransformer transformer = new SortDataTransformer();
+    
+    @Test
+    void testSortByKeysKeepingLastDuplicate() throws Exception {
+        String csv = "id,version,amount\nb,1,10\na,1,9\nb,2,100\nc,1,-5\na,1,8\n";
+        String byAmount = "{\"keys\": [{\"field\": \"amount\", \"type\": \"NUMBER\", \"order\": \"DESC\"}]}";
+        assertEquals("id,version,amount\nb,2,100\nb,1,10\na,1,9\na,1,8\nc,1,-5", transform(csv, "CSV", byAmount));
+        
+        String latest = "{\"keys\": [\"id\"], \"dedup\": \"KEYS\", \"keep\": \"LAST\"}";
+        assertEquals("id,version,amount\na,1,8\nb,2,100\nc,1,-5", transform(csv, "CSV", latest));
+        
+        String exact = "{\"dedup\": \"RECORD\", \"targetFormat\": \"NDJSON\"}";
+        assertEquals("{\"k\":1}\n{\"k\":2}", transform("[{\"k\": 2}, {\"k\": 1}, {\"k\": 2}]", "JSON", exact));
+    }
+    
+    @Test
+    void testSpilledRunsAreMergedInSeveralPasses() throws Exception {
+        ReflectionTestUtils.setField(transformer, "memoryLimitBytes", 2048L);
+        ReflectionTestUtils.setField(transformer, "mergeFanIn", 2);
+        
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"n\": ").append((i * 7919) % 1000).append(", \"seq\": ").append(i).append('}');
+        }
+        json.append(']');
+        String config = "{\"keys\": [{\"field\": \"n\", \"type\": \"NUMBER\"}], \"dedup\": true}";
+        
+        JsonNode sorted = new ObjectMapper().readTree(transform(json.toString(), "JSON", config));
+        assertEquals(1000, sorted.size());
+        for (int n = 0; n < 1000; n++) {
+            assertEquals(n, sorted.get(n).get("n").asInt());
+            // The first record of each key in input order is kept
+            int first = 0;
+            while ((first * 7919) % 1000 != n) {
+                first++;
+            }
+            assertEquals(first, sorted.get(n).get("seq").asInt());
+        }
+    }
+    
+    private String transform(String input, String sourceFormat, String config) throws Exception {
+        return new String(transformer.transform(new ByteArrayResource(input.getBytes(StandardCharsets.UTF_8)), sourceFormat, config)
+                .getContentAsByteArray(), StandardCharsets.UTF_8).trim();
+    }
+}
@@ -0,0 +1,84 @@
+package com.shrmagarv.tresatadis.service.transform.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the XML transformer's streaming and DOM paths
+ */
+class XmlDataTransformerTest {
+    
+    private static final String ORDERS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<orders><order id=\"1\"><price>10</price><note>x</note></order>"
+            + "<order id=\"2\"><price>20</price><items><note>y</note></items></order></orders>";
+    
+    private final XmlDataTransformer transformer = new XmlDataTransformer();
+    
+    @Test
+    void testStreamingRenamesAndRemovesByPath() throws Exception {
+        String output = transform(ORDERS,
+                "{\"elementMappings\": {\"/orders/order\": \"purchase\"}, \"elementsToRemove\": [\"/orders/purchase/note\"]}");
+        
+        assertTrue(output.startsWith("<?xml"));
+        assertTrue(output.endsWith("<orders><purchase id=\"1\"><price>10</price></purchase>"
+                + "<purchase id=\"2\"><price>20</price><items><note>y</note></items></purchase></orders>"), output);
+    }
+    
+    @Test
+    void testStreamingDescendantAndWildcardSteps() throws Exception {
+        String output = transform(ORDERS,
+                "{\"elementMappings\": {\"//price\": \"amount\"}, \"elementsToRemove\": [\"/orders/*/items\"]}");
+        
+        assertTrue(output.endsWith("<orders><order id=\"1\"><amount>10</amount><note>x</note></order>"
+                + "<order id=\"2\"><amount>20</amount></order></orders>"), output);
+    }
+    
+    @Test
+    void testPredicatesFallBackToDom() throws Exception {
+        String output = transform(ORDERS, "{\"elementsToRemove\": [\"//order[@id='2']\"]}");
+        
+        assertTrue(output.endsWith("<orders><order id=\"1\"><price>10</price><note>x</note></order></orders>"), output);
+    }
+    
+    @Test
+    void testFilterAndDeriveOnRecordElements() throws Exception {
+        String config = "{\"filter\": \"price > 15 OR id = 1\", \"derive\": {\"total\": \"price * 2\"},"
+                + " \"elementsToRemove\": [\"//note\"]}";
+        
+        // Streaming (element paths) and DOM (a predicate) give the same result
+        String expected = "<orders><order id=\"1\"><price>10</price><total>20</total></order>"
+                + "<order id=\"2\"><price>20</price><items/><total>40</total></order></orders>";
+        assertTrue(transform(ORDERS, config).endsWith(expected), transform(ORDERS, config));
+        
+        String filtered = transform(ORDERS, "{\"filter\": \"price > 15\", \"elementsToRemove\": [\"//note[1]\"]}");
+        assertTrue(filtered.endsWith("<orders><order id=\"2\"><price>20</price><items/></order></orders>"), filtered);
+    }
+    
+    @Test
+    void testExternalEntitiesAreNotResolved(@TempDir Path tempDir) throws Exception {
+        Path secret = tempDir.resolve("secret.txt");
+        Files.writeString(secret, "secret-value");
+        String xml = "<!DOCTYPE r [<!ENTITY x SYSTEM \"" + secret.toUri() + "\">]><r><a>&x;</a><b/></r>";
+        
+        // The streaming path rejects the reference outright
+        assertThrows(XMLStreamException.class, () -> transform(xml, "{\"elementsToRemove\": [\"//b\"]}"));
+        
+        // The DOM path drops it
+        String output = transform(xml, "{\"elementsToRemove\": [\"//b[1]\"]}");
+        assertFalse(output.contains("secret-value"), output);
+        assertTrue(output.contains("<r><a/></r>"), output);
+    }
+    
+    private String transform(String xml, String config) throws Exception {
+        return new String(transformer.transform(new ByteArrayResource(xml.getBytes(StandardCharsets.UTF_8)), "XML", config)
+                .getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}
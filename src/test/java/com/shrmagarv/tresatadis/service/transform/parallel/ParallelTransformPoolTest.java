@@ -0,0 +1,94 @@
+package com.shrmagarv.tresatadis.service.transform.parallel;
+
+import com.shrmagarv.tresatadis.service.transform.DataTransformer;
+import com.shrmagarv.tresatadis.service.transform.impl.CsvDataTransformer;
+import com.shrmagarv.tresatadis.service.transform.impl.JsonDataTransformer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ordered parallel transformation of record batches
+ */
+class ParallelTransformPoolTest {
+    
+    private ParallelTransformPool pool;
+    
+    @BeforeEach
+    void setUp() {
+        pool = new ParallelTransformPool();
+        ReflectionTestUtils.setField(pool, "threads", 4);
+        ReflectionTestUtils.setField(pool, "batchSize", 100);
+        pool.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+    
+    @Test
+    void testParallelOutputMatchesSequentialOutput() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        StringBuilder csv = new StringBuilder("id,name,qty,price\n");
+        for (int i = 0; i < 5_000; i++) {
+            json.append(i > 0 ? "," : "").append("{\"id\":").append(i).append(",\"name\":\"n").append(i)
+                    .append("\",\"qty\":").append(i % 7).append(",\"price\":").append(i % 13).append(".5}");
+            csv.append(i).append(",\"n, ").append(i).append("\",").append(i % 7).append(',').append(i % 13).append(".5\n");
+        }
+        json.append(',').append(42).append(']');
+        String config = "{\"fieldMappings\":{\"full_name\":\"name\"},\"filter\":\"qty > 0\","
+                + "\"derive\":{\"total\":\"qty * price\"},\"parallelism\":%d}";
+        
+        JsonDataTransformer jsonTransformer = new JsonDataTransformer();
+        CsvDataTransformer csvTransformer = new CsvDataTransformer();
+        ReflectionTestUtils.setField(jsonTransformer, "parallelPool", pool);
+        ReflectionTestUtils.setField(csvTransformer, "parallelPool", pool);
+        
+        assertEquals(transform(jsonTransformer, json, "JSON", config.formatted(1)),
+                transform(jsonTransformer, json, "JSON", config.formatted(4)));
+        assertEquals(transform(csvTransformer, csv, "CSV", config.formatted(1)),
+                transform(csvTransformer, csv, "CSV", config.formatted(4)));
+    }
+    
+    @Test
+    void testResultsAreDeliveredInOrderAndFailuresPropagate() throws Exception {
+        List<Integer> results = new ArrayList<>();
+        try (OrderedBatchExecutor<Integer, Integer> executor = pool.executor(3, batch -> {
+            // Later batches finish first
+            Thread.sleep(Math.max(0, 20 - batch.get(0) / 100));
+            return batch.get(0);
+        }, results::add)) {
+            for (int i = 0; i < 1_000; i++) {
+                executor.add(i);
+            }
+            executor.finish();
+        }
+        assertEquals(List.of(0, 100, 200, 300, 400, 500, 600, 700, 800, 900), results);
+        
+        OrderedBatchExecutor<Integer, Integer> failing = pool.executor(2, batch -> {
+            throw new IOException("bad batch");
+        }, result -> { });
+        IOException e = assertThrows(IOException.class, () -> {
+            for (int i = 0; i < 1_000; i++) {
+                failing.add(i);
+            }
+        });
+        assertEquals("bad batch", e.getMessage());
+        failing.close();
+    }
+    
+    private String transform(DataTransformer transformer, CharSequence data, String format, String config) throws Exception {
+        return new String(transformer.transform(new ByteArrayResource(data.toString().getBytes(StandardCharsets.UTF_8)),
+                format, config).getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+}